@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+// Assemble
+File buildLog = new File( basedir, 'build.log' )
+List<String> lines = buildLog.readLines()
+
+/*
+ The build log holds the output of both builds. XJC logs its arguments (at debug level) when run:
+
+ [DEBUG]
+ +=================== [7 XJC Arguments]
+ ...
+ +=================== [End 7 XJC Arguments]
+
+ [INFO] Restored generated files from the generation cache [...]
+ */
+
+// Act
+def numXjcRuns = lines.findAll { it =~ /\[End \d+ XJC Arguments\]/ }.size()
+def numRestores = lines.findAll { it.contains( 'Restored generated files from the generation cache' ) }.size()
+
+// Assert
+assert numXjcRuns == 1 : "Expected XJC to run in the first build only, but it ran " + numXjcRuns + " times."
+assert numRestores == 1 : "Expected the second build to restore from the cache, but found " + numRestores + " restores."
+
+File generationCache = new File( basedir, 'generation-cache' )
+assert generationCache.isDirectory()
+assert generationCache.list().length > 0
+
+File aType = new File( basedir, 'target/generated-sources/jaxb/com/example/cached/AType.java' )
+assert aType.exists()
+
+File aTypeCompiled = new File( basedir, 'target/classes/com/example/cached/AType.class' )
+assert aTypeCompiled.exists()
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+// Each SchemaSet generates code into its own package.
+File orderType = new File( basedir,'target/generated-sources/jaxb/com/example/orders/OrderType.java' )
+assert orderType.exists()
+
+File invoiceType = new File( basedir,'target/generated-sources/jaxb/com/example/invoices/InvoiceType.java' )
+assert invoiceType.exists()
+
+// The XJB file of the orders SchemaSet must not customize the invoices SchemaSet.
+assert orderType.text.contains( 'isSetNumber' )
+assert !invoiceType.text.contains( 'isSetNumber' )
+
+File orderTypeCompiled = new File( basedir,'target/classes/com/example/orders/OrderType.class' )
+assert orderTypeCompiled.exists()
+
+File invoiceTypeCompiled = new File( basedir,'target/classes/com/example/invoices/InvoiceType.class' )
+assert invoiceTypeCompiled.exists()
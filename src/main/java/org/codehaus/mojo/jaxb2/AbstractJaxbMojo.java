@@ -27,18 +27,24 @@ import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.jaxb2.shared.CanonicalPathCache;
 import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
 import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.cache.GenerationCache;
 import org.codehaus.mojo.jaxb2.shared.environment.EnvironmentFacet;
 import org.codehaus.mojo.jaxb2.shared.filters.Filter;
 import org.codehaus.mojo.jaxb2.shared.filters.pattern.PatternFileFilter;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.mojo.jaxb2.shared.staleness.StaleManifest;
 import org.codehaus.mojo.jaxb2.shared.version.DependencyInfo;
 import org.codehaus.mojo.jaxb2.shared.version.DependsFileParser;
+import org.codehaus.mojo.jaxb2.shared.worker.ToolWorkerClient;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -89,6 +95,7 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
     private static final String OWN_ARTIFACT_ID = "jaxb2-maven-plugin";
     private static final String SYSTEM_FILE_ENCODING_PROPERTY = "file.encoding";
     private static final String[] STANDARD_EXCLUDE_SUFFIXES = {"README.*", "\\.xml", "\\.txt"};
+    private static final String BASEDIR_PLACEHOLDER = "${basedir}";
 
     static {
 
@@ -202,6 +209,84 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
     @Parameter(required = false)
     protected List<EnvironmentFacet> extraFacets;
 
+    /**
+     * <p>If set to {@code true}, the files generated by XJC or SchemaGen are stored within a local cache shared by
+     * all builds on this machine, and restored from it (instead of running XJC or SchemaGen) whenever another build
+     * - for instance in another worktree, on another branch or after a clean - has already generated files from
+     * identical sources, configuration and tool versions.</p>
+     * <p>The cache is only used when {@code clearOutputDir} is {@code true}, implying that the outputDirectory
+     * holds nothing but the generated files.</p>
+     *
+     * @see #generationCacheDirectory
+     * @see #generationCacheMaxSize
+     * @since 2.3
+     */
+    @Parameter(property = "jaxb2.generationCache", defaultValue = "false")
+    protected boolean generationCache;
+
+    /**
+     * The root directory of the local generation cache, which may be shared between concurrent builds.
+     *
+     * @see #generationCache
+     * @since 2.3
+     */
+    @Parameter(property = "jaxb2.generationCacheDirectory", defaultValue = "${user.home}/.m2/jaxb2-cache")
+    protected File generationCacheDirectory;
+
+    /**
+     * The maximum total size (in megabytes) of the local generation cache. When exceeded, the least recently used
+     * cache entries are evicted.
+     *
+     * @see #generationCache
+     * @since 2.3
+     */
+    @Parameter(property = "jaxb2.generationCacheMaxSize", defaultValue = "512")
+    protected int generationCacheMaxSize;
+
+    /**
+     * <p>If set to {@code true}, XJC and SchemaGen are not run within the Maven JVM, but within a long-lived local
+     * worker JVM which is started on first use. The worker is shared by all executions - within this and subsequent
+     * builds - using the same plugin dependencies, JVM and working directory, and exits after having been idle for
+     * {@code workerIdleTimeout} seconds. Since the tools stay loaded and JIT-compiled within the worker, each
+     * execution avoids the cold start of the tools; this is particularly noticeable in large reactors.</p>
+     * <p>The worker is not used if a {@code locale} or any {@code extraFacets} are configured, since those only
+     * apply to the Maven JVM. Should the worker not be startable, the tools are run within the Maven JVM.</p>
+     *
+     * @see #workerIdleTimeout
+     * @see #workerMaxConcurrentRequests
+     * @since 2.3
+     */
+    @Parameter(property = "jaxb2.worker", defaultValue = "false")
+    protected boolean worker;
+
+    /**
+     * The number of seconds without requests after which a worker JVM started by this plugin exits.
+     *
+     * @see #worker
+     * @since 2.3
+     */
+    @Parameter(property = "jaxb2.workerIdleTimeout", defaultValue = "600")
+    protected int workerIdleTimeout;
+
+    /**
+     * The maximum number of tool invocations which a worker JVM started by this plugin runs concurrently.
+     * Further invocations (from parallel builds) wait until a running invocation completes.
+     *
+     * @see #worker
+     * @since 2.3
+     */
+    @Parameter(property = "jaxb2.workerMaxConcurrentRequests", defaultValue = "4")
+    protected int workerMaxConcurrentRequests;
+
+    // Internal state
+    private StaleManifest currentStaleManifest;
+    private List<URL> resolvedSources;
+    private List<String> resolvedClasspath;
+    private SortedMap<String, Integer> reusedResolutions = new TreeMap<String, Integer>();
+    private CanonicalPathCache canonicalPathCache = new CanonicalPathCache();
+    private ToolWorkerClient toolWorkerClient;
+    private boolean toolWorkerClientUnusable;
+
     /**
      * The Plexus BuildContext is used to identify files or directories modified since last build,
      * implying functionality used to define if java generation must be performed again.
@@ -254,17 +339,27 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
         // 3) Are generated files stale?
         if (isReGenerationRequired()) {
 
-            if (performExecution()) {
+            if (restoreFromGenerationCache()) {
+
+                // The generated files were restored from the cache; they correspond to the current state
+                // of all sources.
+                updateStaleFile();
+
+                // Hack to support M2E
+                buildContext.refresh(getOutputDirectory());
+
+            } else if (performExecution()) {
 
                 // As instructed by the performExecution() method, update
-                // the timestamp of the stale File.
-                updateStaleFileTimestamp();
+                // the stale File with the current state of all sources.
+                updateStaleFile();
+                storeInGenerationCache();
 
                 // Hack to support M2E
                 buildContext.refresh(getOutputDirectory());
 
             } else if (isInfoEnabled) {
-                log.info("Not updating staleFile timestamp as instructed.");
+                log.info("Not updating staleFile as instructed.");
             }
         } else if (isInfoEnabled) {
             log.info("No changes detected in schema or binding files - skipping JAXB generation.");
@@ -283,6 +378,11 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
             // Add the output Directory.
             getProject().addCompileSourceRoot(canonicalPathToOutputDirectory);
         }
+
+        // 5) Printout how many times resolved inputs were reused instead of re-resolved.
+        if (isDebugEnabled && !reusedResolutions.isEmpty()) {
+            log.debug("Reused resolved inputs (instead of scanning the file system again): " + reusedResolutions);
+        }
     }
 
     /**
@@ -302,7 +402,7 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
      * <p>Implement this method to perform this Mojo's execution.
      * This method will only be called if {@code !shouldExecutionBeSkipped() && isReGenerationRequired()}.</p>
      *
-     * @return {@code true} if the timestamp of the stale file should be updated.
+     * @return {@code true} if the stale file should be updated.
      * @throws MojoExecutionException if an unexpected problem occurs.
      *                                Throwing this exception causes a "BUILD ERROR" message to be displayed.
      * @throws MojoFailureException   if an expected problem (such as a compilation failure) occurs.
@@ -310,6 +410,25 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
      */
     protected abstract boolean performExecution() throws MojoExecutionException, MojoFailureException;
 
+    /**
+     * Implement this method to define if the outputDirectory of this AbstractJaxbMojo holds nothing but the files
+     * generated during {@link #performExecution()}, implying that its content can be stored within (and restored
+     * from) the local generation cache.
+     *
+     * @return {@code true} if the content of the outputDirectory may be cached.
+     * @see #generationCache
+     */
+    protected abstract boolean isOutputDirectoryCacheable();
+
+    /**
+     * <p>Implement this method to perform any actions (except generating files into the outputDirectory)
+     * which {@link #performExecution()} would have performed, after the generated files have been restored into
+     * the outputDirectory from the local generation cache.</p>
+     *
+     * @throws MojoExecutionException if an unexpected problem occurs.
+     */
+    protected abstract void completeRestoreFromGenerationCache() throws MojoExecutionException;
+
     /**
      * Override this method to acquire a List holding all URLs to the sources which this
      * AbstractJaxbMojo should use to produce its output (XSDs files for AbstractXsdGeneratorMojos and
@@ -319,6 +438,104 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
      */
     protected abstract List<URL> getSources();
 
+    /**
+     * <p>Retrieves the sources of this AbstractJaxbMojo, as resolved by {@link #getSources()} during the first
+     * call to this method within this execution. As resolving sources implies scanning the file system, all
+     * phases of this execution should use the resolved sources instead of calling {@code getSources()}.</p>
+     *
+     * @return A non-null and unmodifiable List holding URLs to the sources used by this AbstractJaxbMojo.
+     */
+    protected final List<URL> getResolvedSources() {
+
+        if (resolvedSources == null) {
+            resolvedSources = Collections.unmodifiableList(new ArrayList<URL>(getSources()));
+        } else {
+            countReusedResolution("sources");
+        }
+
+        // All done.
+        return resolvedSources;
+    }
+
+    /**
+     * Retrieves the classpath of this AbstractJaxbMojo, as resolved by {@link #getClasspath()} during the first
+     * call to this method within this execution.
+     *
+     * @return A non-null and unmodifiable List holding the classpath elements used by this AbstractJaxbMojo.
+     * @throws MojoExecutionException if the classpath could not be retrieved.
+     */
+    protected final List<String> getResolvedClasspath() throws MojoExecutionException {
+
+        if (resolvedClasspath == null) {
+            resolvedClasspath = Collections.unmodifiableList(new ArrayList<String>(getClasspath()));
+        } else {
+            countReusedResolution("classpath");
+        }
+
+        // All done.
+        return resolvedClasspath;
+    }
+
+    /**
+     * Retrieves the ToolWorkerClient used to run XJC or SchemaGen within a worker JVM, if configured.
+     *
+     * @return The ToolWorkerClient to use, or {@code null} if the tool should be run within the Maven JVM.
+     * @see #worker
+     */
+    protected final synchronized ToolWorkerClient getToolWorkerClient() {
+
+        if (!worker || toolWorkerClientUnusable) {
+            return null;
+        }
+
+        if (toolWorkerClient == null) {
+
+            // The locale and extraFacets are applied to the Maven JVM only.
+            final boolean hasExtraFacets = extraFacets != null && !extraFacets.isEmpty();
+            final ClassLoader pluginClassLoader = getClass().getClassLoader();
+            if (locale != null || hasExtraFacets || !(pluginClassLoader instanceof URLClassLoader)) {
+
+                getLog().warn("Running tools within the Maven JVM, since a worker JVM cannot honor the configured "
+                        + (locale != null ? "locale." : (hasExtraFacets ? "extraFacets." : "plugin ClassLoader.")));
+                toolWorkerClientUnusable = true;
+                return null;
+            }
+
+            toolWorkerClient = new ToolWorkerClient(
+                    Arrays.asList(((URLClassLoader) pluginClassLoader).getURLs()),
+                    new File(System.getProperty("user.dir")),
+                    workerIdleTimeout,
+                    workerMaxConcurrentRequests,
+                    getLog());
+        }
+
+        // All done.
+        return toolWorkerClient;
+    }
+
+    /**
+     * Retrieves the cache of canonical paths of this execution, to be used when canonicalizing many files (such
+     * as all sources or all bytecode files). Canonical paths are never cached beyond a single execution, since
+     * symbolic links may have been created or removed since a previous execution.
+     *
+     * @return The non-null CanonicalPathCache of this AbstractJaxbMojo.
+     */
+    protected final CanonicalPathCache getCanonicalPathCache() {
+        return canonicalPathCache;
+    }
+
+    /**
+     * Records that a resolved input was reused within this execution, instead of resolved again.
+     * The number of reused resolutions is emitted to the Maven Log at debug level after the execution.
+     *
+     * @param inputName The name of the reused input, such as "sources".
+     */
+    protected final void countReusedResolution(final String inputName) {
+
+        final Integer previous = reusedResolutions.get(inputName);
+        reusedResolutions.put(inputName, previous == null ? 1 : previous + 1);
+    }
+
     /**
      * Retrieves the directory where the generated files should be written to.
      *
@@ -405,6 +622,122 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
         return new File(staleFileDirectory, staleFileName);
     }
 
+    /**
+     * Acquires the staging directory for this execution. When {@code clearOutputDir} is set, tools generate into
+     * the (cleared) staging directory, which is subsequently synchronized into the output directory using
+     * {@link FileSystemUtilities#synchronizeDirectory(File, File, Log)}. Hence, generated files whose content did
+     * not change are left untouched and need not be recompiled by incremental builds.
+     *
+     * @return the staging directory for this execution.
+     */
+    protected final File getStagingDirectory() {
+        return new File(getStaleFile().getPath() + "-staging");
+    }
+
+    /**
+     * <p>Compares the supplied StaleManifest, describing the current state of all sources (and other inputs)
+     * used by this AbstractJaxbMojo, with the StaleManifest stored within the staleFile during the last
+     * successful generation. The supplied StaleManifest is written to the staleFile if this execution
+     * subsequently generates its files successfully.</p>
+     *
+     * @param current The StaleManifest describing the current state of all inputs of this AbstractJaxbMojo.
+     * @return {@code true} if the generated files are stale, i.e. if no StaleManifest was previously stored or
+     * if the stored StaleManifest differs from the supplied one.
+     */
+    protected final boolean isStale(final StaleManifest current) {
+
+        // Check sanity
+        Validate.notNull(current, "current");
+
+        // Remember the current manifest, to store it after a successful generation.
+        this.currentStaleManifest = current;
+
+        final File staleFile = getStaleFile();
+        final StaleManifest previous = getPreviousStaleManifest();
+        final List<String> changes = current.getChangesSince(previous);
+
+        if (getLog().isDebugEnabled()) {
+
+            final StringBuilder builder = new StringBuilder();
+            builder.append("\n+=================== [" + changes.size() + " changes since last generation]\n");
+            builder.append("|\n");
+            builder.append("| StaleFile: " + FileSystemUtilities.getCanonicalPath(staleFile) + "\n");
+            builder.append("| Manifest entries: " + current.getEntries().size() + "\n");
+            builder.append("|\n");
+            for (String currentChange : changes) {
+                builder.append("| " + currentChange + "\n");
+            }
+            builder.append("|\n");
+            builder.append("+=================== [End " + changes.size() + " changes since last generation]\n\n");
+            getLog().debug(builder.toString().replace("\n", NEWLINE));
+        }
+
+        // The generated files are up to date, but the hints may have changed. Store them to avoid
+        // re-calculating the information they cache during the next execution.
+        if (changes.isEmpty() && !previous.getHints().equals(current.getHints())) {
+            try {
+                current.write(staleFile);
+            } catch (IOException e) {
+                getLog().debug("Could not update the hints within staleFile ["
+                        + FileSystemUtilities.getCanonicalPath(staleFile) + "]", e);
+            }
+        }
+
+        // All done.
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Reads the StaleManifest stored within the staleFile during the last successful generation.
+     *
+     * @return The previously stored StaleManifest, or {@code null} if none could be read.
+     */
+    protected final StaleManifest getPreviousStaleManifest() {
+        return StaleManifest.read(getStaleFile());
+    }
+
+    /**
+     * <p>Adds fingerprints of the effective tool configuration to the supplied StaleManifest, implying that any
+     * change in the plugin configuration or the tool classpath renders the generated files stale.</p>
+     * <ol>
+     * <li><strong>Tool arguments</strong>: A digest of the effective tool arguments, where the project basedir path
+     * has been replaced by a placeholder (to make the fingerprint independent of the project location).</li>
+     * <li><strong>Classpath</strong>: The identity of each classpath element, in classpath order. Files (typically
+     * JARs) are identified by their length and modification time, and directories other than the ones of this
+     * project by the relative path, length and modification time of all files within them.</li>
+     * </ol>
+     *
+     * @param manifest      The non-null StaleManifest to which the fingerprints should be added.
+     * @param toolArguments The effective arguments for the tool (i.e. XJC or SchemaGen).
+     * @param classpath     The classpath elements used by the tool.
+     */
+    protected final void addConfigurationFingerprint(final StaleManifest manifest,
+                                                     final String[] toolArguments,
+                                                     final List<String> classpath) {
+
+        // Check sanity
+        Validate.notNull(manifest, "manifest");
+        Validate.notNull(toolArguments, "toolArguments");
+        Validate.notNull(classpath, "classpath");
+
+        // Use the arguments in their exact order, but replace the basedir path with a placeholder.
+        final File basedir = getProject().getBasedir();
+        final String canonicalBasedirPath = FileSystemUtilities.getCanonicalPath(basedir);
+        final String absoluteBasedirPath = basedir.getAbsolutePath();
+
+        final StringBuilder builder = new StringBuilder();
+        for (String current : toolArguments) {
+            builder.append(current
+                    .replace(canonicalBasedirPath, BASEDIR_PLACEHOLDER)
+                    .replace(absoluteBasedirPath, BASEDIR_PLACEHOLDER))
+                    .append('\0');
+        }
+        manifest.add("configuration", "arguments", ContentDigester.digest(builder.toString()));
+
+        // The classpath order is significant.
+        manifest.addClassPath(classpath, getProjectDirectories());
+    }
+
     /**
      * <p>The algorithm for finding the encoding to use is as follows (where the first non-null value found
      * is used for encoding):</p>
@@ -543,13 +876,172 @@ public abstract class AbstractJaxbMojo extends AbstractMojo {
         return objectOrNull;
     }
 
-    private void updateStaleFileTimestamp() throws MojoExecutionException {
+    private GenerationCache getGenerationCache() {
+
+        if (!generationCache || generationCacheDirectory == null || !isOutputDirectoryCacheable()) {
+            return null;
+        }
+
+        return new GenerationCache(generationCacheDirectory, generationCacheMaxSize * 1024L * 1024L, getLog());
+    }
+
+    /**
+     * Calculates the key of the generated files within the local generation cache, from the current StaleManifest
+     * (whose entry keys are made independent of the project location), the concrete Mojo type and the versions of
+     * this plugin and its dependencies.
+     *
+     * @param cache The active GenerationCache.
+     * @return The cache key, or {@code null} if the generated files should not be cached, since some input is
+     * unreadable or remote.
+     */
+    private String getGenerationCacheKey(final GenerationCache cache) {
+
+        if (currentStaleManifest == null) {
+            return null;
+        }
+
+        final File basedir = getProject().getBasedir();
+        final String[] basedirForms = {
+                FileSystemUtilities.getCanonicalPath(basedir),
+                basedir.getAbsolutePath(),
+                basedir.toURI().getRawPath()};
+
+        final StringBuilder scope = new StringBuilder();
+        scope.append(getClass().getName()).append('\n');
+
+        try {
+            for (Map.Entry<String, String> current : DependsFileParser.getVersionMap(OWN_ARTIFACT_ID).entrySet()) {
+                scope.append(current.getKey()).append('=').append(current.getValue()).append('\n');
+            }
+        } catch (IllegalStateException e) {
+
+            // Without tool version information, the key is not reliable.
+            getLog().debug("Could not find plugin version information; not using the generation cache.", e);
+            return null;
+        }
+
+        final SortedMap<String, String> entries = new TreeMap<String, String>();
+        for (Map.Entry<String, String> current : currentStaleManifest.getEntries().entrySet()) {
+
+            String key = current.getKey();
+            for (String currentForm : basedirForms) {
+                if (currentForm.length() > 1) {
+                    key = key.replace(currentForm.endsWith("/")
+                            ? currentForm.substring(0, currentForm.length() - 1)
+                            : currentForm, BASEDIR_PLACEHOLDER);
+                }
+            }
+
+            entries.put(key, current.getValue());
+        }
+
+        // All done.
+        return cache.getKey(scope.toString(), entries);
+    }
+
+    /**
+     * @return The absolute paths of the source roots and output directories of the active project.
+     */
+    private List<String> getProjectDirectories() {
+
+        final MavenProject project = getProject();
+        final List<String> toReturn = new ArrayList<String>();
+        toReturn.addAll(project.getCompileSourceRoots());
+        toReturn.addAll(project.getTestCompileSourceRoots());
+
+        if (project.getBuild() != null) {
+            for (String current : Arrays.asList(project.getBuild().getOutputDirectory(),
+                    project.getBuild().getTestOutputDirectory())) {
+                if (current != null) {
+                    toReturn.add(current);
+                }
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private boolean restoreFromGenerationCache() throws MojoExecutionException {
+
+        final GenerationCache cache = getGenerationCache();
+        final String key = cache == null ? null : getGenerationCacheKey(cache);
+        if (key == null || !cache.contains(key)) {
+            return false;
+        }
+
+        // Restore into the (cleared) staging directory, and synchronize it into the outputDirectory. Hence, the
+        // outputDirectory is left untouched if the restore fails, and unchanged files retain their modification time.
+        final File stagingDirectory = getStagingDirectory();
+        try {
+
+            FileSystemUtilities.createDirectory(stagingDirectory, true);
+            if (!cache.restore(key, stagingDirectory)) {
+                return false;
+            }
+
+        } catch (IOException e) {
+
+            getLog().warn("Could not restore generated files from the generation cache; generating them instead. ["
+                    + e.getMessage() + "]");
+            return false;
+        }
+
+        try {
+            FileSystemUtilities.synchronizeDirectory(stagingDirectory, getOutputDirectory(), getLog());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not synchronize the staging directory ["
+                    + FileSystemUtilities.getCanonicalPath(stagingDirectory) + "] into the outputDirectory.", e);
+        }
+
+        completeRestoreFromGenerationCache();
+
+        if (getLog().isInfoEnabled()) {
+            getLog().info("Restored generated files from the generation cache [" + key + "]");
+        }
+
+        // All done.
+        return true;
+    }
+
+    private void storeInGenerationCache() {
+
+        final GenerationCache cache = getGenerationCache();
+        final String key = cache == null ? null : getGenerationCacheKey(cache);
+        if (key == null || !getOutputDirectory().isDirectory()) {
+            return;
+        }
+
+        try {
+            cache.store(key, getOutputDirectory());
+        } catch (IOException e) {
+
+            // The generation succeeded; failing to cache its result is no reason to fail the build.
+            getLog().warn("Could not store generated files within the generation cache. [" + e.getMessage() + "]");
+        }
+    }
+
+    private void updateStaleFile() throws MojoExecutionException {
 
         final File staleFile = getStaleFile();
-        if (!staleFile.exists()) {
 
-            // Ensure that the staleFileDirectory exists
-            FileSystemUtilities.createDirectory(staleFile.getParentFile(), false);
+        // Ensure that the staleFileDirectory exists
+        FileSystemUtilities.createDirectory(staleFile.getParentFile(), false);
+
+        if (currentStaleManifest != null) {
+
+            try {
+                currentStaleManifest.write(staleFile);
+
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug("Wrote " + currentStaleManifest.getEntries().size()
+                            + " entries to staleFile [" + FileSystemUtilities.getCanonicalPath(staleFile) + "]");
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write staleFile.", e);
+            }
+
+        } else if (!staleFile.exists()) {
 
             try {
                 staleFile.createNewFile();
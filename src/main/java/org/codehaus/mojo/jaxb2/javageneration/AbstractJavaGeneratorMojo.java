@@ -19,33 +19,66 @@ package org.codehaus.mojo.jaxb2.javageneration;
  * under the License.
  */
 
+import com.sun.tools.xjc.BadCommandLineException;
 import com.sun.tools.xjc.Driver;
+import com.sun.tools.xjc.XJCListener;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.settings.Proxy;
 import org.apache.maven.settings.Settings;
 import org.codehaus.mojo.jaxb2.AbstractJaxbMojo;
 import org.codehaus.mojo.jaxb2.NoSchemasException;
+import org.codehaus.mojo.jaxb2.javageneration.episode.EpisodeIndex;
+import org.codehaus.mojo.jaxb2.javageneration.partition.EpisodeMerger;
+import org.codehaus.mojo.jaxb2.javageneration.partition.PartitionState;
+import org.codehaus.mojo.jaxb2.javageneration.partition.SchemaPartition;
+import org.codehaus.mojo.jaxb2.shared.CanonicalPathCache;
 import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
 import org.codehaus.mojo.jaxb2.shared.arguments.ArgumentBuilder;
 import org.codehaus.mojo.jaxb2.shared.environment.EnvironmentFacet;
 import org.codehaus.mojo.jaxb2.shared.environment.ToolExecutionEnvironment;
 import org.codehaus.mojo.jaxb2.shared.environment.classloading.ThreadContextClassLoaderBuilder;
+import org.codehaus.mojo.jaxb2.shared.environment.classloading.ThreadContextClassLoaderHolder;
 import org.codehaus.mojo.jaxb2.shared.environment.locale.LocaleFacet;
 import org.codehaus.mojo.jaxb2.shared.environment.logging.LoggingHandlerEnvironmentFacet;
+import org.codehaus.mojo.jaxb2.shared.mirror.SchemaMirror;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.mojo.jaxb2.shared.staleness.SchemaCatalog;
+import org.codehaus.mojo.jaxb2.shared.staleness.SchemaDependencyGraph;
+import org.codehaus.mojo.jaxb2.shared.staleness.StaleManifest;
+import org.codehaus.mojo.jaxb2.shared.worker.ToolWorkerClient;
+import org.codehaus.mojo.jaxb2.shared.worker.WorkerUnavailableException;
 import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
+import org.xml.sax.SAXParseException;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.net.HttpURLConnection;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * <p>Abstract superclass for Mojos generating Java source or binaries from XML schema(s) by invoking the JAXB XJC
@@ -59,6 +92,15 @@ import java.util.List;
 public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
 
     private static final int XJC_COMPLETED_OK = 0;
+    private static final String CLASSPATH_PLACEHOLDER = "${classpath}";
+    private static final String GRAPH_FILE_SUFFIX = "-dependencies.json";
+    private static final String PARTITION_DIRECTORY_SUFFIX = "-partitions";
+    private static final String PARTITION_STATE_FILE_SUFFIX = "-partitions.properties";
+    private static final String EPISODE_FILE_SUFFIX = ".episode";
+    private static final String SCHEMA_SET_DIRECTORY_SUFFIX = "-schemaSets";
+    private static final String EPISODE_INDEX_FILE_SUFFIX = "-episodes.properties";
+    private static final String UPSTREAM_EPISODE_DIRECTORY_SUFFIX = "-episodes";
+    private static final String MIRROR_CATALOG_FILE_SUFFIX = "-mirror-catalog.xml";
 
     /**
      * <p>Corresponding XJC parameter: {@code catalog}.</p>
@@ -270,6 +312,117 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
     @Parameter
     protected String xsdPathWithinArtifact;
 
+    /**
+     * <p>If {@code true}, the sources are split into independent partitions before invoking XJC, and XJC is only
+     * invoked for partitions whose schemas, XJB files or configuration changed since the last generation.
+     * Partitions are the connected components of the graph where two schemas are connected if one imports,
+     * includes or redefines the other, if they share the same targetNamespace or if the same XJB file customizes
+     * both of them. Files generated from unchanged partitions are left untouched, and the episode files of all
+     * partitions are merged into a single episode file.</p>
+     * <p>Partitioned generation is not used if the {@code packageName} parameter is given (since all partitions
+     * would then generate code into the same package) or if the {@code sourceType} is not {@code XmlSchema}.
+     * Should XJC generate the same file from several partitions (typically due to XJB customizations mapping
+     * several namespaces to the same package), the plugin falls back to a single XJC invocation for all sources.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.partitionedGeneration", defaultValue = "false")
+    protected boolean partitionedGeneration;
+
+    /**
+     * <p>Optional List of SchemaSets, each holding sources, XJB files and package name which should be compiled
+     * by XJC independently of all other SchemaSets. If SchemaSets are given, the {@code sources} and
+     * {@code xjbSources} of the execution are ignored. SchemaSets are compiled concurrently, using at most
+     * {@code schemaSetThreads} threads, and each SchemaSet uses its own ThreadContext ClassLoader.</p>
+     * <p>Using SchemaSets within a single execution is typically faster than isolating bindings by using several
+     * executions, which Maven runs one after another.</p>
+     *
+     * @see SchemaSet
+     * @since 2.3
+     */
+    @Parameter
+    protected List<SchemaSet> schemaSets;
+
+    /**
+     * The maximum number of threads used to compile SchemaSets concurrently. A value less than 1 implies that
+     * the number of available processors is used.
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.schemaSetThreads", defaultValue = "0")
+    protected int schemaSetThreads;
+
+    /**
+     * <p>The engine used to run XJC. The {@code driver} engine invokes the XJC command-line Driver with the XJC
+     * arguments. The {@code model} engine parses the same arguments, but drives XJC through its model API within
+     * the Maven JVM: the schemas are parsed and bound to a model, from which the generated files are emitted
+     * concurrently. All errors reported by XJC are collected, and listed within the build failure message.</p>
+     * <p>The {@code model} engine does not use the worker JVM.</p>
+     *
+     * @see XjcEngine
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.engine", defaultValue = "driver")
+    protected XjcEngine engine;
+
+    /**
+     * <p>If {@code true}, the episode files ({@code META-INF/sun-jaxb.episode}) found within the jars and
+     * directories of the classpath are indexed, and the bindings of all namespaces which the sources import from
+     * schemas of upstream artifacts are supplied to XJC. XJC then reuses the classes generated within those
+     * upstream artifacts, instead of generating them again. This removes the need to supply upstream episode
+     * files through {@code arguments}.</p>
+     * <p>Only the bindings of the namespaces of schemas imported (directly or transitively) by the sources of each
+     * XJC invocation are supplied, as XJC fails on bindings of namespaces absent from the compiled schemas. The
+     * namespaces of the sources themselves are never bound. The index is persisted next to the staleFile, and
+     * only jars modified since they were last indexed are read.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.discoverEpisodes", defaultValue = "false")
+    protected boolean discoverEpisodes;
+
+    /**
+     * <p>If {@code true}, remote (i.e. http and https) schemas used by the sources - whether as sources or through
+     * {@code xs:import}, {@code xs:include} or {@code xs:redefine} references - are mirrored within the
+     * {@code schemaMirrorDirectory}. Mirrored schemas are only revalidated using conditional requests (ETag and
+     * Last-Modified), and the remote schemas referenced by each schema are mirrored in parallel.</p>
+     * <p>XJC reads the mirrored copies through a generated catalog, in which any configured {@code catalog} is
+     * chained after the mirrored schemas. Since mirrored schemas are digested, a change to a remote schema also
+     * renders the generated files stale.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.mirrorRemoteSchemas", defaultValue = "false")
+    protected boolean mirrorRemoteSchemas;
+
+    /**
+     * <p>The directory holding the mirrored remote schemas, shared by all builds on a machine. Only used if
+     * {@code mirrorRemoteSchemas} is {@code true}.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.schemaMirrorDirectory", defaultValue = "${user.home}/.m2/jaxb2-schema-mirror")
+    protected File schemaMirrorDirectory;
+
+    /**
+     * <p>If {@code true}, no requests are made to remote hosts to mirror schemas; only schemas already found
+     * within the {@code schemaMirrorDirectory} are used. Defaults to the offline state of Maven (i.e. the
+     * {@code -o} command line option). Only used if {@code mirrorRemoteSchemas} is {@code true}.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "xjc.offline", defaultValue = "${settings.offline}")
+    protected boolean offline;
+
+    // Internal state
+    private SchemaDependencyGraph schemaDependencyGraph;
+    private List<File> resolvedSourceXJBs;
+    private Map<String, List<URL>> schemaSetSources;
+    private Map<String, List<File>> schemaSetXJBs;
+    private EpisodeIndex episodeIndex;
+    private SchemaMirror schemaMirror;
+    private Log toolLog;
+
     /**
      * <p>Java generation is required if any of the file products is outdated/stale.</p>
      * {@inheritDoc}
@@ -278,75 +431,92 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
     protected boolean isReGenerationRequired() {
 
         //
-        // Use the stale flag method to identify if we should re-generate the java source code from the supplied
+        // Use the stale manifest to identify if we should re-generate the java source code from the supplied
         // Xml Schema. Basically, we should regenerate the JAXB code if:
         //
         // a) The staleFile does not exist
-        // b) The staleFile exists and is older than one of the sources (XSD or XJB files).
-        //    "Older" is determined by comparing the modification timestamp of the staleFile and the source files.
+        // b) The content digest of any of the sources (XSD or XJB files), any schema transitively imported,
+        //    included or redefined by the sources, or the catalog file differs from the digest stored within
+        //    the staleFile during the last generation.
+        // c) The effective XJC arguments or the classpath differs from the ones used during the last generation.
         //
-        final File staleFile = getStaleFile();
-        final String debugPrefix = "StaleFile [" + FileSystemUtilities.getCanonicalPath(staleFile) + "]";
+        final StaleManifest manifest = new StaleManifest();
+        manifest.addAll("xsd", getSchemaDependencyGraph().getDigests());
 
-        boolean stale = !staleFile.exists();
-        if (stale) {
-            getLog().debug(debugPrefix + " not found. JAXB (re-)generation required.");
-        } else {
+        final List<URL> sourceXJBs = new ArrayList<URL>();
+        for (File current : getResolvedSourceXJBs()) {
+            sourceXJBs.add(FileSystemUtilities.getUrlFor(current));
+        }
+        manifest.addAll("xjb", ContentDigester.digest(sourceXJBs, getLog()));
+
+        if (catalog != null) {
+            manifest.addAll("catalog", ContentDigester.digest(
+                    Arrays.asList(FileSystemUtilities.getUrlFor(catalog)), getLog()));
+        }
 
-            final List<URL> sourceXSDs = getSources();
-            final List<File> sourceXJBs = getSourceXJBs();
+        try {
 
-            if (getLog().isDebugEnabled()) {
-                getLog().debug(debugPrefix + " found. Checking timestamps on source XSD and XJB "
-                        + "files to determine if JAXB (re-)generation is required.");
+            // The classpath is fingerprinted separately, so use a placeholder for its argument.
+            final List<String> classpath = getResolvedClasspath();
+            addConfigurationFingerprint(manifest,
+                    getXjcArguments(CLASSPATH_PLACEHOLDER,
+                            getOutputDirectory(),
+                            getStandardEpisodeFile(),
+                            packageName,
+                            getResolvedSourceXJBs(),
+                            getResolvedSources(),
+                            true),
+                    classpath);
+
+            // Parameters which affect the generated files, but are not part of the XJC arguments.
+            manifest.add("configuration", "xsdPathWithinArtifact", "" + xsdPathWithinArtifact);
+            if (isSchemaSetGeneration()) {
+                addSchemaSetFingerprints(manifest);
             }
 
-            final long staleFileLastModified = staleFile.lastModified();
-            for (URL current : sourceXSDs) {
+        } catch (NoSchemasException e) {
 
-                final URLConnection sourceXsdConnection;
-                try {
-                    sourceXsdConnection = current.openConnection();
-                    sourceXsdConnection.connect();
-                } catch (Exception e) {
-
-                    // Can't determine if the staleFile is younger than this sourceXSD.
-                    // Re-generate to be on the safe side.
-                    stale = true;
-                    break;
-                }
+            // Let the performExecution method handle the missing schemas.
+            return true;
 
-                try {
-                    if (sourceXsdConnection.getLastModified() > staleFileLastModified) {
+        } catch (MojoExecutionException e) {
 
-                        if (getLog().isDebugEnabled()) {
-                            getLog().debug(current.toString() + " is newer than the stale flag file.");
-                        }
-                        stale = true;
-                    }
-                } finally {
-                    if (sourceXsdConnection instanceof HttpURLConnection) {
-                        ((HttpURLConnection) sourceXsdConnection).disconnect();
-                    }
-                }
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Could not fingerprint the XJC configuration. JAXB (re-)generation required.", e);
             }
+            return true;
+        }
 
-            for (File current : sourceXJBs) {
-                if (current.lastModified() > staleFileLastModified) {
+        // All done.
+        return isStale(manifest);
+    }
 
-                    if (getLog().isDebugEnabled()) {
-                        getLog().debug(FileSystemUtilities.getCanonicalPath(current)
-                                + " is newer than the stale flag file.");
-                    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isOutputDirectoryCacheable() {
+        return clearOutputDir;
+    }
 
-                    stale = true;
-                    break;
-                }
-            }
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void completeRestoreFromGenerationCache() throws MojoExecutionException {
 
-        // All done.
-        return stale;
+        try {
+
+            // The restored files were not generated by partition.
+            FileUtils.forceDelete(getPartitionStateFile());
+
+            // Perform the same steps as performExecution does after generating the files.
+            addGeneratedSourcesToProjectSourceRoot();
+            copySourceXsdsToArtifact();
+
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not complete restoring generated files.", e);
+        }
     }
 
     /**
@@ -355,7 +525,7 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
     @Override
     protected boolean performExecution() throws MojoExecutionException, MojoFailureException {
 
-        boolean updateStaleFileTimestamp = false;
+        boolean updateStaleFile = false;
 
         try {
 
@@ -367,9 +537,12 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
                 final LocaleFacet localeFacet = locale == null ? null : LocaleFacet.createFor(locale, getLog());
 
                 // Create the ToolExecutionEnvironment
+                final LoggingHandlerEnvironmentFacet loggingFacet = LoggingHandlerEnvironmentFacet.create(
+                        getLog(), getClass(), getEncoding(false));
                 environment = new ToolExecutionEnvironment(getLog(),
-                        ThreadContextClassLoaderBuilder.createFor(this.getClass(), getLog()).addPaths(getClasspath()),
-                        LoggingHandlerEnvironmentFacet.create(getLog(), getClass(), getEncoding(false)),
+                        ThreadContextClassLoaderBuilder.createFor(this.getClass(), getLog())
+                                .addPaths(getResolvedClasspath()),
+                        loggingFacet,
                         localeFacet);
 
                 // Add any extra configured EnvironmentFacets, as configured in the POM.
@@ -381,98 +554,49 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
 
                 // Setup the environment.
                 environment.setup();
-
-                // Compile the XJC arguments
-                final String[] xjcArguments = getXjcArguments(
-                        environment.getClassPathAsArgument(),
-                        STANDARD_EPISODE_FILENAME);
-
-                // Ensure that the outputDirectory exists, but only clear it if does not already
-                FileSystemUtilities.createDirectory(getOutputDirectory(), clearOutputDir);
-
-                // Do we need to re-create the episode file's parent directory.
-                final boolean reCreateEpisodeFileParentDirectory = generateEpisode && clearOutputDir;
-                if (reCreateEpisodeFileParentDirectory) {
-                    getEpisodeFile(STANDARD_EPISODE_FILENAME);
-                }
+                toolLog = loggingFacet.getToolLog();
 
                 // Check the system properties.
                 logSystemPropertiesAndBasedir();
 
-                // Fire XJC
-                if (XJC_COMPLETED_OK != Driver.run(xjcArguments, new XjcLogAdapter(getLog()))) {
+                // Fire XJC, either once for all sources or once for each changed partition of the sources.
+                final String classPath = environment.getClassPathAsArgument();
+                if (isSchemaSetGeneration()) {
 
-                    final StringBuilder errorMsgBuilder = new StringBuilder();
-                    errorMsgBuilder.append("\n+=================== [XJC Error]\n");
-                    errorMsgBuilder.append("|\n");
+                    generateSchemaSets(classPath);
 
-                    final List<URL> sourceXSDs = getSources();
-                    for (int i = 0; i < sourceXSDs.size(); i++) {
-                        errorMsgBuilder.append("| " + i + ": ").append(sourceXSDs.get(i).toString()).append("\n");
-                    }
+                    // Any previous partition state no longer matches the content of the outputDirectory.
+                    FileUtils.forceDelete(getPartitionStateFile());
+
+                } else if (isPartitionedGenerationApplicable()) {
+                    generatePartitioned(classPath);
+                } else {
+
+                    generate(classPath);
 
-                    errorMsgBuilder.append("|\n");
-                    errorMsgBuilder.append("+=================== [End XJC Error]\n");
-                    throw new MojoExecutionException(errorMsgBuilder.toString());
+                    // Any previous partition state no longer matches the content of the outputDirectory.
+                    FileUtils.forceDelete(getPartitionStateFile());
                 }
 
                 // Indicate that the output directory was updated.
                 getBuildContext().refresh(getOutputDirectory());
 
-                // Update the modification timestamp of the staleFile.
-                updateStaleFileTimestamp = true;
+                // Update the staleFile.
+                updateStaleFile = true;
 
             } finally {
 
                 if (environment != null) {
                     environment.restore();
                 }
+                toolLog = null;
             }
 
             // Add the generated source root to the project, enabling tooling and other plugins to see them.
             addGeneratedSourcesToProjectSourceRoot();
 
             // Copy all source XSDs to the resulting artifact?
-            if (xsdPathWithinArtifact != null) {
-
-                final String buildOutputDirectory = getProject().getBuild().getOutputDirectory();
-                final File targetXsdDirectory = new File(buildOutputDirectory, xsdPathWithinArtifact);
-                FileUtils.forceMkdir(targetXsdDirectory);
-
-                for (URL current : getSources()) {
-
-                    String fileName = null;
-                    if ("file".equalsIgnoreCase(current.getProtocol())) {
-                        fileName = new File(current.getPath()).getName();
-                    } else if ("jar".equalsIgnoreCase(current.getProtocol())) {
-
-                        // Typical JAR path
-                        // jar:file:/path/to/aJar.jar!/some/path/xsd/aResource.xsd
-                        final int bangIndex = current.toString().indexOf("!");
-                        if (bangIndex == -1) {
-                            throw new MojoExecutionException("Illegal JAR URL [" + current.toString()
-                                    + "]: lacks a '!'");
-                        }
-
-                        final String internalPath = current.toString().substring(bangIndex + 1);
-                        fileName = new File(internalPath).getName();
-                    } else {
-                        throw new MojoExecutionException("Could not extract FileName from URL [" + current + "]");
-                    }
-
-                    final File targetFile = new File(targetXsdDirectory, fileName);
-                    if (targetFile.exists()) {
-
-                        // TODO: Should we throw an exception here instead?
-                        getLog().warn("File [" + FileSystemUtilities.getCanonicalPath(targetFile)
-                                + "] already exists. Not copying XSD file [" + current.getPath() + "] to it.");
-                    }
-                    IOUtil.copy(current.openStream(), new FileWriter(targetFile));
-                }
-
-                // Refresh the BuildContext
-                getBuildContext().refresh(targetXsdDirectory);
-            }
+            copySourceXsdsToArtifact();
         } catch (MojoExecutionException e) {
             throw e;
         } catch (NoSchemasException e) {
@@ -484,7 +608,7 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
         }
 
         // All done.
-        return updateStaleFileTimestamp;
+        return updateStaleFile;
     }
 
     /**
@@ -506,6 +630,95 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
      */
     protected abstract List<File> getSourceXJBs();
 
+    /**
+     * Override this method to resolve the XSD sources of the supplied SchemaSet, using the same exclude filters as
+     * for the sources of this AbstractJavaGeneratorMojo.
+     *
+     * @param schemaSet A non-null SchemaSet.
+     * @return A non-null List holding URLs to the XSD sources of the supplied SchemaSet.
+     */
+    protected abstract List<URL> getSources(final SchemaSet schemaSet);
+
+    /**
+     * Override this method to resolve the XJB files of the supplied SchemaSet, using the same exclude filters as
+     * for the XJB files of this AbstractJavaGeneratorMojo. Only invoked for SchemaSets with at least one
+     * configured XJB source.
+     *
+     * @param schemaSet A non-null SchemaSet.
+     * @return A non-null List holding the binding files of the supplied SchemaSet.
+     */
+    protected abstract List<File> getSourceXJBs(final SchemaSet schemaSet);
+
+    /**
+     * @return {@code true} if at least one SchemaSet is configured, implying that the sources of each SchemaSet
+     * should be compiled separately instead of compiling the sources of this AbstractJavaGeneratorMojo.
+     */
+    protected final boolean isSchemaSetGeneration() {
+        return schemaSets != null && !schemaSets.isEmpty();
+    }
+
+    /**
+     * Retrieves the XSD sources of all SchemaSets, in SchemaSet order. Subclasses should return this value from
+     * {@link #getSources()} if {@link #isSchemaSetGeneration()} is {@code true}, since the staleness of the
+     * generated files depends on the sources of all SchemaSets.
+     *
+     * @return A non-null List holding URLs to the XSD sources of all SchemaSets. Sources shared by several
+     * SchemaSets are only included once.
+     */
+    protected final List<URL> getSchemaSetSources() {
+
+        final Map<String, URL> toReturn = new LinkedHashMap<String, URL>();
+        for (List<URL> current : getResolvedSchemaSetSources().values()) {
+            for (URL currentSource : current) {
+                toReturn.put(currentSource.toString(), currentSource);
+            }
+        }
+
+        // All done.
+        return new ArrayList<URL>(toReturn.values());
+    }
+
+    /**
+     * Retrieves the XJB files of all SchemaSets, in SchemaSet order. Subclasses should return this value from
+     * {@link #getSourceXJBs()} if {@link #isSchemaSetGeneration()} is {@code true}.
+     *
+     * @return A non-null List holding the XJB files of all SchemaSets. Files shared by several SchemaSets are
+     * only included once.
+     */
+    protected final List<File> getSchemaSetXJBs() {
+
+        getResolvedSchemaSetSources();
+
+        final Map<String, File> toReturn = new LinkedHashMap<String, File>();
+        for (List<File> current : schemaSetXJBs.values()) {
+            for (File currentXjb : current) {
+                toReturn.put(currentXjb.getAbsolutePath(), currentXjb);
+            }
+        }
+
+        // All done.
+        return new ArrayList<File>(toReturn.values());
+    }
+
+    /**
+     * Retrieves the XJB files of this AbstractJavaGeneratorMojo, as resolved by {@link #getSourceXJBs()} during
+     * the first call to this method within this execution.
+     *
+     * @return A non-null and unmodifiable List holding binding files.
+     * @see #getResolvedSources()
+     */
+    protected final List<File> getResolvedSourceXJBs() {
+
+        if (resolvedSourceXJBs == null) {
+            resolvedSourceXJBs = Collections.unmodifiableList(new ArrayList<File>(getSourceXJBs()));
+        } else {
+            countReusedResolution("xjbSources");
+        }
+
+        // All done.
+        return resolvedSourceXJBs;
+    }
+
     /**
      * Adds any directories containing the generated XJC classes to the appropriate Project compilation sources;
      * either {@code TestCompileSourceRoot} or {@code CompileSourceRoot} depending on the exact Mojo implementation
@@ -525,8 +738,265 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
     // Private helpers
     //
 
-    private String[] getXjcArguments(final String classPath, final String episodeFileNameOrNull)
-            throws MojoExecutionException, NoSchemasException {
+    private void copySourceXsdsToArtifact() throws MojoExecutionException, IOException {
+
+        if (xsdPathWithinArtifact == null) {
+            return;
+        }
+
+        final String buildOutputDirectory = getProject().getBuild().getOutputDirectory();
+        final File targetXsdDirectory = new File(buildOutputDirectory, xsdPathWithinArtifact);
+        FileUtils.forceMkdir(targetXsdDirectory);
+
+        final String encoding = getEncoding(false);
+        final Set<String> copiedFileNames = new HashSet<String>();
+        final Map<File, ZipFile> openJars = new HashMap<File, ZipFile>();
+        int numWritten = 0;
+
+        try {
+            for (URL current : getResolvedSources()) {
+
+                String fileName = null;
+                String entryName = null;
+                if ("file".equalsIgnoreCase(current.getProtocol())) {
+                    fileName = new File(current.getPath()).getName();
+                } else if ("jar".equalsIgnoreCase(current.getProtocol())) {
+
+                    // Typical JAR path
+                    // jar:file:/path/to/aJar.jar!/some/path/xsd/aResource.xsd
+                    final int bangIndex = current.toString().indexOf("!");
+                    if (bangIndex == -1) {
+                        throw new MojoExecutionException("Illegal JAR URL [" + current.toString()
+                                + "]: lacks a '!'");
+                    }
+
+                    final String internalPath = current.toString().substring(bangIndex + 1);
+                    fileName = new File(internalPath).getName();
+
+                    // Decode the entry name as an URI path; URLDecoder would turn any '+' into a space.
+                    final String decodedPath;
+                    try {
+                        decodedPath = new URI(internalPath).getPath();
+                    } catch (URISyntaxException e) {
+                        throw new MojoExecutionException("Illegal JAR URL [" + current.toString() + "]", e);
+                    }
+                    entryName = decodedPath.startsWith("/") ? decodedPath.substring(1) : decodedPath;
+                } else {
+                    throw new MojoExecutionException("Could not extract FileName from URL [" + current + "]");
+                }
+
+                final File targetFile = new File(targetXsdDirectory, fileName);
+                if (!copiedFileNames.add(fileName)) {
+
+                    // TODO: Should we throw an exception here instead?
+                    getLog().warn("File [" + FileSystemUtilities.getCanonicalPath(targetFile)
+                            + "] already copied. Not copying XSD file [" + current.getPath() + "] to it.");
+                    continue;
+                }
+
+                // Copy the bytes of the XSD, to retain its encoding. Unchanged target files are left untouched.
+                final File sourceFile = FileSystemUtilities.getFileFor(current, encoding);
+                if (sourceFile == null) {
+                    throw new MojoExecutionException("Could not find the file holding XSD [" + current + "]");
+                }
+
+                final boolean written;
+                if (entryName == null) {
+                    written = FileSystemUtilities.copyIfChanged(sourceFile, targetFile);
+                } else {
+
+                    // Open each JAR only once.
+                    ZipFile jar = openJars.get(sourceFile);
+                    if (jar == null) {
+                        jar = new ZipFile(sourceFile);
+                        openJars.put(sourceFile, jar);
+                    }
+
+                    final ZipEntry entry = jar.getEntry(entryName);
+                    if (entry == null) {
+                        throw new MojoExecutionException("Could not find entry [" + entryName + "] within ["
+                                + FileSystemUtilities.getCanonicalPath(sourceFile) + "]");
+                    }
+                    written = FileSystemUtilities.copyIfChanged(jar, entry, targetFile);
+                }
+
+                if (written) {
+                    numWritten++;
+                }
+            }
+        } finally {
+            for (ZipFile current : openJars.values()) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    getLog().debug("Could not close [" + current.getName() + "]: " + e.getMessage());
+                }
+            }
+        }
+
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("Copied " + numWritten + " of " + copiedFileNames.size() + " XSD files to ["
+                    + FileSystemUtilities.getCanonicalPath(targetXsdDirectory) + "]. The others were unchanged.");
+        }
+
+        // Refresh the BuildContext
+        if (numWritten > 0) {
+            getBuildContext().refresh(targetXsdDirectory);
+        }
+    }
+
+    /**
+     * Builds the graph of all schemas used by this execution, reusing the schema references of unchanged
+     * schemas from the graph persisted by the previous execution. The resulting graph is persisted next to
+     * the staleFile, where it can also be inspected to diagnose which schemas the generated code depends upon.
+     *
+     * @return The SchemaDependencyGraph for the sources of this execution.
+     */
+    private SchemaDependencyGraph getSchemaDependencyGraph() {
+
+        // Already built during this execution?
+        if (schemaDependencyGraph != null) {
+            return schemaDependencyGraph;
+        }
+
+        final File graphFile = new File(getStaleFile().getPath() + GRAPH_FILE_SUFFIX);
+        final SchemaDependencyGraph toReturn = SchemaDependencyGraph.build(
+                getResolvedSources(),
+                catalog == null ? null : SchemaCatalog.parse(catalog, getLog()),
+                SchemaDependencyGraph.read(graphFile),
+                getSchemaMirror(),
+                getLog());
+
+        if (mirrorRemoteSchemas) {
+
+            final File mirrorCatalog = getMirrorCatalogFile();
+            try {
+                getSchemaMirror().writeCatalog(mirrorCatalog, catalog);
+            } catch (IOException e) {
+                getLog().warn("Could not write catalog of mirrored schemas to ["
+                        + FileSystemUtilities.getCanonicalPath(mirrorCatalog) + "]: " + e.getMessage());
+            }
+        }
+
+        try {
+            toReturn.write(graphFile);
+
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Wrote schema dependency graph to ["
+                        + FileSystemUtilities.getCanonicalPath(graphFile) + "]");
+            }
+        } catch (IOException e) {
+            getLog().warn("Could not write schema dependency graph to ["
+                    + FileSystemUtilities.getCanonicalPath(graphFile) + "]: " + e.getMessage());
+        }
+
+        // All done.
+        schemaDependencyGraph = toReturn;
+        return toReturn;
+    }
+
+    /**
+     * Writes an episode file holding the bindings of all namespaces which the supplied sources import from schemas
+     * bound by the episode files of upstream artifacts. The episode file is named after the bound namespaces, and
+     * only written if its content changes.
+     *
+     * @param sourceXSDs      The sources of an XJC invocation.
+     * @param fingerprintOnly if {@code true}, nothing is logged at info level.
+     * @return The written episode file, or {@code null} if no imported namespace is bound by an upstream episode.
+     */
+    private File getUpstreamEpisodeFile(final List<URL> sourceXSDs, final boolean fingerprintOnly)
+            throws MojoExecutionException {
+
+        // Find all schemas reachable from the sources.
+        final SchemaDependencyGraph graph = getSchemaDependencyGraph();
+        final Set<String> sourceKeys = new HashSet<String>();
+        for (URL current : sourceXSDs) {
+            sourceKeys.add(current.toString());
+        }
+
+        final Set<String> reachable = new HashSet<String>(sourceKeys);
+        final List<String> toVisit = new ArrayList<String>(sourceKeys);
+        while (!toVisit.isEmpty()) {
+            for (String current : graph.getDependencies(toVisit.remove(toVisit.size() - 1))) {
+                if (reachable.add(current)) {
+                    toVisit.add(current);
+                }
+            }
+        }
+
+        // Collect the namespaces of all imported schemas, except the namespaces of the sources themselves.
+        final Set<String> sourceNamespaces = new HashSet<String>();
+        for (String current : sourceKeys) {
+            sourceNamespaces.add(graph.getTargetNamespace(current));
+        }
+
+        final SortedSet<String> importedNamespaces = new TreeSet<String>();
+        for (String current : reachable) {
+
+            final String namespace = graph.getTargetNamespace(current);
+            if (namespace != null && !sourceNamespaces.contains(namespace)) {
+                importedNamespaces.add(namespace);
+            }
+        }
+
+        if (importedNamespaces.isEmpty()) {
+            return null;
+        }
+
+        final File toReturn = new File(getStaleFile().getPath() + UPSTREAM_EPISODE_DIRECTORY_SUFFIX,
+                ContentDigester.digest(importedNamespaces.toString()) + EPISODE_FILE_SUFFIX);
+        final SortedSet<String> boundNamespaces;
+        try {
+            boundNamespaces = getEpisodeIndex().writeEpisode(importedNamespaces, toReturn);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write the episode file for upstream namespaces "
+                    + importedNamespaces, e);
+        }
+
+        if (boundNamespaces.isEmpty()) {
+            return null;
+        }
+
+        if (!fingerprintOnly && getLog().isInfoEnabled()) {
+            for (String current : boundNamespaces) {
+                getLog().info("Reusing the " + getEpisodeIndex().getComponents(current).size()
+                        + " schema components of namespace [" + current + "] bound by upstream episode ["
+                        + getEpisodeIndex().getEpisode(current) + "]");
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Indexes the episode files found on the classpath, once per execution, reusing the index persisted by the
+     * previous execution for all unmodified classpath elements.
+     */
+    private EpisodeIndex getEpisodeIndex() throws MojoExecutionException {
+
+        if (episodeIndex == null) {
+
+            final File indexFile = new File(getStaleFile().getPath() + EPISODE_INDEX_FILE_SUFFIX);
+            episodeIndex = EpisodeIndex.build(getResolvedClasspath(), EpisodeIndex.read(indexFile), getLog());
+
+            try {
+                episodeIndex.write(indexFile);
+            } catch (IOException e) {
+                getLog().warn("Could not write episode index to ["
+                        + FileSystemUtilities.getCanonicalPath(indexFile) + "]: " + e.getMessage());
+            }
+        }
+
+        // All done.
+        return episodeIndex;
+    }
+
+    private ArgumentBuilder createXjcArgumentBuilder(final String classPath,
+                                                     final File outputDirectory,
+                                                     final File episodeFileOrNull,
+                                                     final String packageNameOrNull,
+                                                     final boolean fingerprintOnly) {
 
         final ArgumentBuilder builder = new ArgumentBuilder();
 
@@ -546,9 +1016,9 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
         // (i.e. in 2 separate elements of the returned String[])
         builder.withNamedArgument("httpproxy", getProxyString(settings.getActiveProxy()));
         builder.withNamedArgument("encoding", getEncoding(true));
-        builder.withNamedArgument("p", packageName);
+        builder.withNamedArgument("p", packageNameOrNull);
         builder.withNamedArgument("target", target);
-        builder.withNamedArgument("d", getOutputDirectory().getAbsolutePath());
+        builder.withNamedArgument("d", outputDirectory.getAbsolutePath());
         builder.withNamedArgument("classpath", classPath);
 
         if (generateEpisode) {
@@ -556,17 +1026,23 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
             // We must use the -extension flag for the episode to work.
             if (!extension) {
 
-                if (getLog().isInfoEnabled()) {
+                if (!fingerprintOnly && getLog().isInfoEnabled()) {
                     getLog().info("Adding 'extension' flag to XJC arguments, since the 'generateEpisode' argument is "
                             + "given. (XJCs 'episode' argument requires that the 'extension' argument is provided).");
                 }
                 builder.withFlag(true, "extension");
             }
 
-            final File episodeFile = getEpisodeFile(episodeFileNameOrNull);
-            builder.withNamedArgument("episode", FileSystemUtilities.getCanonicalPath(episodeFile));
+            if (episodeFileOrNull != null) {
+                builder.withNamedArgument("episode", FileSystemUtilities.getCanonicalPath(episodeFileOrNull));
+            }
         }
-        if (catalog != null) {
+        if (mirrorRemoteSchemas) {
+
+            // The generated catalog chains any configured catalog.
+            getSchemaDependencyGraph();
+            builder.withNamedArgument("catalog", FileSystemUtilities.getCanonicalPath(getMirrorCatalogFile()));
+        } else if (catalog != null) {
             builder.withNamedArgument("catalog", FileSystemUtilities.getCanonicalPath(catalog));
         }
 
@@ -574,7 +1050,23 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
             builder.withPreCompiledArguments(arguments);
         }
 
-        for (File current : getSourceXJBs()) {
+        // All done.
+        return builder;
+    }
+
+    private String[] getXjcArguments(final String classPath,
+                                     final File outputDirectory,
+                                     final File episodeFileOrNull,
+                                     final String packageNameOrNull,
+                                     final List<File> sourceXJBs,
+                                     final List<URL> sourceXSDs,
+                                     final boolean fingerprintOnly)
+            throws NoSchemasException, MojoExecutionException {
+
+        final ArgumentBuilder builder = createXjcArgumentBuilder(
+                classPath, outputDirectory, episodeFileOrNull, packageNameOrNull, fingerprintOnly);
+
+        for (File current : sourceXJBs) {
 
             // Shorten the argument?
             // final String strippedXjbPath = FileSystemUtilities.relativize(
@@ -584,25 +1076,41 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
             builder.withPreCompiledArguments(Arrays.asList("-b", current.getAbsolutePath()));
         }
 
-        final List<URL> sourceXSDs = getSources();
+        // Bind the namespaces imported from upstream artifacts to their existing classes.
+        final File upstreamEpisodeFile = discoverEpisodes
+                ? getUpstreamEpisodeFile(sourceXSDs, fingerprintOnly)
+                : null;
+        if (upstreamEpisodeFile != null) {
+            builder.withPreCompiledArguments(Arrays.asList("-b", upstreamEpisodeFile.getAbsolutePath()));
+        }
+
         if (sourceXSDs.isEmpty()) {
 
             // If we have no XSDs, we are not going to be able to run XJC.
-            getLog().warn("No XSD files found. Please check your plugin configuration.");
+            if (!fingerprintOnly) {
+                getLog().warn("No XSD files found. Please check your plugin configuration.");
+            }
             throw new NoSchemasException();
 
         } else {
 
             final List<String> unwrappedSourceXSDs = new ArrayList<String>();
+            final String userDirPath = getCanonicalPathCache().getCanonicalPath(
+                    new File(System.getProperty("user.dir")));
             for (URL current : sourceXSDs) {
 
                 // Shorten the argument if possible.
                 if ("file".equalsIgnoreCase(current.getProtocol())) {
                     unwrappedSourceXSDs.add(FileSystemUtilities.relativize(
                             current.getPath(),
-                            new File(System.getProperty("user.dir"))));
+                            userDirPath));
                 } else {
-                    unwrappedSourceXSDs.add(current.toString());
+
+                    // Read remote sources from their mirrored copies, if available.
+                    final URL mirroredCopy = mirrorRemoteSchemas
+                            ? getSchemaMirror().getMirrored().get(current.toString())
+                            : null;
+                    unwrappedSourceXSDs.add(mirroredCopy == null ? current.toString() : mirroredCopy.toString());
                 }
             }
 
@@ -610,7 +1118,678 @@ public abstract class AbstractJavaGeneratorMojo extends AbstractJaxbMojo {
         }
 
         // All done.
-        return logAndReturnToolArguments(builder.build(), "XJC");
+        return fingerprintOnly ? builder.build() : logAndReturnToolArguments(builder.build(), "XJC");
+    }
+
+    private File getStandardEpisodeFile() throws MojoExecutionException {
+        return generateEpisode ? getEpisodeFile(STANDARD_EPISODE_FILENAME) : null;
+    }
+
+    private void runXjc(final String[] xjcArguments, final List<URL> sourceXSDs) throws MojoExecutionException {
+
+        final int result;
+        final List<SAXParseException> errors = new ArrayList<SAXParseException>();
+        try {
+            result = runDriver(xjcArguments, getResolvedClasspath(), new XjcLogAdapter(getToolLog()), errors);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not run XJC.", e);
+        }
+
+        if (XJC_COMPLETED_OK != result) {
+
+            final StringBuilder errorMsgBuilder = new StringBuilder();
+            errorMsgBuilder.append("\n+=================== [XJC Error]\n");
+            errorMsgBuilder.append("|\n");
+
+            for (int i = 0; i < sourceXSDs.size(); i++) {
+                errorMsgBuilder.append("| " + i + ": ").append(sourceXSDs.get(i).toString()).append("\n");
+            }
+            appendErrors(errorMsgBuilder, errors, "| ");
+
+            errorMsgBuilder.append("|\n");
+            errorMsgBuilder.append("+=================== [End XJC Error]\n");
+            throw new MojoExecutionException(errorMsgBuilder.toString());
+        }
+    }
+
+    /**
+     * Runs XJC using the configured engine; the Driver engine runs within the worker JVM (if configured and
+     * available), or within this JVM.
+     *
+     * @param xjcArguments The XJC arguments.
+     * @param classpath    The classpath of the ThreadContext ClassLoader, used by XJC to find XJC plugins.
+     * @param listener     The XJCListener receiving all XJC events.
+     * @param errors       The List to which the errors collected by the model engine are added.
+     * @return The exit code of XJC.
+     * @throws IOException if the connection to the worker JVM failed while XJC was running, or if the model
+     *                     engine could not write the generated files.
+     */
+    private int runDriver(final String[] xjcArguments,
+                          final List<String> classpath,
+                          final XJCListener listener,
+                          final List<SAXParseException> errors) throws IOException {
+
+        if (engine != null && engine.isModelApi()) {
+
+            try {
+                errors.addAll(new XjcModelEngine(XjcModelEngine.DEFAULT_WRITER_THREADS).run(xjcArguments, listener));
+            } catch (BadCommandLineException e) {
+                errors.add(new SAXParseException("Invalid XJC arguments: " + e.getMessage(), null));
+            }
+            return errors.isEmpty() ? XJC_COMPLETED_OK : -1;
+        }
+
+        final ToolWorkerClient toolWorkerClient = getToolWorkerClient();
+        if (toolWorkerClient != null) {
+            try {
+                return toolWorkerClient.runXjc(xjcArguments, classpath, listener);
+            } catch (WorkerUnavailableException e) {
+                getLog().warn("Running XJC within the Maven JVM. " + e.getMessage(), e.getCause());
+            }
+        }
+
+        // All done.
+        return Driver.run(xjcArguments, listener);
+    }
+
+    /**
+     * Appends the supplied errors collected by the model engine, including their locations, to an error message.
+     */
+    private static void appendErrors(final StringBuilder builder,
+                                     final List<SAXParseException> errors,
+                                     final String indent) {
+
+        if (errors == null || errors.isEmpty()) {
+            return;
+        }
+
+        builder.append("|\n");
+        for (SAXParseException current : errors) {
+
+            builder.append(indent);
+            if (current.getSystemId() != null) {
+                builder.append(current.getSystemId())
+                        .append(" [").append(current.getLineNumber())
+                        .append(",").append(current.getColumnNumber()).append("] ");
+            }
+            builder.append(current.getMessage()).append("\n");
+        }
+    }
+
+    /**
+     * Invokes XJC once for all sources. If the outputDirectory should be cleared, code is generated into the
+     * (cleared) staging directory, which is then synchronized into the outputDirectory to leave unchanged files
+     * untouched. Otherwise, code is generated directly into the outputDirectory.
+     */
+    private void generate(final String classPath) throws MojoExecutionException, NoSchemasException {
+
+        final File targetDirectory = clearOutputDir ? getStagingDirectory() : getOutputDirectory();
+        final File episodeFile = clearOutputDir && generateEpisode
+                ? new File(new File(targetDirectory, "META-INF"), STANDARD_EPISODE_FILENAME)
+                : getStandardEpisodeFile();
+
+        // Compile the XJC arguments
+        final List<URL> sourceXSDs = getResolvedSources();
+        final String[] xjcArguments = getXjcArguments(
+                classPath,
+                targetDirectory,
+                episodeFile,
+                packageName,
+                getResolvedSourceXJBs(),
+                sourceXSDs,
+                false);
+
+        // Ensure that the target directory exists, but only clear it if configured to do so.
+        FileSystemUtilities.createDirectory(targetDirectory, clearOutputDir);
+
+        // Do we need to re-create the episode file's parent directory.
+        if (episodeFile != null) {
+            FileSystemUtilities.createDirectory(episodeFile.getParentFile(), false);
+        }
+
+        // Fire XJC
+        runXjc(xjcArguments, sourceXSDs);
+
+        if (clearOutputDir) {
+            try {
+                FileSystemUtilities.synchronizeDirectory(targetDirectory, getOutputDirectory(), getLog());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not synchronize the staging directory ["
+                        + FileSystemUtilities.getCanonicalPath(targetDirectory) + "] into the outputDirectory.", e);
+            }
+        }
+    }
+
+    private boolean isPartitionedGenerationApplicable() {
+
+        if (!partitionedGeneration) {
+            return false;
+        }
+
+        if (packageName != null || sourceType != SourceContentType.XmlSchema) {
+            getLog().warn("Partitioned generation requires that no 'packageName' is given, and that the "
+                    + "'sourceType' is 'XmlSchema'. Invoking XJC once for all sources.");
+            return false;
+        }
+
+        // All done.
+        return true;
+    }
+
+    /**
+     * Invokes XJC once for each SchemaPartition whose content or configuration changed since the last
+     * generation. Each SchemaPartition is generated into a separate work directory, from which the generated
+     * files are moved to the outputDirectory. Files generated from unchanged SchemaPartitions are left untouched.
+     */
+    private void generatePartitioned(final String classPath)
+            throws MojoExecutionException, NoSchemasException, IOException {
+
+        final List<URL> sourceXSDs = getResolvedSources();
+        if (sourceXSDs.isEmpty()) {
+            getLog().warn("No XSD files found. Please check your plugin configuration.");
+            throw new NoSchemasException();
+        }
+
+        final Map<String, File> sourceXJBs = new LinkedHashMap<String, File>();
+        final List<URL> sourceXJBUrls = new ArrayList<URL>();
+        for (File current : getResolvedSourceXJBs()) {
+            final URL currentUrl = FileSystemUtilities.getUrlFor(current);
+            sourceXJBs.put(currentUrl.toString(), current);
+            sourceXJBUrls.add(currentUrl);
+        }
+
+        final List<SchemaPartition> partitions = SchemaPartition.partition(
+                sourceXSDs, sourceXJBUrls, getSchemaDependencyGraph(), getLog());
+        final String configuration = getPartitionConfiguration();
+        final File stateFile = getPartitionStateFile();
+        final PartitionState previous = PartitionState.read(stateFile);
+        final PartitionState current = new PartitionState(configuration);
+
+        // Did a previous generation with the same configuration find the sources to be unpartitionable?
+        if (previous != null && previous.isUnpartitionable() && configuration.equals(previous.getConfiguration())) {
+
+            getLog().info("Sources could not be partitioned during the last generation. "
+                    + "Invoking XJC once for all sources.");
+            generate(classPath);
+
+            current.setUnpartitionable();
+            current.write(stateFile);
+            return;
+        }
+
+        final boolean fullGeneration = previous == null
+                || previous.isUnpartitionable()
+                || !configuration.equals(previous.getConfiguration());
+        FileSystemUtilities.createDirectory(getOutputDirectory(), false);
+
+        // Find the partitions to re-generate.
+        final List<SchemaPartition> toGenerate = new ArrayList<SchemaPartition>();
+        for (SchemaPartition currentPartition : partitions) {
+
+            final boolean hasEpisode = !generateEpisode || getPartitionEpisodeFile(currentPartition).isFile();
+            if (previous != null && hasEpisode && previous.isUpToDate(currentPartition, configuration)) {
+                current.add(currentPartition, previous.getFiles(currentPartition.getId()));
+            } else {
+                toGenerate.add(currentPartition);
+            }
+        }
+
+        // Remove the files generated from all changed or removed partitions.
+        if (previous != null) {
+            for (String currentId : previous.getPartitionIds()) {
+                if (!current.getPartitionIds().contains(currentId)) {
+                    for (String currentFile : previous.getFiles(currentId)) {
+                        FileUtils.forceDelete(new File(getOutputDirectory(), currentFile));
+                    }
+                    FileUtils.forceDelete(new File(getPartitionDirectory(), currentId + EPISODE_FILE_SUFFIX));
+                }
+            }
+        }
+
+        if (getLog().isInfoEnabled()) {
+            getLog().info("Generating " + toGenerate.size() + " of " + partitions.size()
+                    + " schema partitions. The remaining partitions are up to date.");
+        }
+
+        for (SchemaPartition currentPartition : toGenerate) {
+
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Generating " + currentPartition);
+            }
+
+            // Generate the partition into an empty work directory, to find exactly which files it yields.
+            final File workDirectory = new File(getPartitionDirectory(), currentPartition.getId());
+            FileSystemUtilities.createDirectory(workDirectory, true);
+
+            final List<File> partitionXJBs = new ArrayList<File>();
+            for (URL currentXjb : currentPartition.getXjbs()) {
+                partitionXJBs.add(sourceXJBs.get(currentXjb.toString()));
+            }
+
+            runXjc(getXjcArguments(classPath,
+                    workDirectory,
+                    generateEpisode ? getPartitionEpisodeFile(currentPartition) : null,
+                    packageName,
+                    partitionXJBs,
+                    currentPartition.getSources(),
+                    false), currentPartition.getSources());
+
+            final SortedSet<String> generatedFiles = getGeneratedFiles(workDirectory);
+
+            // Ensure that no other partition generated any of the files.
+            for (String currentFile : generatedFiles) {
+                if (current.getOwner(currentFile) != null) {
+
+                    getLog().warn("XJC generated [" + currentFile + "] from several schema partitions. "
+                            + "Falling back to invoking XJC once for all sources.");
+                    FileUtils.deleteDirectory(workDirectory);
+                    generate(classPath);
+
+                    final PartitionState unpartitionable = new PartitionState(configuration);
+                    unpartitionable.setUnpartitionable();
+                    unpartitionable.write(stateFile);
+                    return;
+                }
+            }
+
+            // Move the generated files into the outputDirectory.
+            moveGeneratedFiles(workDirectory, generatedFiles);
+
+            FileUtils.deleteDirectory(workDirectory);
+            current.add(currentPartition, generatedFiles);
+        }
+
+        // Stitch the episode files of all partitions into the standard episode file.
+        if (generateEpisode) {
+
+            final List<File> episodeFiles = new ArrayList<File>();
+            for (SchemaPartition currentPartition : partitions) {
+                episodeFiles.add(getPartitionEpisodeFile(currentPartition));
+            }
+            mergeEpisodeFiles(episodeFiles, getPartitionDirectory());
+        }
+
+        // A full generation replaces all content of a cleared outputDirectory.
+        if (fullGeneration && clearOutputDir) {
+
+            final Set<String> generatedFiles = new HashSet<String>();
+            for (String currentId : current.getPartitionIds()) {
+                generatedFiles.addAll(current.getFiles(currentId));
+            }
+            deleteAllFilesExcept(generatedFiles);
+        }
+
+        // All done.
+        current.write(stateFile);
+    }
+
+    /**
+     * @return A digest of the configuration shared by all partitions, i.e. the XJC arguments except the sources
+     * and XJB files, the classpath and the catalog content.
+     */
+    private String getPartitionConfiguration() throws MojoExecutionException {
+
+        final StaleManifest configuration = new StaleManifest();
+        addConfigurationFingerprint(configuration,
+                createXjcArgumentBuilder(CLASSPATH_PLACEHOLDER, getOutputDirectory(), null, packageName, true)
+                        .build(),
+                getResolvedClasspath());
+
+        if (catalog != null) {
+            configuration.addAll("catalog", ContentDigester.digest(
+                    Arrays.asList(FileSystemUtilities.getUrlFor(catalog)), getLog()));
+        }
+
+        // All done.
+        return ContentDigester.digest(configuration.getEntries().toString());
+    }
+
+    /**
+     * Invokes XJC once for each SchemaSet, using a bounded pool of worker threads. Each SchemaSet is generated
+     * into a separate work directory, using a separate ThreadContext ClassLoader and XJCListener, and the
+     * generated files are moved to the outputDirectory when all SchemaSets are generated.
+     */
+    private void generateSchemaSets(final String classPath)
+            throws MojoExecutionException, NoSchemasException, IOException {
+
+        final Map<String, List<URL>> sources = getResolvedSchemaSetSources();
+        if (getResolvedSources().isEmpty()) {
+            getLog().warn("No XSD files found. Please check your plugin configuration.");
+            throw new NoSchemasException();
+        }
+
+        if (partitionedGeneration) {
+            getLog().warn("Partitioned generation is not used for schemaSets.");
+        }
+
+        FileSystemUtilities.createDirectory(getOutputDirectory(), false);
+        final File schemaSetDirectory = getSchemaSetDirectory();
+        FileSystemUtilities.createDirectory(schemaSetDirectory, true);
+
+        // Compile the XJC arguments within this thread, as doing so logs to the Maven Log.
+        final Map<String, String[]> xjcArguments = new LinkedHashMap<String, String[]>();
+        for (SchemaSet current : schemaSets) {
+
+            final File workDirectory = new File(schemaSetDirectory, current.getId());
+            FileSystemUtilities.createDirectory(workDirectory, true);
+
+            xjcArguments.put(current.getId(), getXjcArguments(classPath,
+                    workDirectory,
+                    generateEpisode ? getSchemaSetEpisodeFile(current) : null,
+                    current.getPackageName() == null ? packageName : current.getPackageName(),
+                    schemaSetXJBs.get(current.getId()),
+                    sources.get(current.getId()),
+                    false));
+        }
+
+        final int maxThreads = schemaSetThreads > 0
+                ? schemaSetThreads
+                : Runtime.getRuntime().availableProcessors();
+        final int numThreads = Math.min(schemaSets.size(), maxThreads);
+        if (getLog().isInfoEnabled()) {
+            getLog().info("Generating " + schemaSets.size() + " schema sets using " + numThreads + " threads.");
+        }
+
+        // Fire XJC for all SchemaSets, and wait for all of them to complete.
+        final List<String> classpath = getResolvedClasspath();
+        final Map<String, BufferingXjcListener> listeners = new LinkedHashMap<String, BufferingXjcListener>();
+        final Map<String, List<SAXParseException>> schemaSetErrors = new HashMap<String, List<SAXParseException>>();
+        final List<String> failedSchemaSets = new ArrayList<String>();
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+
+            final Map<String, Future<Integer>> results = new LinkedHashMap<String, Future<Integer>>();
+            for (Map.Entry<String, String[]> current : xjcArguments.entrySet()) {
+
+                final String[] arguments = current.getValue();
+                final BufferingXjcListener listener = new BufferingXjcListener();
+                final List<SAXParseException> errors = new ArrayList<SAXParseException>();
+                listeners.put(current.getKey(), listener);
+                schemaSetErrors.put(current.getKey(), errors);
+
+                results.put(current.getKey(), executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+
+                        // Use a separate ClassLoader for each SchemaSet.
+                        final ThreadContextClassLoaderHolder holder = ThreadContextClassLoaderBuilder
+                                .createFor(AbstractJavaGeneratorMojo.this.getClass(), getLog())
+                                .addPaths(classpath)
+                                .buildAndSet();
+                        try {
+                            return runDriver(arguments, classpath, listener, errors);
+                        } finally {
+                            holder.restoreClassLoaderAndReleaseThread();
+                        }
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<Integer>> current : results.entrySet()) {
+
+                final BufferingXjcListener listener = listeners.get(current.getKey());
+                try {
+                    if (XJC_COMPLETED_OK != current.getValue().get() || listener.getNumErrors() > 0) {
+                        failedSchemaSets.add(current.getKey());
+                    }
+                } catch (ExecutionException e) {
+
+                    getLog().error("XJC failed for schema set [" + current.getKey() + "]", e.getCause());
+                    failedSchemaSets.add(current.getKey());
+                }
+
+                // Emit the XJC events of all SchemaSets in SchemaSet order.
+                listener.replayTo(new XjcLogAdapter(getToolLog()));
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating schema sets.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!failedSchemaSets.isEmpty()) {
+
+            final StringBuilder errorMsgBuilder = new StringBuilder();
+            errorMsgBuilder.append("\n+=================== [XJC Error]\n");
+            errorMsgBuilder.append("|\n");
+
+            for (String current : failedSchemaSets) {
+
+                errorMsgBuilder.append("| Schema set [").append(current).append("]\n");
+                final List<URL> currentSources = sources.get(current);
+                for (int i = 0; i < currentSources.size(); i++) {
+                    errorMsgBuilder.append("|   " + i + ": ").append(currentSources.get(i).toString()).append("\n");
+                }
+                appendErrors(errorMsgBuilder, schemaSetErrors.get(current), "|   ");
+            }
+
+            errorMsgBuilder.append("|\n");
+            errorMsgBuilder.append("+=================== [End XJC Error]\n");
+            throw new MojoExecutionException(errorMsgBuilder.toString());
+        }
+
+        // Ensure that the SchemaSets generated disjoint files, before moving them to the outputDirectory.
+        final Map<String, SortedSet<String>> generatedFiles = new LinkedHashMap<String, SortedSet<String>>();
+        final Map<String, String> owners = new HashMap<String, String>();
+        for (SchemaSet current : schemaSets) {
+
+            final SortedSet<String> currentFiles = getGeneratedFiles(new File(schemaSetDirectory, current.getId()));
+            for (String currentFile : currentFiles) {
+
+                final String owner = owners.put(currentFile, current.getId());
+                if (owner != null) {
+                    throw new MojoExecutionException("XJC generated [" + currentFile + "] from both schema set ["
+                            + owner + "] and schema set [" + current.getId() + "]. SchemaSets must generate "
+                            + "disjoint files; use separate packages for each SchemaSet.");
+                }
+            }
+            generatedFiles.put(current.getId(), currentFiles);
+        }
+
+        for (Map.Entry<String, SortedSet<String>> current : generatedFiles.entrySet()) {
+            moveGeneratedFiles(new File(schemaSetDirectory, current.getKey()), current.getValue());
+        }
+
+        // Stitch the episode files of all SchemaSets into the standard episode file.
+        if (generateEpisode) {
+
+            final List<File> episodeFiles = new ArrayList<File>();
+            for (SchemaSet current : schemaSets) {
+                episodeFiles.add(getSchemaSetEpisodeFile(current));
+            }
+            mergeEpisodeFiles(episodeFiles, schemaSetDirectory);
+        }
+
+        // The SchemaSets replace all content of a cleared outputDirectory.
+        if (clearOutputDir) {
+            deleteAllFilesExcept(owners.keySet());
+        }
+
+        // All done.
+        FileUtils.deleteDirectory(schemaSetDirectory);
+    }
+
+    /**
+     * Resolves the sources and XJB files of all SchemaSets, once per execution.
+     *
+     * @return A Map relating the id of each SchemaSet to its resolved XSD sources, in SchemaSet order.
+     */
+    private Map<String, List<URL>> getResolvedSchemaSetSources() {
+
+        if (schemaSetSources != null) {
+            countReusedResolution("schemaSets");
+            return schemaSetSources;
+        }
+
+        final Map<String, List<URL>> sources = new LinkedHashMap<String, List<URL>>();
+        final Map<String, List<File>> xjbs = new LinkedHashMap<String, List<File>>();
+        for (SchemaSet current : schemaSets) {
+
+            // Check sanity
+            Validate.notNull(current, "schemaSet");
+            Validate.notEmpty(current.getId(), "schemaSet.id");
+            Validate.isTrue(!sources.containsKey(current.getId()),
+                    "Duplicate schema set id [" + current.getId() + "]");
+
+            sources.put(current.getId(), Collections.unmodifiableList(new ArrayList<URL>(getSources(current))));
+            xjbs.put(current.getId(), current.getXjbSources().isEmpty()
+                    ? Collections.<File>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<File>(getSourceXJBs(current))));
+
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Schema set [" + current.getId() + "] resolved to " + sources.get(current.getId())
+                        + " and XJBs " + xjbs.get(current.getId()));
+            }
+        }
+
+        // All done.
+        schemaSetXJBs = xjbs;
+        schemaSetSources = sources;
+        return sources;
+    }
+
+    /**
+     * Adds the configuration of each SchemaSet to the supplied StaleManifest. The content of all sources and
+     * XJB files is fingerprinted separately; this adds which files belong to each SchemaSet and its package.
+     */
+    private void addSchemaSetFingerprints(final StaleManifest manifest) {
+
+        final CanonicalPathCache canonicalPaths = getCanonicalPathCache();
+        final String basedirPath = canonicalPaths.getCanonicalPath(getProject().getBasedir());
+        final String encoding = getEncoding(false);
+        final Map<String, List<URL>> sources = getResolvedSchemaSetSources();
+
+        for (SchemaSet current : schemaSets) {
+
+            final StringBuilder builder = new StringBuilder();
+            for (URL currentSource : sources.get(current.getId())) {
+
+                final String path = "file".equalsIgnoreCase(currentSource.getProtocol())
+                        ? FileSystemUtilities.relativize(canonicalPaths.getCanonicalPath(
+                                FileSystemUtilities.getFileFor(currentSource, encoding)), basedirPath)
+                        : currentSource.toString();
+                builder.append("xsd:").append(path).append('\0');
+            }
+            for (File currentXjb : schemaSetXJBs.get(current.getId())) {
+                builder.append("xjb:").append(FileSystemUtilities.relativize(
+                        canonicalPaths.getCanonicalPath(currentXjb), basedirPath)).append('\0');
+            }
+            builder.append("package:").append(current.getPackageName());
+
+            manifest.add("configuration", "schemaSet." + current.getId(),
+                    ContentDigester.digest(builder.toString()));
+        }
+    }
+
+    private File getSchemaSetDirectory() {
+        return new File(getStaleFile().getPath() + SCHEMA_SET_DIRECTORY_SUFFIX);
+    }
+
+    private File getSchemaSetEpisodeFile(final SchemaSet schemaSet) {
+        return new File(getSchemaSetDirectory(), schemaSet.getId() + EPISODE_FILE_SUFFIX);
+    }
+
+    /**
+     * @return The paths (relative to the supplied work directory, and using '/' as separator) of all files
+     * generated into the supplied work directory.
+     */
+    private SortedSet<String> getGeneratedFiles(final File workDirectory) throws IOException {
+
+        final SortedSet<String> toReturn = new TreeSet<String>();
+        for (Object currentFile : FileUtils.getFileNames(workDirectory, "**", null, false)) {
+            toReturn.add(currentFile.toString().replace(File.separatorChar, '/'));
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Moves the supplied generated files from the work directory into the outputDirectory, leaving files with
+     * unchanged content untouched.
+     */
+    private void moveGeneratedFiles(final File workDirectory, final SortedSet<String> generatedFiles)
+            throws IOException {
+
+        for (String currentFile : generatedFiles) {
+            FileSystemUtilities.moveIfChanged(
+                    new File(workDirectory, currentFile),
+                    new File(getOutputDirectory(), currentFile));
+        }
+    }
+
+    /**
+     * Merges the supplied episode files within the supplied work directory, and moves the result to the
+     * standard episode file unless its content is unchanged.
+     */
+    private void mergeEpisodeFiles(final List<File> episodeFiles, final File workDirectory)
+            throws MojoExecutionException, IOException {
+
+        final File mergedEpisodeFile = new File(workDirectory, STANDARD_EPISODE_FILENAME + ".merged");
+        EpisodeMerger.merge(episodeFiles, mergedEpisodeFile);
+        FileSystemUtilities.moveIfChanged(mergedEpisodeFile, getEpisodeFile(STANDARD_EPISODE_FILENAME));
+    }
+
+    /**
+     * Deletes all files within the outputDirectory except the supplied generated files and the standard episode
+     * file, in lieu of clearing the outputDirectory before generation.
+     *
+     * @param generatedFiles The paths (relative to the outputDirectory, and using '/' as separator) to retain.
+     */
+    private void deleteAllFilesExcept(final Set<String> generatedFiles) throws IOException {
+
+        final String episodePath = "META-INF/" + STANDARD_EPISODE_FILENAME;
+        for (String currentFile : getGeneratedFiles(getOutputDirectory())) {
+            if (!generatedFiles.contains(currentFile) && !(generateEpisode && episodePath.equals(currentFile))) {
+                FileUtils.forceDelete(new File(getOutputDirectory(), currentFile));
+            }
+        }
+    }
+
+    private File getPartitionDirectory() {
+        return new File(getStaleFile().getPath() + PARTITION_DIRECTORY_SUFFIX);
+    }
+
+    private File getPartitionStateFile() {
+        return new File(getStaleFile().getPath() + PARTITION_STATE_FILE_SUFFIX);
+    }
+
+    private File getPartitionEpisodeFile(final SchemaPartition partition) {
+        return new File(getPartitionDirectory(), partition.getId() + EPISODE_FILE_SUFFIX);
+    }
+
+    /**
+     * @return The Log receiving the diagnostics of XJC, which deduplicates and batches them while the tool
+     * execution environment is set up.
+     */
+    private Log getToolLog() {
+        return toolLog == null ? getLog() : toolLog;
+    }
+
+    /**
+     * @return The SchemaMirror of this execution, or {@code null} if {@code mirrorRemoteSchemas} is {@code false}.
+     */
+    private SchemaMirror getSchemaMirror() {
+
+        if (mirrorRemoteSchemas && schemaMirror == null) {
+
+            final Proxy activeProxy = settings == null ? null : settings.getActiveProxy();
+            final java.net.Proxy proxy = activeProxy == null
+                    ? null
+                    : new java.net.Proxy(java.net.Proxy.Type.HTTP,
+                    new InetSocketAddress(activeProxy.getHost(), activeProxy.getPort()));
+
+            schemaMirror = new SchemaMirror(schemaMirrorDirectory, offline, proxy, getLog());
+        }
+
+        // All done.
+        return schemaMirror;
+    }
+
+    private File getMirrorCatalogFile() {
+        return new File(getStaleFile().getPath() + MIRROR_CATALOG_FILE_SUFFIX);
     }
 
     private String getProxyString(final Proxy activeProxy) {
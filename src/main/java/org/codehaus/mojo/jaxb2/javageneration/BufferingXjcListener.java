@@ -0,0 +1,169 @@
+package org.codehaus.mojo.jaxb2.javageneration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.xjc.XJCListener;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XJCListener which buffers all events emitted by one XJC invocation, until they are replayed onto another
+ * XJCListener. Used to collect the events of XJC invocations running concurrently in worker threads, and emit
+ * them to the Maven Log (in a predictable order) from the thread running the Mojo.
+ *
+ * @since 2.3
+ */
+final class BufferingXjcListener extends XJCListener {
+
+    /**
+     * The kinds of events buffered.
+     */
+    private enum EventType {
+        GENERATED_FILE,
+        MESSAGE,
+        ERROR,
+        FATAL_ERROR,
+        WARNING,
+        INFO
+    }
+
+    /**
+     * A buffered event.
+     */
+    private static final class Event {
+
+        // Internal state
+        private final EventType type;
+        private final String message;
+        private final int current;
+        private final int total;
+        private final SAXParseException exception;
+
+        Event(final EventType type,
+              final String message,
+              final int current,
+              final int total,
+              final SAXParseException exception) {
+            this.type = type;
+            this.message = message;
+            this.current = current;
+            this.total = total;
+            this.exception = exception;
+        }
+    }
+
+    // Internal state
+    private final List<Event> events = new ArrayList<Event>();
+    private int numErrors;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void generatedFile(final String fileName, final int current, final int total) {
+        events.add(new Event(EventType.GENERATED_FILE, fileName, current, total, null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void message(final String msg) {
+        events.add(new Event(EventType.MESSAGE, msg, 0, 0, null));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void error(final SAXParseException exception) {
+        numErrors++;
+        events.add(new Event(EventType.ERROR, null, 0, 0, exception));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void fatalError(final SAXParseException exception) {
+        numErrors++;
+        events.add(new Event(EventType.FATAL_ERROR, null, 0, 0, exception));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void warning(final SAXParseException exception) {
+        events.add(new Event(EventType.WARNING, null, 0, 0, exception));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void info(final SAXParseException exception) {
+        events.add(new Event(EventType.INFO, null, 0, 0, exception));
+    }
+
+    /**
+     * @return The number of errors and fatal errors buffered.
+     */
+    public synchronized int getNumErrors() {
+        return numErrors;
+    }
+
+    /**
+     * Replays all buffered events, in the order they were received, onto the supplied XJCListener.
+     *
+     * @param target The non-null XJCListener which should receive all buffered events.
+     */
+    public synchronized void replayTo(final XJCListener target) {
+
+        // Check sanity
+        Validate.notNull(target, "target");
+
+        for (Event current : events) {
+            switch (current.type) {
+                case GENERATED_FILE:
+                    target.generatedFile(current.message, current.current, current.total);
+                    break;
+                case MESSAGE:
+                    target.message(current.message);
+                    break;
+                case ERROR:
+                    target.error(current.exception);
+                    break;
+                case FATAL_ERROR:
+                    target.fatalError(current.exception);
+                    break;
+                case WARNING:
+                    target.warning(current.exception);
+                    break;
+                default:
+                    target.info(current.exception);
+                    break;
+            }
+        }
+    }
+}
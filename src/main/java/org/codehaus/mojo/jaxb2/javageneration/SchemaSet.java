@@ -0,0 +1,201 @@
+package org.codehaus.mojo.jaxb2.javageneration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.shared.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Data holder for a set of XSD sources which should be compiled by XJC independently of all other sets.
+ * Each SchemaSet holds its own sources, XJB files and (optionally) package name, implying that the binding
+ * customizations of one SchemaSet do not affect any other SchemaSet. The SchemaSets of an execution are
+ * compiled concurrently, and the files generated from all SchemaSets are written to the outputDirectory.</p>
+ * <h2>Example SchemaSets</h2>
+ * <p>The id and sources elements are mandatory for each SchemaSet. Sources and XJB sources are resolved
+ * exactly like the {@code sources} and {@code xjbSources} of the execution, i.e. as files or directories
+ * (which are searched recursively) relative to the project basedir:</p>
+ * <pre>
+ * &lt;schemaSets&gt;
+ *      &lt;schemaSet&gt;
+ *          &lt;id&gt;orders&lt;/id&gt;
+ *          &lt;sources&gt;
+ *              &lt;source&gt;src/main/xsd/orders&lt;/source&gt;
+ *          &lt;/sources&gt;
+ *          &lt;xjbSources&gt;
+ *              &lt;xjbSource&gt;src/main/xjb/orders.xjb&lt;/xjbSource&gt;
+ *          &lt;/xjbSources&gt;
+ *      &lt;/schemaSet&gt;
+ *      &lt;schemaSet&gt;
+ *          &lt;id&gt;invoices&lt;/id&gt;
+ *          &lt;sources&gt;
+ *              &lt;source&gt;src/main/xsd/invoices/invoice.xsd&lt;/source&gt;
+ *          &lt;/sources&gt;
+ *          &lt;packageName&gt;se.jguru.invoices&lt;/packageName&gt;
+ *      &lt;/schemaSet&gt;
+ * &lt;/schemaSets&gt;
+ * </pre>
+ * <p>SchemaSets must generate disjoint sets of files. Should two SchemaSets generate the same file (typically
+ * by generating code into the same package), the execution fails.</p>
+ *
+ * @since 2.3
+ */
+public class SchemaSet {
+
+    // Internal state
+    private static final Pattern ID_PATTERN = Pattern.compile("[a-zA-Z0-9_.\\-]+");
+
+    private String id;
+    private List<String> sources;
+    private List<String> xjbSources;
+    private String packageName;
+
+    /**
+     * Default constructor.
+     */
+    public SchemaSet() {
+        sources = new ArrayList<String>();
+        xjbSources = new ArrayList<String>();
+    }
+
+    /**
+     * Compound constructor, creating a SchemaSet wrapping the supplied data.
+     *
+     * @param id          The non-empty identifier of this SchemaSet, unique within an execution.
+     * @param sources     The non-empty List of source paths of this SchemaSet.
+     * @param xjbSources  The List of XJB source paths of this SchemaSet. Optional.
+     * @param packageName The package name of the generated code. Optional.
+     */
+    public SchemaSet(final String id,
+                     final List<String> sources,
+                     final List<String> xjbSources,
+                     final String packageName) {
+        this();
+
+        setId(id);
+        setSources(sources);
+        if (xjbSources != null) {
+            setXjbSources(xjbSources);
+        }
+        this.packageName = packageName;
+    }
+
+    /**
+     * @return The identifier of this SchemaSet, unique within an execution.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The source paths of this SchemaSet; each being a file or a directory which should be searched
+     * recursively for XSD files.
+     */
+    public List<String> getSources() {
+        return sources;
+    }
+
+    /**
+     * @return The XJB source paths of this SchemaSet; each being a file or a directory which should be
+     * searched recursively for XJB files. Never {@code null}, but may be empty.
+     */
+    public List<String> getXjbSources() {
+        return xjbSources == null ? new ArrayList<String>() : xjbSources;
+    }
+
+    /**
+     * @return The package name of the code generated from this SchemaSet, or {@code null} to use the
+     * package name of the execution (if any).
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Assigns the identifier of this SchemaSet. The identifier may only contain letters, digits and the
+     * characters '_', '.' and '-', since it is used to name work directories.
+     *
+     * @param id The non-empty identifier of this SchemaSet.
+     */
+    public void setId(final String id) {
+
+        // Check sanity
+        Validate.notEmpty(id, "id");
+        Validate.isTrue(ID_PATTERN.matcher(id).matches(), "SchemaSet id [" + id + "] may only contain "
+                + "letters, digits and the characters '_', '.' and '-'.");
+
+        // Assign internal state
+        this.id = id;
+    }
+
+    /**
+     * Assigns the source paths of this SchemaSet.
+     *
+     * @param sources The non-empty List of source paths.
+     */
+    public void setSources(final List<String> sources) {
+
+        // Check sanity
+        Validate.notNull(sources, "sources");
+        Validate.isTrue(!sources.isEmpty(), "A SchemaSet requires at least one source.");
+
+        // Assign internal state
+        this.sources = sources;
+    }
+
+    /**
+     * Assigns the XJB source paths of this SchemaSet.
+     *
+     * @param xjbSources The non-null List of XJB source paths.
+     */
+    public void setXjbSources(final List<String> xjbSources) {
+
+        // Check sanity
+        Validate.notNull(xjbSources, "xjbSources");
+
+        // Assign internal state
+        this.xjbSources = xjbSources;
+    }
+
+    /**
+     * Assigns the package name of the code generated from this SchemaSet.
+     *
+     * @param packageName The non-empty package name.
+     */
+    public void setPackageName(final String packageName) {
+
+        // Check sanity
+        Validate.notEmpty(packageName, "packageName");
+
+        // Assign internal state
+        this.packageName = packageName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[ id: " + id + ", sources: " + sources + ", xjbSources: " + getXjbSources()
+                + ", packageName: " + packageName + " ]";
+    }
+}
@@ -54,7 +54,7 @@ import java.util.List;
 @Mojo(name = "testXjc",
         defaultPhase = LifecyclePhase.GENERATE_TEST_SOURCES,
         requiresDependencyResolution = ResolutionScope.TEST,
-        threadSafe = false)
+        threadSafe = true)
 public class TestXjcMojo extends AbstractJavaGeneratorMojo {
 
     /**
@@ -237,20 +237,15 @@ public class TestXjcMojo extends AbstractJavaGeneratorMojo {
      */
     @Override
     protected List<URL> getSources() {
+        return isSchemaSetGeneration() ? getSchemaSetSources() : getSources(testSources, "testSources");
+    }
 
-        final List<Filter<File>> excludePatterns = testSourceExcludeFilters == null
-                ? STANDARD_TEST_SOURCE_EXCLUDE_FILTERS
-                : testSourceExcludeFilters;
-        Filters.initialize(getLog(), excludePatterns);
-
-        // All done.
-        return FileSystemUtilities.filterFiles(
-                getProject().getBasedir(),
-                testSources,
-                Arrays.asList(STANDARD_TEST_SOURCE_DIRECTORY),
-                getLog(),
-                "testSources",
-                excludePatterns);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<URL> getSources(final SchemaSet schemaSet) {
+        return getSources(schemaSet.getSources(), "schemaSet [" + schemaSet.getId() + "] sources");
     }
 
     /**
@@ -258,19 +253,15 @@ public class TestXjcMojo extends AbstractJavaGeneratorMojo {
      */
     @Override
     protected List<File> getSourceXJBs() {
+        return isSchemaSetGeneration() ? getSchemaSetXJBs() : getSourceXJBs(testXjbSources, "testXjbSources");
+    }
 
-        final List<Filter<File>> excludePatterns = testXjbExcludeFilters == null
-                ? STANDARD_TEST_XJB_EXCLUDE_FILTERS
-                : testXjbExcludeFilters;
-        Filters.initialize(getLog(), excludePatterns);
-
-        return FileSystemUtilities.filterFiles(
-                getProject().getBasedir(),
-                testXjbSources,
-                STANDARD_TEST_XJB_DIRECTORY,
-                getLog(),
-                "testXjbSources",
-                excludePatterns);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<File> getSourceXJBs(final SchemaSet schemaSet) {
+        return getSourceXJBs(schemaSet.getXjbSources(), "schemaSet [" + schemaSet.getId() + "] xjbSources");
     }
 
     /**
@@ -316,4 +307,41 @@ public class TestXjcMojo extends AbstractJavaGeneratorMojo {
     protected void addResource(final Resource resource) {
         getProject().addTestResource(resource);
     }
+
+    //
+    // Private helpers
+    //
+
+    private List<URL> getSources(final List<String> sourcePaths, final String description) {
+
+        final List<Filter<File>> excludePatterns = testSourceExcludeFilters == null
+                ? STANDARD_TEST_SOURCE_EXCLUDE_FILTERS
+                : testSourceExcludeFilters;
+        Filters.initialize(getLog(), excludePatterns);
+
+        // All done.
+        return FileSystemUtilities.filterFiles(
+                getProject().getBasedir(),
+                sourcePaths,
+                Arrays.asList(STANDARD_TEST_SOURCE_DIRECTORY),
+                getLog(),
+                description,
+                excludePatterns);
+    }
+
+    private List<File> getSourceXJBs(final List<String> xjbSourcePaths, final String description) {
+
+        final List<Filter<File>> excludePatterns = testXjbExcludeFilters == null
+                ? STANDARD_TEST_XJB_EXCLUDE_FILTERS
+                : testXjbExcludeFilters;
+        Filters.initialize(getLog(), excludePatterns);
+
+        return FileSystemUtilities.filterFiles(
+                getProject().getBasedir(),
+                xjbSourcePaths,
+                STANDARD_TEST_XJB_DIRECTORY,
+                getLog(),
+                description,
+                excludePatterns);
+    }
 }
@@ -0,0 +1,71 @@
+package org.codehaus.mojo.jaxb2.javageneration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The engine used to run XJC.
+ * The constants are duplicated in lowercase since Maven's Mojo argument matcher is case sensitive.
+ *
+ * @since 2.3
+ */
+public enum XjcEngine {
+
+    /**
+     * <p>Invoke the XJC command-line {@code Driver} with the XJC arguments. This is the standard engine.</p>
+     */
+    DRIVER(false),
+
+    /**
+     * <p>Invoke the XJC command-line {@code Driver} with the XJC arguments. This is the standard engine.</p>
+     *
+     * @see #DRIVER
+     */
+    driver(false),
+
+    /**
+     * <p>Drive XJC through its model API within the Maven JVM: parse the schemas and build the model, then emit
+     * the generated files concurrently. All errors reported by XJC are collected, and listed within the
+     * build failure.</p>
+     */
+    MODEL(true),
+
+    /**
+     * <p>Drive XJC through its model API within the Maven JVM: parse the schemas and build the model, then emit
+     * the generated files concurrently. All errors reported by XJC are collected, and listed within the
+     * build failure.</p>
+     *
+     * @see #MODEL
+     */
+    model(true);
+
+    // Internal state
+    private boolean modelApi;
+
+    XjcEngine(final boolean modelApi) {
+        this.modelApi = modelApi;
+    }
+
+    /**
+     * @return {@code true} if this XjcEngine drives XJC through its model API.
+     */
+    public boolean isModelApi() {
+        return modelApi;
+    }
+}
@@ -25,7 +25,8 @@ import org.codehaus.mojo.jaxb2.shared.Validate;
 import org.xml.sax.SAXParseException;
 
 /**
- * Adapter implementation emitting XJC events to a Maven Log.
+ * Adapter implementation emitting XJC events to a Maven Log. Unless debug logging is enabled, only the location and
+ * message of each SAXParseException is logged, omitting its stack trace.
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  * @since 2.0
@@ -64,7 +65,11 @@ public class XjcLogAdapter extends XJCListener {
      */
     @Override
     public void error(final SAXParseException exception) {
-        log.error(getLocation(exception), exception);
+        if (log.isDebugEnabled()) {
+            log.error(getLocation(exception), exception);
+        } else {
+            log.error(getLocation(exception) + exception.getMessage());
+        }
     }
 
     /**
@@ -72,7 +77,11 @@ public class XjcLogAdapter extends XJCListener {
      */
     @Override
     public void fatalError(final SAXParseException exception) {
-        log.error(getLocation(exception), exception);
+        if (log.isDebugEnabled()) {
+            log.error(getLocation(exception), exception);
+        } else {
+            log.error(getLocation(exception) + exception.getMessage());
+        }
     }
 
     /**
@@ -80,7 +89,11 @@ public class XjcLogAdapter extends XJCListener {
      */
     @Override
     public void warning(final SAXParseException exception) {
-        log.warn(getLocation(exception), exception);
+        if (log.isDebugEnabled()) {
+            log.warn(getLocation(exception), exception);
+        } else {
+            log.warn(getLocation(exception) + exception.getMessage());
+        }
     }
 
     /**
@@ -88,7 +101,11 @@ public class XjcLogAdapter extends XJCListener {
      */
     @Override
     public void info(final SAXParseException exception) {
-        log.info(getLocation(exception), exception);
+        if (log.isDebugEnabled()) {
+            log.info(getLocation(exception), exception);
+        } else {
+            log.info(getLocation(exception) + exception.getMessage());
+        }
     }
 
     //
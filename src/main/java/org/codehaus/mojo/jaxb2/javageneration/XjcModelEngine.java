@@ -0,0 +1,238 @@
+package org.codehaus.mojo.jaxb2.javageneration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JPackage;
+import com.sun.tools.xjc.BadCommandLineException;
+import com.sun.tools.xjc.ModelLoader;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.XJCListener;
+import com.sun.tools.xjc.model.Model;
+import com.sun.tools.xjc.outline.Outline;
+import com.sun.tools.xjc.util.ErrorReceiverFilter;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.xml.sax.SAXParseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Runs XJC through its model API rather than through its command-line {@code Driver}. The XJC arguments are
+ * parsed into XJC Options exactly as done by the Driver, whereafter the schemas are parsed and bound to a Model,
+ * from which code is generated and emitted through a CodeWriter. By default, the generated files are emitted
+ * concurrently by a {@link ConcurrentFileCodeWriter}.</p>
+ * <p>All errors reported by XJC are forwarded to the supplied XJCListener, and returned to the caller to be
+ * reported within the build failure; the Driver only yields an exit code.</p>
+ *
+ * @since 2.3
+ */
+final class XjcModelEngine {
+
+    /**
+     * The default number of threads used to write generated files.
+     */
+    static final int DEFAULT_WRITER_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    // Internal state
+    private final int writerThreads;
+
+    /**
+     * Creates an XjcModelEngine writing generated files using the supplied number of threads.
+     *
+     * @param writerThreads The number of threads writing generated files.
+     */
+    XjcModelEngine(final int writerThreads) {
+
+        // Check sanity
+        Validate.isTrue(writerThreads > 0, "writerThreads must be positive.");
+
+        // Assign internal state
+        this.writerThreads = writerThreads;
+    }
+
+    /**
+     * Runs XJC with the supplied arguments, writing the generated files to the directory given by the
+     * {@code -d} argument.
+     *
+     * @param xjcArguments The XJC arguments, as supplied to the XJC Driver.
+     * @param listener     The XJCListener receiving all XJC events.
+     * @return The errors reported by XJC, in the order reported. An empty List implies that XJC completed
+     * successfully.
+     * @throws BadCommandLineException if the XJC arguments were invalid.
+     * @throws IOException             if the generated files could not be written.
+     */
+    List<SAXParseException> run(final String[] xjcArguments, final XJCListener listener)
+            throws BadCommandLineException, IOException {
+        return run(xjcArguments, listener, null);
+    }
+
+    /**
+     * Runs XJC with the supplied arguments, emitting the generated files through the supplied CodeWriter.
+     *
+     * @param xjcArguments     The XJC arguments, as supplied to the XJC Driver.
+     * @param listener         The XJCListener receiving all XJC events.
+     * @param codeWriterOrNull The CodeWriter emitting all generated files, or {@code null} to write them
+     *                         concurrently to the directory given by the {@code -d} argument.
+     * @return The errors reported by XJC, in the order reported. An empty List implies that XJC completed
+     * successfully.
+     * @throws BadCommandLineException if the XJC arguments were invalid.
+     * @throws IOException             if the generated files could not be emitted.
+     */
+    List<SAXParseException> run(final String[] xjcArguments,
+                                final XJCListener listener,
+                                final CodeWriter codeWriterOrNull) throws BadCommandLineException, IOException {
+
+        // Check sanity
+        Validate.notNull(xjcArguments, "xjcArguments");
+        Validate.notNull(listener, "listener");
+
+        final Options options = new Options();
+        options.parseArguments(xjcArguments);
+
+        final ErrorCollector errorCollector = new ErrorCollector(listener);
+        final ErrorReceiverFilter receiver = new ErrorReceiverFilter(errorCollector);
+
+        // Parse the schemas, and bind them to a Model.
+        final Model model = ModelLoader.load(options, new JCodeModel(), receiver);
+        if (model == null || receiver.hadError()) {
+            return errorCollector.getErrors("XJC could not parse and bind the schemas.");
+        }
+
+        // Generate the code.
+        final Outline outline = model.generateCode(options, receiver);
+        if (outline == null || receiver.hadError()) {
+            return errorCollector.getErrors("XJC could not generate code from the schemas.");
+        }
+        listener.compiled(outline);
+
+        // Emit the generated files.
+        final CodeWriter core = codeWriterOrNull == null
+                ? new ConcurrentFileCodeWriter(options.targetDir, options.readOnly, options.encoding, writerThreads)
+                : codeWriterOrNull;
+        final CodeWriter codeWriter = options.createCodeWriter(
+                new ProgressCodeWriter(core, listener, model.codeModel.countArtifacts()));
+        try {
+            model.codeModel.build(codeWriter);
+        } finally {
+            core.close();
+        }
+
+        // All done.
+        return errorCollector.getErrors(null);
+    }
+
+    /**
+     * XJCListener forwarding all events to another XJCListener, while collecting all errors.
+     */
+    private static final class ErrorCollector extends XJCListener {
+
+        // Internal state
+        private final XJCListener delegate;
+        private final List<SAXParseException> errors = new ArrayList<SAXParseException>();
+
+        ErrorCollector(final XJCListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void error(final SAXParseException exception) {
+            errors.add(exception);
+            delegate.error(exception);
+        }
+
+        @Override
+        public void fatalError(final SAXParseException exception) {
+            errors.add(exception);
+            delegate.fatalError(exception);
+        }
+
+        @Override
+        public void warning(final SAXParseException exception) {
+            delegate.warning(exception);
+        }
+
+        @Override
+        public void info(final SAXParseException exception) {
+            delegate.info(exception);
+        }
+
+        @Override
+        public void message(final String msg) {
+            delegate.message(msg);
+        }
+
+        List<SAXParseException> getErrors(final String failureMessageOrNull) {
+
+            // XJC failed without reporting the cause?
+            if (errors.isEmpty() && failureMessageOrNull != null) {
+                errors.add(new SAXParseException(failureMessageOrNull, null));
+            }
+
+            // All done.
+            return Collections.unmodifiableList(errors);
+        }
+    }
+
+    /**
+     * CodeWriter notifying an XJCListener about each emitted file, as done by the XJC Driver.
+     */
+    private static final class ProgressCodeWriter extends CodeWriter {
+
+        // Internal state
+        private final CodeWriter delegate;
+        private final XJCListener listener;
+        private final int numFiles;
+        private int current;
+
+        ProgressCodeWriter(final CodeWriter delegate, final XJCListener listener, final int numFiles) {
+            this.delegate = delegate;
+            this.listener = listener;
+            this.numFiles = numFiles;
+        }
+
+        @Override
+        public OutputStream openBinary(final JPackage pkg, final String fileName) throws IOException {
+            report(pkg, fileName);
+            return delegate.openBinary(pkg, fileName);
+        }
+
+        @Override
+        public Writer openSource(final JPackage pkg, final String fileName) throws IOException {
+            report(pkg, fileName);
+            return delegate.openSource(pkg, fileName);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        private void report(final JPackage pkg, final String fileName) {
+            final String path = pkg.isUnnamed() ? fileName : pkg.name().replace('.', '/') + "/" + fileName;
+            listener.generatedFile(path, ++current, numFiles);
+        }
+    }
+}
@@ -52,7 +52,7 @@ import java.util.List;
  * @see <a href="https://jaxb.java.net/">The JAXB Reference Implementation</a>
  */
 @Mojo(name = "xjc",
-        threadSafe = false,
+        threadSafe = true,
         defaultPhase = LifecyclePhase.GENERATE_SOURCES,
         requiresDependencyResolution = ResolutionScope.COMPILE)
 public class XjcMojo extends AbstractJavaGeneratorMojo {
@@ -252,19 +252,15 @@ public class XjcMojo extends AbstractJavaGeneratorMojo {
      */
     @Override
     protected List<URL> getSources() {
+        return isSchemaSetGeneration() ? getSchemaSetSources() : getSources(sources, "sources");
+    }
 
-        final List<Filter<File>> excludePatterns = xjcSourceExcludeFilters == null
-                ? STANDARD_SOURCE_EXCLUDE_FILTERS
-                : xjcSourceExcludeFilters;
-        Filters.initialize(getLog(), excludePatterns);
-
-        return FileSystemUtilities.filterFiles(
-                getProject().getBasedir(),
-                sources,
-                Arrays.asList(STANDARD_SOURCE_DIRECTORY),
-                getLog(),
-                "sources",
-                excludePatterns);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<URL> getSources(final SchemaSet schemaSet) {
+        return getSources(schemaSet.getSources(), "schemaSet [" + schemaSet.getId() + "] sources");
     }
 
     /**
@@ -272,19 +268,15 @@ public class XjcMojo extends AbstractJavaGeneratorMojo {
      */
     @Override
     protected List<File> getSourceXJBs() {
+        return isSchemaSetGeneration() ? getSchemaSetXJBs() : getSourceXJBs(xjbSources, "xjbSources");
+    }
 
-        final List<Filter<File>> excludePatterns = xjbExcludeFilters == null
-                ? STANDARD_XJB_EXCLUDE_FILTERS
-                : xjbExcludeFilters;
-        Filters.initialize(getLog(), excludePatterns);
-
-        return FileSystemUtilities.filterFiles(
-                getProject().getBasedir(),
-                xjbSources,
-                STANDARD_XJB_DIRECTORY,
-                getLog(),
-                "xjbSources",
-                excludePatterns);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<File> getSourceXJBs(final SchemaSet schemaSet) {
+        return getSourceXJBs(schemaSet.getXjbSources(), "schemaSet [" + schemaSet.getId() + "] xjbSources");
     }
 
     /**
@@ -330,4 +322,40 @@ public class XjcMojo extends AbstractJavaGeneratorMojo {
     protected void addResource(final Resource resource) {
         getProject().addResource(resource);
     }
+
+    //
+    // Private helpers
+    //
+
+    private List<URL> getSources(final List<String> sourcePaths, final String description) {
+
+        final List<Filter<File>> excludePatterns = xjcSourceExcludeFilters == null
+                ? STANDARD_SOURCE_EXCLUDE_FILTERS
+                : xjcSourceExcludeFilters;
+        Filters.initialize(getLog(), excludePatterns);
+
+        return FileSystemUtilities.filterFiles(
+                getProject().getBasedir(),
+                sourcePaths,
+                Arrays.asList(STANDARD_SOURCE_DIRECTORY),
+                getLog(),
+                description,
+                excludePatterns);
+    }
+
+    private List<File> getSourceXJBs(final List<String> xjbSourcePaths, final String description) {
+
+        final List<Filter<File>> excludePatterns = xjbExcludeFilters == null
+                ? STANDARD_XJB_EXCLUDE_FILTERS
+                : xjbExcludeFilters;
+        Filters.initialize(getLog(), excludePatterns);
+
+        return FileSystemUtilities.filterFiles(
+                getProject().getBasedir(),
+                xjbSourcePaths,
+                STANDARD_XJB_DIRECTORY,
+                getLog(),
+                description,
+                excludePatterns);
+    }
 }
@@ -0,0 +1,652 @@
+package org.codehaus.mojo.jaxb2.javageneration.episode;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipFile;
+
+/**
+ * <p>Index of the JAXB episode files ({@value #EPISODE_PATH}) found within the jars and directories of a
+ * classpath, relating each schema namespace bound by an episode file to the episode file and the schema
+ * components (i.e. types and elements) it binds. The episode files of upstream artifacts already holding
+ * generated JAXB classes can thereby be fed to XJC, which then reuses those classes instead of generating
+ * them again.</p>
+ * <p>Each classpath element is identified by its path, last modification time and size (for directories: those
+ * of the episode file within it). Only classpath elements whose identity changed since the EpisodeIndex supplied
+ * to {@link #build(List, EpisodeIndex, Log)} - or since they were last indexed within the running JVM - are read,
+ * implying that unchanged jars are not opened again. The EpisodeIndex is persisted in properties form.</p>
+ * <p>As XJC fails on episode bindings for namespaces absent from the compiled schemas, only the bindings of the
+ * namespaces actually used are written to the episode file supplied to XJC; see
+ * {@link #writeEpisode(Collection, File)}.</p>
+ *
+ * @since 2.3
+ */
+public class EpisodeIndex {
+
+    /**
+     * The path of the episode file within jars and directories.
+     */
+    public static final String EPISODE_PATH = "META-INF/sun-jaxb.episode";
+
+    /**
+     * The JAXB binding namespace URI, used by episode files.
+     */
+    public static final String JAXB_NAMESPACE = "http://java.sun.com/xml/ns/jaxb";
+
+    // Internal state
+    private static final String HEADER = "jaxb2-maven-plugin episode index. Do not edit.";
+    private static final String ELEMENT_PREFIX = "element.";
+    private static final String PATH_SUFFIX = ".path";
+    private static final String STAMP_SUFFIX = ".stamp";
+    private static final String EPISODE_SUFFIX = ".episode";
+    private static final String NAMESPACE_INFIX = ".namespace.";
+    private static final String COMPONENTS_INFIX = ".components.";
+    private static final String SEPARATOR = "\t";
+    private static final String SCHEMA_SCD_PREFIX = "x-schema::";
+    private static final int MAX_SESSION_ENTRIES = 10000;
+    private static final Map<String, Entry> SESSION_ENTRIES = new HashMap<String, Entry>();
+
+    private List<Entry> entries;
+
+    /**
+     * Creates a new, empty EpisodeIndex.
+     */
+    public EpisodeIndex() {
+        entries = new ArrayList<Entry>();
+    }
+
+    /**
+     * Builds the EpisodeIndex for the supplied classpath.
+     *
+     * @param classpath The paths of all classpath elements, in classpath order.
+     * @param previous  The previously persisted EpisodeIndex, or {@code null} if none was found.
+     * @param log       The active Maven Log.
+     * @return The EpisodeIndex of the supplied classpath.
+     */
+    public static EpisodeIndex build(final List<String> classpath, final EpisodeIndex previous, final Log log) {
+
+        // Check sanity
+        Validate.notNull(classpath, "classpath");
+        Validate.notNull(log, "log");
+
+        final Map<String, Entry> reusable = new HashMap<String, Entry>();
+        if (previous != null) {
+            for (Entry current : previous.entries) {
+                reusable.put(current.getKey(), current);
+            }
+        }
+
+        int numRead = 0;
+        final EpisodeIndex toReturn = new EpisodeIndex();
+        for (String current : classpath) {
+
+            final File element = new File(current);
+            final String stamp = getStamp(element);
+            if (stamp == null) {
+                continue;
+            }
+
+            final String key = current + SEPARATOR + stamp;
+            Entry entry = reusable.get(key);
+            if (entry == null) {
+                synchronized (SESSION_ENTRIES) {
+                    entry = SESSION_ENTRIES.get(key);
+                }
+            }
+
+            if (entry == null) {
+
+                entry = read(element, stamp, log);
+                numRead++;
+
+                synchronized (SESSION_ENTRIES) {
+                    if (SESSION_ENTRIES.size() >= MAX_SESSION_ENTRIES) {
+                        SESSION_ENTRIES.clear();
+                    }
+                    SESSION_ENTRIES.put(key, entry);
+                }
+            }
+
+            toReturn.entries.add(entry);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Episode index holds " + toReturn.getNamespaces().size() + " namespaces from "
+                    + toReturn.entries.size() + " classpath elements. Read " + numRead + " classpath elements.");
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * @return An unmodifiable SortedSet holding all namespaces bound by the indexed episode files.
+     */
+    public SortedSet<String> getNamespaces() {
+
+        final SortedSet<String> toReturn = new TreeSet<String>();
+        for (Entry current : entries) {
+            toReturn.addAll(current.components.keySet());
+        }
+
+        // All done.
+        return Collections.unmodifiableSortedSet(toReturn);
+    }
+
+    /**
+     * Retrieves the episode file binding the supplied namespace. Should several episode files bind the same
+     * namespace, the first one on the classpath is used - as would be the case for the generated classes.
+     *
+     * @param namespace A schema namespace URI, or the empty string for schemas without targetNamespace.
+     * @return The URL of the episode file binding the supplied namespace, or {@code null} if none does.
+     */
+    public URL getEpisode(final String namespace) {
+
+        final Entry entry = getEntry(namespace);
+        return entry == null ? null : entry.getEpisodeUrl();
+    }
+
+    /**
+     * Retrieves the schema components bound to existing classes for the supplied namespace.
+     *
+     * @param namespace A schema namespace URI, or the empty string for schemas without targetNamespace.
+     * @return An unmodifiable SortedSet holding the bound schema components of the supplied namespace, on the
+     * form {@code ~TypeName} for type definitions and {@code elementName} for element declarations.
+     */
+    public SortedSet<String> getComponents(final String namespace) {
+
+        final Entry entry = getEntry(namespace);
+        return entry == null
+                ? Collections.unmodifiableSortedSet(new TreeSet<String>())
+                : Collections.unmodifiableSortedSet(entry.components.get(namespace));
+    }
+
+    /**
+     * <p>Writes an episode file holding the bindings of the supplied namespaces, copied from the indexed episode
+     * files. Namespaces not bound by any indexed episode file are ignored. The target file is only written if
+     * its content changes, implying that its modification time is retained otherwise.</p>
+     *
+     * @param namespaces The namespaces whose bindings should be written.
+     * @param target     The episode file to write.
+     * @return The namespaces whose bindings were written to the target file. If empty, the target file was
+     * deleted rather than written.
+     * @throws IOException if an indexed episode file could not be read, or the target file could not be written.
+     */
+    public SortedSet<String> writeEpisode(final Collection<String> namespaces, final File target)
+            throws IOException {
+
+        // Check sanity
+        Validate.notNull(namespaces, "namespaces");
+        Validate.notNull(target, "target");
+
+        // Group the namespaces by the episode file binding them.
+        final Map<Entry, SortedSet<String>> toCopy = new LinkedHashMap<Entry, SortedSet<String>>();
+        final SortedSet<String> toReturn = new TreeSet<String>();
+        for (String current : new TreeSet<String>(namespaces)) {
+
+            final Entry entry = getEntry(current);
+            if (entry != null) {
+                if (!toCopy.containsKey(entry)) {
+                    toCopy.put(entry, new TreeSet<String>());
+                }
+                toCopy.get(entry).add(current);
+                toReturn.add(current);
+            }
+        }
+
+        if (toReturn.isEmpty()) {
+            if (target.exists() && !target.delete()) {
+                throw new IOException("Could not delete [" + target.getAbsolutePath() + "]");
+            }
+            return toReturn;
+        }
+
+        final byte[] content;
+        try {
+
+            final DocumentBuilder builder = newDocumentBuilder();
+            final Document episode = builder.newDocument();
+            final Element root = episode.createElementNS(JAXB_NAMESPACE, "bindings");
+            root.setAttribute("version", "2.1");
+            episode.appendChild(root);
+
+            for (Map.Entry<Entry, SortedSet<String>> current : toCopy.entrySet()) {
+
+                final Document source = parse(builder, current.getKey());
+                for (Element currentBindings : getSchemaBindings(source.getDocumentElement())) {
+
+                    final String namespace = getSchemaNamespace(currentBindings);
+                    if (current.getValue().contains(namespace)) {
+
+                        final Element imported = (Element) episode.importNode(currentBindings, true);
+                        declarePrefix(imported, currentBindings);
+                        root.appendChild(imported);
+                    }
+                }
+            }
+
+            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            transformer.transform(new DOMSource(episode), new StreamResult(out));
+            content = out.toByteArray();
+
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not write episode file [" + target.getAbsolutePath() + "]", e);
+        }
+
+        // Only write the target file if its content changes.
+        if (!target.isFile() || !Arrays.equals(content, readFully(target))) {
+
+            final File parentDir = target.getParentFile();
+            if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+                throw new IOException("Could not create directory [" + parentDir.getAbsolutePath() + "]");
+            }
+
+            final OutputStream out = new FileOutputStream(target);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Writes this EpisodeIndex to the supplied file.
+     *
+     * @param aFile The file to which this EpisodeIndex should be written.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(final File aFile) throws IOException {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+
+        final File parentDir = aFile.getParentFile();
+        if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Could not create directory [" + parentDir.getAbsolutePath() + "]");
+        }
+
+        final Properties toWrite = new Properties();
+        for (int i = 0; i < entries.size(); i++) {
+
+            final Entry current = entries.get(i);
+            final String prefix = ELEMENT_PREFIX + i;
+            toWrite.setProperty(prefix + PATH_SUFFIX, current.path);
+            toWrite.setProperty(prefix + STAMP_SUFFIX, current.stamp);
+            if (current.episode != null) {
+                toWrite.setProperty(prefix + EPISODE_SUFFIX, current.episode);
+            }
+
+            int j = 0;
+            for (Map.Entry<String, SortedSet<String>> currentNamespace : current.components.entrySet()) {
+
+                final StringBuilder builder = new StringBuilder();
+                for (String currentComponent : currentNamespace.getValue()) {
+                    builder.append(builder.length() == 0 ? "" : SEPARATOR).append(currentComponent);
+                }
+
+                toWrite.setProperty(prefix + NAMESPACE_INFIX + j, currentNamespace.getKey());
+                toWrite.setProperty(prefix + COMPONENTS_INFIX + j, builder.toString());
+                j++;
+            }
+        }
+
+        final OutputStream out = new FileOutputStream(aFile);
+        try {
+            toWrite.store(out, HEADER);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads an EpisodeIndex from the supplied file.
+     *
+     * @param aFile The file from which to read an EpisodeIndex.
+     * @return The EpisodeIndex read from the supplied file, or {@code null} if the file does not exist or
+     * could not be read.
+     */
+    public static EpisodeIndex read(final File aFile) {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+        if (!aFile.isFile()) {
+            return null;
+        }
+
+        final Properties props = new Properties();
+        try {
+            final InputStream in = new FileInputStream(aFile);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        final EpisodeIndex toReturn = new EpisodeIndex();
+        for (int i = 0; props.containsKey(ELEMENT_PREFIX + i + PATH_SUFFIX); i++) {
+
+            final String prefix = ELEMENT_PREFIX + i;
+            final Entry entry = new Entry(props.getProperty(prefix + PATH_SUFFIX),
+                    props.getProperty(prefix + STAMP_SUFFIX, ""),
+                    props.getProperty(prefix + EPISODE_SUFFIX));
+
+            for (int j = 0; props.containsKey(prefix + NAMESPACE_INFIX + j); j++) {
+
+                final String components = props.getProperty(prefix + COMPONENTS_INFIX + j, "");
+                entry.components.put(props.getProperty(prefix + NAMESPACE_INFIX + j), components.isEmpty()
+                        ? new TreeSet<String>()
+                        : new TreeSet<String>(Arrays.asList(components.split(SEPARATOR))));
+            }
+
+            toReturn.entries.add(entry);
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Entry getEntry(final String namespace) {
+
+        for (Entry current : entries) {
+            if (current.components.containsKey(namespace)) {
+                return current;
+            }
+        }
+
+        // Not bound by any episode file.
+        return null;
+    }
+
+    /**
+     * @return The stamp identifying the current state of the supplied classpath element, or {@code null} if it
+     * neither is a file nor a directory.
+     */
+    private static String getStamp(final File element) {
+
+        if (element.isFile()) {
+            return element.lastModified() + ":" + element.length();
+        } else if (element.isDirectory()) {
+            final File episodeFile = new File(element, EPISODE_PATH);
+            return episodeFile.isFile() ? episodeFile.lastModified() + ":" + episodeFile.length() : "-";
+        }
+
+        // Nonexistent.
+        return null;
+    }
+
+    private static Entry read(final File element, final String stamp, final Log log) {
+
+        final String path = element.getPath();
+        try {
+
+            final String episode;
+            if (element.isDirectory()) {
+                final File episodeFile = new File(element, EPISODE_PATH);
+                episode = episodeFile.isFile() ? episodeFile.toURI().toURL().toString() : null;
+            } else {
+
+                final ZipFile jar = new ZipFile(element);
+                try {
+                    episode = jar.getEntry(EPISODE_PATH) == null
+                            ? null
+                            : "jar:" + element.toURI().toURL().toString() + "!/" + EPISODE_PATH;
+                } finally {
+                    jar.close();
+                }
+            }
+
+            final Entry toReturn = new Entry(path, stamp, episode);
+            if (episode != null) {
+
+                final Document document = parse(newDocumentBuilder(), toReturn);
+                for (Element current : getSchemaBindings(document.getDocumentElement())) {
+
+                    final SortedSet<String> components = new TreeSet<String>();
+                    addComponents(current, components);
+                    toReturn.components.put(getSchemaNamespace(current), components);
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Found episode file [" + episode + "] binding namespaces "
+                            + toReturn.components.keySet());
+                }
+            }
+
+            // All done.
+            return toReturn;
+
+        } catch (Exception e) {
+
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring classpath element [" + path + "] while indexing episode files: "
+                        + e.getMessage());
+            }
+            return new Entry(path, stamp, null);
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder();
+    }
+
+    /**
+     * Parses the episode file of the supplied Entry. Episode files within jars are read using a ZipFile rather
+     * than a jar URL, since the JVM caches (and keeps open) the jars read through jar URLs.
+     */
+    private static Document parse(final DocumentBuilder builder, final Entry entry)
+            throws IOException, SAXException {
+
+        // Never fetch external DTDs or entities.
+        builder.setEntityResolver(new EntityResolver() {
+            @Override
+            public InputSource resolveEntity(final String publicId, final String systemId) {
+                return new InputSource(new StringReader(""));
+            }
+        });
+
+        final File element = new File(entry.path);
+        final ZipFile jar = element.isDirectory() ? null : new ZipFile(element);
+        try {
+
+            final InputStream in = jar == null
+                    ? new FileInputStream(new File(element, EPISODE_PATH))
+                    : jar.getInputStream(jar.getEntry(EPISODE_PATH));
+            try {
+                final InputSource source = new InputSource(in);
+                source.setSystemId(entry.episode);
+                return builder.parse(source);
+            } finally {
+                in.close();
+            }
+
+        } finally {
+            if (jar != null) {
+                jar.close();
+            }
+        }
+    }
+
+    /**
+     * @return The child bindings elements of the supplied root bindings element, which bind a schema (i.e. whose
+     * SCD is on the form {@code x-schema::prefix}).
+     */
+    private static List<Element> getSchemaBindings(final Element root) {
+
+        final List<Element> toReturn = new ArrayList<Element>();
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isBindings(child) && ((Element) child).getAttribute("scd").startsWith(SCHEMA_SCD_PREFIX)) {
+                toReturn.add((Element) child);
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private static String getSchemaNamespace(final Element schemaBindings) {
+
+        final String prefix = getSchemaPrefix(schemaBindings);
+        final String namespace = schemaBindings.lookupNamespaceURI(prefix.isEmpty() ? null : prefix);
+        return namespace == null ? "" : namespace;
+    }
+
+    private static String getSchemaPrefix(final Element schemaBindings) {
+        return schemaBindings.getAttribute("scd").substring(SCHEMA_SCD_PREFIX.length()).trim();
+    }
+
+    /**
+     * Declares the prefix used within the SCD of the supplied imported schema bindings element, in case it was
+     * declared on an ancestor of the original element.
+     */
+    private static void declarePrefix(final Element imported, final Element original) {
+
+        final String prefix = getSchemaPrefix(original);
+        final String namespace = getSchemaNamespace(original);
+        if (!prefix.isEmpty() && !imported.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix)) {
+            imported.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:" + prefix, namespace);
+        }
+    }
+
+    private static void addComponents(final Element bindings, final SortedSet<String> components) {
+
+        for (Node child = bindings.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isBindings(child)) {
+
+                final String scd = ((Element) child).getAttribute("scd");
+                final int colonIndex = scd.lastIndexOf(':');
+                if (scd.length() > 0) {
+                    components.add((scd.startsWith("~") ? "~" : "") + scd.substring(colonIndex + 1));
+                }
+                addComponents((Element) child, components);
+            }
+        }
+    }
+
+    private static boolean isBindings(final Node node) {
+        return node.getNodeType() == Node.ELEMENT_NODE
+                && JAXB_NAMESPACE.equals(node.getNamespaceURI())
+                && "bindings".equals(node.getLocalName());
+    }
+
+    private static byte[] readFully(final File aFile) throws IOException {
+
+        final InputStream in = new FileInputStream(aFile);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The indexed state of one classpath element.
+     */
+    private static final class Entry {
+
+        // Internal state
+        private final String path;
+        private final String stamp;
+        private final String episode;
+        private final SortedMap<String, SortedSet<String>> components;
+
+        Entry(final String path, final String stamp, final String episode) {
+            this.path = path;
+            this.stamp = stamp;
+            this.episode = episode;
+            this.components = new TreeMap<String, SortedSet<String>>();
+        }
+
+        String getKey() {
+            return path + SEPARATOR + stamp;
+        }
+
+        URL getEpisodeUrl() {
+            try {
+                return new URL(episode);
+            } catch (IOException e) {
+                throw new IllegalStateException("Malformed episode URL [" + episode + "]", e);
+            }
+        }
+    }
+}
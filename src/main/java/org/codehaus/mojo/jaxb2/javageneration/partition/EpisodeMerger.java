@@ -0,0 +1,112 @@
+package org.codehaus.mojo.jaxb2.javageneration.partition;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>Stitches the episode files generated by separate XJC invocations (one per {@link SchemaPartition}) into a
+ * single episode file. Each episode file holds a root {@code bindings} element whose children are the bindings
+ * for one schema namespace; as SchemaPartitions never share a namespace, the merged episode file simply holds
+ * the children of all supplied episode files, in the order supplied.</p>
+ *
+ * @since 2.3
+ */
+public final class EpisodeMerger {
+
+    /*
+     * Hide the constructor for utility classes.
+     */
+    private EpisodeMerger() {
+        // Do nothing
+    }
+
+    /**
+     * Merges the supplied episode files into the given target file.
+     *
+     * @param episodeFiles The non-empty List of episode files to merge. Nonexistent files are ignored.
+     * @param target       The file to which the merged episode should be written.
+     * @throws IOException if any episode file could not be read, or the merged episode could not be written.
+     */
+    public static void merge(final List<File> episodeFiles, final File target) throws IOException {
+
+        // Check sanity
+        Validate.notNull(episodeFiles, "episodeFiles");
+        Validate.notNull(target, "target");
+
+        try {
+
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            final DocumentBuilder builder = factory.newDocumentBuilder();
+
+            Document merged = null;
+            for (File current : episodeFiles) {
+
+                if (!current.isFile()) {
+                    continue;
+                }
+
+                final Document episode = builder.parse(current);
+                if (merged == null) {
+                    merged = episode;
+                } else {
+
+                    // Move all children of the root bindings element into the merged document.
+                    for (Node child = episode.getDocumentElement().getFirstChild();
+                         child != null;
+                         child = child.getNextSibling()) {
+                        merged.getDocumentElement().appendChild(merged.importNode(child, true));
+                    }
+                }
+            }
+
+            if (merged == null) {
+
+                // Nothing to merge.
+                return;
+            }
+
+            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty(OutputKeys.STANDALONE, "yes");
+            transformer.transform(new DOMSource(merged), new StreamResult(target));
+
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not merge episode files into [" + target.getAbsolutePath() + "]: "
+                    + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.codehaus.mojo.jaxb2.javageneration.partition;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Persistent record of the outcome of a partitioned XJC generation, holding the fingerprint and the generated
+ * files (relative to the outputDirectory) of each {@link SchemaPartition}. Comparing the fingerprints of the
+ * current SchemaPartitions with the ones recorded within the PartitionState of the previous generation yields
+ * the SchemaPartitions which must be re-generated; the recorded files of all other SchemaPartitions are left
+ * untouched.</p>
+ *
+ * @since 2.3
+ */
+public class PartitionState {
+
+    // Internal state
+    private static final String HEADER = "jaxb2-maven-plugin partitioned generation state. Do not edit.";
+    private static final String CONFIGURATION_KEY = "configuration";
+    private static final String UNPARTITIONABLE_KEY = "unpartitionable";
+    private static final String PARTITION_PREFIX = "partition.";
+    private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+    private static final String FILES_SUFFIX = ".files";
+    private static final String FILE_SEPARATOR = "\t";
+
+    private String configuration;
+    private boolean unpartitionable;
+    private SortedMap<String, String> fingerprints;
+    private SortedMap<String, SortedSet<String>> files;
+
+    /**
+     * Creates a new, empty PartitionState.
+     *
+     * @param configuration The digest of the configuration (i.e. XJC arguments and classpath) shared by all
+     *                      SchemaPartitions. A change in configuration implies that all SchemaPartitions must
+     *                      be re-generated.
+     */
+    public PartitionState(final String configuration) {
+
+        // Check sanity
+        Validate.notEmpty(configuration, "configuration");
+
+        // Assign internal state
+        this.configuration = configuration;
+        this.fingerprints = new TreeMap<String, String>();
+        this.files = new TreeMap<String, SortedSet<String>>();
+    }
+
+    /**
+     * @return The digest of the configuration shared by all SchemaPartitions.
+     */
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return {@code true} if the sources could not be generated in separate partitions using this configuration,
+     * typically because XJC generated the same file from several SchemaPartitions.
+     */
+    public boolean isUnpartitionable() {
+        return unpartitionable;
+    }
+
+    /**
+     * Marks this PartitionState as unpartitionable.
+     *
+     * @see #isUnpartitionable()
+     */
+    public void setUnpartitionable() {
+        this.unpartitionable = true;
+        fingerprints.clear();
+        files.clear();
+    }
+
+    /**
+     * Records the outcome of generating the supplied SchemaPartition.
+     *
+     * @param partition      The generated SchemaPartition.
+     * @param generatedFiles The paths of all files generated from the supplied SchemaPartition, relative to the
+     *                       outputDirectory and using '/' as separator.
+     */
+    public void add(final SchemaPartition partition, final SortedSet<String> generatedFiles) {
+
+        // Check sanity
+        Validate.notNull(partition, "partition");
+        Validate.notNull(generatedFiles, "generatedFiles");
+
+        // All done.
+        fingerprints.put(partition.getId(), partition.getFingerprint());
+        files.put(partition.getId(), new TreeSet<String>(generatedFiles));
+    }
+
+    /**
+     * Checks if the supplied SchemaPartition was generated with the same configuration and content as
+     * recorded within this PartitionState.
+     *
+     * @param partition     The SchemaPartition to check.
+     * @param configuration The digest of the current configuration.
+     * @return {@code true} if the supplied SchemaPartition need not be re-generated.
+     */
+    public boolean isUpToDate(final SchemaPartition partition, final String configuration) {
+
+        // Check sanity
+        Validate.notNull(partition, "partition");
+
+        // All done.
+        return !unpartitionable
+                && this.configuration.equals(configuration)
+                && !ContentDigester.UNREADABLE.equals(partition.getFingerprint())
+                && partition.getFingerprint().equals(fingerprints.get(partition.getId()));
+    }
+
+    /**
+     * @return The IDs of all SchemaPartitions recorded within this PartitionState.
+     */
+    public SortedSet<String> getPartitionIds() {
+        return Collections.unmodifiableSortedSet(new TreeSet<String>(fingerprints.keySet()));
+    }
+
+    /**
+     * Retrieves the files generated from the SchemaPartition with the supplied ID.
+     *
+     * @param partitionId The ID of a SchemaPartition.
+     * @return The paths of all files generated from the given SchemaPartition, relative to the outputDirectory.
+     * Empty if no such SchemaPartition was recorded.
+     */
+    public SortedSet<String> getFiles(final String partitionId) {
+
+        final SortedSet<String> toReturn = files.get(partitionId);
+        return toReturn == null
+                ? Collections.unmodifiableSortedSet(new TreeSet<String>())
+                : Collections.unmodifiableSortedSet(toReturn);
+    }
+
+    /**
+     * Finds the ID of the SchemaPartition which generated the supplied file.
+     *
+     * @param relativePath The path of a generated file, relative to the outputDirectory.
+     * @return The ID of the SchemaPartition which generated the supplied file, or {@code null} if none did.
+     */
+    public String getOwner(final String relativePath) {
+
+        for (String current : files.keySet()) {
+            if (files.get(current).contains(relativePath)) {
+                return current;
+            }
+        }
+
+        // Not generated by any recorded SchemaPartition.
+        return null;
+    }
+
+    /**
+     * Writes this PartitionState to the supplied file, creating its parent directory if required.
+     *
+     * @param aFile The non-null file to which this PartitionState should be written.
+     * @throws IOException if the PartitionState could not be written.
+     */
+    public void write(final File aFile) throws IOException {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+
+        final File parentDir = aFile.getParentFile();
+        if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Could not create directory [" + parentDir.getAbsolutePath() + "]");
+        }
+
+        final Properties toWrite = new Properties();
+        toWrite.setProperty(CONFIGURATION_KEY, configuration);
+        toWrite.setProperty(UNPARTITIONABLE_KEY, "" + unpartitionable);
+
+        for (String current : fingerprints.keySet()) {
+
+            final StringBuilder builder = new StringBuilder();
+            for (String currentFile : files.get(current)) {
+                builder.append(builder.length() == 0 ? "" : FILE_SEPARATOR).append(currentFile);
+            }
+
+            toWrite.setProperty(PARTITION_PREFIX + current + FINGERPRINT_SUFFIX, fingerprints.get(current));
+            toWrite.setProperty(PARTITION_PREFIX + current + FILES_SUFFIX, builder.toString());
+        }
+
+        final OutputStream out = new FileOutputStream(aFile);
+        try {
+            toWrite.store(out, HEADER);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a PartitionState from the supplied file.
+     *
+     * @param aFile The file from which to read a PartitionState.
+     * @return The PartitionState read from the supplied file, or {@code null} if the file does not exist or
+     * could not be read.
+     */
+    public static PartitionState read(final File aFile) {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+        if (!aFile.isFile()) {
+            return null;
+        }
+
+        final Properties props = new Properties();
+        try {
+            final InputStream in = new FileInputStream(aFile);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        final String configuration = props.getProperty(CONFIGURATION_KEY);
+        if (configuration == null || configuration.isEmpty()) {
+            return null;
+        }
+
+        final PartitionState toReturn = new PartitionState(configuration);
+        toReturn.unpartitionable = Boolean.parseBoolean(props.getProperty(UNPARTITIONABLE_KEY));
+
+        for (String current : props.stringPropertyNames()) {
+            if (current.startsWith(PARTITION_PREFIX) && current.endsWith(FINGERPRINT_SUFFIX)) {
+
+                final String id = current.substring(PARTITION_PREFIX.length(),
+                        current.length() - FINGERPRINT_SUFFIX.length());
+                final String filesValue = props.getProperty(PARTITION_PREFIX + id + FILES_SUFFIX, "");
+
+                final List<String> partitionFiles = filesValue.isEmpty()
+                        ? new ArrayList<String>()
+                        : Arrays.asList(filesValue.split(FILE_SEPARATOR));
+
+                toReturn.fingerprints.put(id, props.getProperty(current));
+                toReturn.files.put(id, new TreeSet<String>(partitionFiles));
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+}
@@ -0,0 +1,390 @@
+package org.codehaus.mojo.jaxb2.javageneration.partition;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.mojo.jaxb2.shared.staleness.SchemaDependencyGraph;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * <p>A set of XML Schemas which can be compiled by XJC independently of all other schemas of an execution.
+ * The sources of an execution are split into SchemaPartitions by calculating the connected components of the
+ * graph where two schemas are connected if:</p>
+ * <ol>
+ * <li>One of them imports, includes, redefines or overrides the other (as given by the
+ * {@link SchemaDependencyGraph}),</li>
+ * <li>They share the same targetNamespace (implying that they generate code into the same package), or</li>
+ * <li>They are both customized by the same XJB file, using {@code schemaLocation} attributes.</li>
+ * </ol>
+ * <p>XJB files which do not customize any specific schema (i.e. global bindings) are used by all
+ * SchemaPartitions. The fingerprint of a SchemaPartition changes whenever the content of any schema or XJB file
+ * within it changes, implying that only SchemaPartitions whose fingerprint differs from the previous
+ * generation need to be re-generated.</p>
+ *
+ * @since 2.3
+ */
+public class SchemaPartition implements Comparable<SchemaPartition> {
+
+    // Internal state
+    private static final String XJB_KEY_PREFIX = "xjb:";
+    private static final String NAMESPACE_KEY_PREFIX = "namespace:";
+    private String id;
+    private String fingerprint;
+    private List<URL> sources;
+    private List<URL> xjbs;
+    private SortedSet<String> schemas;
+
+    /**
+     * Creates a new SchemaPartition.
+     *
+     * @param sources     The non-empty List of source URLs within this SchemaPartition, in configuration order.
+     * @param xjbs        The XJB files used to compile this SchemaPartition, in configuration order.
+     * @param schemas     All schemas (i.e. the sources and their transitive dependencies) within this
+     *                    SchemaPartition.
+     * @param fingerprint The digest of the content of all schemas and XJB files within this SchemaPartition.
+     */
+    public SchemaPartition(final List<URL> sources,
+            final List<URL> xjbs,
+            final SortedSet<String> schemas,
+            final String fingerprint) {
+
+        // Check sanity
+        Validate.notNull(sources, "sources");
+        Validate.isTrue(!sources.isEmpty(), "Cannot handle empty sources.");
+        Validate.notNull(xjbs, "xjbs");
+        Validate.notNull(schemas, "schemas");
+        Validate.notEmpty(fingerprint, "fingerprint");
+
+        // Assign internal state
+        this.sources = Collections.unmodifiableList(new ArrayList<URL>(sources));
+        this.xjbs = Collections.unmodifiableList(new ArrayList<URL>(xjbs));
+        this.schemas = Collections.unmodifiableSortedSet(new TreeSet<String>(schemas));
+        this.fingerprint = fingerprint;
+
+        // The ID is stable as long as the same sources are grouped together.
+        final SortedSet<String> sortedSources = new TreeSet<String>();
+        for (URL current : sources) {
+            sortedSources.add(current.toString());
+        }
+        this.id = ContentDigester.digest(sortedSources.toString());
+    }
+
+    /**
+     * Splits the supplied sources into independent SchemaPartitions.
+     *
+     * @param sources The non-null List of source URLs of an execution, in configuration order.
+     * @param xjbs    The non-null List of XJB URLs of an execution, in configuration order.
+     * @param graph   The SchemaDependencyGraph holding the sources and their transitive dependencies.
+     * @param log     The active Maven Log.
+     * @return A sorted List holding the SchemaPartitions of the supplied sources.
+     */
+    public static List<SchemaPartition> partition(final List<URL> sources,
+            final List<URL> xjbs,
+            final SchemaDependencyGraph graph,
+            final Log log) {
+
+        // Check sanity
+        Validate.notNull(sources, "sources");
+        Validate.notNull(xjbs, "xjbs");
+        Validate.notNull(graph, "graph");
+        Validate.notNull(log, "log");
+
+        final SortedMap<String, String> schemaDigests = graph.getDigests();
+        final UnionFind components = new UnionFind();
+
+        // 1) Connect all schemas with their dependencies, and with all other schemas of the same namespace.
+        for (String current : schemaDigests.keySet()) {
+
+            components.add(current);
+            for (String currentDependency : graph.getDependencies(current)) {
+                components.union(current, currentDependency);
+            }
+
+            final String targetNamespace = graph.getTargetNamespace(current);
+            if (targetNamespace != null) {
+                components.union(current, NAMESPACE_KEY_PREFIX + targetNamespace);
+            }
+        }
+
+        // 2) Connect all schemas customized by the same XJB file.
+        final Map<String, String> xjbDigests = ContentDigester.digest(xjbs, log);
+        final Set<String> globalXjbKeys = new HashSet<String>();
+        for (URL current : xjbs) {
+
+            final String xjbKey = XJB_KEY_PREFIX + current;
+            boolean isGlobal = true;
+
+            for (String currentSchema : readCustomizedSchemas(current, log)) {
+                if (schemaDigests.containsKey(currentSchema)) {
+                    components.union(xjbKey, currentSchema);
+                    isGlobal = false;
+                }
+            }
+
+            if (isGlobal) {
+                globalXjbKeys.add(current.toString());
+            }
+        }
+
+        // 3) Collect the sources, schemas and XJBs of each component.
+        final Map<String, List<URL>> sourcesPerComponent = new LinkedHashMap<String, List<URL>>();
+        for (URL current : sources) {
+
+            final String component = components.find(current.toString());
+            List<URL> componentSources = sourcesPerComponent.get(component);
+            if (componentSources == null) {
+                componentSources = new ArrayList<URL>();
+                sourcesPerComponent.put(component, componentSources);
+            }
+            componentSources.add(current);
+        }
+
+        final Map<String, SortedSet<String>> schemasPerComponent = new HashMap<String, SortedSet<String>>();
+        for (String current : schemaDigests.keySet()) {
+
+            final String component = components.find(current);
+            SortedSet<String> componentSchemas = schemasPerComponent.get(component);
+            if (componentSchemas == null) {
+                componentSchemas = new TreeSet<String>();
+                schemasPerComponent.put(component, componentSchemas);
+            }
+            componentSchemas.add(current);
+        }
+
+        final List<SchemaPartition> toReturn = new ArrayList<SchemaPartition>();
+        for (Map.Entry<String, List<URL>> current : sourcesPerComponent.entrySet()) {
+
+            final String component = current.getKey();
+            final StringBuilder fingerprintBuilder = new StringBuilder();
+
+            SortedSet<String> componentSchemas = schemasPerComponent.get(component);
+            if (componentSchemas == null) {
+                componentSchemas = new TreeSet<String>();
+            }
+            for (String currentSchema : componentSchemas) {
+                fingerprintBuilder.append(currentSchema).append('=')
+                        .append(schemaDigests.get(currentSchema)).append('\n');
+            }
+
+            final List<URL> componentXjbs = new ArrayList<URL>();
+            for (URL currentXjb : xjbs) {
+                if (globalXjbKeys.contains(currentXjb.toString())
+                        || component.equals(components.find(XJB_KEY_PREFIX + currentXjb))) {
+                    componentXjbs.add(currentXjb);
+                    fingerprintBuilder.append(currentXjb).append('=')
+                            .append(xjbDigests.get(currentXjb.toString())).append('\n');
+                }
+            }
+
+            // Unreadable content implies that the partition must always be re-generated.
+            final String fingerprint = fingerprintBuilder.indexOf(ContentDigester.UNREADABLE) != -1
+                    ? ContentDigester.UNREADABLE
+                    : ContentDigester.digest(fingerprintBuilder.toString());
+
+            toReturn.add(new SchemaPartition(current.getValue(), componentXjbs, componentSchemas, fingerprint));
+        }
+
+        // All done.
+        Collections.sort(toReturn);
+        return toReturn;
+    }
+
+    /**
+     * @return The stable identifier of this SchemaPartition, calculated from its sources.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The digest of the content of all schemas and XJB files within this SchemaPartition,
+     * or {@link ContentDigester#UNREADABLE} if any of them could not be read.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return The sources within this SchemaPartition, in configuration order.
+     */
+    public List<URL> getSources() {
+        return sources;
+    }
+
+    /**
+     * @return The XJB files used to compile this SchemaPartition, in configuration order.
+     */
+    public List<URL> getXjbs() {
+        return xjbs;
+    }
+
+    /**
+     * @return The external forms of the URLs of all schemas within this SchemaPartition.
+     */
+    public SortedSet<String> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(final SchemaPartition that) {
+        return getId().compareTo(that.getId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof SchemaPartition && getId().equals(((SchemaPartition) obj).getId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return getId().hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SchemaPartition [" + getId() + "]: " + sources.size() + " sources, " + schemas.size()
+                + " schemas, " + xjbs.size() + " XJBs";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static SortedSet<String> readCustomizedSchemas(final URL xjb, final Log log) {
+
+        final SortedSet<String> toReturn = new TreeSet<String>();
+        try {
+
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+
+            factory.newSAXParser().parse(xjb.toString(), new DefaultHandler() {
+
+                @Override
+                public InputSource resolveEntity(final String publicId, final String systemId) {
+
+                    // Never fetch external DTDs or entities.
+                    return new InputSource(new StringReader(""));
+                }
+
+                @Override
+                public void startElement(final String uri,
+                        final String localName,
+                        final String qName,
+                        final Attributes attributes) {
+
+                    final String schemaLocation = attributes.getValue("schemaLocation");
+                    if ("bindings".equals(localName) && schemaLocation != null) {
+                        try {
+                            toReturn.add(new URL(xjb, schemaLocation).toString());
+                        } catch (MalformedURLException e) {
+                            log.debug("Ignoring malformed schemaLocation [" + schemaLocation + "] in [" + xjb + "]");
+                        }
+                    }
+                }
+            });
+
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not read customized schemas from XJB [" + xjb + "]", e);
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Union-find structure (with path compression) over string keys.
+     */
+    private static class UnionFind {
+
+        // Internal state
+        private Map<String, String> parents = new HashMap<String, String>();
+
+        void add(final String key) {
+            if (!parents.containsKey(key)) {
+                parents.put(key, key);
+            }
+        }
+
+        String find(final String key) {
+
+            add(key);
+
+            String root = key;
+            while (!root.equals(parents.get(root))) {
+                root = parents.get(root);
+            }
+
+            // Compress the path
+            String current = key;
+            while (!current.equals(root)) {
+                final String next = parents.get(current);
+                parents.put(current, root);
+                current = next;
+            }
+
+            return root;
+        }
+
+        void union(final String key1, final String key2) {
+
+            final String root1 = find(key1);
+            final String root2 = find(key2);
+            if (!root1.equals(root2)) {
+                parents.put(root1, root2);
+            }
+        }
+    }
+}
@@ -28,12 +28,14 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.mojo.jaxb2.AbstractJaxbMojo;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.NodeProcessor;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.DefaultJavaDocRenderer;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.JavaDocExtractor;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.JavaDocRenderer;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.SearchableDocumentation;
-import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.SimpleNamespaceResolver;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.XsdAnnotationProcessor;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.TransformSchema;
+import org.codehaus.mojo.jaxb2.shared.CanonicalPathCache;
 import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
 import org.codehaus.mojo.jaxb2.shared.arguments.ArgumentBuilder;
 import org.codehaus.mojo.jaxb2.shared.environment.EnvironmentFacet;
@@ -43,15 +45,17 @@ import org.codehaus.mojo.jaxb2.shared.environment.locale.LocaleFacet;
 import org.codehaus.mojo.jaxb2.shared.environment.logging.LoggingHandlerEnvironmentFacet;
 import org.codehaus.mojo.jaxb2.shared.filters.Filter;
 import org.codehaus.mojo.jaxb2.shared.filters.pattern.PatternFileFilter;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.mojo.jaxb2.shared.staleness.StaleManifest;
+import org.codehaus.mojo.jaxb2.shared.worker.ToolWorkerClient;
+import org.codehaus.mojo.jaxb2.shared.worker.WorkerUnavailableException;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.util.FileUtils;
 
 import javax.tools.ToolProvider;
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -125,6 +129,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
     private static final int SCHEMAGEN_INCORRECT_OPTIONS = -1;
     private static final int SCHEMAGEN_COMPLETED_OK = 0;
     private static final int SCHEMAGEN_JAXB_ERRORS = 1;
+    private static final String CLASSPATH_PLACEHOLDER = "${classpath}";
 
     /**
      * <p>A List holding desired schema mappings, each of which binds a schema namespace URI to its desired prefix
@@ -186,6 +191,29 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
     @Parameter(defaultValue = "true")
     protected boolean createJavaDocAnnotations;
 
+    /**
+     * <p>The size (in bytes) above which generated XSD files are post-processed by streaming them through the
+     * post-processors (using StAX), rather than parsing them into a DOM Document. The memory required to stream an
+     * XSD file is bounded by its nesting depth rather than its size, at the expense of not re-indenting it.
+     * Defaults to 16 MB.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "schemagen.streamingThreshold", defaultValue = "16777216")
+    protected long streamingThreshold;
+
+    /**
+     * <p>The maximum number of threads used to post-process generated XSD files concurrently. A value less than 1
+     * implies that the number of available processors is used - unless a custom {@code javaDocRenderer} is
+     * configured, in which case a single thread is used since the custom JavaDocRenderer may not be thread-safe.
+     * Each generated XSD file is post-processed by a single thread; a custom {@code javaDocRenderer} must be
+     * thread-safe if this parameter is set to a value greater than 1.</p>
+     *
+     * @since 2.3
+     */
+    @Parameter(property = "schemagen.postProcessingThreads", defaultValue = "0")
+    protected int postProcessingThreads;
+
     /**
      * <p>A renderer used to create XML annotation text from JavaDoc comments found within the source code.
      * Unless another implementation is provided, the standard JavaDocRenderer used is
@@ -219,7 +247,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
             toReturn = true;
         }
 
-        if (getSources().isEmpty()) {
+        if (getResolvedSources().isEmpty()) {
             warnAboutIncorrectPluginConfiguration("sources", "At least one Java Source file has to be included.");
             toReturn = true;
         }
@@ -235,65 +263,68 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
     protected boolean isReGenerationRequired() {
 
         //
-        // Use the stale flag method to identify if we should re-generate the XSDs from the sources.
+        // Use the stale manifest to identify if we should re-generate the XSDs from the sources.
         // Basically, we should re-generate the XSDs if:
         //
         // a) The staleFile does not exist
-        // b) The staleFile exists and is older than one of the sources (Java or XJB files).
-        //    "Older" is determined by comparing the modification timestamp of the staleFile and the source files.
+        // b) The structural fingerprint of any of the Java sources differs from the fingerprint stored within
+        //    the staleFile during the last generation. The structural fingerprint covers only the parts of each
+        //    source which may affect the generated XSDs, so changes to method bodies (for instance) are ignored.
+        // c) The effective SchemaGen arguments, the post-processing configuration or the classpath differs
+        //    from the ones used during the last generation.
         //
-        final File staleFile = getStaleFile();
-        final String debugPrefix = "StaleFile [" + FileSystemUtilities.getCanonicalPath(staleFile) + "]";
+        final StaleManifest manifest = new StaleManifest();
+        addStructuralFingerprints(manifest, getResolvedSources());
 
-        boolean stale = !staleFile.exists();
-        if (stale) {
-            getLog().debug(debugPrefix + " not found. XML Schema (re-)generation required.");
-        } else {
+        try {
 
-            final List<URL> sources = getSources();
+            // The source files are digested above, and the classpath is fingerprinted separately.
+            final List<String> classpath = new ArrayList<String>(getResolvedClasspath());
+            classpath.addAll(getProject().getCompileSourceRoots());
 
-            if (getLog().isDebugEnabled()) {
-                getLog().debug(debugPrefix + " found. Checking timestamps on source Java "
-                        + "files to determine if XML Schema (re-)generation is required.");
-            }
+            addConfigurationFingerprint(manifest,
+                    createSchemaGenArgumentBuilder(CLASSPATH_PLACEHOLDER, STANDARD_EPISODE_FILENAME).build(),
+                    classpath);
 
-            final long staleFileLastModified = staleFile.lastModified();
-            for (URL current : sources) {
+        } catch (MojoExecutionException e) {
 
-                final URLConnection sourceFileConnection;
-                try {
-                    sourceFileConnection = current.openConnection();
-                    sourceFileConnection.connect();
-                } catch (Exception e) {
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Could not fingerprint the SchemaGen configuration. "
+                        + "XML Schema (re-)generation required.", e);
+            }
+            return true;
+        }
 
-                    if (getLog().isDebugEnabled()) {
-                        getLog().debug("Could not open a sourceFileConnection to [" + current + "]", e);
-                    }
+        // The post-processing configuration is not part of the SchemaGen arguments.
+        final StringBuilder postProcessing = new StringBuilder();
+        postProcessing.append("generateEpisode=").append(generateEpisode);
+        postProcessing.append(", clearOutputDir=").append(clearOutputDir);
+        postProcessing.append(", createJavaDocAnnotations=").append(createJavaDocAnnotations);
+        postProcessing.append(", javaDocRenderer=").append(javaDocRenderer == null
+                ? STANDARD_JAVADOC_RENDERER.getClass().getName()
+                : javaDocRenderer.getClass().getName());
+        postProcessing.append(", transformSchemas=").append(transformSchemas);
+        manifest.add("configuration", "postProcessing", ContentDigester.digest(postProcessing.toString()));
 
-                    // Can't determine if the staleFile is younger than this source.
-                    // Re-generate to be on the safe side.
-                    stale = true;
-                    break;
-                }
+        // All done.
+        return isStale(manifest);
+    }
 
-                try {
-                    if (sourceFileConnection.getLastModified() > staleFileLastModified) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isOutputDirectoryCacheable() {
+        return clearOutputDir;
+    }
 
-                        if (getLog().isDebugEnabled()) {
-                            getLog().debug(current.toString() + " is newer than the stale flag file.");
-                        }
-                        stale = true;
-                    }
-                } finally {
-                    if (sourceFileConnection instanceof HttpURLConnection) {
-                        ((HttpURLConnection) sourceFileConnection).disconnect();
-                    }
-                }
-            }
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void completeRestoreFromGenerationCache() {
 
-        // All done.
-        return stale;
+        // SchemaGen generates nothing but the files within the outputDirectory.
     }
 
     /**
@@ -302,7 +333,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
     @Override
     protected boolean performExecution() throws MojoExecutionException, MojoFailureException {
 
-        boolean updateStaleFileTimestamp = false;
+        boolean updateStaleFile = false;
         ToolExecutionEnvironment environment = null;
 
         try {
@@ -320,7 +351,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
             // Configure the ThreadContextClassLoaderBuilder, to enable synthesizing a correct ClassPath for the tool.
             final ThreadContextClassLoaderBuilder classLoaderBuilder = ThreadContextClassLoaderBuilder
                     .createFor(this.getClass(), getLog())
-                    .addPaths(getClasspath())
+                    .addPaths(getResolvedClasspath())
                     .addPaths(getProject().getCompileSourceRoots());
 
             final LocaleFacet localeFacet = locale == null ? null : LocaleFacet.createFor(locale, getLog());
@@ -344,21 +375,24 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
             environment.setup();
 
             // Compile the SchemaGen arguments
-            final List<URL> sources = getSources();
+            final List<URL> sources = getResolvedSources();
             final String[] schemaGenArguments = getSchemaGenArguments(
                     environment.getClassPathAsArgument(),
                     STANDARD_EPISODE_FILENAME,
                     sources);
 
             // Ensure that the outputDirectory and workDirectory exists.
-            // Clear them if configured to do so.
-            FileSystemUtilities.createDirectory(getOutputDirectory(), clearOutputDir);
+            // Clear the workDirectory if configured to do so. A cleared outputDirectory is instead populated
+            // within the (cleared) staging directory, which is synchronized into the outputDirectory.
+            final File targetDirectory = clearOutputDir ? getStagingDirectory() : getOutputDirectory();
+            FileSystemUtilities.createDirectory(getOutputDirectory(), false);
             FileSystemUtilities.createDirectory(getWorkDirectory(), clearOutputDir);
+            FileSystemUtilities.createDirectory(targetDirectory, clearOutputDir);
 
             // Do we need to re-create the episode file's parent directory.
             final boolean reCreateEpisodeFileParentDirectory = generateEpisode && clearOutputDir;
             if (reCreateEpisodeFileParentDirectory) {
-                getEpisodeFile(STANDARD_EPISODE_FILENAME);
+                getSchemaGenEpisodeFile(STANDARD_EPISODE_FILENAME);
             }
 
             try {
@@ -367,9 +401,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
                 // logSystemPropertiesAndBasedir();
 
                 // Fire the SchemaGenerator
-                final int result = SchemaGenerator.run(
-                        schemaGenArguments,
-                        Thread.currentThread().getContextClassLoader());
+                final int result = runSchemaGenerator(schemaGenArguments);
 
                 if (SCHEMAGEN_INCORRECT_OPTIONS == result) {
                     printSchemaGenCommandAndThrowException(projectBasedirPath,
@@ -391,12 +423,14 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
                 final List<File> toCopy = FileSystemUtilities.resolveRecursively(
                         Arrays.asList(getWorkDirectory()),
                         exclusionFilters, getLog());
+                final CanonicalPathCache canonicalPaths = getCanonicalPathCache();
+                final String workDirectoryPath = canonicalPaths.getCanonicalPath(getWorkDirectory());
                 for (File current : toCopy) {
 
                     // Get the path to the current file
-                    final String currentPath = FileSystemUtilities.getCanonicalPath(current.getAbsoluteFile());
-                    final File target = new File(getOutputDirectory(),
-                            FileSystemUtilities.relativize(currentPath, getWorkDirectory()));
+                    final String currentPath = canonicalPaths.getCanonicalPath(current.getAbsoluteFile());
+                    final File target = new File(targetDirectory,
+                            FileSystemUtilities.relativize(currentPath, workDirectoryPath));
 
                     // Copy the file to the same relative structure within the output directory.
                     FileSystemUtilities.createDirectory(target.getParentFile(), false);
@@ -404,21 +438,20 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
                 }
 
                 //
-                // The XSD post-processing should be applied in the following order:
+                // The XSD post-processing is applied in a single pass over each generated XSD, where each
+                // node is offered to the NodeProcessors in the following order:
                 //
                 // 1. [XsdAnnotationProcessor]:         Inject JavaDoc annotations.
                 // 2. [ChangeNamespacePrefixProcessor]: Change namespace prefixes within XSDs.
-                // 3. [ChangeFilenameProcessor]:        Change the fileNames of XSDs.
+                // 3. [ChangeFilenameProcessor]:        Change the schemaLocations of imported XSDs.
+                //
+                // Thereafter, the fileNames of the XSDs are changed as configured.
                 //
 
                 final boolean performPostProcessing = createJavaDocAnnotations || transformSchemas != null;
                 if (performPostProcessing) {
 
-                    // Map the XML Namespaces to their respective XML URIs (and reverse)
-                    // The keys are the generated 'vanilla' XSD file names.
-                    final Map<String, SimpleNamespaceResolver> resolverMap =
-                            XsdGeneratorHelper.getFileNameToResolverMap(getOutputDirectory());
-
+                    final List<NodeProcessor> javaDocProcessors = new ArrayList<NodeProcessor>();
                     if (createJavaDocAnnotations) {
 
                         if (getLog().isInfoEnabled()) {
@@ -447,40 +480,36 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
                         final JavaDocExtractor extractor = new JavaDocExtractor(getLog()).addSourceFiles(files);
                         final SearchableDocumentation javaDocs = extractor.process();
 
-                        // Modify the 'vanilla' generated XSDs by inserting the JavaDoc as annotations
+                        // Inject the JavaDoc as annotations into the 'vanilla' generated XSDs
                         final JavaDocRenderer renderer = javaDocRenderer == null
                                 ? STANDARD_JAVADOC_RENDERER
                                 : javaDocRenderer;
-                        final int numProcessedFiles = XsdGeneratorHelper.insertJavaDocAsAnnotations(getLog(),
-                                getOutputDirectory(),
-                                javaDocs,
-                                renderer);
-
-                        if (getLog().isDebugEnabled()) {
-                            getLog().info("XSD post-processing: " + numProcessedFiles + " files processed.");
-                        }
+                        javaDocProcessors.add(new XsdAnnotationProcessor(javaDocs, renderer));
                     }
 
-                    if (transformSchemas != null) {
+                    if (transformSchemas != null && getLog().isInfoEnabled()) {
+                        getLog().info("XSD post-processing: Renaming and converting XSDs.");
+                    }
 
-                        if (getLog().isInfoEnabled()) {
-                            getLog().info("XSD post-processing: Renaming and converting XSDs.");
-                        }
+                    // Parse, process and write each generated XSD once.
+                    final int numThreads = getPostProcessingThreads();
+                    final int numChangedFiles = XsdGeneratorHelper.postProcessGeneratedSchemas(getLog(),
+                            targetDirectory,
+                            javaDocProcessors,
+                            transformSchemas,
+                            streamingThreshold,
+                            numThreads);
 
-                        // Transform all namespace prefixes as requested.
-                        XsdGeneratorHelper.replaceNamespacePrefixes(resolverMap,
-                                transformSchemas,
-                                getLog(),
-                                getOutputDirectory());
-
-                        // Rename all generated schema files as requested.
-                        XsdGeneratorHelper.renameGeneratedSchemaFiles(resolverMap,
-                                transformSchemas,
-                                getLog(),
-                                getOutputDirectory());
+                    if (getLog().isDebugEnabled()) {
+                        getLog().debug("XSD post-processing: " + numChangedFiles + " files changed.");
                     }
                 }
 
+                // Synchronize the post-processed XSDs into the outputDirectory.
+                if (clearOutputDir) {
+                    FileSystemUtilities.synchronizeDirectory(targetDirectory, getOutputDirectory(), getLog());
+                }
+
             } catch (MojoExecutionException e) {
                 throw e;
             } catch (Exception e) {
@@ -518,8 +547,8 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
             // Indicate that the output directory was updated.
             getBuildContext().refresh(getOutputDirectory());
 
-            // Update the modification timestamp of the staleFile.
-            updateStaleFileTimestamp = true;
+            // Update the staleFile.
+            updateStaleFile = true;
 
         } finally {
 
@@ -530,7 +559,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
         }
 
         // All done.
-        return updateStaleFileTimestamp;
+        return updateStaleFile;
     }
 
     /**
@@ -563,27 +592,122 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
     // Private helpers
     //
 
-    private String[] getSchemaGenArguments(final String classPath,
-            final String episodeFileNameOrNull,
-            final List<URL> sources)
-            throws MojoExecutionException {
+    /**
+     * Adds the structural fingerprint of each supplied Java source to the given StaleManifest. As parsing all
+     * sources is considerably more costly than digesting them, the content digest of each source is stored as a
+     * hint alongside its structural fingerprint; the structural fingerprint of a source whose content digest is
+     * unchanged since the last execution is reused rather than re-calculated.
+     *
+     * @param manifest The StaleManifest to which the structural fingerprints should be added.
+     * @param sources  The Java sources.
+     */
+    private void addStructuralFingerprints(final StaleManifest manifest, final List<URL> sources) {
 
-        final ArgumentBuilder builder = new ArgumentBuilder();
+        final StaleManifest previous = getPreviousStaleManifest();
+        final SortedMap<String, String> contentDigests = ContentDigester.digest(sources, getLog());
+        final String encoding = getEncoding(false);
 
-        // Add all flags on the form '-flagName'
-        // builder.withFlag();
+        // Fingerprints calculated with JavaDoc differ from the ones calculated without it.
+        final String hintSuffix = createJavaDocAnnotations ? "+javadoc" : "";
 
-        // Add all arguments on the form '-argumentName argumentValue'
-        // (i.e. in 2 separate elements of the returned String[])
-        builder.withNamedArgument("encoding", getEncoding(true));
-        builder.withNamedArgument("d", getWorkDirectory().getAbsolutePath());
-        builder.withNamedArgument("classpath", classPath);
+        int numParsed = 0;
+        for (URL current : sources) {
 
-        if (episodeFileNameOrNull != null) {
-            final File episodeFile = getEpisodeFile(episodeFileNameOrNull);
-            builder.withNamedArgument("episode", FileSystemUtilities.getCanonicalPath(episodeFile));
+            final String key = current.toString();
+            final String contentDigest = contentDigests.get(key);
+            final String hint = contentDigest + hintSuffix;
+
+            if (ContentDigester.UNREADABLE.equals(contentDigest)) {
+                manifest.add("java", key, ContentDigester.UNREADABLE);
+                continue;
+            }
+
+            String fingerprint = null;
+            if (previous != null && hint.equals(previous.getHint("javaContent", key))) {
+                fingerprint = previous.getEntry("java", key);
+            }
+
+            if (fingerprint == null) {
+                try {
+                    fingerprint = JavaApiFingerprinter.fingerprint(current, encoding, createJavaDocAnnotations);
+                    numParsed++;
+                } catch (IOException e) {
+
+                    if (getLog().isDebugEnabled()) {
+                        getLog().debug("Could not calculate the structural fingerprint of [" + key
+                                + "]. Using its content digest instead.", e);
+                    }
+                    fingerprint = contentDigest;
+                }
+            }
+
+            manifest.add("java", key, fingerprint);
+            manifest.addHint("javaContent", key, hint);
+        }
+
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("Calculated structural fingerprints of " + numParsed + " of " + sources.size()
+                    + " Java sources. The remaining fingerprints were unchanged since the last execution.");
+        }
+    }
+
+    /**
+     * @return The number of threads used to post-process generated XSD files. Custom JavaDocRenderers are only
+     * invoked concurrently if the number of threads is configured explicitly.
+     */
+    private int getPostProcessingThreads() {
+
+        if (postProcessingThreads > 0) {
+            return postProcessingThreads;
+        }
+
+        if (javaDocRenderer != null && javaDocRenderer.getClass() != DefaultJavaDocRenderer.class) {
+
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Post-processing XSDs using a single thread, since the custom javaDocRenderer ["
+                        + javaDocRenderer.getClass().getName() + "] may not be thread-safe.");
+            }
+            return 1;
+        }
+
+        // All done.
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs SchemaGen within the worker JVM (if configured and available), or within this JVM.
+     *
+     * @param schemaGenArguments The SchemaGen arguments.
+     * @return The exit code of SchemaGen.
+     * @throws Exception if SchemaGen could not be run.
+     */
+    private int runSchemaGenerator(final String[] schemaGenArguments) throws Exception {
+
+        final ToolWorkerClient toolWorkerClient = getToolWorkerClient();
+        if (toolWorkerClient != null) {
+
+            // Synthesize the same ClassPath as given to the ThreadContextClassLoader within this JVM.
+            final List<String> toolClassPath = new ArrayList<String>(getResolvedClasspath());
+            toolClassPath.addAll(getProject().getCompileSourceRoots());
+
+            try {
+                return toolWorkerClient.runSchemaGen(schemaGenArguments, toolClassPath);
+            } catch (WorkerUnavailableException e) {
+                getLog().warn("Running SchemaGen within the Maven JVM. " + e.getMessage(), e.getCause());
+            }
         }
 
+        // All done.
+        return SchemaGenerator.run(schemaGenArguments, Thread.currentThread().getContextClassLoader());
+    }
+
+    private String[] getSchemaGenArguments(final String classPath,
+            final String episodeFileNameOrNull,
+            final List<URL> sources)
+            throws MojoExecutionException {
+
+        final ArgumentBuilder builder = createSchemaGenArgumentBuilder(classPath, episodeFileNameOrNull);
+
         try {
 
             //
@@ -613,6 +737,48 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
         return logAndReturnToolArguments(builder.build(), "SchemaGen");
     }
 
+    private ArgumentBuilder createSchemaGenArgumentBuilder(final String classPath,
+            final String episodeFileNameOrNull)
+            throws MojoExecutionException {
+
+        final ArgumentBuilder builder = new ArgumentBuilder();
+
+        // Add all flags on the form '-flagName'
+        // builder.withFlag();
+
+        // Add all arguments on the form '-argumentName argumentValue'
+        // (i.e. in 2 separate elements of the returned String[])
+        builder.withNamedArgument("encoding", getEncoding(true));
+        builder.withNamedArgument("d", getWorkDirectory().getAbsolutePath());
+        builder.withNamedArgument("classpath", classPath);
+
+        if (episodeFileNameOrNull != null) {
+            final File episodeFile = getSchemaGenEpisodeFile(episodeFileNameOrNull);
+            builder.withNamedArgument("episode", FileSystemUtilities.getCanonicalPath(episodeFile));
+        }
+
+        // All done.
+        return builder;
+    }
+
+    /**
+     * Retrieves the episode file written by the SchemaGenerator. If the outputDirectory should be cleared, the
+     * episode file is written to the workDirectory, from which it is copied to the staging directory along with
+     * the generated XSDs.
+     */
+    private File getSchemaGenEpisodeFile(final String episodeFileName) throws MojoExecutionException {
+
+        if (!clearOutputDir) {
+            return getEpisodeFile(episodeFileName);
+        }
+
+        final File metaInfDirectory = new File(getWorkDirectory(), "META-INF");
+        FileSystemUtilities.createDirectory(metaInfDirectory, false);
+
+        // All done.
+        return new File(metaInfDirectory, episodeFileName);
+    }
+
     /**
      * <p>The SchemaGenerator does not support directories as arguments, implying we must resolve source
      * files in the compilation unit. This fact is shown when supplying a directory argument as source, when
@@ -646,6 +812,8 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
         final SortedMap<String, String> className2SourcePath = new TreeMap<String, String>();
         final File baseDir = getProject().getBasedir();
         final File userDir = new File(System.getProperty("user.dir"));
+        final CanonicalPathCache canonicalPaths = getCanonicalPathCache();
+        final String userDirPath = canonicalPaths.getCanonicalPath(userDir);
         final String encoding = getEncoding(true);
 
         // 1) Find/add all sources available in the compilation unit.
@@ -655,16 +823,16 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
 
             // Calculate the relative path for the current source
             final String relativePath = FileSystemUtilities.relativize(
-                    FileSystemUtilities.getCanonicalPath(sourceCodeFile),
-                    userDir);
+                    canonicalPaths.getCanonicalPath(sourceCodeFile),
+                    userDirPath);
 
             if (getLog().isDebugEnabled()) {
                 getLog().debug("SourceCodeFile ["
-                        + FileSystemUtilities.getCanonicalPath(sourceCodeFile)
-                        + "] and userDir [" + FileSystemUtilities.getCanonicalPath(userDir)
+                        + canonicalPaths.getCanonicalPath(sourceCodeFile)
+                        + "] and userDir [" + userDirPath
                         + "] ==> relativePath: "
                         + relativePath
-                        + ". (baseDir: " + FileSystemUtilities.getCanonicalPath(baseDir) + "]");
+                        + ". (baseDir: " + canonicalPaths.getCanonicalPath(baseDir) + "]");
             }
 
             // Find the Java class(es) within the source.
@@ -729,7 +897,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
         Filters.initialize(getLog(), CLASS_INCLUDE_FILTERS);
 
         final List<URL> classPathURLs = new ArrayList<URL>();
-        for (String current : getClasspath()) {
+        for (String current : getResolvedClasspath()) {
 
             final File currentFile = new File(current);
             if (FileSystemUtilities.EXISTING_FILE.accept(currentFile)) {
@@ -743,7 +911,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
                 // FileSystemUtilities.filterFiles(baseDir, )
                 if (getLog().isDebugEnabled()) {
                     getLog().debug("TODO: Resolve and add bytecode files within: ["
-                            + FileSystemUtilities.getCanonicalPath(currentFile) + "]");
+                            + canonicalPaths.getCanonicalPath(currentFile) + "]");
                 }
 
                 // Find the byte code files within the current directory.
@@ -756,14 +924,17 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
                     }
                 }
 
+                final String currentDirectoryPath = canonicalPaths.getCanonicalPath(
+                        currentFile.getAbsoluteFile());
                 for(File currentByteCodeFile : byteCodeFiles) {
 
-                    final String currentCanonicalPath = FileSystemUtilities.getCanonicalPath(
+                    final String currentCanonicalPath = canonicalPaths.getCanonicalPath(
                             currentByteCodeFile.getAbsoluteFile());
 
                     final String relativized = FileSystemUtilities.relativize(currentCanonicalPath,
-                            FileSystemUtilities.getCanonicalFile(currentFile.getAbsoluteFile()));
-                    final String pathFromUserDir = FileSystemUtilities.relativize(currentCanonicalPath, userDir);
+                            currentDirectoryPath);
+                    final String pathFromUserDir = FileSystemUtilities.relativize(currentCanonicalPath,
+                            userDirPath);
 
                     final String className = relativized.substring(0, relativized.indexOf(".class"))
                             .replace("/", ".")
@@ -795,7 +966,7 @@ public abstract class AbstractXsdGeneratorMojo extends AbstractJaxbMojo {
 
             // TODO: FIX THIS!
             // Get the class information data from the supplied URL
-            for (String currentClassPathElement : getClasspath()) {
+            for (String currentClassPathElement : getResolvedClasspath()) {
 
                 if(getLog().isDebugEnabled()) {
                     getLog().debug("Checking class path element: [" + currentClassPathElement + "]");
@@ -0,0 +1,267 @@
+package org.codehaus.mojo.jaxb2.schemageneration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.thoughtworks.qdox.JavaProjectBuilder;
+import com.thoughtworks.qdox.model.DocletTag;
+import com.thoughtworks.qdox.model.JavaAnnotatedElement;
+import com.thoughtworks.qdox.model.JavaAnnotation;
+import com.thoughtworks.qdox.model.JavaClass;
+import com.thoughtworks.qdox.model.JavaConstructor;
+import com.thoughtworks.qdox.model.JavaField;
+import com.thoughtworks.qdox.model.JavaMethod;
+import com.thoughtworks.qdox.model.JavaPackage;
+import com.thoughtworks.qdox.model.JavaParameter;
+import com.thoughtworks.qdox.model.JavaSource;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Calculates a structural fingerprint of a Java source file, covering only the parts of its API which may
+ * affect the XML Schema generated by SchemaGen. Edits which cannot change the generated XML Schema - such as
+ * changes to method bodies, initializers of non-constant fields, private helper methods or formatting - do not
+ * change the fingerprint. The fingerprint covers:</p>
+ * <ul>
+ * <li>Type names, modifiers, type parameters, superclasses, interfaces and enum constants.</li>
+ * <li>Fields (name, type and modifiers), and the initializers of constants (i.e. static final fields), since
+ * annotations may refer to constants whose values define names or namespaces within the XML Schema.</li>
+ * <li>Constructors, and accessors (i.e. getters, setters and is-methods) or otherwise annotated methods.</li>
+ * <li>All annotations (with their values) except the ones in the {@code java.lang} package, including
+ * package-level annotations within {@code package-info.java} files.</li>
+ * <li>Optionally, the JavaDoc of all the above (used when the generated XML Schema is annotated with
+ * XSD documentation derived from JavaDoc).</li>
+ * </ul>
+ *
+ * @since 2.3
+ */
+public final class JavaApiFingerprinter {
+
+    // Internal state
+    private static final String JAVA_LANG_PACKAGE = "java.lang.";
+    private static final String[] ACCESSOR_PREFIXES = {"get", "set", "is"};
+
+    /*
+     * Hide the constructor for utility classes.
+     */
+    private JavaApiFingerprinter() {
+        // Do nothing
+    }
+
+    /**
+     * Calculates the structural fingerprint of the supplied Java source file.
+     *
+     * @param javaSource     The URL of a Java source file.
+     * @param encoding       The encoding of the Java source file.
+     * @param includeJavaDoc if {@code true}, the JavaDoc comments and tags are included in the fingerprint.
+     * @return The hex-encoded digest of the JAXB-relevant structure of the supplied Java source file.
+     * @throws IOException if the Java source file could not be read or parsed.
+     */
+    public static String fingerprint(final URL javaSource, final String encoding, final boolean includeJavaDoc)
+            throws IOException {
+        return ContentDigester.digest(describe(javaSource, encoding, includeJavaDoc));
+    }
+
+    /**
+     * Creates the canonical description of the JAXB-relevant structure of the supplied Java source file,
+     * from which the structural fingerprint is calculated.
+     *
+     * @param javaSource     The URL of a Java source file.
+     * @param encoding       The encoding of the Java source file.
+     * @param includeJavaDoc if {@code true}, the JavaDoc comments and tags are included in the description.
+     * @return A canonical description of the JAXB-relevant structure of the supplied Java source file.
+     * @throws IOException if the Java source file could not be read or parsed.
+     */
+    public static String describe(final URL javaSource, final String encoding, final boolean includeJavaDoc)
+            throws IOException {
+
+        // Check sanity
+        Validate.notNull(javaSource, "javaSource");
+        Validate.notEmpty(encoding, "encoding");
+
+        final JavaProjectBuilder builder = new JavaProjectBuilder();
+        builder.setEncoding(encoding);
+
+        final JavaSource source;
+        try {
+            source = builder.addSource(javaSource);
+        } catch (RuntimeException e) {
+
+            // QDox signals parse errors using RuntimeExceptions.
+            throw new IOException("Could not parse [" + javaSource + "]: " + e.getMessage());
+        }
+
+        final StringBuilder toReturn = new StringBuilder();
+
+        // Package-level annotations are found within package-info.java files.
+        final JavaPackage javaPackage = source.getPackage();
+        if (javaPackage != null) {
+            toReturn.append("package ").append(javaPackage.getName()).append('\n');
+            appendAnnotatedElement(toReturn, javaPackage, includeJavaDoc, "  ");
+        }
+
+        for (JavaClass current : source.getClasses()) {
+            appendClass(toReturn, current, includeJavaDoc, "");
+        }
+
+        // All done.
+        return toReturn.toString();
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void appendClass(final StringBuilder builder,
+            final JavaClass javaClass,
+            final boolean includeJavaDoc,
+            final String indent) {
+
+        builder.append(indent).append(javaClass.isEnum() ? "enum " : javaClass.isInterface() ? "interface " : "class ")
+                .append(javaClass.getGenericFullyQualifiedName())
+                .append(' ').append(javaClass.getModifiers());
+
+        if (javaClass.getSuperClass() != null) {
+            builder.append(" extends ").append(javaClass.getSuperClass().getGenericFullyQualifiedName());
+        }
+        for (JavaClass current : javaClass.getInterfaces()) {
+            builder.append(" implements ").append(current.getGenericFullyQualifiedName());
+        }
+        builder.append('\n');
+
+        final String memberIndent = indent + "  ";
+        appendAnnotatedElement(builder, javaClass, includeJavaDoc, memberIndent);
+
+        for (JavaField current : javaClass.getFields()) {
+
+            builder.append(memberIndent).append(current.isEnumConstant() ? "constant " : "field ")
+                    .append(current.getName()).append(' ')
+                    .append(current.getType().getGenericFullyQualifiedName()).append(' ')
+                    .append(current.getModifiers());
+            if (isConstant(javaClass, current) && current.getInitializationExpression() != null) {
+                builder.append(" = ").append(current.getInitializationExpression().trim());
+            }
+            builder.append('\n');
+            appendAnnotatedElement(builder, current, includeJavaDoc, memberIndent + "  ");
+        }
+
+        for (JavaConstructor current : javaClass.getConstructors()) {
+
+            builder.append(memberIndent).append("constructor ")
+                    .append(current.getModifiers());
+            appendParameters(builder, current.getParameters());
+            appendAnnotatedElement(builder, current, includeJavaDoc, memberIndent + "  ");
+        }
+
+        for (JavaMethod current : javaClass.getMethods()) {
+
+            if (!isAccessor(current) && !hasRelevantAnnotations(current)) {
+                continue;
+            }
+
+            builder.append(memberIndent).append("method ").append(current.getName()).append(' ')
+                    .append(current.getReturnType().getGenericFullyQualifiedName()).append(' ')
+                    .append(current.getModifiers());
+            appendParameters(builder, current.getParameters());
+            appendAnnotatedElement(builder, current, includeJavaDoc, memberIndent + "  ");
+        }
+
+        for (JavaClass current : javaClass.getNestedClasses()) {
+            appendClass(builder, current, includeJavaDoc, memberIndent);
+        }
+    }
+
+    private static void appendParameters(final StringBuilder builder, final List<JavaParameter> parameters) {
+
+        builder.append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            builder.append(i == 0 ? "" : ", ").append(parameters.get(i).getType().getGenericFullyQualifiedName());
+        }
+        builder.append(")\n");
+    }
+
+    private static void appendAnnotatedElement(final StringBuilder builder,
+            final JavaAnnotatedElement element,
+            final boolean includeJavaDoc,
+            final String indent) {
+
+        for (JavaAnnotation current : element.getAnnotations()) {
+            if (isRelevant(current)) {
+
+                // Sort the annotation parameters, to be independent of their order within the source.
+                final Map<String, Object> parameters = new TreeMap<String, Object>(current.getNamedParameterMap());
+                builder.append(indent).append('@').append(current.getType().getFullyQualifiedName())
+                        .append(parameters).append('\n');
+            }
+        }
+
+        if (includeJavaDoc) {
+
+            if (element.getComment() != null) {
+                builder.append(indent).append("/** ").append(element.getComment().trim()).append('\n');
+            }
+            for (DocletTag current : element.getTags()) {
+                builder.append(indent).append(" * @").append(current.getName()).append(' ')
+                        .append(current.getValue()).append('\n');
+            }
+        }
+    }
+
+    private static boolean isConstant(final JavaClass owner, final JavaField field) {
+
+        // Fields of interfaces are implicitly static and final.
+        return !field.isEnumConstant() && (owner.isInterface() || (field.isStatic() && field.isFinal()));
+    }
+
+    private static boolean isAccessor(final JavaMethod method) {
+
+        for (String current : ACCESSOR_PREFIXES) {
+            if (method.getName().startsWith(current)) {
+                return true;
+            }
+        }
+
+        // Not an accessor.
+        return false;
+    }
+
+    private static boolean hasRelevantAnnotations(final JavaMethod method) {
+
+        for (JavaAnnotation current : method.getAnnotations()) {
+            if (isRelevant(current)) {
+                return true;
+            }
+        }
+
+        // No relevant annotations found.
+        return false;
+    }
+
+    private static boolean isRelevant(final JavaAnnotation annotation) {
+
+        // Annotations such as @Override, @Deprecated and @SuppressWarnings never affect SchemaGen.
+        return !annotation.getType().getFullyQualifiedName().startsWith(JAVA_LANG_PACKAGE);
+    }
+}
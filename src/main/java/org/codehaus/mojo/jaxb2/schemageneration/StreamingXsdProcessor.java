@@ -0,0 +1,488 @@
+package org.codehaus.mojo.jaxb2.schemageneration;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.NodeProcessor;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.SimpleNamespaceResolver;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.plexus.util.IOUtil;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * <p>Streaming counterpart of the DOM-based XSD post-processing within {@link XsdGeneratorHelper}, used for
+ * generated XSD files too large to be parsed into a DOM Document. The XSD is read and written as StAX events,
+ * while a skeleton DOM Element is created for each open element only - holding its attributes and namespace
+ * declarations, and with the skeletons of its enclosing elements as ancestors. The NodeProcessors are applied to
+ * each skeleton before its start tag is written, implying that the existing NodeProcessors can be used unaltered
+ * and that the memory used is bounded by the nesting depth rather than the size of the XSD.</p>
+ * <p>NodeProcessors may alter the name and attributes of the element they process, and insert child nodes before
+ * its existing children (as is done when injecting XSD annotations). Inserted child nodes are written directly
+ * after the start tag. As opposed to the DOM-based post-processing, the XSD is not re-indented; all existing
+ * whitespace is retained.</p>
+ *
+ * @since 2.3
+ */
+final class StreamingXsdProcessor {
+
+    // Internal state
+    // StAX factories need not be thread-safe; all readers and writers are created while holding their lock.
+    private static final XMLInputFactory INPUT_FACTORY;
+    private static final XMLOutputFactory OUTPUT_FACTORY;
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final String XMLNS = "xmlns";
+
+    static {
+
+        // Create the factories from the plugin ClassLoader rather than the ThreadContext ClassLoader, which may
+        // be a (cached, and eventually closed) project ClassLoader.
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+        currentThread.setContextClassLoader(StreamingXsdProcessor.class.getClassLoader());
+        try {
+            INPUT_FACTORY = XMLInputFactory.newInstance();
+            OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+        } finally {
+            currentThread.setContextClassLoader(originalClassLoader);
+        }
+
+        // Never resolve external entities or DTDs; the generated XSDs need neither.
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    }
+
+    /**
+     * Hide constructor for utility classes.
+     */
+    private StreamingXsdProcessor() {
+        // Do nothing.
+    }
+
+    /**
+     * Creates a SimpleNamespaceResolver for the supplied XSD file without parsing it into a DOM Document. Only the
+     * root element and the namespace declarations of nested elements are retained while streaming through the XSD.
+     *
+     * @param xsdFile The XSD file from which to collect namespace data.
+     * @return A SimpleNamespaceResolver holding the namespace data of the supplied XSD file.
+     * @throws IOException if the XSD file could not be read.
+     */
+    static SimpleNamespaceResolver getNamespaceResolver(final File xsdFile) throws IOException {
+
+        // Check sanity
+        Validate.notNull(xsdFile, "xsdFile");
+
+        final Document skeleton = XsdGeneratorHelper.newDocument();
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        try {
+
+            in = new BufferedInputStream(new FileInputStream(xsdFile));
+            reader = createXMLStreamReader(in);
+
+            Element root = null;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+
+                    if (root == null) {
+
+                        // Retain the root element, including its attributes (i.e. its targetNamespace).
+                        root = createElement(skeleton, reader.getPrefix(), reader.getLocalName(),
+                                reader.getNamespaceURI());
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            setAttribute(root, reader.getAttributePrefix(i), reader.getAttributeLocalName(i),
+                                    reader.getAttributeNamespace(i), reader.getAttributeValue(i));
+                        }
+                        addNamespaceDeclarations(root, reader);
+                        skeleton.appendChild(root);
+
+                    } else if (reader.getNamespaceCount() > 0) {
+
+                        // Retain only the namespace declarations of nested elements.
+                        final Element nested = createElement(skeleton, reader.getPrefix(), reader.getLocalName(),
+                                reader.getNamespaceURI());
+                        addNamespaceDeclarations(nested, reader);
+                        root.appendChild(nested);
+                    }
+                }
+            }
+
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not read XSD file [" + xsdFile.getAbsolutePath() + "]", e);
+        } finally {
+            close(reader);
+            IOUtil.close(in);
+        }
+
+        // All done.
+        return new SimpleNamespaceResolver(xsdFile.getName(), skeleton);
+    }
+
+    /**
+     * Streams the source XSD file into the target file, applying the supplied NodeProcessor to the skeleton of
+     * each element (and, recursively, to any child nodes the NodeProcessor inserted into it).
+     *
+     * @param source    The XSD file to process.
+     * @param target    The file to which the processed XSD should be written. Must not be the source file.
+     * @param processor The NodeProcessor to apply to each element.
+     * @throws IOException if the XSD could not be read or written.
+     */
+    static void process(final File source, final File target, final NodeProcessor processor) throws IOException {
+
+        // Check sanity
+        Validate.notNull(source, "source");
+        Validate.notNull(target, "target");
+        Validate.notNull(processor, "processor");
+        Validate.isTrue(!source.equals(target), "Cannot process a file onto itself.");
+
+        final Document skeleton = XsdGeneratorHelper.newDocument();
+        InputStream in = null;
+        XMLEventReader reader = null;
+        Writer out = null;
+        XMLStreamWriter writer = null;
+        try {
+
+            in = new BufferedInputStream(new FileInputStream(source));
+            reader = createXMLEventReader(in);
+
+            Node parent = skeleton;
+            while (reader.hasNext()) {
+
+                final XMLEvent event = reader.nextEvent();
+                switch (event.getEventType()) {
+
+                    case XMLStreamConstants.START_DOCUMENT:
+
+                        // Write the XML declaration as is, since XMLStreamWriters cannot emit 'standalone'.
+                        final StartDocument startDocument = (StartDocument) event;
+                        final String encoding = startDocument.encodingSet()
+                                ? startDocument.getCharacterEncodingScheme()
+                                : DEFAULT_ENCODING;
+                        out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(target)),
+                                encoding);
+                        out.write("<?xml version=\"" + startDocument.getVersion()
+                                + "\" encoding=\"" + encoding + "\""
+                                + (startDocument.standaloneSet()
+                                ? " standalone=\"" + (startDocument.isStandalone() ? "yes" : "no") + "\""
+                                : "")
+                                + "?>\n");
+                        writer = createXMLStreamWriter(out);
+                        break;
+
+                    case XMLStreamConstants.START_ELEMENT:
+
+                        // Create the skeleton of the current element, and let the processor process it.
+                        final Element current = createSkeleton(skeleton, event.asStartElement());
+                        parent.appendChild(current);
+                        if (processor.accept(current)) {
+                            processor.process(current);
+                        }
+
+                        // Process and write any child nodes inserted by the processor, before discarding them.
+                        final boolean empty = current.getFirstChild() == null && reader.peek().isEndElement();
+                        writeStartTag(writer, current, empty);
+                        while (current.getFirstChild() != null) {
+
+                            final Node inserted = current.getFirstChild();
+                            if (inserted.getNodeType() == Node.ELEMENT_NODE) {
+                                XsdGeneratorHelper.process(inserted, true, processor);
+                            }
+                            writeNode(writer, inserted);
+                            current.removeChild(inserted);
+                        }
+
+                        if (empty) {
+
+                            // The start tag was written as an empty element; skip its end tag.
+                            reader.nextEvent();
+                            parent.removeChild(current);
+                        } else {
+                            parent = current;
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+
+                        // The skeleton of the ended element is no longer needed.
+                        writer.writeEndElement();
+                        final Node ended = parent;
+                        parent = ended.getParentNode();
+                        parent.removeChild(ended);
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.CDATA:
+
+                        final Characters characters = event.asCharacters();
+                        if (characters.isCData()) {
+                            writer.writeCData(characters.getData());
+                        } else if (parent != skeleton) {
+                            writer.writeCharacters(characters.getData());
+                        }
+                        break;
+
+                    case XMLStreamConstants.COMMENT:
+                        writer.writeComment(((javax.xml.stream.events.Comment) event).getText());
+                        break;
+
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        final javax.xml.stream.events.ProcessingInstruction pi =
+                                (javax.xml.stream.events.ProcessingInstruction) event;
+                        writer.writeProcessingInstruction(pi.getTarget(), pi.getData());
+                        break;
+
+                    case XMLStreamConstants.END_DOCUMENT:
+                        writer.writeEndDocument();
+                        break;
+
+                    default:
+                        // Other events (such as DTDs) are not emitted by SchemaGen.
+                        break;
+                }
+            }
+
+            writer.flush();
+            out.write("\n");
+
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not process XSD file [" + source.getAbsolutePath() + "]", e);
+        } finally {
+            close(writer);
+            IOUtil.close(out);
+            close(reader);
+            IOUtil.close(in);
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static XMLStreamReader createXMLStreamReader(final InputStream in) throws XMLStreamException {
+        synchronized (INPUT_FACTORY) {
+            return INPUT_FACTORY.createXMLStreamReader(in);
+        }
+    }
+
+    private static XMLEventReader createXMLEventReader(final InputStream in) throws XMLStreamException {
+        synchronized (INPUT_FACTORY) {
+            return INPUT_FACTORY.createXMLEventReader(in);
+        }
+    }
+
+    private static XMLStreamWriter createXMLStreamWriter(final Writer out) throws XMLStreamException {
+        synchronized (OUTPUT_FACTORY) {
+            return OUTPUT_FACTORY.createXMLStreamWriter(out);
+        }
+    }
+
+    private static Element createElement(final Document document,
+            final String prefix,
+            final String localName,
+            final String namespaceURI) {
+
+        final boolean hasPrefix = prefix != null && !prefix.isEmpty();
+        final boolean hasNamespace = namespaceURI != null && !namespaceURI.isEmpty();
+        return document.createElementNS(hasNamespace ? namespaceURI : null,
+                hasPrefix ? prefix + ":" + localName : localName);
+    }
+
+    private static void setAttribute(final Element element,
+            final String prefix,
+            final String localName,
+            final String namespaceURI,
+            final String value) {
+
+        final boolean hasPrefix = prefix != null && !prefix.isEmpty();
+        final boolean hasNamespace = namespaceURI != null && !namespaceURI.isEmpty();
+        element.setAttributeNS(hasNamespace ? namespaceURI : null,
+                hasPrefix ? prefix + ":" + localName : localName,
+                value);
+    }
+
+    private static void setNamespaceDeclaration(final Element element, final String prefix, final String uri) {
+
+        final boolean isDefault = prefix == null || prefix.isEmpty();
+        element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, isDefault ? XMLNS : XMLNS + ":" + prefix, uri);
+    }
+
+    private static void addNamespaceDeclarations(final Element element, final XMLStreamReader reader) {
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            setNamespaceDeclaration(element, reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+        }
+    }
+
+    private static Element createSkeleton(final Document document, final StartElement startElement) {
+
+        final Element toReturn = createElement(document,
+                startElement.getName().getPrefix(),
+                startElement.getName().getLocalPart(),
+                startElement.getName().getNamespaceURI());
+
+        for (Iterator<?> it = startElement.getNamespaces(); it.hasNext(); ) {
+            final Namespace current = (Namespace) it.next();
+            setNamespaceDeclaration(toReturn, current.getPrefix(), current.getNamespaceURI());
+        }
+
+        for (Iterator<?> it = startElement.getAttributes(); it.hasNext(); ) {
+            final Attribute current = (Attribute) it.next();
+            setAttribute(toReturn,
+                    current.getName().getPrefix(),
+                    current.getName().getLocalPart(),
+                    current.getName().getNamespaceURI(),
+                    current.getValue());
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private static void writeStartTag(final XMLStreamWriter writer, final Element element, final boolean empty)
+            throws XMLStreamException {
+
+        final String prefix = element.getPrefix() == null ? "" : element.getPrefix();
+        final String namespaceURI = element.getNamespaceURI() == null ? "" : element.getNamespaceURI();
+        if (empty) {
+            writer.writeEmptyElement(prefix, element.getLocalName(), namespaceURI);
+        } else {
+            writer.writeStartElement(prefix, element.getLocalName(), namespaceURI);
+        }
+
+        final NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+
+            final Attr current = (Attr) attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(current.getNamespaceURI())) {
+
+                if (XMLNS.equals(current.getNodeName())) {
+                    writer.writeDefaultNamespace(current.getValue());
+                } else {
+                    writer.writeNamespace(current.getLocalName(), current.getValue());
+                }
+            } else if (current.getNamespaceURI() == null) {
+                writer.writeAttribute(current.getName(), current.getValue());
+            } else {
+                writer.writeAttribute(current.getPrefix() == null ? "" : current.getPrefix(),
+                        current.getNamespaceURI(),
+                        current.getLocalName(),
+                        current.getValue());
+            }
+        }
+    }
+
+    private static void writeNode(final XMLStreamWriter writer, final Node node) throws XMLStreamException {
+
+        switch (node.getNodeType()) {
+
+            case Node.ELEMENT_NODE:
+                final boolean empty = node.getFirstChild() == null;
+                writeStartTag(writer, (Element) node, empty);
+                if (!empty) {
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        writeNode(writer, child);
+                    }
+                    writer.writeEndElement();
+                }
+                break;
+
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(((CDATASection) node).getData());
+                break;
+
+            case Node.TEXT_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                break;
+
+            case Node.COMMENT_NODE:
+                writer.writeComment(((Comment) node).getData());
+                break;
+
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                final ProcessingInstruction pi = (ProcessingInstruction) node;
+                writer.writeProcessingInstruction(pi.getTarget(), pi.getData());
+                break;
+
+            default:
+                throw new IllegalStateException("Cannot write inserted node [" + node.getNodeName() + "] of type "
+                        + node.getNodeType());
+        }
+    }
+
+    private static void close(final XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Ignore this.
+            }
+        }
+    }
+
+    private static void close(final XMLEventReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Ignore this.
+            }
+        }
+    }
+
+    private static void close(final XMLStreamWriter writer) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (XMLStreamException e) {
+                // Ignore this.
+            }
+        }
+    }
+}
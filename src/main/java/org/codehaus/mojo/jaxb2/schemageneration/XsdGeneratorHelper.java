@@ -34,13 +34,16 @@ import org.codehaus.mojo.jaxb2.shared.Validate;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -59,9 +62,18 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Utility class holding algorithms used when generating XSD schema.
@@ -74,8 +86,25 @@ public final class XsdGeneratorHelper {
     // Constants
     private static final String MISCONFIG = "Misconfiguration detected: ";
     private static TransformerFactory FACTORY;
+    private static DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
     private static final FileFilter RECURSIVE_XSD_FILTER;
 
+    // DocumentBuilders and Transformers are not thread-safe, but may be reused by the thread which created them.
+    // The factories are created from the plugin ClassLoader rather than the ThreadContext ClassLoader, which may
+    // be a (cached, and eventually closed) project ClassLoader.
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            return newDocumentBuilder();
+        }
+    };
+    private static final ThreadLocal<Transformer> TRANSFORMERS = new ThreadLocal<Transformer>() {
+        @Override
+        protected Transformer initialValue() {
+            return newTransformer();
+        }
+    };
+
     /**
      * Hide the constructor for utility classes.
      */
@@ -350,27 +379,229 @@ public final class XsdGeneratorHelper {
         }
 
         // Now, rename the actual files.
-        for (SimpleNamespaceResolver currentResolver : resolverMap.values()) {
-            final String localNamespaceURI = currentResolver.getLocalNamespaceURI();
+        renameFiles(resolverMap.values(), namespaceUriToDesiredFilenameMap, mavenLog, schemaDirectory);
+    }
 
-            if (StringUtils.isEmpty(localNamespaceURI)) {
-                mavenLog.warn("SimpleNamespaceResolver contained no localNamespaceURI; aborting rename.");
-                continue;
+    /**
+     * <p>Post-processes all generated XSD files within the supplied schemaDirectory in a single pass, implying that
+     * each XSD file is read and parsed once, processed by all supplied and configured NodeProcessors within one
+     * traversal of its DOM model, and written only if any NodeProcessor changed it. This replaces invoking
+     * {@link #insertJavaDocAsAnnotations(Log, File, SearchableDocumentation, JavaDocRenderer)},
+     * {@link #replaceNamespacePrefixes(Map, List, Log, File)} and
+     * {@link #renameGeneratedSchemaFiles(Map, List, Log, File)} in sequence - which parse and write each file
+     * several times. Files which are not changed by any NodeProcessor retain their original formatting.</p>
+     * <p>For each node, the javaDocProcessors are invoked before the ChangeNamespacePrefixProcessors and the
+     * ChangeFilenameProcessor derived from the configuredTransformSchemas. Finally, the generated schema files
+     * are renamed as configured.</p>
+     *
+     * @param mavenLog                   The active Log.
+     * @param schemaDirectory            The directory where all generated schema files reside.
+     * @param javaDocProcessors          The NodeProcessors injecting JavaDoc into all generated XSD files, found
+     *                                   recursively within the schemaDirectory. May be empty but not null.
+     * @param configuredTransformSchemas The Schema instances read from the configuration of this plugin, or
+     *                                   {@code null} if no namespace prefixes or file names should be changed.
+     * @return The number of XSD files whose content was changed (and hence written).
+     * @throws MojoExecutionException If the namespace replacement could not be done.
+     */
+    public static int postProcessGeneratedSchemas(final Log mavenLog,
+            final File schemaDirectory,
+            final List<NodeProcessor> javaDocProcessors,
+            final List<TransformSchema> configuredTransformSchemas) throws MojoExecutionException {
+        return postProcessGeneratedSchemas(mavenLog, schemaDirectory, javaDocProcessors, configuredTransformSchemas,
+                Long.MAX_VALUE);
+    }
+
+    /**
+     * <p>Post-processes all generated XSD files within the supplied schemaDirectory in a single pass, as
+     * {@link #postProcessGeneratedSchemas(Log, File, List, List)}. However, XSD files larger than the supplied
+     * streamingThreshold are never parsed into a DOM Document. Instead, they are streamed through the
+     * NodeProcessors using StAX, such that the memory used is bounded by their nesting depth rather than their size.
+     * Streamed XSD files retain their original formatting.</p>
+     *
+     * @param mavenLog                   The active Log.
+     * @param schemaDirectory            The directory where all generated schema files reside.
+     * @param javaDocProcessors          The NodeProcessors injecting JavaDoc into all generated XSD files, found
+     *                                   recursively within the schemaDirectory. May be empty but not null.
+     * @param configuredTransformSchemas The Schema instances read from the configuration of this plugin, or
+     *                                   {@code null} if no namespace prefixes or file names should be changed.
+     * @param streamingThreshold         The size (in bytes) above which XSD files are streamed.
+     * @return The number of XSD files whose content was changed (and hence written).
+     * @throws MojoExecutionException If the namespace replacement could not be done, or a streamed XSD file could
+     *                                not be read or written.
+     */
+    public static int postProcessGeneratedSchemas(final Log mavenLog,
+            final File schemaDirectory,
+            final List<NodeProcessor> javaDocProcessors,
+            final List<TransformSchema> configuredTransformSchemas,
+            final long streamingThreshold) throws MojoExecutionException {
+        return postProcessGeneratedSchemas(mavenLog, schemaDirectory, javaDocProcessors, configuredTransformSchemas,
+                streamingThreshold, 1);
+    }
+
+    /**
+     * <p>Post-processes all generated XSD files within the supplied schemaDirectory in a single pass, as
+     * {@link #postProcessGeneratedSchemas(Log, File, List, List, long)}, using up to numThreads threads. Each XSD
+     * file is processed by a single thread, which reuses its DocumentBuilder and Transformer for all XSD files it
+     * processes. The generated schema files are renamed when all XSD files are processed.</p>
+     * <p>Since the javaDocProcessors are shared by all threads, they must be thread-safe if numThreads exceeds 1.</p>
+     *
+     * @param mavenLog                   The active Log.
+     * @param schemaDirectory            The directory where all generated schema files reside.
+     * @param javaDocProcessors          The NodeProcessors injecting JavaDoc into all generated XSD files, found
+     *                                   recursively within the schemaDirectory. May be empty but not null.
+     * @param configuredTransformSchemas The Schema instances read from the configuration of this plugin, or
+     *                                   {@code null} if no namespace prefixes or file names should be changed.
+     * @param streamingThreshold         The size (in bytes) above which XSD files are streamed.
+     * @param numThreads                 The maximum number of threads used to post-process XSD files. Must be
+     *                                   positive; 1 implies that all XSD files are processed within the calling
+     *                                   thread.
+     * @return The number of XSD files whose content was changed (and hence written).
+     * @throws MojoExecutionException If the namespace replacement could not be done, or a streamed XSD file could
+     *                                not be read or written.
+     */
+    public static int postProcessGeneratedSchemas(final Log mavenLog,
+            final File schemaDirectory,
+            final List<NodeProcessor> javaDocProcessors,
+            final List<TransformSchema> configuredTransformSchemas,
+            final long streamingThreshold,
+            final int numThreads) throws MojoExecutionException {
+
+        // Check sanity
+        Validate.notNull(mavenLog, "mavenLog");
+        Validate.notNull(schemaDirectory, "schemaDirectory");
+        Validate.isTrue(streamingThreshold >= 0, "streamingThreshold cannot be negative.");
+        Validate.isTrue(numThreads > 0, "numThreads must be positive.");
+        Validate.isTrue(schemaDirectory.isDirectory(), "'schemaDirectory' must be a Directory.");
+        Validate.notNull(javaDocProcessors, "javaDocProcessors");
+
+        // Find the files to process; JavaDoc is injected into all generated XSDs found recursively, whereas
+        // namespace prefixes and file names are transformed within the top-level generated schema files.
+        final SortedSet<File> javaDocFiles = new TreeSet<File>();
+        if (!javaDocProcessors.isEmpty()) {
+            addRecursively(javaDocFiles, RECURSIVE_XSD_FILTER, schemaDirectory);
+        }
+
+        final SortedSet<File> transformFiles = new TreeSet<File>();
+        final Map<String, String> namespaceUriToDesiredFilenameMap = new TreeMap<String, String>();
+        if (configuredTransformSchemas != null) {
+            transformFiles.addAll(Arrays.asList(schemaDirectory.listFiles(new FileFilter() {
+                public boolean accept(File pathname) {
+                    return pathname.getName().startsWith("schema") && pathname.getName().endsWith(".xsd");
+                }
+            })));
+
+            for (TransformSchema current : configuredTransformSchemas) {
+                if (StringUtils.isNotEmpty(current.getToFile())) {
+                    namespaceUriToDesiredFilenameMap.put(current.getUri(), current.getToFile());
+                }
             }
+        }
 
-            final String newFilename = namespaceUriToDesiredFilenameMap.get(localNamespaceURI);
-            final File originalFile = new File(schemaDirectory, currentResolver.getSourceFilename());
+        final SortedSet<File> toProcess = new TreeSet<File>(javaDocFiles);
+        toProcess.addAll(transformFiles);
+        if (toProcess.isEmpty()) {
+            if (mavenLog.isWarnEnabled()) {
+                mavenLog.warn("Found no generated 'vanilla' XSD files to process under ["
+                        + FileSystemUtilities.getCanonicalPath(schemaDirectory) + "]. Aborting processing.");
+            }
+            return 0;
+        }
 
-            if (StringUtils.isNotEmpty(newFilename)) {
-                File renamedFile = FileUtils.resolveFile(schemaDirectory, newFilename);
-                String renameResult = (originalFile.renameTo(renamedFile) ? "Success " : "Failure ");
+        final List<ProcessedSchema> processedSchemas = new ArrayList<ProcessedSchema>(toProcess.size());
+        final int effectiveNumThreads = Math.min(numThreads, toProcess.size());
+        if (effectiveNumThreads < 2) {
 
-                if (mavenLog.isDebugEnabled()) {
-                    String suffix = "renaming [" + originalFile.getAbsolutePath() + "] to [" + renamedFile + "]";
-                    mavenLog.debug(renameResult + suffix);
+            // Not worth the overhead of a thread pool.
+            try {
+                for (File current : toProcess) {
+                    processedSchemas.add(postProcessSchema(mavenLog,
+                            current,
+                            javaDocFiles.contains(current) ? javaDocProcessors : Collections.<NodeProcessor>emptyList(),
+                            transformFiles.contains(current) ? configuredTransformSchemas : null,
+                            namespaceUriToDesiredFilenameMap,
+                            streamingThreshold));
                 }
+            } finally {
+
+                // Don't let the (long-lived) calling thread retain the DocumentBuilder and Transformer.
+                DOCUMENT_BUILDERS.remove();
+                TRANSFORMERS.remove();
+            }
+
+        } else {
+
+            if (mavenLog.isDebugEnabled()) {
+                mavenLog.debug("Post-processing " + toProcess.size() + " generated schema files using "
+                        + effectiveNumThreads + " threads.");
+            }
+
+            final ExecutorService executor = Executors.newFixedThreadPool(effectiveNumThreads);
+            try {
+
+                final List<Future<ProcessedSchema>> results = new ArrayList<Future<ProcessedSchema>>();
+                for (final File current : toProcess) {
+
+                    final List<NodeProcessor> currentJavaDocProcessors = javaDocFiles.contains(current)
+                            ? javaDocProcessors
+                            : Collections.<NodeProcessor>emptyList();
+                    final List<TransformSchema> currentTransformSchemas = transformFiles.contains(current)
+                            ? configuredTransformSchemas
+                            : null;
+
+                    results.add(executor.submit(new Callable<ProcessedSchema>() {
+                        @Override
+                        public ProcessedSchema call() throws Exception {
+                            return postProcessSchema(mavenLog,
+                                    current,
+                                    currentJavaDocProcessors,
+                                    currentTransformSchemas,
+                                    namespaceUriToDesiredFilenameMap,
+                                    streamingThreshold);
+                        }
+                    }));
+                }
+
+                // Collect the results in file order, to rename the files in the same order as when not threaded.
+                for (Future<ProcessedSchema> current : results) {
+                    processedSchemas.add(current.get());
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while post-processing generated schema files.", e);
+            } catch (ExecutionException e) {
+
+                final Throwable cause = e.getCause();
+                if (cause instanceof MojoExecutionException) {
+                    throw (MojoExecutionException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new MojoExecutionException("Could not post-process generated schema files.", cause);
+            } finally {
+                executor.shutdownNow();
             }
         }
+
+        int changedFiles = 0;
+        final List<SimpleNamespaceResolver> resolvers = new ArrayList<SimpleNamespaceResolver>();
+        for (ProcessedSchema current : processedSchemas) {
+
+            if (current.changed) {
+                changedFiles++;
+            }
+            if (current.resolver != null) {
+                resolvers.add(current.resolver);
+            }
+        }
+
+        // Now, rename the actual files.
+        renameFiles(resolvers, namespaceUriToDesiredFilenameMap, mavenLog, schemaDirectory);
+
+        // All done.
+        return changedFiles;
     }
 
     /**
@@ -420,17 +651,26 @@ public final class XsdGeneratorHelper {
      */
     public static Document parseXmlStream(final Reader xmlStream) {
 
-        // Build a DOM model of the provided xmlFileStream.
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-
+        // Build a DOM model of the provided xmlFileStream, using the DocumentBuilder of the current thread.
+        final DocumentBuilder builder = DOCUMENT_BUILDERS.get();
         try {
-            return factory.newDocumentBuilder().parse(new InputSource(xmlStream));
+            return builder.parse(new InputSource(xmlStream));
         } catch (Exception e) {
             throw new IllegalArgumentException("Could not acquire DOM Document", e);
+        } finally {
+            builder.reset();
         }
     }
 
+    /**
+     * Creates an empty, namespace aware DOM Document.
+     *
+     * @return An empty DOM Document, created by the DocumentBuilder of the current thread.
+     */
+    static Document newDocument() {
+        return DOCUMENT_BUILDERS.get().newDocument();
+    }
+
     /**
      * Converts the provided DOM Node to a pretty-printed XML-formatted string.
      *
@@ -441,11 +681,11 @@ public final class XsdGeneratorHelper {
         StringWriter toReturn = new StringWriter();
 
         try {
-            Transformer transformer = getFactory().newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.STANDALONE, "yes");
-            transformer.transform(new DOMSource(node), new StreamResult(toReturn));
+            TRANSFORMERS.get().transform(new DOMSource(node), new StreamResult(toReturn));
         } catch (TransformerException e) {
+
+            // Don't reuse a Transformer which failed.
+            TRANSFORMERS.remove();
             throw new IllegalStateException("Could not transform node [" + node.getNodeName() + "] to XML", e);
         }
 
@@ -506,10 +746,14 @@ public final class XsdGeneratorHelper {
     }
 
     private static void savePrettyPrintedDocument(final Document toSave, final File targetFile) {
+        saveXml(getHumanReadableXml(toSave.getFirstChild()), targetFile);
+    }
+
+    private static void saveXml(final String xml, final File targetFile) {
         Writer out = null;
         try {
             out = new BufferedWriter(new FileWriter(targetFile));
-            out.write(getHumanReadableXml(toSave.getFirstChild()));
+            out.write(xml);
         } catch (IOException e) {
             throw new IllegalStateException("Could not write to file [" + targetFile.getAbsolutePath() + "]", e);
         } finally {
@@ -517,7 +761,149 @@ public final class XsdGeneratorHelper {
         }
     }
 
-    private static void addRecursively(final List<File> toPopulate,
+    private static ProcessedSchema postProcessSchema(final Log mavenLog,
+            final File xsdFile,
+            final List<NodeProcessor> javaDocProcessors,
+            final List<TransformSchema> transformSchemas,
+            final Map<String, String> namespaceUriToDesiredFilenameMap,
+            final long streamingThreshold) throws MojoExecutionException {
+
+        // Parse the file once - unless it is large enough to be streamed.
+        final boolean streaming = xsdFile.length() > streamingThreshold;
+        final Document document = streaming ? null : parseXmlToDocument(xsdFile);
+
+        // Collect the NodeProcessors applicable to the file.
+        final List<NodeProcessor> processors = new ArrayList<NodeProcessor>(javaDocProcessors);
+        SimpleNamespaceResolver resolver = null;
+        if (transformSchemas != null) {
+
+            // Acquire the namespace data of the file before changing any prefix.
+            resolver = streaming
+                    ? getStreamingNamespaceResolver(xsdFile)
+                    : new SimpleNamespaceResolver(xsdFile.getName(), document);
+
+            for (TransformSchema currentTransformSchema : transformSchemas) {
+
+                final String newPrefix = currentTransformSchema.getToPrefix();
+                final String oldPrefix = resolver.getNamespaceURI2PrefixMap().get(currentTransformSchema.getUri());
+
+                if (StringUtils.isNotEmpty(newPrefix) && StringUtils.isNotEmpty(oldPrefix)) {
+
+                    // Can we perform the prefix substitution?
+                    validatePrefixSubstitutionIsPossible(oldPrefix, newPrefix, resolver);
+
+                    if (mavenLog.isDebugEnabled()) {
+                        mavenLog.debug("Substituting namespace prefix [" + oldPrefix + "] with [" + newPrefix
+                                + "] in file [" + resolver.getSourceFilename() + "].");
+                    }
+                    processors.add(new ChangeNamespacePrefixProcessor(oldPrefix, newPrefix));
+                }
+            }
+
+            if (!namespaceUriToDesiredFilenameMap.isEmpty()) {
+                processors.add(new ChangeFilenameProcessor(namespaceUriToDesiredFilenameMap));
+            }
+        }
+
+        // Run all NodeProcessors within a single traversal.
+        final ChangeTrackingNodeProcessor tracker = new ChangeTrackingNodeProcessor(processors);
+        if (streaming) {
+
+            if (mavenLog.isDebugEnabled()) {
+                mavenLog.debug("Streaming generated schema file [" + xsdFile.getName() + "] of "
+                        + xsdFile.length() + " bytes.");
+            }
+
+            if (!processors.isEmpty()) {
+                streamSchema(xsdFile, tracker);
+            }
+        } else {
+
+            process(document.getFirstChild(), true, tracker);
+
+            // Only overwrite the file if any NodeProcessor changed its content.
+            if (tracker.isChanged()) {
+
+                final String processedXml = getHumanReadableXml(document.getFirstChild());
+                if (mavenLog.isDebugEnabled()) {
+                    mavenLog.debug("Overwriting file [" + xsdFile.getName() + "] with content ["
+                            + processedXml + "]");
+                }
+                saveXml(processedXml, xsdFile);
+            }
+        }
+
+        if (!tracker.isChanged() && mavenLog.isDebugEnabled()) {
+            mavenLog.debug("No changes to generated schema file [" + xsdFile.getName() + "]");
+        }
+
+        // All done.
+        return new ProcessedSchema(resolver, tracker.isChanged());
+    }
+
+    private static SimpleNamespaceResolver getStreamingNamespaceResolver(final File xsdFile)
+            throws MojoExecutionException {
+        try {
+            return StreamingXsdProcessor.getNamespaceResolver(xsdFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read namespaces of [" + xsdFile.getAbsolutePath() + "]", e);
+        }
+    }
+
+    private static boolean streamSchema(final File xsdFile, final ChangeTrackingNodeProcessor tracker)
+            throws MojoExecutionException {
+
+        final File processed = new File(xsdFile.getParentFile(), xsdFile.getName() + ".processed");
+        try {
+            StreamingXsdProcessor.process(xsdFile, processed, tracker);
+
+            // Only replace the file if any NodeProcessor changed its content.
+            if (tracker.isChanged()) {
+                if (!xsdFile.delete() || !processed.renameTo(xsdFile)) {
+                    throw new MojoExecutionException("Could not replace [" + xsdFile.getAbsolutePath() + "]");
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not post-process [" + xsdFile.getAbsolutePath() + "]", e);
+        } finally {
+            if (processed.exists() && !processed.delete()) {
+                processed.deleteOnExit();
+            }
+        }
+
+        // All done.
+        return tracker.isChanged();
+    }
+
+    private static void renameFiles(final Collection<SimpleNamespaceResolver> resolvers,
+            final Map<String, String> namespaceUriToDesiredFilenameMap,
+            final Log mavenLog,
+            final File schemaDirectory) {
+
+        for (SimpleNamespaceResolver currentResolver : resolvers) {
+            final String localNamespaceURI = currentResolver.getLocalNamespaceURI();
+
+            if (StringUtils.isEmpty(localNamespaceURI)) {
+                mavenLog.warn("SimpleNamespaceResolver contained no localNamespaceURI; aborting rename.");
+                continue;
+            }
+
+            final String newFilename = namespaceUriToDesiredFilenameMap.get(localNamespaceURI);
+            final File originalFile = new File(schemaDirectory, currentResolver.getSourceFilename());
+
+            if (StringUtils.isNotEmpty(newFilename)) {
+                File renamedFile = FileUtils.resolveFile(schemaDirectory, newFilename);
+                String renameResult = (originalFile.renameTo(renamedFile) ? "Success " : "Failure ");
+
+                if (mavenLog.isDebugEnabled()) {
+                    String suffix = "renaming [" + originalFile.getAbsolutePath() + "] to [" + renamedFile + "]";
+                    mavenLog.debug(renameResult + suffix);
+                }
+            }
+        }
+    }
+
+    private static void addRecursively(final Collection<File> toPopulate,
             final FileFilter fileFilter,
             final File aDir) {
 
@@ -537,10 +923,13 @@ public final class XsdGeneratorHelper {
         }
     }
 
-    private static TransformerFactory getFactory() {
+    private static synchronized TransformerFactory getFactory() {
 
         if (FACTORY == null) {
 
+            final Thread currentThread = Thread.currentThread();
+            final ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+            currentThread.setContextClassLoader(XsdGeneratorHelper.class.getClassLoader());
             try {
                 FACTORY = TransformerFactory.newInstance();
 
@@ -556,10 +945,127 @@ public final class XsdGeneratorHelper {
 
                 // This should really not happen... but it seems to happen in some test cases.
                 throw new IllegalStateException("Could not acquire TransformerFactory implementation.", exception);
+            } finally {
+                currentThread.setContextClassLoader(originalClassLoader);
             }
         }
 
         // All done.
         return FACTORY;
     }
-}
\ No newline at end of file
+
+    private static synchronized Transformer newTransformer() {
+
+        try {
+            final Transformer toReturn = getFactory().newTransformer();
+            toReturn.setOutputProperty(OutputKeys.INDENT, "yes");
+            toReturn.setOutputProperty(OutputKeys.STANDALONE, "yes");
+            return toReturn;
+        } catch (TransformerException e) {
+            throw new IllegalStateException("Could not create Transformer.", e);
+        }
+    }
+
+    private static synchronized DocumentBuilder newDocumentBuilder() {
+
+        if (DOCUMENT_BUILDER_FACTORY == null) {
+
+            final Thread currentThread = Thread.currentThread();
+            final ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+            currentThread.setContextClassLoader(XsdGeneratorHelper.class.getClassLoader());
+            try {
+                DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+                DOCUMENT_BUILDER_FACTORY.setNamespaceAware(true);
+            } finally {
+                currentThread.setContextClassLoader(originalClassLoader);
+            }
+        }
+
+        try {
+            return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Could not create DocumentBuilder.", e);
+        }
+    }
+
+    /**
+     * The outcome of post-processing a single XSD file.
+     */
+    private static final class ProcessedSchema {
+
+        // Internal state
+        private final SimpleNamespaceResolver resolver;
+        private final boolean changed;
+
+        ProcessedSchema(final SimpleNamespaceResolver resolver, final boolean changed) {
+            this.resolver = resolver;
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * NodeProcessor offering each Element and its attributes to a List of NodeProcessors, while tracking if any of
+     * them processed (and hence possibly changed) a Node. As NodeProcessors may replace attributes, the attributes
+     * of each Element are offered from a snapshot, rather than the live NamedNodeMap of the Element.
+     */
+    private static final class ChangeTrackingNodeProcessor implements NodeProcessor {
+
+        // Internal state
+        private final List<NodeProcessor> delegates;
+        private boolean changed;
+
+        ChangeTrackingNodeProcessor(final List<NodeProcessor> delegates) {
+            this.delegates = delegates;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean accept(final Node aNode) {
+            return aNode.getNodeType() == Node.ELEMENT_NODE;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void process(final Node aNode) {
+
+            // Process the Element itself.
+            offer(aNode);
+
+            // Then process a snapshot of its attributes.
+            final NamedNodeMap attributes = aNode.getAttributes();
+            final List<Attr> snapshot = new ArrayList<Attr>(attributes.getLength());
+            for (int i = 0; i < attributes.getLength(); i++) {
+                snapshot.add((Attr) attributes.item(i));
+            }
+
+            for (Attr current : snapshot) {
+                offer(current);
+            }
+        }
+
+        boolean isChanged() {
+            return changed;
+        }
+
+        private void offer(final Node aNode) {
+
+            // An attribute may be replaced by a delegate, in which case the remaining delegates ignore it.
+            for (int i = 0; i < delegates.size() && isAttached(aNode); i++) {
+
+                final NodeProcessor current = delegates.get(i);
+                if (current.accept(aNode)) {
+                    current.process(aNode);
+                    changed = true;
+                }
+            }
+        }
+
+        private static boolean isAttached(final Node aNode) {
+            return !(aNode instanceof Attr) || ((Attr) aNode).getOwnerElement() != null;
+        }
+    }
+}
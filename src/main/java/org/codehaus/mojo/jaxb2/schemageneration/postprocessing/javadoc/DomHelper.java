@@ -365,6 +365,26 @@ public final class DomHelper {
             }
         }
 
+        // Add the XML documentation annotation.
+        insertXmlDocumentationAnnotationsFor(aNode, location, javaDocData, renderer);
+    }
+
+    /**
+     * Inserts the XML Documentation annotation rendered from the supplied JavaDocData into the supplied DOM Node.
+     * Use this method when the SortableLocation of the DOM Node is already known, such as when it was looked up
+     * in a {@link JavaDocLocationIndex}.
+     *
+     * @param aNode       The DOM Node to process.
+     * @param location    The SortableLocation corresponding to the supplied DOM Node.
+     * @param javaDocData The JavaDocData found at the supplied location.
+     * @param renderer    A non-null {@link JavaDocRenderer}.
+     */
+    public static void insertXmlDocumentationAnnotationsFor(
+            final Node aNode,
+            final SortableLocation location,
+            final JavaDocData javaDocData,
+            final JavaDocRenderer renderer) {
+
         // We should have a JavaDocData here.
         if (javaDocData == null) {
             throw new IllegalStateException("Could not find JavaDocData for XSD node ["
@@ -380,7 +400,7 @@ public final class DomHelper {
     // Private helpers
     //
 
-    private static Node getContainingClassOrNull(final Node aNode) {
+    static Node getContainingClassOrNull(final Node aNode) {
 
         for (Node current = aNode.getParentNode(); current != null; current = current.getParentNode()) {
 
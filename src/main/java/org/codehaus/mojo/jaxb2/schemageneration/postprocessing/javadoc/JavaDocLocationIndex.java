@@ -0,0 +1,275 @@
+package org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.ClassLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.FieldLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.MethodLocation;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.w3c.dom.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * <p>Index relating XSD nodes to the Class-, Field- and MethodLocations holding their JavaDoc, replacing the linear
+ * scans of {@link DomHelper#getClassLocation(Node, java.util.Set)},
+ * {@link DomHelper#getFieldLocation(Node, java.util.Set)} and {@link DomHelper#getMethodLocation(Node, java.util.Set)}
+ * with hash lookups. ClassLocations are keyed by their effective (i.e. possibly renamed) class name, and Field-
+ * and MethodLocations by their class name and effective member name - all case folded, since the XSD names are
+ * matched ignoring case.</p>
+ * <p>Lookups yield the same Locations as the corresponding DomHelper methods: the first matching ClassLocation,
+ * and the last matching Field- or MethodLocation, in the sort order of the respective Locations.</p>
+ *
+ * @since 2.3
+ */
+public final class JavaDocLocationIndex {
+
+    // Internal state
+    private static final String MEMBER_SEPARATOR = "#";
+    private SortedMap<ClassLocation, JavaDocData> classJavaDocs;
+    private SortedMap<FieldLocation, JavaDocData> fieldJavaDocs;
+    private SortedMap<MethodLocation, JavaDocData> methodJavaDocs;
+    private Map<String, ClassLocation> classLocations;
+    private Map<String, FieldLocation> fieldLocations;
+    private Map<String, MethodLocation> methodLocations;
+
+    /**
+     * Creates a JavaDocLocationIndex for all JavaDoc within the supplied SearchableDocumentation.
+     *
+     * @param docs A non-null SearchableDocumentation, produced from the source code of the JAXB compilation unit.
+     */
+    public JavaDocLocationIndex(final SearchableDocumentation docs) {
+
+        // Check sanity
+        Validate.notNull(docs, "docs");
+
+        // Assign internal state
+        this.classJavaDocs = docs.getAll(ClassLocation.class);
+        this.fieldJavaDocs = docs.getAll(FieldLocation.class);
+        this.methodJavaDocs = docs.getAll(MethodLocation.class);
+
+        // Index the ClassLocations; the first ClassLocation matching a name wins.
+        this.classLocations = new HashMap<String, ClassLocation>();
+        for (ClassLocation current : classJavaDocs.keySet()) {
+
+            // Issue #25: Handle XML Type renaming.
+            final String effectiveClassName = current.getAnnotationRenamedTo() == null
+                    ? current.getClassName()
+                    : current.getAnnotationRenamedTo();
+
+            final String key = fold(effectiveClassName);
+            if (!classLocations.containsKey(key)) {
+                classLocations.put(key, current);
+            }
+        }
+
+        // Index the Field- and MethodLocations; the last Location matching a name wins.
+        this.fieldLocations = new HashMap<String, FieldLocation>();
+        for (FieldLocation current : fieldJavaDocs.keySet()) {
+            fieldLocations.put(getMemberKey(current), current);
+        }
+
+        this.methodLocations = new HashMap<String, MethodLocation>();
+        for (MethodLocation current : methodJavaDocs.keySet()) {
+            methodLocations.put(getMemberKey(current), current);
+        }
+    }
+
+    /**
+     * Retrieves the Location of the JavaDoc for the supplied DOM Node, searching ClassLocations, FieldLocations and
+     * MethodLocations in that order (as done by
+     * {@link DomHelper#insertXmlDocumentationAnnotationsFor(Node, SortedMap, SortedMap, SortedMap, JavaDocRenderer)}).
+     *
+     * @param aNode A DOM Node.
+     * @return The Class-, Field- or MethodLocation of the JavaDoc for the supplied Node, or {@code null} if no JavaDoc
+     * was found for it.
+     */
+    public SortableLocation getLocation(final Node aNode) {
+
+        if (aNode == null || aNode.getLocalName() == null) {
+            return null;
+        }
+
+        // Class?
+        final String localName = aNode.getLocalName().toLowerCase();
+        final ClassLocation classLocation = getClassLocation(aNode);
+        if (classLocation != null) {
+            return classLocation;
+        }
+
+        // Field or method? Find the containing class node only once.
+        final boolean isClassMember = DomHelper.CLASS_FIELD_METHOD_ELEMENT_NAMES.contains(localName);
+        if (!isClassMember && !DomHelper.ENUMERATION_FIELD_METHOD_ELEMENT_NAMES.contains(localName)) {
+            return null;
+        }
+
+        final String memberKey = getMemberKey(aNode);
+        if (memberKey == null) {
+            return null;
+        }
+
+        final FieldLocation fieldLocation = fieldLocations.get(memberKey);
+        if (fieldLocation != null) {
+            return fieldLocation;
+        }
+
+        // All done.
+        return isClassMember ? getGetterOrNull(methodLocations.get(memberKey)) : null;
+    }
+
+    /**
+     * Retrieves the ClassLocation for the supplied DOM Node, as
+     * {@link DomHelper#getClassLocation(Node, java.util.Set)}.
+     *
+     * @param aNode A DOM Node.
+     * @return The ClassLocation matching the supplied Node, or {@code null} if no match was found.
+     */
+    public ClassLocation getClassLocation(final Node aNode) {
+
+        if (aNode != null) {
+
+            // The LocalName of the supplied DOM Node should be either "complexType" or "simpleType".
+            final String nodeLocalName = aNode.getLocalName();
+            final boolean acceptableType = "complexType".equalsIgnoreCase(nodeLocalName)
+                    || "simpleType".equalsIgnoreCase(nodeLocalName);
+
+            if (acceptableType) {
+                final String nodeClassName = DomHelper.getNameAttribute(aNode);
+                return nodeClassName == null ? null : classLocations.get(fold(nodeClassName));
+            }
+        }
+
+        // Nothing found
+        return null;
+    }
+
+    /**
+     * Retrieves the FieldLocation for the supplied DOM Node, as
+     * {@link DomHelper#getFieldLocation(Node, java.util.Set)}.
+     *
+     * @param aNode A DOM Node.
+     * @return The FieldLocation matching the supplied Node, or {@code null} if no match was found.
+     */
+    public FieldLocation getFieldLocation(final Node aNode) {
+
+        if (aNode != null && aNode.getLocalName() != null) {
+
+            final String localName = aNode.getLocalName().toLowerCase();
+            if (DomHelper.CLASS_FIELD_METHOD_ELEMENT_NAMES.contains(localName)
+                    || DomHelper.ENUMERATION_FIELD_METHOD_ELEMENT_NAMES.contains(localName)) {
+
+                final String memberKey = getMemberKey(aNode);
+                return memberKey == null ? null : fieldLocations.get(memberKey);
+            }
+        }
+
+        // Nothing found
+        return null;
+    }
+
+    /**
+     * Retrieves the MethodLocation for the supplied DOM Node, as
+     * {@link DomHelper#getMethodLocation(Node, java.util.Set)}.
+     *
+     * @param aNode A DOM Node.
+     * @return The MethodLocation (of a getter method) matching the supplied Node, or {@code null} if no match was
+     * found.
+     */
+    public MethodLocation getMethodLocation(final Node aNode) {
+
+        if (aNode != null
+                && aNode.getLocalName() != null
+                && DomHelper.CLASS_FIELD_METHOD_ELEMENT_NAMES.contains(aNode.getLocalName().toLowerCase())) {
+
+            final String memberKey = getMemberKey(aNode);
+            return memberKey == null ? null : getGetterOrNull(methodLocations.get(memberKey));
+        }
+
+        // Nothing found
+        return null;
+    }
+
+    /**
+     * Retrieves the JavaDocData found at the supplied Location.
+     *
+     * @param location A Location retrieved from this JavaDocLocationIndex.
+     * @return The JavaDocData found at the supplied Location, or {@code null} if none was found.
+     */
+    public JavaDocData getJavaDocData(final SortableLocation location) {
+
+        if (location instanceof MethodLocation) {
+            return methodJavaDocs.get(location);
+        } else if (location instanceof FieldLocation) {
+            return fieldJavaDocs.get(location);
+        } else if (location instanceof ClassLocation) {
+            return classJavaDocs.get(location);
+        }
+
+        // Not a known Location type.
+        return null;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String getMemberKey(final FieldLocation location) {
+
+        // Issue #25: Handle XML Type renaming.
+        final String fieldName = location.getAnnotationRenamedTo() == null
+                ? location.getMemberName()
+                : location.getAnnotationRenamedTo();
+
+        return fold(location.getClassName()) + MEMBER_SEPARATOR + fold(fieldName);
+    }
+
+    private static String getMemberKey(final Node aNode) {
+
+        final String memberName = DomHelper.getNameAttribute(aNode);
+        final String className = DomHelper.getNameAttribute(DomHelper.getContainingClassOrNull(aNode));
+
+        return memberName == null || className == null
+                ? null
+                : fold(className) + MEMBER_SEPARATOR + fold(memberName);
+    }
+
+    private static MethodLocation getGetterOrNull(final MethodLocation location) {
+
+        // The MethodLocation should represent a normal getter; no arguments should be present.
+        return location != null && MethodLocation.NO_PARAMETERS.equalsIgnoreCase(location.getParametersAsString())
+                ? location
+                : null;
+    }
+
+    /**
+     * Folds the case of the supplied value, such that {@code fold(a).equals(fold(b))} if and only if
+     * {@code a.equalsIgnoreCase(b)}.
+     */
+    private static String fold(final String value) {
+
+        final char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
@@ -20,9 +20,6 @@ package org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc;
  */
 
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.NodeProcessor;
-import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.ClassLocation;
-import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.FieldLocation;
-import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.MethodLocation;
 import org.codehaus.mojo.jaxb2.shared.Validate;
 import org.w3c.dom.CDATASection;
 import org.w3c.dom.Document;
@@ -94,6 +91,8 @@ import java.util.SortedMap;
  * </pre>
  * <p>... given that the Java class <code>SomewhatNamedPerson</code> has JavaDoc on its class and fields
  * corresponding to the injected XSD annotation/documentation elements.</p>
+ * <p>An XsdAnnotationProcessor may be used by several threads concurrently, provided that its JavaDocRenderer
+ * is thread-safe.</p>
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  * @see org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.JavaDocRenderer
@@ -102,10 +101,9 @@ import java.util.SortedMap;
 public class XsdAnnotationProcessor implements NodeProcessor {
 
     // Internal state
-    private SortedMap<ClassLocation, JavaDocData> classJavaDocs;
-    private SortedMap<FieldLocation, JavaDocData> fieldJavaDocs;
-    private SortedMap<MethodLocation, JavaDocData> methodJavaDocs;
+    private JavaDocLocationIndex locationIndex;
     private JavaDocRenderer renderer;
+    private final ThreadLocal<AcceptedNode> lastAccepted = new ThreadLocal<AcceptedNode>();
 
     /**
      * Creates an XsdAnnotationProcessor that uses the supplied/generated SearchableDocumentation to read all
@@ -121,9 +119,7 @@ public class XsdAnnotationProcessor implements NodeProcessor {
         Validate.notNull(renderer, "renderer");
 
         // Assign internal state
-        this.classJavaDocs = docs.getAll(ClassLocation.class);
-        this.fieldJavaDocs = docs.getAll(FieldLocation.class);
-        this.methodJavaDocs = docs.getAll(MethodLocation.class);
+        this.locationIndex = new JavaDocLocationIndex(docs);
         this.renderer = renderer;
     }
 
@@ -158,17 +154,17 @@ public class XsdAnnotationProcessor implements NodeProcessor {
 
         // Only process nodes corresponding to Types we have any JavaDoc for.
         // TODO: How should we handle PackageLocations and package documentation.
-        boolean toReturn = false;
-        if (DomHelper.getMethodLocation(aNode, methodJavaDocs.keySet()) != null) {
-            toReturn = true;
-        } else if (DomHelper.getFieldLocation(aNode, fieldJavaDocs.keySet()) != null) {
-            toReturn = true;
-        } else if (DomHelper.getClassLocation(aNode, classJavaDocs.keySet()) != null) {
-            toReturn = true;
+        // Remember the Location found, since process is normally invoked for the accepted Node right away.
+        // The Location is remembered per thread, as XSD files may be post-processed concurrently.
+        final SortableLocation location = locationIndex.getLocation(aNode);
+        if (location == null) {
+            lastAccepted.remove();
+        } else {
+            lastAccepted.set(new AcceptedNode(aNode, location));
         }
 
         // All done.
-        return toReturn;
+        return location != null;
     }
 
     /**
@@ -176,6 +172,30 @@ public class XsdAnnotationProcessor implements NodeProcessor {
      */
     @Override
     public void process(final Node aNode) {
-        DomHelper.insertXmlDocumentationAnnotationsFor(aNode, classJavaDocs, fieldJavaDocs, methodJavaDocs, renderer);
+
+        final AcceptedNode accepted = lastAccepted.get();
+        lastAccepted.remove();
+
+        final SortableLocation location = accepted != null && accepted.node == aNode
+                ? accepted.location
+                : locationIndex.getLocation(aNode);
+
+        final JavaDocData javaDocData = locationIndex.getJavaDocData(location);
+        DomHelper.insertXmlDocumentationAnnotationsFor(aNode, location, javaDocData, renderer);
+    }
+
+    /**
+     * The Location found for a Node accepted by this XsdAnnotationProcessor.
+     */
+    private static final class AcceptedNode {
+
+        // Internal state
+        private final Node node;
+        private final SortableLocation location;
+
+        AcceptedNode(final Node node, final SortableLocation location) {
+            this.node = node;
+            this.location = location;
+        }
     }
 }
@@ -79,6 +79,18 @@ public class SimpleNamespaceResolver implements NamespaceContext {
         }
     }
 
+    /**
+     * Creates a new SimpleNamespaceResolver which collects namespace data from an already parsed XML document,
+     * implying that the XML file need not be parsed once more. The supplied Document is not modified.
+     *
+     * @param sourceFilename The name of the file from which the supplied Document was parsed.
+     * @param document       The Document from which to collect namespace data, should not be null.
+     */
+    public SimpleNamespaceResolver(final String sourceFilename, final Document document) {
+        this.sourceFilename = sourceFilename;
+        initialize(document);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -148,7 +160,15 @@ public class SimpleNamespaceResolver implements NamespaceContext {
     private void initialize(final Reader xmlFileStream) {
 
         // Build a DOM model.
-        final Document parsedDocument = XsdGeneratorHelper.parseXmlStream(xmlFileStream);
+        initialize(XsdGeneratorHelper.parseXmlStream(xmlFileStream));
+    }
+
+    /**
+     * Initializes this SimpleNamespaceResolver to collect namespace data from the provided DOM model.
+     *
+     * @param parsedDocument The DOM model from which we should read namespace data.
+     */
+    private void initialize(final Document parsedDocument) {
 
         // Process the DOM model.
         XsdGeneratorHelper.process(parsedDocument.getFirstChild(), true, new NamespaceAttributeNodeProcessor());
@@ -217,4 +237,4 @@ public class SimpleNamespaceResolver implements NamespaceContext {
             }
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
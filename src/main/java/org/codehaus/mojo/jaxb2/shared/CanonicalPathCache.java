@@ -0,0 +1,76 @@
+package org.codehaus.mojo.jaxb2.shared;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Cache of canonical paths, keyed by absolute path. Canonicalization may require one filesystem call per path
+ * segment, which is costly for deep (or symbolically linked) directory structures when many files below the same
+ * directories are canonicalized.</p>
+ * <p>A CanonicalPathCache is held by a single plugin execution, since symbolic links may be created or removed
+ * between executions. It is safe for concurrent use.</p>
+ *
+ * @since 2.3
+ */
+public final class CanonicalPathCache {
+
+    // Internal state
+    private static final int MAX_CACHED_CANONICAL_PATHS = 50000;
+    private final ConcurrentMap<String, String> canonicalPaths = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Acquires the canonical path for the supplied file, as {@link FileSystemUtilities#getCanonicalPath(File)}.
+     *
+     * @param file A non-null File for which the canonical path should be retrieved.
+     * @return The canonical path of the supplied file.
+     */
+    public String getCanonicalPath(final File file) {
+
+        // Check sanity
+        Validate.notNull(file, "file");
+
+        final String absolutePath = file.getAbsolutePath();
+        String toReturn = canonicalPaths.get(absolutePath);
+        if (toReturn == null) {
+
+            toReturn = FileSystemUtilities.getCanonicalPath(file);
+            if (canonicalPaths.size() >= MAX_CACHED_CANONICAL_PATHS) {
+                canonicalPaths.clear();
+            }
+            canonicalPaths.put(absolutePath, toReturn);
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Acquires the canonical File for the supplied file, as {@link FileSystemUtilities#getCanonicalFile(File)}.
+     *
+     * @param file A non-null File for which the canonical File should be retrieved.
+     * @return The canonical File of the supplied file.
+     */
+    public File getCanonicalFile(final File file) {
+        return new File(getCanonicalPath(file));
+    }
+}
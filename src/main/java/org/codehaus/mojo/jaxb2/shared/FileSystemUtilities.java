@@ -2,24 +2,48 @@ package org.codehaus.mojo.jaxb2.shared;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.codehaus.mojo.jaxb2.AbstractJaxbMojo;
 import org.codehaus.mojo.jaxb2.shared.filters.Filter;
 import org.codehaus.mojo.jaxb2.shared.filters.Filters;
+import org.codehaus.mojo.jaxb2.shared.filters.pattern.CompiledFileFilters;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.Os;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * The Jaxb2 Maven Plugin needs to fiddle with the filesystem a great deal, to create and optionally prune
@@ -31,6 +55,12 @@ import java.util.TreeMap;
  */
 public final class FileSystemUtilities {
 
+    // Internal state
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long WALKER_KEEP_ALIVE_SECONDS = 30L;
+    private static final Log QUIET_LOG = new SystemStreamLog();
+    private static ExecutorService walkerExecutor;
+
     /*
      * Hide the constructor for utility classes.
      */
@@ -396,35 +426,33 @@ public final class FileSystemUtilities {
                                                 final List<Filter<File>> exclusionFilters,
                                                 final Log log) {
 
-        // Check sanity
-        Validate.notNull(files, "files");
-
-        final List<Filter<File>> effectiveExclusions = exclusionFilters == null
-                ? new ArrayList<Filter<File>>()
-                : exclusionFilters;
-
         final List<File> toReturn = new ArrayList<File>();
-
-        if (files.size() > 0) {
-            for (File current : files) {
-
-                final boolean isAcceptedFile = EXISTING_FILE.accept(current)
-                        && Filters.noFilterMatches(current, effectiveExclusions);
-                final boolean isAcceptedDirectory = EXISTING_DIRECTORY.accept(current)
-                        && Filters.noFilterMatches(current, effectiveExclusions);
-
-                if (isAcceptedFile) {
-                    toReturn.add(current);
-                } else if (isAcceptedDirectory) {
-                    recurseAndPopulate(toReturn, effectiveExclusions, current, true, log);
-                }
-            }
+        for (ResolvedFile current : resolve(files, exclusionFilters, false, log)) {
+            toReturn.add(current.getFile());
         }
 
         // All done
         return toReturn;
     }
 
+    /**
+     * Resolves files exactly as {@link #resolveRecursively(List, List, Log)}, but also retrieves the modification
+     * time and size of each resolved file. These attributes are read while resolving the files, so callers
+     * requiring them need not read them again.
+     *
+     * @param files            The list of files to resolve, filter and return. Directories are searched for Files
+     *                         recursively.
+     * @param exclusionFilters A List of Filters which identify files to remove from the result.
+     * @param log              The active Maven Log.
+     * @return All resolved files, with their modification time and size, in the order of
+     * {@link #resolveRecursively(List, List, Log)}.
+     */
+    public static List<ResolvedFile> resolveRecursivelyWithAttributes(final List<File> files,
+                                                                      final List<Filter<File>> exclusionFilters,
+                                                                      final Log log) {
+        return resolve(files, exclusionFilters, true, log);
+    }
+
     /**
      * Convenience method to successfully create a directory - or throw an exception if failing to create it.
      *
@@ -470,19 +498,38 @@ public final class FileSystemUtilities {
     public static String relativize(final String path, final File parentDir) {
 
         // Check sanity
-        Validate.notNull(path, "path");
         Validate.notNull(parentDir, "parentDir");
 
-        final String basedirPath = FileSystemUtilities.getCanonicalPath(parentDir);
-        String toReturn = path;
+        // Delegate
+        return relativize(path, getCanonicalPath(parentDir));
+    }
+
+    /**
+     * If the supplied path refers to a file or directory below the supplied canonical parent path, the returned
+     * path is identical to the part below the parent path. Use this method rather than
+     * {@link #relativize(String, File)} when relativizing many paths against the same parent directory.
+     *
+     * @param path                The path to strip off the canonicalParentPath from, and return.
+     * @param canonicalParentPath The canonical path of the parent directory, as retrieved by
+     *                            {@link #getCanonicalPath(File)}.
+     * @return The path relative to the canonicalParentPath, if it is situated below it.
+     * Otherwise the supplied path.
+     */
+    public static String relativize(final String path, final String canonicalParentPath) {
+
+        // Check sanity
+        Validate.notNull(path, "path");
+        Validate.notNull(canonicalParentPath, "canonicalParentPath");
 
-        // Compare case insensitive
-        if (path.toLowerCase().startsWith(basedirPath.toLowerCase())) {
-            toReturn = path.substring(basedirPath.length() + 1);
+        // Compare case insensitive, without creating lowercase copies of the paths.
+        final int parentPathLength = canonicalParentPath.length();
+        if (path.length() > parentPathLength
+                && path.regionMatches(true, 0, canonicalParentPath, 0, parentPathLength)) {
+            return path.substring(parentPathLength + 1);
         }
 
-        // Handle whitespace in the argument.
-        return toReturn;
+        // Not below the parent path.
+        return path;
     }
 
     /**
@@ -544,10 +591,311 @@ public final class FileSystemUtilities {
         return toReturn;
     }
 
+    /**
+     * <p>Calculates a stamp of the content of the supplied directory, from the relative path, last modification
+     * time and size of all files within it (recursively). Changing, adding or removing any file within the directory
+     * changes the stamp, whereas the modification time of the directory itself - which is not updated when a file
+     * within it is changed - is ignored. The stamp is independent of the location of the directory.</p>
+     *
+     * @param directory A directory.
+     * @return The stamp of the content of the supplied directory, or {@code 0} if it holds no files.
+     */
+    public static long getDirectoryStamp(final File directory) {
+
+        // Check sanity
+        Validate.notNull(directory, "directory");
+
+        // Sum the stamps of all files, as the order of File.listFiles() is unspecified.
+        final int directoryPathLength = directory.getPath().length();
+        long toReturn = 0;
+        // No Log is available, so the walk is not debug logged.
+        for (ResolvedFile current : resolve(Collections.singletonList(directory), null, true, QUIET_LOG)) {
+
+            final String relativePath = current.getFile().getPath().substring(directoryPathLength)
+                    .replace(File.separatorChar, '/');
+            toReturn += 31 * (31 * relativePath.hashCode() + current.getLastModified()) + current.getLength();
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * <p>Moves the supplied source file to the supplied target file, unless the target file already exists with
+     * identical content - in which case the target file is left untouched (retaining its modification time) and
+     * the source file is deleted. A changed target file is replaced by renaming, i.e. atomically where the file
+     * system supports it, so that no reader ever finds a partially written target file.</p>
+     *
+     * @param source The source file, which is moved or deleted.
+     * @param target The target file.
+     * @return {@code true} if the target file was created or replaced, and {@code false} if its content was
+     * identical to the content of the source file.
+     * @throws IOException if the source file could not be moved or deleted.
+     */
+    public static boolean moveIfChanged(final File source, final File target) throws IOException {
+
+        // Check sanity
+        Validate.notNull(source, "source");
+        Validate.notNull(target, "target");
+        Validate.isTrue(source.isFile(), "[" + source.getAbsolutePath() + "] is not a file.");
+
+        if (target.isFile() && FileUtils.contentEquals(source, target)) {
+            FileUtils.forceDelete(source);
+            return false;
+        }
+
+        FileUtils.forceMkdir(target.getParentFile());
+        if (!source.renameTo(target)) {
+
+            // Renaming fails across file systems, and onto existing files on some platforms.
+            // Copy to a temporary file beside the target file, and rename that one instead.
+            final File tempFile = new File(target.getParentFile(), "." + target.getName() + ".tmp");
+            FileUtils.copyFile(source, tempFile);
+
+            if (!tempFile.renameTo(target)) {
+                FileUtils.forceDelete(target);
+                if (!tempFile.renameTo(target)) {
+                    FileUtils.forceDelete(tempFile);
+                    throw new IOException("Could not replace [" + target.getAbsolutePath() + "]");
+                }
+            }
+            FileUtils.forceDelete(source);
+        }
+
+        // All done.
+        return true;
+    }
+
+    /**
+     * <p>Synchronizes the content of the target directory with the content of the source directory, by moving all
+     * files from the source directory into the same relative location within the target directory. Files whose
+     * content is identical within both directories are left untouched, changed files are replaced using
+     * {@link #moveIfChanged(File, File)}, and files (and resulting empty directories) found only within the target
+     * directory are deleted. Hence, the modification times of the target directory's files only change when their
+     * content changes.</p>
+     * <p>The source directory is deleted after synchronization.</p>
+     *
+     * @param sourceDirectory The source (i.e. staging) directory.
+     * @param targetDirectory The target directory, which is created if it does not exist.
+     * @param log             The active Maven Log.
+     * @throws IOException if the directories could not be synchronized.
+     */
+    public static void synchronizeDirectory(final File sourceDirectory, final File targetDirectory, final Log log)
+            throws IOException {
+
+        // Check sanity
+        Validate.notNull(sourceDirectory, "sourceDirectory");
+        Validate.notNull(targetDirectory, "targetDirectory");
+        Validate.notNull(log, "log");
+        Validate.isTrue(sourceDirectory.isDirectory(),
+                "[" + sourceDirectory.getAbsolutePath() + "] is not a directory.");
+
+        FileUtils.forceMkdir(targetDirectory);
+
+        final Set<String> sourceFiles = new HashSet<String>();
+        int numChanged = 0;
+        for (Object current : FileUtils.getFileNames(sourceDirectory, "**", null, false)) {
+
+            final String relativePath = current.toString();
+            sourceFiles.add(relativePath);
+            if (moveIfChanged(new File(sourceDirectory, relativePath), new File(targetDirectory, relativePath))) {
+                numChanged++;
+            }
+        }
+
+        // Delete the files which were not re-created.
+        int numDeleted = 0;
+        for (Object current : FileUtils.getFileNames(targetDirectory, "**", null, false)) {
+            if (!sourceFiles.contains(current.toString())) {
+                FileUtils.forceDelete(new File(targetDirectory, current.toString()));
+                numDeleted++;
+            }
+        }
+        deleteEmptyDirectories(targetDirectory);
+        FileUtils.deleteDirectory(sourceDirectory);
+
+        if (log.isInfoEnabled()) {
+            log.info("Synchronized [" + getCanonicalPath(targetDirectory) + "]: " + numChanged + " of "
+                    + sourceFiles.size() + " files written, " + numDeleted + " files removed.");
+        }
+    }
+
+    /**
+     * <p>Copies the source file to the target file, byte for byte, unless the target file already holds identical
+     * content. In the latter case the target file - and its modification time - is left untouched. The bytes are
+     * transferred through {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * permitting the operating system to copy them without passing them through the Java heap.</p>
+     *
+     * @param source The file to copy.
+     * @param target The file to write, whose parent directories are created if required.
+     * @return {@code true} if the target file was written, and {@code false} if its content was already identical
+     * to the content of the source file.
+     * @throws IOException if the source file could not be read, or the target file could not be written.
+     */
+    public static boolean copyIfChanged(final File source, final File target) throws IOException {
+
+        // Check sanity
+        Validate.notNull(source, "source");
+        Validate.notNull(target, "target");
+        Validate.isTrue(source.isFile(), "[" + source.getAbsolutePath() + "] is not a file.");
+
+        if (target.isFile() && target.length() == source.length() && FileUtils.contentEquals(source, target)) {
+            return false;
+        }
+
+        FileUtils.forceMkdir(target.getParentFile());
+        final FileInputStream in = new FileInputStream(source);
+        try {
+            final FileOutputStream out = new FileOutputStream(target);
+            try {
+
+                final FileChannel inChannel = in.getChannel();
+                final FileChannel outChannel = out.getChannel();
+                final long size = inChannel.size();
+                for (long position = 0; position < size; ) {
+                    position += inChannel.transferTo(position, size - position, outChannel);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        // All done.
+        return true;
+    }
+
+    /**
+     * Copies the content of a ZipFile entry to the target file, byte for byte, unless the target file already
+     * holds identical content as given by the size and CRC-32 checksum recorded within the ZipFile. In the latter
+     * case the target file - and its modification time - is left untouched.
+     *
+     * @param zipFile The open ZipFile holding the entry.
+     * @param entry   The entry whose content should be copied.
+     * @param target  The file to write, whose parent directories are created if required.
+     * @return {@code true} if the target file was written, and {@code false} if its content was already identical
+     * to the content of the entry.
+     * @throws IOException if the entry could not be read, or the target file could not be written.
+     */
+    public static boolean copyIfChanged(final ZipFile zipFile, final ZipEntry entry, final File target)
+            throws IOException {
+
+        // Check sanity
+        Validate.notNull(zipFile, "zipFile");
+        Validate.notNull(entry, "entry");
+        Validate.notNull(target, "target");
+
+        if (target.isFile()
+                && entry.getCrc() != -1
+                && target.length() == entry.getSize()
+                && getCrc(target) == entry.getCrc()) {
+            return false;
+        }
+
+        FileUtils.forceMkdir(target.getParentFile());
+        final InputStream in = zipFile.getInputStream(entry);
+        try {
+            final OutputStream out = new FileOutputStream(target);
+            try {
+                IOUtil.copy(in, out, COPY_BUFFER_SIZE);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        // All done.
+        return true;
+    }
+
     //
     // Private helpers
     //
 
+    private static long getCrc(final File aFile) throws IOException {
+
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        final InputStream in = new FileInputStream(aFile);
+        try {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+
+        // All done.
+        return crc.getValue();
+    }
+
+    private static void deleteEmptyDirectories(final File directory) {
+
+        final File[] children = directory.listFiles();
+        if (children != null) {
+            for (File current : children) {
+                if (current.isDirectory()) {
+                    deleteEmptyDirectories(current);
+
+                    // Only succeeds for empty directories.
+                    current.delete();
+                }
+            }
+        }
+    }
+
+    private static List<ResolvedFile> resolve(final List<File> files,
+                                              final List<Filter<File>> exclusionFilters,
+                                              final boolean readAttributes,
+                                              final Log log) {
+
+        // Check sanity
+        Validate.notNull(files, "files");
+
+        // Compile the exclusion filters once, as they are evaluated for each resolved file and directory.
+        final CompiledFileFilters effectiveExclusions = CompiledFileFilters.compile(exclusionFilters);
+
+        // Find the accepted files and directories, holding a List of files for each accepted root.
+        final List<List<ResolvedFile>> resolvedRoots = new ArrayList<List<ResolvedFile>>();
+        final List<File> directories = new ArrayList<File>();
+        for (File current : files) {
+
+            // Stat files only once; only non-files require a second stat.
+            final boolean isFile = current != null && current.isFile();
+            final boolean isDirectory = current != null && !isFile && current.isDirectory();
+
+            if ((isFile || isDirectory) && effectiveExclusions.noFilterMatches(current)) {
+                if (isFile) {
+                    resolvedRoots.add(Collections.singletonList(toResolvedFile(current, readAttributes)));
+                } else {
+                    resolvedRoots.add(null);
+                    directories.add(current);
+                }
+            }
+        }
+
+        // Walk the directories, retaining the order of the supplied files within the result.
+        final Iterator<List<ResolvedFile>> walkedDirectories = walk(directories, effectiveExclusions,
+                readAttributes, log).iterator();
+        final List<ResolvedFile> toReturn = new ArrayList<ResolvedFile>();
+        for (List<ResolvedFile> current : resolvedRoots) {
+            toReturn.addAll(current == null ? walkedDirectories.next() : current);
+        }
+
+        // All done
+        return toReturn;
+    }
+
+    private static ResolvedFile toResolvedFile(final File aFile, final boolean readAttributes) {
+
+        // Unless requested, don't spend syscalls on attributes which are discarded by the caller.
+        return readAttributes
+                ? new ResolvedFile(aFile, aFile.lastModified(), aFile.length())
+                : new ResolvedFile(aFile, 0L, 0L);
+    }
+
     private static void checkAndAdd(final List<File> toPopulate,
                                     final File current,
                                     final List<Filter<File>> fileFilters,
@@ -563,16 +911,123 @@ public final class FileSystemUtilities {
         final boolean addFile = excludeFilterOperation
                 ? noFilters || Filters.rejectAtLeastOnce(current, fileFilters)
                 : noFilters || Filters.matchAtLeastOnce(current, fileFilters);
-        final String logPrefix = (addFile ? "Accepted " : "Rejected ")
-                + (current.isDirectory() ? "directory" : "file") + " [";
 
         if (addFile) {
             toPopulate.add(current);
         }
+        logAcceptance(current, null, addFile, log);
+    }
+
+    private static void logAcceptance(final File current,
+                                      final Boolean isDirectoryOrNull,
+                                      final boolean accepted,
+                                      final Log log) {
 
         if (log.isDebugEnabled()) {
-            log.debug(logPrefix + getCanonicalPath(current) + "]");
+
+            final boolean isDirectory = isDirectoryOrNull == null ? current.isDirectory() : isDirectoryOrNull;
+            log.debug((accepted ? "Accepted " : "Rejected ") + (isDirectory ? "directory" : "file")
+                    + " [" + getCanonicalPath(current) + "]");
+        }
+    }
+
+    /**
+     * Walks the supplied directories, retrieving a List holding the resolved files of each directory. Several
+     * directories are walked in parallel by the shared walker threads, unless debug logging is enabled (to retain
+     * the order of the debug log). If readAttributes is {@code true}, the modification time and size of each
+     * resolved file are read along with it.
+     */
+    private static List<List<ResolvedFile>> walk(final List<File> directories,
+                                         final CompiledFileFilters exclusionFilters,
+                                         final boolean readAttributes,
+                                         final Log log) {
+
+        final List<List<ResolvedFile>> toReturn = new ArrayList<List<ResolvedFile>>();
+        final int numThreads = Math.min(directories.size(), Runtime.getRuntime().availableProcessors());
+
+        if (numThreads <= 1 || log.isDebugEnabled()) {
+
+            for (File current : directories) {
+                final List<ResolvedFile> resolved = new ArrayList<ResolvedFile>();
+                recurseAndPopulate(resolved, exclusionFilters, current, readAttributes, log);
+                toReturn.add(resolved);
+            }
+
+            // All done.
+            return toReturn;
+        }
+
+        final List<Future<List<ResolvedFile>>> futures = new ArrayList<Future<List<ResolvedFile>>>();
+        try {
+
+            final ExecutorService executor = getWalkerExecutor();
+            for (final File current : directories) {
+                futures.add(executor.submit(new Callable<List<ResolvedFile>>() {
+                    @Override
+                    public List<ResolvedFile> call() {
+                        final List<ResolvedFile> resolved = new ArrayList<ResolvedFile>();
+                        recurseAndPopulate(resolved, exclusionFilters, current, readAttributes, log);
+                        return resolved;
+                    }
+                }));
+            }
+
+            for (Future<List<ResolvedFile>> current : futures) {
+                toReturn.add(current.get());
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving files.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Could not resolve files.", e.getCause());
+        } finally {
+
+            // Don't occupy the shared walker threads with walks whose result is no longer awaited.
+            for (Future<List<ResolvedFile>> current : futures) {
+                current.cancel(true);
+            }
         }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the ExecutorService shared by all walks, running at most one daemon thread per available
+     * processor. Idle threads exit, so the executor holds no threads between plugin executions.
+     */
+    private static synchronized ExecutorService getWalkerExecutor() {
+
+        if (walkerExecutor == null) {
+
+            final int numThreads = Runtime.getRuntime().availableProcessors();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(numThreads, numThreads,
+                    WALKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+
+                        private final AtomicInteger threadIndex = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+
+                            // Don't let the walker threads inherit (and retain) the ThreadContext ClassLoader.
+                            final Thread toReturn = new Thread(runnable,
+                                    "jaxb2-file-walker-" + threadIndex.incrementAndGet());
+                            toReturn.setDaemon(true);
+                            toReturn.setContextClassLoader(FileSystemUtilities.class.getClassLoader());
+                            return toReturn;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            walkerExecutor = executor;
+        }
+
+        // All done.
+        return walkerExecutor;
     }
 
     private static void validateFileOrDirectoryName(final File fileOrDir) {
@@ -584,20 +1039,37 @@ public final class FileSystemUtilities {
         }
     }
 
-    private static void recurseAndPopulate(final List<File> toPopulate,
-                                           final List<Filter<File>> fileFilters,
+    private static void recurseAndPopulate(final List<ResolvedFile> toPopulate,
+                                           final CompiledFileFilters exclusionFilters,
                                            final File aDirectory,
-                                           final boolean excludeOperation,
+                                           final boolean readAttributes,
                                            final Log log) {
 
-        final List<File> files = listFiles(aDirectory, fileFilters, excludeOperation, log);
-        for (File current : files) {
-            if (EXISTING_FILE.accept(current)) {
-                toPopulate.add(current);
+        final File[] children = aDirectory.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        for (File current : children) {
+
+            // Listed children exist, so a single stat identifies files. Only non-files require a second stat.
+            final boolean isFile = current.isFile();
+            final boolean isDirectory = !isFile && current.isDirectory();
+
+            if (!isFile && !isDirectory) {
+                continue;
             }
 
-            if (EXISTING_DIRECTORY.accept(current)) {
-                recurseAndPopulate(toPopulate, fileFilters, current, excludeOperation, log);
+            // Excluded directories are pruned before being listed.
+            final boolean accepted = exclusionFilters.isEmpty() || exclusionFilters.rejectAtLeastOnce(current);
+            logAcceptance(current, isDirectory, accepted, log);
+
+            if (accepted) {
+                if (isFile) {
+                    toPopulate.add(toResolvedFile(current, readAttributes));
+                } else {
+                    recurseAndPopulate(toPopulate, exclusionFilters, current, readAttributes, log);
+                }
             }
         }
     }
@@ -0,0 +1,84 @@
+package org.codehaus.mojo.jaxb2.shared;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+/**
+ * <p>A file found by {@link FileSystemUtilities#resolveRecursivelyWithAttributes(java.util.List, java.util.List,
+ * org.apache.maven.plugin.logging.Log)}, along with the modification time and size read while resolving it.
+ * Callers requiring these attributes (such as staleness checks) should use them rather than reading them again.</p>
+ *
+ * @since 2.3
+ */
+public final class ResolvedFile {
+
+    // Internal state
+    private final File file;
+    private final long lastModified;
+    private final long length;
+
+    /**
+     * Creates a ResolvedFile wrapping the supplied data.
+     *
+     * @param file         The non-null, resolved file.
+     * @param lastModified The modification time of the file, as read by {@link File#lastModified()}.
+     * @param length       The size of the file, as read by {@link File#length()}.
+     */
+    public ResolvedFile(final File file, final long lastModified, final long length) {
+
+        // Check sanity
+        Validate.notNull(file, "file");
+
+        // Assign internal state
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * @return The resolved file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The modification time of the file, read when it was resolved.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The size of the file in bytes, read when it was resolved.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return file.getPath() + " [lastModified: " + lastModified + ", length: " + length + "]";
+    }
+}
@@ -0,0 +1,442 @@
+package org.codehaus.mojo.jaxb2.shared.cache;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.mojo.jaxb2.shared.staleness.SchemaDependencyGraph;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Local, content-addressed cache of generated files, shared by all builds on a machine. Each cache entry holds
+ * a copy of the files generated by one tool execution (i.e. the content of its outputDirectory), and is identified
+ * by a key derived from all inputs of that execution. Hence, any build - in another worktree, on another branch or
+ * after a clean - with identical inputs can restore the generated files instead of re-running XJC or SchemaGen.</p>
+ * <p>The cache directory has the following layout:</p>
+ * <pre>
+ *     <code>
+ *         [cacheDirectory]/.lock                   (lock file, guarding all modifications)
+ *         [cacheDirectory]/entries/[key]/entry.properties
+ *         [cacheDirectory]/entries/[key]/content/  (the cached files)
+ *         [cacheDirectory]/tmp/                    (entries under construction)
+ *     </code>
+ * </pre>
+ * <p>The GenerationCache is safe for concurrent use by several builds:</p>
+ * <ol>
+ * <li><strong>Atomic publishing</strong>: New entries are assembled within the tmp directory, and moved into the
+ * entries directory by a single rename. An entry directory is therefore either absent or complete.</li>
+ * <li><strong>Locking</strong>: Publishing, restoring and evicting entries are guarded by a file lock (for
+ * concurrent builds in separate JVMs) and a JVM-wide lock (for concurrent builds within the same JVM, as file
+ * locks are held on behalf of the entire JVM).</li>
+ * <li><strong>LRU eviction</strong>: The modification time of each entry.properties file records when the entry was
+ * last used. When the total size of all entries exceeds the maximum size, the least recently used entries are
+ * evicted.</li>
+ * </ol>
+ *
+ * @since 2.3
+ */
+public class GenerationCache {
+
+    // Internal state
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{8,}");
+    private static final String LOCK_FILE = ".lock";
+    private static final String ENTRIES_DIRECTORY = "entries";
+    private static final String TMP_DIRECTORY = "tmp";
+    private static final String CONTENT_DIRECTORY = "content";
+    private static final String ENTRY_PROPERTIES = "entry.properties";
+    private static final String SIZE_KEY = "size";
+
+    private File cacheDirectory;
+    private long maxSize;
+    private Log log;
+
+    /**
+     * Creates a GenerationCache using the supplied cache directory.
+     *
+     * @param cacheDirectory The root directory of the cache. Created if it does not exist.
+     * @param maxSize        The maximum total size (in bytes) of all cached entries.
+     * @param log            The active Maven Log.
+     */
+    public GenerationCache(final File cacheDirectory, final long maxSize, final Log log) {
+
+        // Check sanity
+        Validate.notNull(cacheDirectory, "cacheDirectory");
+        Validate.isTrue(maxSize >= 0, "maxSize >= 0");
+        Validate.notNull(log, "log");
+
+        // Assign internal state
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Calculates the cache key for the supplied inputs of a tool execution. As the key is derived from the entries
+     * of a {@link org.codehaus.mojo.jaxb2.shared.staleness.StaleManifest}, any change detected by the staleness
+     * check (including changed files within classpath directories) yields another key.
+     *
+     * @param scope   The non-empty scope of the key, such as the tool type and the versions of the tool.
+     * @param entries The StaleManifest entries of the tool execution, whose keys should be independent of the
+     *                project location.
+     * @return The cache key, or {@code null} if the generated files should not be cached, since some input could
+     * not be fingerprinted (i.e. is unreadable or remote).
+     */
+    public String getKey(final String scope, final SortedMap<String, String> entries) {
+
+        // Check sanity
+        Validate.notEmpty(scope, "scope");
+        Validate.notNull(entries, "entries");
+
+        final StringBuilder builder = new StringBuilder(scope).append('\n');
+        for (Map.Entry<String, String> current : entries.entrySet()) {
+
+            final String value = current.getValue();
+            if (ContentDigester.UNREADABLE.equals(value) || SchemaDependencyGraph.REMOTE.equals(value)) {
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Not using the generation cache, since [" + current.getKey()
+                            + "] cannot be fingerprinted.");
+                }
+                return null;
+            }
+
+            builder.append(current.getKey()).append('=').append(value).append('\n');
+        }
+
+        // All done.
+        return ContentDigester.digest(builder.toString());
+    }
+
+    /**
+     * Checks if this GenerationCache holds an entry for the supplied key.
+     *
+     * @param key The cache key.
+     * @return {@code true} if this GenerationCache holds an entry for the supplied key.
+     */
+    public boolean contains(final String key) {
+        return new File(getEntryDirectory(key), ENTRY_PROPERTIES).isFile();
+    }
+
+    /**
+     * Copies the files of the cache entry with the supplied key into the given target directory, and marks the
+     * entry as recently used.
+     *
+     * @param key             The cache key.
+     * @param targetDirectory The directory into which the cached files should be copied. Created if required.
+     * @return {@code true} if the cache entry was found and restored, and {@code false} if this GenerationCache
+     * holds no entry for the supplied key.
+     * @throws IOException if the cached files could not be copied.
+     */
+    public boolean restore(final String key, final File targetDirectory) throws IOException {
+
+        // Check sanity
+        Validate.notNull(targetDirectory, "targetDirectory");
+
+        final File entryDirectory = getEntryDirectory(key);
+        final File entryProperties = new File(entryDirectory, ENTRY_PROPERTIES);
+
+        // Restore under lock, to prevent a concurrent eviction of the entry.
+        final FileLock lock = lock();
+        try {
+
+            if (!entryProperties.isFile()) {
+                return false;
+            }
+
+            FileUtils.forceMkdir(targetDirectory);
+            final long size = copyRecursively(new File(entryDirectory, CONTENT_DIRECTORY), targetDirectory);
+
+            // Mark the entry as recently used.
+            if (!entryProperties.setLastModified(System.currentTimeMillis()) && log.isDebugEnabled()) {
+                log.debug("Could not mark cache entry [" + key + "] as recently used.");
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Restored " + size + " bytes from cache entry [" + key + "] into ["
+                        + FileSystemUtilities.getCanonicalPath(targetDirectory) + "]");
+            }
+
+        } finally {
+            unlock(lock);
+        }
+
+        // All done.
+        return true;
+    }
+
+    /**
+     * Stores a copy of all files within the supplied source directory as the cache entry with the supplied key,
+     * unless such an entry already exists. Least recently used entries are evicted as required to keep the
+     * total size of this GenerationCache below its maximum size.
+     *
+     * @param key             The cache key.
+     * @param sourceDirectory The directory holding the files to cache.
+     * @return {@code true} if a new cache entry was published, and {@code false} if an entry with the
+     * supplied key already existed, or the content of the source directory exceeds the maximum cache size.
+     * @throws IOException if the files could not be copied into the cache.
+     */
+    public boolean store(final String key, final File sourceDirectory) throws IOException {
+
+        // Check sanity
+        Validate.notNull(sourceDirectory, "sourceDirectory");
+        Validate.isTrue(sourceDirectory.isDirectory(), "sourceDirectory.isDirectory()");
+
+        final File entryDirectory = getEntryDirectory(key);
+        if (contains(key)) {
+            return false;
+        }
+
+        // Assemble the new entry within the tmp directory, without holding the lock.
+        final File tmpDirectory = new File(cacheDirectory, TMP_DIRECTORY);
+        FileUtils.forceMkdir(tmpDirectory);
+        final File tmpEntryDirectory = new File(tmpDirectory, key + "." + System.nanoTime());
+
+        boolean published = false;
+        try {
+
+            final long size = copyRecursively(sourceDirectory, new File(tmpEntryDirectory, CONTENT_DIRECTORY));
+            if (size > maxSize) {
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Not caching [" + FileSystemUtilities.getCanonicalPath(sourceDirectory)
+                            + "], as its size (" + size + " bytes) exceeds the maximum cache size.");
+                }
+                return false;
+            }
+
+            final Properties properties = new Properties();
+            properties.setProperty(SIZE_KEY, "" + size);
+            writeProperties(properties, new File(tmpEntryDirectory, ENTRY_PROPERTIES));
+
+            // Publish the entry atomically, and evict old entries if required.
+            final FileLock lock = lock();
+            try {
+
+                if (!contains(key)) {
+
+                    FileUtils.forceMkdir(entryDirectory.getParentFile());
+                    published = tmpEntryDirectory.renameTo(entryDirectory);
+
+                    if (!published && log.isDebugEnabled()) {
+                        log.debug("Could not publish cache entry [" + key + "]");
+                    }
+                }
+
+                if (published) {
+                    evict();
+                }
+
+            } finally {
+                unlock(lock);
+            }
+
+            if (published && log.isDebugEnabled()) {
+                log.debug("Stored " + size + " bytes from [" + FileSystemUtilities.getCanonicalPath(sourceDirectory)
+                        + "] as cache entry [" + key + "]");
+            }
+
+        } finally {
+
+            // Remove any leftovers from an entry which was not published.
+            if (!published && tmpEntryDirectory.exists()) {
+                FileUtils.deleteDirectory(tmpEntryDirectory);
+            }
+        }
+
+        // All done.
+        return published;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private File getEntryDirectory(final String key) {
+
+        // Check sanity; the key is used as a directory name.
+        Validate.notEmpty(key, "key");
+        Validate.isTrue(KEY_PATTERN.matcher(key).matches(), "Cache keys must be hex-encoded digests.");
+
+        return new File(new File(cacheDirectory, ENTRIES_DIRECTORY), key);
+    }
+
+    private void evict() throws IOException {
+
+        final File[] entryDirectories = new File(cacheDirectory, ENTRIES_DIRECTORY).listFiles();
+        if (entryDirectories == null) {
+            return;
+        }
+
+        // Find the size and last usage of all entries.
+        long totalSize = 0;
+        final List<File> entryPropertyFiles = new ArrayList<File>();
+        for (File current : entryDirectories) {
+
+            final File currentProperties = new File(current, ENTRY_PROPERTIES);
+            if (currentProperties.isFile()) {
+                entryPropertyFiles.add(currentProperties);
+                totalSize += getSize(currentProperties);
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        // Evict the least recently used entries first.
+        Collections.sort(entryPropertyFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File left, final File right) {
+                final long leftLastUsed = left.lastModified();
+                final long rightLastUsed = right.lastModified();
+                return leftLastUsed < rightLastUsed ? -1 : (leftLastUsed == rightLastUsed ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < entryPropertyFiles.size() && totalSize > maxSize; i++) {
+
+            final File current = entryPropertyFiles.get(i);
+            totalSize -= getSize(current);
+            FileUtils.deleteDirectory(current.getParentFile());
+
+            if (log.isDebugEnabled()) {
+                log.debug("Evicted least recently used cache entry [" + current.getParentFile().getName() + "]");
+            }
+        }
+    }
+
+    private FileLock lock() throws IOException {
+
+        FileUtils.forceMkdir(cacheDirectory);
+
+        JVM_LOCK.lock();
+        RandomAccessFile lockFile = null;
+        try {
+            lockFile = new RandomAccessFile(new File(cacheDirectory, LOCK_FILE), "rw");
+            return lockFile.getChannel().lock();
+        } catch (IOException e) {
+            closeAndUnlock(lockFile);
+            throw e;
+        } catch (RuntimeException e) {
+            closeAndUnlock(lockFile);
+            throw e;
+        }
+    }
+
+    private static void closeAndUnlock(final RandomAccessFile lockFile) {
+
+        try {
+            if (lockFile != null) {
+                lockFile.close();
+            }
+        } catch (IOException e) {
+            // Nothing more to do; the original exception is more relevant.
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    private static void unlock(final FileLock lock) throws IOException {
+
+        try {
+            lock.release();
+        } finally {
+            try {
+                lock.channel().close();
+            } finally {
+                JVM_LOCK.unlock();
+            }
+        }
+    }
+
+    private static long getSize(final File entryProperties) {
+
+        final Properties properties = new Properties();
+        try {
+            final FileInputStream in = new FileInputStream(entryProperties);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+
+            return Long.parseLong(properties.getProperty(SIZE_KEY, "0"));
+        } catch (Exception e) {
+
+            // Corrupt entries are sized by their content.
+            return FileUtils.sizeOfDirectory(new File(entryProperties.getParentFile(), CONTENT_DIRECTORY));
+        }
+    }
+
+    private static long copyRecursively(final File sourceDirectory, final File targetDirectory) throws IOException {
+
+        long toReturn = 0;
+        FileUtils.forceMkdir(targetDirectory);
+
+        final File[] children = sourceDirectory.listFiles();
+        if (children == null) {
+            throw new IOException("Could not list the content of directory ["
+                    + FileSystemUtilities.getCanonicalPath(sourceDirectory) + "]");
+        }
+
+        for (File current : children) {
+
+            final File target = new File(targetDirectory, current.getName());
+            if (current.isDirectory()) {
+                toReturn += copyRecursively(current, target);
+            } else {
+                FileUtils.copyFile(current, target);
+                toReturn += current.length();
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private static void writeProperties(final Properties properties, final File aFile) throws IOException {
+
+        final FileOutputStream out = new FileOutputStream(aFile);
+        try {
+            properties.store(out, "jaxb2-maven-plugin generation cache entry. Do not edit.");
+        } finally {
+            out.close();
+        }
+    }
+}
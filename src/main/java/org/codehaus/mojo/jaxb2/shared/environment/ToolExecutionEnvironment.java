@@ -28,16 +28,27 @@ import org.codehaus.mojo.jaxb2.shared.environment.logging.LoggingHandlerEnvironm
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Compound EnvironmentFacet implementation which is used to set up and use a collection
- * of other EnvironmentFacet instances during the run of the JAXB2 Maven Plugin.
+ * <p>Compound EnvironmentFacet implementation which is used to set up and use a collection
+ * of other EnvironmentFacet instances during the run of the JAXB2 Maven Plugin.</p>
+ * <p>Several ToolExecutionEnvironments may be active concurrently, such as within a parallel Maven build.
+ * The ThreadContext ClassLoader and the logging routing are set up per thread. However, the default Locale
+ * and any changes performed by extra EnvironmentFacets (such as System properties) are global to the JVM.
+ * Therefore, a ToolExecutionEnvironment which changes the Locale or uses extra EnvironmentFacets is
+ * active exclusively, whereas other ToolExecutionEnvironments may be active concurrently.</p>
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
 public class ToolExecutionEnvironment extends AbstractLogAwareFacet {
 
+    // Shared state
+    private static final ReentrantReadWriteLock GLOBAL_STATE_LOCK = new ReentrantReadWriteLock(true);
+
     // Internal state
+    private Lock globalStateLock;
     private ThreadContextClassLoaderBuilder builder;
     private ThreadContextClassLoaderHolder holder;
     private LoggingHandlerEnvironmentFacet loggingHandlerEnvironmentFacet;
@@ -116,6 +127,14 @@ public class ToolExecutionEnvironment extends AbstractLogAwareFacet {
                 log.debug("ToolExecutionEnvironment setup -- Starting.");
             }
 
+            // Wait for exclusive access if changing JVM-global state, and shared access otherwise.
+            final boolean changesGlobalState = localeFacet != null || !extraFacets.isEmpty();
+            globalStateLock = changesGlobalState ? GLOBAL_STATE_LOCK.writeLock() : GLOBAL_STATE_LOCK.readLock();
+            if (changesGlobalState && log.isDebugEnabled()) {
+                log.debug("Awaiting exclusive access to JVM-global state (Locale and System properties).");
+            }
+            globalStateLock.lock();
+
             // Build the ClassLoader as required for the JAXB tools
             holder = builder.buildAndSet();
 
@@ -179,7 +198,15 @@ public class ToolExecutionEnvironment extends AbstractLogAwareFacet {
             }
 
             // Restore the original ClassLoader
-            holder.restoreClassLoaderAndReleaseThread();
+            if (holder != null) {
+                holder.restoreClassLoaderAndReleaseThread();
+            }
+
+            // Permit other ToolExecutionEnvironments to change JVM-global state.
+            if (globalStateLock != null) {
+                globalStateLock.unlock();
+                globalStateLock = null;
+            }
 
             if (log.isDebugEnabled()) {
                 log.debug("ToolExecutionEnvironment restore -- Done.");
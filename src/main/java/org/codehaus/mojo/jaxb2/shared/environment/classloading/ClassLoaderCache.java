@@ -0,0 +1,260 @@
+package org.codehaus.mojo.jaxb2.shared.environment.classloading;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Cache of the URLClassLoaders built by {@link ThreadContextClassLoaderBuilder}s, shared by all executions
+ * of the plugin within the lifetime of the plugin ClassLoader (i.e. the Maven session). Executions using an
+ * identical classpath therefore share one URLClassLoader - and all classes already loaded and linked by it -
+ * instead of each creating (and leaking) its own. The ToolWorker uses the same cache for the tool ClassLoaders
+ * of its requests.</p>
+ * <p>Cached ClassLoaders are identified by their parent ClassLoader, their ordered URLs and the last modification
+ * time and size of each file referred to by those URLs. Directories are identified by the relative path, last
+ * modification time and size of all files within them, since changing a class file within a directory does not
+ * alter the modification time of the directory itself. Hence, rebuilding a jar or recompiling a class on the
+ * classpath yields a new ClassLoader, while the ClassLoader holding the outdated classes is evicted.</p>
+ * <p>Each cached ClassLoader is reference-counted. Evicted ClassLoaders (the least recently used ones beyond
+ * {@link #MAX_CACHED_CLASSLOADERS}, and outdated ones) are closed as soon as they are no longer in use,
+ * provided that they are {@link Closeable} (as URLClassLoaders are in Java 7 and later).</p>
+ *
+ * @since 2.3
+ */
+public final class ClassLoaderCache {
+
+    /**
+     * The maximum number of ClassLoaders cached.
+     */
+    public static final int MAX_CACHED_CLASSLOADERS = 8;
+
+    // Internal state
+    private static final Map<Key, Entry> ENTRIES = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /**
+     * Hide constructor for utility classes.
+     */
+    private ClassLoaderCache() {
+    }
+
+    /**
+     * Acquires the cached URLClassLoader for the supplied parent and URLs, creating it if required. Each acquired
+     * Entry must be {@link #release(Entry)}d when no longer used.
+     *
+     * @param parent The parent ClassLoader of the URLClassLoader.
+     * @param urls   The ordered URLs of the URLClassLoader.
+     * @return The acquired cache Entry.
+     */
+    public static Entry acquire(final ClassLoader parent, final List<URL> urls) {
+
+        // Check sanity
+        Validate.notNull(parent, "parent");
+        Validate.notNull(urls, "urls");
+
+        final Key key = new Key(parent, urls);
+        synchronized (ENTRIES) {
+
+            Entry toReturn = ENTRIES.get(key);
+            if (toReturn == null) {
+
+                // Evict any ClassLoader for the same classpath, as its files have been modified since.
+                for (Iterator<Entry> it = ENTRIES.values().iterator(); it.hasNext(); ) {
+                    final Entry current = it.next();
+                    if (current.key.hasSameClassPath(key)) {
+                        it.remove();
+                        retire(current);
+                    }
+                }
+
+                toReturn = new Entry(key, new URLClassLoader(urls.toArray(new URL[urls.size()]), parent));
+                ENTRIES.put(key, toReturn);
+
+                // Evict the least recently used ClassLoaders.
+                for (Iterator<Entry> it = ENTRIES.values().iterator(); ENTRIES.size() > MAX_CACHED_CLASSLOADERS; ) {
+                    final Entry eldest = it.next();
+                    it.remove();
+                    retire(eldest);
+                }
+            } else {
+                toReturn.reused = true;
+            }
+
+            toReturn.references++;
+            return toReturn;
+        }
+    }
+
+    /**
+     * Releases an Entry acquired by {@link #acquire(ClassLoader, List)}. If the Entry was evicted and is no longer
+     * used, its ClassLoader is closed.
+     *
+     * @param entry The Entry to release.
+     */
+    public static void release(final Entry entry) {
+
+        // Check sanity
+        Validate.notNull(entry, "entry");
+
+        synchronized (ENTRIES) {
+
+            Validate.isTrue(entry.references > 0, "Entry released more times than acquired.");
+            entry.references--;
+            if (entry.evicted && entry.references == 0) {
+                close(entry);
+            }
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void retire(final Entry entry) {
+
+        entry.evicted = true;
+        if (entry.references == 0) {
+            close(entry);
+        }
+    }
+
+    private static void close(final Entry entry) {
+
+        final ClassLoader classLoader = entry.classLoader;
+        if (classLoader instanceof Closeable) {
+            try {
+                ((Closeable) classLoader).close();
+            } catch (IOException e) {
+                // Nothing more to do; the ClassLoader will be garbage collected.
+            }
+        }
+    }
+
+    /**
+     * A cached, reference-counted ClassLoader.
+     */
+    public static final class Entry {
+
+        // Internal state
+        private final Key key;
+        private final URLClassLoader classLoader;
+        private int references;
+        private boolean evicted;
+        private boolean reused;
+
+        private Entry(final Key key, final URLClassLoader classLoader) {
+            this.key = key;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * @return The cached URLClassLoader.
+         */
+        public URLClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        /**
+         * @return {@code true} if this Entry was acquired before, implying that its ClassLoader is warm.
+         */
+        public boolean isReused() {
+            synchronized (ENTRIES) {
+                return reused;
+            }
+        }
+    }
+
+    /**
+     * The identity of a cached ClassLoader.
+     */
+    private static final class Key {
+
+        // Internal state
+        private final ClassLoader parent;
+        private final List<String> urls;
+        private final List<Long> stamps;
+
+        Key(final ClassLoader parent, final List<URL> urls) {
+
+            this.parent = parent;
+            this.urls = new ArrayList<String>(urls.size());
+            this.stamps = new ArrayList<Long>(2 * urls.size());
+
+            for (URL current : urls) {
+
+                this.urls.add(current.toString());
+                if ("file".equalsIgnoreCase(current.getProtocol())) {
+
+                    final File file = toFile(current);
+                    if (file.isDirectory()) {
+                        stamps.add(FileSystemUtilities.getDirectoryStamp(file));
+                    } else {
+                        stamps.add(file.lastModified());
+                        stamps.add(file.length());
+                    }
+                }
+            }
+        }
+
+        private static File toFile(final URL fileURL) {
+
+            // Decode the path, which may contain escaped characters such as spaces.
+            try {
+                return new File(fileURL.toURI());
+            } catch (Exception e) {
+                return new File(fileURL.getPath());
+            }
+        }
+
+        boolean hasSameClassPath(final Key other) {
+            return parent == other.parent && urls.equals(other.urls);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final Key that = (Key) obj;
+            return hasSameClassPath(that) && stamps.equals(that.stamps);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(parent) + urls.hashCode()) + stamps.hashCode();
+        }
+    }
+}
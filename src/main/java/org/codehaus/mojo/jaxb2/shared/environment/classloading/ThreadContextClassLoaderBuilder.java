@@ -23,13 +23,14 @@ import org.apache.maven.plugin.logging.Log;
 import org.codehaus.mojo.jaxb2.shared.Validate;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * <p>Utility class which assists in synthesizing a URLClassLoader for use as a ThreadLocal ClassLoader.
@@ -64,12 +65,14 @@ public class ThreadContextClassLoaderBuilder {
     // Internal state
     private ClassLoader originalClassLoader;
     private List<URL> urlList;
+    private Set<String> urlKeys;
     private Log log;
 
     private ThreadContextClassLoaderBuilder(final ClassLoader classLoader, final Log aLog) {
         log = aLog;
         originalClassLoader = classLoader;
         urlList = new ArrayList<URL>();
+        urlKeys = new HashSet<String>();
     }
 
     /**
@@ -84,24 +87,6 @@ public class ThreadContextClassLoaderBuilder {
         // Check sanity
         Validate.notNull(anURL, "anURL");
 
-        // Add the segment unless already added.
-        for (URL current : urlList) {
-            if (current.toString().equalsIgnoreCase(anURL.toString())) {
-
-                if (log.isWarnEnabled()) {
-                    log.warn("Not adding URL [" + anURL.toString() + "] twice. Check your plugin configuration.");
-                }
-
-                // Don't re-add the supplied URL.
-                return this;
-            }
-        }
-
-        // Add the supplied URL to the urlList
-        if (log.isDebugEnabled()) {
-            log.debug("Adding URL [" + anURL.toString() + "]");
-        }
-
         //
         // According to the URLClassLoader's documentation:
         // "Any URL that ends with a '/' is assumed to refer to a directory.
@@ -112,7 +97,24 @@ public class ThreadContextClassLoaderBuilder {
         // So ... we need to ensure that any file-protocol URLs which point to directories are actually
         // terminated with a '/'. Otherwise the URLClassLoader treats those URLs as JARs - and hence ignores them.
         //
-        urlList.add(addSlashToDirectoryUrlIfRequired(anURL));
+        final URL toAdd = addSlashToDirectoryUrlIfRequired(anURL);
+
+        // Add the segment unless already added.
+        if (!urlKeys.add(toAdd.toString().toLowerCase(Locale.ENGLISH))) {
+
+            if (log.isWarnEnabled()) {
+                log.warn("Not adding URL [" + anURL.toString() + "] twice. Check your plugin configuration.");
+            }
+
+            // Don't re-add the supplied URL.
+            return this;
+        }
+
+        // Add the supplied URL to the urlList
+        if (log.isDebugEnabled()) {
+            log.debug("Adding URL [" + anURL.toString() + "]");
+        }
+        urlList.add(toAdd);
 
         return this;
     }
@@ -171,43 +173,41 @@ public class ThreadContextClassLoaderBuilder {
      * References to the original ThreadContextClassLoader and the currentThread are stored within the returned
      * ThreadContextClassLoaderHolder, and can be restored by a call to
      * {@code ThreadContextClassLoaderHolder.restoreClassLoaderAndReleaseThread()}.
+     * <p>ThreadContext ClassLoaders are cached and shared by all builders using the same original ClassLoader and
+     * URLs (whose files are unmodified), so the returned holder must always be restored to release its
+     * ClassLoader.</p>
      *
      * @return A fully set up ThreadContextClassLoaderHolder which is used to set the
      */
     public ThreadContextClassLoaderHolder buildAndSet() {
 
-        // Create the URLClassLoader from the supplied URLs
-        final URL[] allURLs = new URL[urlList.size()];
-        urlList.toArray(allURLs);
-        final URLClassLoader classLoader = new URLClassLoader(allURLs, originalClassLoader);
+        // Acquire the URLClassLoader for the supplied URLs, which may be shared with other executions.
+        final ClassLoaderCache.Entry cacheEntry = ClassLoaderCache.acquire(originalClassLoader, urlList);
+        final URLClassLoader classLoader = cacheEntry.getClassLoader();
+        if (cacheEntry.isReused() && log.isDebugEnabled()) {
+            log.debug("Reusing cached ThreadContext ClassLoader for " + urlList.size() + " URLs.");
+        }
 
         // Assign the ThreadContext ClassLoader
         final Thread currentThread = Thread.currentThread();
         currentThread.setContextClassLoader(classLoader);
 
-        // Build the classpath argument
-        StringBuilder builder = new StringBuilder();
-        try {
-            for (URL current : Collections.list(classLoader.getResources(""))) {
+        // Synthesize the classpath argument from the URLs of the ThreadContext ClassLoader, in order.
+        final StringBuilder builder = new StringBuilder();
+        for (URL current : urlList) {
 
-                final String toAppend = getClassPathElement(current);
-                if (toAppend != null) {
-                    builder.append(toAppend).append(File.pathSeparator);
+            final String toAppend = getClassPathElement(current);
+            if (toAppend != null) {
+                if (builder.length() > 0) {
+                    builder.append(File.pathSeparator);
                 }
+                builder.append(toAppend);
             }
-        } catch (IOException e) {
-
-            // Restore the original ClassLoader to the active thread before failing.
-            currentThread.setContextClassLoader(originalClassLoader);
-            throw new IllegalStateException("Could not synthesize classPath from original ClassLoader.", e);
         }
-
-        final String classPathString = builder.length() > 0
-                ? builder.toString().substring(0, builder.length() - File.pathSeparator.length())
-                : "";
+        final String classPathString = builder.toString();
 
         // All done.
-        return new DefaultHolder(currentThread, this.originalClassLoader, classPathString);
+        return new DefaultHolder(currentThread, this.originalClassLoader, classPathString, cacheEntry);
     }
 
     /**
@@ -263,7 +263,13 @@ public class ThreadContextClassLoaderBuilder {
         String toReturn = null;
 
         if ("file".equalsIgnoreCase(protocol)) {
-            toReturn = anURL.getPath();
+
+            // Decode the path, which may contain escaped characters such as spaces.
+            try {
+                toReturn = new File(anURL.toURI()).getPath();
+            } catch (Exception e) {
+                toReturn = anURL.getPath();
+            }
         } else if ("jar".equalsIgnoreCase(protocol)) {
             toReturn = anURL.getPath();
         } else if ("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol)) {
@@ -318,20 +324,24 @@ public class ThreadContextClassLoaderBuilder {
         private Thread affectedThread;
         private ClassLoader originalClassLoader;
         private String classPathArgument;
+        private ClassLoaderCache.Entry cacheEntry;
 
         public DefaultHolder(final Thread affectedThread,
                              final ClassLoader originalClassLoader,
-                             final String classPathArgument) {
+                             final String classPathArgument,
+                             final ClassLoaderCache.Entry cacheEntry) {
 
             // Check sanity
             Validate.notNull(affectedThread, "affectedThread");
             Validate.notNull(originalClassLoader, "originalClassLoader");
             Validate.notNull(classPathArgument, "classPathArgument");
+            Validate.notNull(cacheEntry, "cacheEntry");
 
             // Assign internal state
             this.affectedThread = affectedThread;
             this.originalClassLoader = originalClassLoader;
             this.classPathArgument = classPathArgument;
+            this.cacheEntry = cacheEntry;
         }
 
         /**
@@ -344,10 +354,14 @@ public class ThreadContextClassLoaderBuilder {
                 // Restore original state
                 affectedThread.setContextClassLoader(originalClassLoader);
 
+                // Release the (shared) ThreadContext ClassLoader.
+                ClassLoaderCache.release(cacheEntry);
+
                 // Null out the internal state
                 affectedThread = null;
                 originalClassLoader = null;
                 classPathArgument = null;
+                cacheEntry = null;
             }
         }
 
@@ -63,6 +63,9 @@ public class LocaleFacet extends AbstractLogAwareFacet {
     @Override
     public void setup() {
 
+        // Another Mojo may have changed the default Locale since this LocaleFacet was created.
+        originalLocale = Locale.getDefault();
+
         if (log.isInfoEnabled()) {
             log.info("Setting default locale to [" + newLocale + "]");
         }
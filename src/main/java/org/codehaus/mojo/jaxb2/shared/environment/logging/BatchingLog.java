@@ -0,0 +1,509 @@
+package org.codehaus.mojo.jaxb2.shared.environment.logging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Maven Log decorator for the (potentially very large number of) diagnostics emitted by the JAXB tools.
+ * Unless debug logging is enabled, a BatchingLog handles warnings and lower-level diagnostics as follows:</p>
+ * <ol>
+ * <li><strong>Deduplicates</strong> diagnostics: a diagnostic with the same level, message and location as an
+ * already logged diagnostic is only counted.</li>
+ * <li><strong>Rate-limits</strong> diagnostics per category: only the first {@link #DEFAULT_MAX_PER_CATEGORY}
+ * diagnostics of each category (i.e. the level and the message, with all quoted values and numbers removed) are
+ * logged. Subsequent diagnostics of that category are only counted.</li>
+ * <li><strong>Batches</strong> diagnostics: logged diagnostics are placed on a bounded queue, from which a
+ * single background thread emits them to the Maven Log. When the queue is full, diagnostics are counted as
+ * dropped.</li>
+ * <li><strong>Summarizes</strong>: when closed, the queue is drained and a summary table of all categories
+ * holding suppressed diagnostics is logged.</li>
+ * </ol>
+ * <p>Errors are never deduplicated, rate-limited or batched; they are emitted immediately to the Maven Log,
+ * with unaltered content. If debug logging is enabled, the BatchingLog is lossless: all diagnostics are emitted
+ * immediately to the Maven Log, with unaltered content.</p>
+ *
+ * @since 2.3
+ */
+public class BatchingLog implements Log {
+
+    /**
+     * The default number of diagnostics logged per category.
+     */
+    public static final int DEFAULT_MAX_PER_CATEGORY = 50;
+
+    /**
+     * The default capacity of the queue holding diagnostics to be emitted to the Maven Log.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    // Internal state
+    private static final int MAX_SUMMARY_ROWS = 20;
+    private static final int MAX_CATEGORY_LENGTH = 100;
+    private static final Pattern QUOTED = Pattern.compile("\"[^\"]*\"|'[^']*'|\\[[^\\]]*\\]|\\{[^}]*\\}");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Entry END_OF_QUEUE = new Entry(LogLevel.DEBUG, "", null);
+
+    private final Log delegate;
+    private final boolean lossless;
+    private final int maxPerCategory;
+    private final BlockingQueue<Entry> queue;
+    private final ConcurrentMap<String, AtomicInteger> occurrences;
+    private final ConcurrentMap<String, Category> categories;
+    private final AtomicInteger numDropped;
+    private Thread emitter;
+    private boolean closed;
+
+    /**
+     * Creates a BatchingLog with default settings, emitting diagnostics to the supplied Maven Log.
+     *
+     * @param delegate The Maven Log to emit diagnostics to.
+     */
+    public BatchingLog(final Log delegate) {
+        this(delegate, DEFAULT_MAX_PER_CATEGORY, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a BatchingLog emitting diagnostics to the supplied Maven Log.
+     *
+     * @param delegate       The Maven Log to emit diagnostics to.
+     * @param maxPerCategory The maximum number of diagnostics logged per category.
+     * @param queueCapacity  The capacity of the queue holding diagnostics to be emitted.
+     */
+    public BatchingLog(final Log delegate, final int maxPerCategory, final int queueCapacity) {
+
+        // Check sanity
+        Validate.notNull(delegate, "delegate");
+        Validate.isTrue(maxPerCategory > 0, "maxPerCategory > 0");
+        Validate.isTrue(queueCapacity > 0, "queueCapacity > 0");
+
+        // Assign internal state
+        this.delegate = delegate;
+        this.lossless = delegate.isDebugEnabled();
+        this.maxPerCategory = maxPerCategory;
+        this.queue = new ArrayBlockingQueue<Entry>(queueCapacity);
+        this.occurrences = new ConcurrentHashMap<String, AtomicInteger>();
+        this.categories = new ConcurrentHashMap<String, Category>();
+        this.numDropped = new AtomicInteger();
+    }
+
+    /**
+     * @return {@code true} if this BatchingLog emits all diagnostics immediately and unaltered, which is the case
+     * if debug logging is enabled.
+     */
+    public boolean isLossless() {
+        return lossless;
+    }
+
+    /**
+     * Emits all queued diagnostics to the Maven Log, and logs a summary of all suppressed diagnostics.
+     * Diagnostics logged after this BatchingLog is closed are emitted immediately, without batching.
+     */
+    public void close() {
+
+        final Thread toJoin;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toJoin = emitter;
+        }
+
+        if (toJoin != null) {
+            try {
+                queue.put(END_OF_QUEUE);
+                toJoin.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Emit anything enqueued concurrently with closing.
+        for (Entry current = queue.poll(); current != null; current = queue.poll()) {
+            if (current != END_OF_QUEUE) {
+                current.emitTo(delegate);
+            }
+        }
+
+        logSummary();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDebugEnabled() {
+        return delegate.isDebugEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug(final CharSequence content) {
+        submit(LogLevel.DEBUG, content, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug(final CharSequence content, final Throwable error) {
+        submit(LogLevel.DEBUG, content, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug(final Throwable error) {
+        submit(LogLevel.DEBUG, null, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isInfoEnabled() {
+        return delegate.isInfoEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info(final CharSequence content) {
+        submit(LogLevel.INFO, content, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info(final CharSequence content, final Throwable error) {
+        submit(LogLevel.INFO, content, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info(final Throwable error) {
+        submit(LogLevel.INFO, null, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWarnEnabled() {
+        return delegate.isWarnEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn(final CharSequence content) {
+        submit(LogLevel.WARN, content, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn(final CharSequence content, final Throwable error) {
+        submit(LogLevel.WARN, content, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn(final Throwable error) {
+        submit(LogLevel.WARN, null, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isErrorEnabled() {
+        return delegate.isErrorEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final CharSequence content) {
+        submit(LogLevel.ERROR, content, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final CharSequence content, final Throwable error) {
+        submit(LogLevel.ERROR, content, error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final Throwable error) {
+        submit(LogLevel.ERROR, null, error);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void submit(final LogLevel level, final CharSequence content, final Throwable error) {
+
+        if (!level.isEnabled(delegate)) {
+            return;
+        }
+
+        // Errors must not be lost or delayed.
+        if (lossless || level == LogLevel.ERROR || isClosed()) {
+            new Entry(level, content, error).emitTo(delegate);
+            return;
+        }
+
+        // Only the message of the Throwable is logged; the location of a diagnostic is found within its content.
+        final String message = (content == null ? "" : content.toString())
+                + (error == null ? "" : (content == null ? "" : " ") + getMessage(error));
+
+        // Deduplicate diagnostics.
+        final AtomicInteger counter = occurrences.putIfAbsent(level + message, new AtomicInteger(1));
+        final Category category = getCategory(level, error == null ? message : getMessage(error));
+        category.total.incrementAndGet();
+        if (counter != null) {
+            counter.incrementAndGet();
+            return;
+        }
+
+        // Rate-limit diagnostics per category.
+        if (category.logged.incrementAndGet() > maxPerCategory) {
+            category.logged.decrementAndGet();
+            return;
+        }
+
+        ensureEmitterStarted();
+        if (!queue.offer(new Entry(level, message, null))) {
+            category.logged.decrementAndGet();
+            numDropped.incrementAndGet();
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void ensureEmitterStarted() {
+
+        if (emitter == null) {
+            emitter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (Entry current = queue.take(); current != END_OF_QUEUE; current = queue.take()) {
+                            current.emitTo(delegate);
+                        }
+                    } catch (InterruptedException e) {
+                        // Remaining entries are emitted by the closing thread.
+                    }
+                }
+            }, "jaxb2-log-emitter");
+            emitter.setDaemon(true);
+            emitter.start();
+        }
+    }
+
+    private Category getCategory(final LogLevel level, final String message) {
+
+        String normalized = NUMBER.matcher(QUOTED.matcher(message).replaceAll("?")).replaceAll("#").trim();
+        if (normalized.length() > MAX_CATEGORY_LENGTH) {
+            normalized = normalized.substring(0, MAX_CATEGORY_LENGTH - 3) + "...";
+        }
+
+        final String key = level + " " + normalized;
+        final Category toReturn = categories.get(key);
+        if (toReturn != null) {
+            return toReturn;
+        }
+
+        final Category created = new Category(key);
+        final Category existing = categories.putIfAbsent(key, created);
+        return existing == null ? created : existing;
+    }
+
+    private void logSummary() {
+
+        final List<Category> suppressed = new ArrayList<Category>();
+        for (Category current : categories.values()) {
+            if (current.total.get() > current.logged.get()) {
+                suppressed.add(current);
+            }
+        }
+
+        if ((suppressed.isEmpty() && numDropped.get() == 0) || !delegate.isInfoEnabled()) {
+            return;
+        }
+
+        Collections.sort(suppressed, new Comparator<Category>() {
+            @Override
+            public int compare(final Category left, final Category right) {
+                final int result = right.total.get() - left.total.get();
+                return result != 0 ? result : left.key.compareTo(right.key);
+            }
+        });
+
+        final String separator = "+---------+---------+------------------------------------------------\n";
+        final StringBuilder builder = new StringBuilder("Summary of suppressed tool diagnostics. "
+                + "Enable debug logging (-X) to log all diagnostics.\n")
+                .append(separator)
+                .append("|   Total |  Logged | Category\n")
+                .append(separator);
+        for (int i = 0; i < suppressed.size() && i < MAX_SUMMARY_ROWS; i++) {
+
+            final Category current = suppressed.get(i);
+            builder.append(String.format("| %7d | %7d | %s\n", current.total.get(), current.logged.get(),
+                    current.key));
+        }
+        if (suppressed.size() > MAX_SUMMARY_ROWS) {
+            builder.append("| ... and ").append(suppressed.size() - MAX_SUMMARY_ROWS).append(" more categories\n");
+        }
+        if (numDropped.get() > 0) {
+            builder.append("| ").append(numDropped.get()).append(" diagnostics dropped, as the log queue was full.\n");
+        }
+        builder.append(separator);
+
+        delegate.info(builder.toString());
+    }
+
+    private static String getMessage(final Throwable error) {
+        return error.getMessage() == null ? error.getClass().getName() : error.getMessage();
+    }
+
+    /**
+     * The levels of a Maven Log.
+     */
+    enum LogLevel {
+
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR;
+
+        boolean isEnabled(final Log log) {
+            switch (this) {
+                case DEBUG:
+                    return log.isDebugEnabled();
+                case INFO:
+                    return log.isInfoEnabled();
+                case WARN:
+                    return log.isWarnEnabled();
+                default:
+                    return log.isErrorEnabled();
+            }
+        }
+    }
+
+    /**
+     * A diagnostic to be emitted to the Maven Log.
+     */
+    private static final class Entry {
+
+        // Internal state
+        private final LogLevel level;
+        private final CharSequence content;
+        private final Throwable error;
+
+        Entry(final LogLevel level, final CharSequence content, final Throwable error) {
+            this.level = level;
+            this.content = content;
+            this.error = error;
+        }
+
+        void emitTo(final Log log) {
+            switch (level) {
+                case DEBUG:
+                    if (error == null) {
+                        log.debug(content);
+                    } else {
+                        log.debug(content, error);
+                    }
+                    break;
+                case INFO:
+                    if (error == null) {
+                        log.info(content);
+                    } else {
+                        log.info(content, error);
+                    }
+                    break;
+                case WARN:
+                    if (error == null) {
+                        log.warn(content);
+                    } else {
+                        log.warn(content, error);
+                    }
+                    break;
+                default:
+                    if (error == null) {
+                        log.error(content);
+                    } else {
+                        log.error(content, error);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The counters of a category of diagnostics.
+     */
+    private static final class Category {
+
+        // Internal state
+        private final String key;
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger logged = new AtomicInteger();
+
+        Category(final String key) {
+            this.key = key;
+        }
+    }
+}
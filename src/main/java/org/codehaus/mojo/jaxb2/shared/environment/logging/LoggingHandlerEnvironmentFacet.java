@@ -28,10 +28,19 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Handler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 /**
- * EnvironmentFacet for replacing Handlers from Java Util Logging with a Maven Log.
+ * <p>EnvironmentFacet for replacing Handlers from Java Util Logging with a Maven Log.</p>
+ * <p>Since the JUL root Logger is shared by all threads within the JVM, several concurrently running Mojos
+ * (such as within a parallel Maven build) share a single Handler on the root Logger. This Handler routes each
+ * LogRecord to the Maven Log of the LoggingHandlerEnvironmentFacet set up within the thread emitting the
+ * LogRecord, or within the thread which started that thread. LogRecords emitted by other threads are
+ * published to the original Handlers of the root Logger. The original Handlers and Level of the root Logger
+ * are restored when the last active LoggingHandlerEnvironmentFacet is restored.</p>
+ * <p>Tool diagnostics are emitted through a {@link BatchingLog}, which deduplicates and rate-limits them unless
+ * debug logging is enabled.</p>
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  * @since 2.1
@@ -43,12 +52,20 @@ public class LoggingHandlerEnvironmentFacet extends AbstractLogAwareFacet {
      */
     public static final String[] DEFAULT_LOGGER_NAMES = new String[]{"com.sun", "javax.xml", "javax.tools"};
 
+    // Shared state, guarded by ROOT_LOGGER_LOCK.
+    private static final Object ROOT_LOGGER_LOCK = new Object();
+    private static final InheritableThreadLocal<MavenLogHandler> THREAD_HANDLER
+            = new InheritableThreadLocal<MavenLogHandler>();
+    private static final RoutingHandler ROUTING_HANDLER = new RoutingHandler();
+    private static int numActiveFacets;
+    private static Level originalRootLoggerLevel;
+
     // Internal state
     private boolean restored;
     private Logger rootLogger;
-    private Level originalRootLoggerLevel;
-    private List<Handler> originalHandlers;
     private MavenLogHandler mavenLogHandler;
+    private MavenLogHandler previousThreadHandler;
+    private BatchingLog toolLog;
 
     private String logPrefix;
     private String encoding;
@@ -76,10 +93,8 @@ public class LoggingHandlerEnvironmentFacet extends AbstractLogAwareFacet {
         Validate.notNull(loggerNamePrefixes, "loggerNamePrefixes");
 
         // Assign internal state
-        this.originalHandlers = new ArrayList<Handler>();
         this.logPrefix = logPrefix;
         rootLogger = Logger.getLogger("");
-        originalRootLoggerLevel = rootLogger.getLevel();
         this.encoding = encoding;
         this.loggerNamePrefixes = loggerNamePrefixes;
     }
@@ -91,44 +106,90 @@ public class LoggingHandlerEnvironmentFacet extends AbstractLogAwareFacet {
     @Override
     public void setup() {
 
-        // Redirect the JUL Logging statements to the Maven Log.
-        rootLogger.setLevel(MavenLogHandler.getJavaUtilLoggingLevelFor(log));
-        this.mavenLogHandler = new MavenLogHandler(log, logPrefix, encoding, loggerNamePrefixes);
+        // Redirect the JUL Logging statements to the Maven Log, deduplicating and batching them.
+        final Level level = MavenLogHandler.getJavaUtilLoggingLevelFor(log);
+        this.toolLog = new BatchingLog(log);
+        this.mavenLogHandler = new MavenLogHandler(toolLog, logPrefix, encoding, loggerNamePrefixes);
+
+        synchronized (ROOT_LOGGER_LOCK) {
+
+            if (numActiveFacets == 0) {
+
+                // Stash and remove the original handlers from the RootLogger.
+                originalRootLoggerLevel = rootLogger.getLevel();
+                final List<Handler> originalHandlers = new ArrayList<Handler>();
+                for (Handler current : rootLogger.getHandlers()) {
+                    originalHandlers.add(current);
+                    rootLogger.removeHandler(current);
+                }
+
+                // Add the routing Handler.
+                ROUTING_HANDLER.activate(originalHandlers, originalRootLoggerLevel);
+                rootLogger.addHandler(ROUTING_HANDLER);
+                rootLogger.setLevel(level);
 
-        for (Handler current : rootLogger.getHandlers()) {
+            } else if (rootLogger.getLevel() == null || level.intValue() < rootLogger.getLevel().intValue()) {
 
-            // Stash the original handlers from the RootLogger.
-            originalHandlers.add(current);
+                // Use the most verbose Level of all active facets.
+                rootLogger.setLevel(level);
+            }
 
-            // Remove the original handler from the RootLogger.
-            rootLogger.removeHandler(current);
+            numActiveFacets++;
         }
 
-        // Add the new Maven Log handler.
-        rootLogger.addHandler(this.mavenLogHandler);
+        // Route LogRecords emitted by this thread (and threads it starts) to the Maven Log.
+        previousThreadHandler = THREAD_HANDLER.get();
+        THREAD_HANDLER.set(mavenLogHandler);
     }
 
     /**
-     * Restores the original root Logger state, including Level and Handlers.
+     * Restores the original root Logger state, including Level and Handlers, unless other
+     * LoggingHandlerEnvironmentFacets are still active. Must be called by the thread which called {@code setup}.
      */
     public void restore() {
 
-        if (!restored) {
+        if (!restored && mavenLogHandler != null) {
 
-            // Remove the extra Handler from the RootLogger
-            rootLogger.removeHandler(mavenLogHandler);
+            // Restore the routing of this thread.
+            if (previousThreadHandler == null) {
+                THREAD_HANDLER.remove();
+            } else {
+                THREAD_HANDLER.set(previousThreadHandler);
+            }
 
-            // Restore the original state to the Root logger
-            rootLogger.setLevel(originalRootLoggerLevel);
-            for (Handler current : originalHandlers) {
-                rootLogger.addHandler(current);
+            synchronized (ROOT_LOGGER_LOCK) {
+
+                if (--numActiveFacets == 0) {
+
+                    // Remove the routing Handler from the RootLogger
+                    rootLogger.removeHandler(ROUTING_HANDLER);
+
+                    // Restore the original state to the Root logger
+                    rootLogger.setLevel(originalRootLoggerLevel);
+                    for (Handler current : ROUTING_HANDLER.deactivate()) {
+                        rootLogger.addHandler(current);
+                    }
+                }
             }
 
+            // Emit all remaining tool diagnostics, and summarize the suppressed ones.
+            toolLog.close();
+
             // All done.
             restored = true;
         }
     }
 
+    /**
+     * Retrieves the Log to which the diagnostics of the tool should be emitted. Between {@code setup} and
+     * {@code restore}, this is the {@link BatchingLog} also receiving all JUL LogRecords of the tool.
+     *
+     * @return The Log for tool diagnostics.
+     */
+    public Log getToolLog() {
+        return toolLog == null || restored ? log : toolLog;
+    }
+
     /**
      * Factory method creating a new LoggingHandlerEnvironmentFacet wrapping the supplied properties.
      *
@@ -154,4 +215,66 @@ public class LoggingHandlerEnvironmentFacet extends AbstractLogAwareFacet {
         // All done.
         return new LoggingHandlerEnvironmentFacet(logPrefix, mavenLog, encoding, DEFAULT_LOGGER_NAMES);
     }
+
+    /**
+     * Handler assigned to the root Logger while at least one LoggingHandlerEnvironmentFacet is active, routing
+     * each LogRecord to the MavenLogHandler of the emitting thread.
+     */
+    private static final class RoutingHandler extends Handler {
+
+        // Internal state
+        private volatile List<Handler> originalHandlers = new ArrayList<Handler>();
+        private volatile Level originalLevel;
+
+        void activate(final List<Handler> originalHandlers, final Level originalLevel) {
+            this.originalHandlers = originalHandlers;
+            this.originalLevel = originalLevel;
+        }
+
+        List<Handler> deactivate() {
+
+            final List<Handler> toReturn = originalHandlers;
+            originalHandlers = new ArrayList<Handler>();
+            return toReturn;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void publish(final LogRecord record) {
+
+            final MavenLogHandler threadHandler = THREAD_HANDLER.get();
+            if (threadHandler != null) {
+                threadHandler.publish(record);
+                return;
+            }
+
+            // Not emitted by a Mojo; use the original Handlers and Level.
+            final Level level = originalLevel;
+            if (level == null || record.getLevel().intValue() >= level.intValue()) {
+                for (Handler current : originalHandlers) {
+                    current.publish(record);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() {
+            for (Handler current : originalHandlers) {
+                current.flush();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws SecurityException {
+            // Do nothing; the original Handlers are restored to the root Logger.
+        }
+    }
 }
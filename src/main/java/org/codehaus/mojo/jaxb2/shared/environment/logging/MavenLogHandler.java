@@ -87,8 +87,12 @@ public class MavenLogHandler extends Handler {
 
         if (this.isLoggable(record)) {
 
+            // The SimpleFormatter infers the caller of each LogRecord from the call stack, which is expensive.
+            // Use it only when debugging; otherwise, only format the message (and any Throwable message).
             final Level level = record.getLevel();
-            final String message = prefix + getFormatter().format(record);
+            final String message = prefix + (log.isDebugEnabled()
+                    ? getFormatter().format(record)
+                    : formatCompact(record));
 
             if (Level.SEVERE.equals(level)) {
                 log.error(message);
@@ -118,6 +122,20 @@ public class MavenLogHandler extends Handler {
         // Do nothing.
     }
 
+    /**
+     * Formats the message of the supplied LogRecord, including the message of any Throwable but omitting the
+     * timestamp, source and stack trace added by the SimpleFormatter.
+     *
+     * @param record A non-null LogRecord.
+     * @return The compact form of the supplied LogRecord.
+     */
+    protected String formatCompact(final LogRecord record) {
+
+        final String message = getFormatter().formatMessage(record);
+        final Throwable thrown = record.getThrown();
+        return thrown == null ? message : message + ": " + thrown;
+    }
+
     /**
      * Retrieves the JUL Level matching the supplied Maven Log.
      *
@@ -111,6 +111,12 @@ public class SystemPropertyChangeEnvironmentFacet extends AbstractLogAwareFacet
     @Override
     public void setup() {
 
+        // Another Mojo may have changed the System properties since this facet was created.
+        originalValue = System.getProperty(key);
+        if (type != ChangeType.REMOVE) {
+            type = existsAsSystemProperty(key) ? ChangeType.CHANGE : ChangeType.ADD;
+        }
+
         if (type == ChangeType.REMOVE) {
             System.clearProperty(key);
         } else {
@@ -128,7 +134,7 @@ public class SystemPropertyChangeEnvironmentFacet extends AbstractLogAwareFacet
     @Override
     public void restore() {
 
-        if (type == ChangeType.ADD) {
+        if (type == ChangeType.ADD || originalValue == null) {
             System.clearProperty(key);
         } else {
             System.setProperty(key, originalValue);
@@ -33,7 +33,7 @@ public abstract class AbstractFilter<T> implements Filter<T> {
     }
 
     // Internal state
-    protected Log log;
+    protected volatile Log log;
     private List<DelayedLogMessage> delayedLogMessages;
     private boolean processNullValues;
 
@@ -84,7 +84,7 @@ public abstract class AbstractFilter<T> implements Filter<T> {
      * {@inheritDoc}
      */
     @Override
-    public final void initialize(final Log log) {
+    public final synchronized void initialize(final Log log) {
 
         // Check sanity
         Validate.notNull(log, "log");
@@ -24,7 +24,8 @@ public abstract class AbstractPatternFilter<T> extends AbstractFilter<T> {
     // Internal state
     private boolean acceptCandidateOnPatternMatch;
     private StringConverter<T> converter;
-    private List<Pattern> regularExpressions;
+    private volatile List<Pattern> regularExpressions;
+    private volatile List<SuffixPatternMatcher> suffixPatternMatchers;
     private String patternPrefix;
     private List<String> patterns;
 
@@ -142,8 +143,80 @@ public abstract class AbstractPatternFilter<T> extends AbstractFilter<T> {
 
         } else {
             // Complete internal state
-            regularExpressions = convert(patterns, patternPrefix);
+            final List<Pattern> expressions = convert(patterns, patternPrefix);
+
+            // Match suffix patterns without Java regular expressions, where possible.
+            final List<SuffixPatternMatcher> matchers = new ArrayList<SuffixPatternMatcher>();
+            for (int i = 0; i < expressions.size(); i++) {
+                matchers.add(patterns == null
+                        ? null
+                        : SuffixPatternMatcher.create(patternPrefix, patterns.get(i)));
+            }
+
+            // Shared Filters may be re-initialized while in use by other threads; assign complete state only.
+            suffixPatternMatchers = matchers;
+            regularExpressions = expressions;
+        }
+    }
+
+    /**
+     * Retrieves the StringConverter used to convert T-type objects to Strings. AbstractPatternFilters sharing the
+     * same StringConverter instance may share the result of a single conversion, using
+     * {@link #acceptConverted(String)}.
+     *
+     * @return The StringConverter used by this AbstractPatternFilter.
+     */
+    public final StringConverter<T> getConverter() {
+        return converter;
+    }
+
+    /**
+     * Performs the same evaluation as the {@code accept} method on a candidate which has already been converted
+     * to a String using the StringConverter of this AbstractPatternFilter.
+     *
+     * @param candidateString The non-null candidate, converted to a String using {@link #getConverter()}.
+     * @return {@code true} if the candidate is accepted by this AbstractPatternFilter and {@code false} otherwise.
+     * @throws IllegalStateException if this AbstractPatternFilter is not initialized.
+     */
+    public final boolean acceptConverted(final String candidateString) throws IllegalStateException {
+
+        // Check sanity
+        if (!isInitialized()) {
+            throw new IllegalStateException("Filter [" + getClass().getSimpleName() + "] not initialized before use.");
+        }
+        Validate.notNull(candidateString, "candidateString");
+
+        boolean atLeastOnePatternMatched = false;
+
+        // Read the expressions before the matchers, which are assigned first during initialization.
+        final List<Pattern> expressions = regularExpressions;
+        final List<SuffixPatternMatcher> matchers = suffixPatternMatchers;
+
+        if (expressions != null) {
+            for (int i = 0; i < expressions.size(); i++) {
+
+                final SuffixPatternMatcher suffixPatternMatcher = matchers.get(i);
+                final Pattern current = expressions.get(i);
+                final boolean matched = suffixPatternMatcher != null
+                        ? suffixPatternMatcher.matches(candidateString)
+                        : current.matcher(candidateString).matches();
+
+                if (matched) {
+
+                    if (log.isDebugEnabled()) {
+                        log.debug("CandidateString [" + candidateString + "] matched pattern ["
+                                + current.pattern() + "]");
+                    }
+
+                    // Adjust and return
+                    atLeastOnePatternMatched = true;
+                    break;
+                }
+            }
         }
+
+        // Apply the reverse match logic if applicable
+        return acceptCandidateOnPatternMatch ? atLeastOnePatternMatched : !atLeastOnePatternMatched;
     }
 
     /**
@@ -181,28 +254,7 @@ public abstract class AbstractPatternFilter<T> extends AbstractFilter<T> {
      */
     @Override
     protected boolean onCandidate(final T nonNullCandidate) {
-
-        final String candidateString = convert(nonNullCandidate);
-        boolean atLeastOnePatternMatched = false;
-
-        if (regularExpressions != null) {
-            for (Pattern current : regularExpressions) {
-                if (current.matcher(candidateString).matches()) {
-
-                    if (log.isDebugEnabled()) {
-                        log.debug("CandidateString [" + candidateString + "] matched pattern ["
-                                + current.pattern() + "]");
-                    }
-
-                    // Adjust and return
-                    atLeastOnePatternMatched = true;
-                    break;
-                }
-            }
-        }
-
-        // Apply the reverse match logic if applicable
-        return acceptCandidateOnPatternMatch ? atLeastOnePatternMatched : !atLeastOnePatternMatched;
+        return acceptConverted(convert(nonNullCandidate));
     }
 
     /**
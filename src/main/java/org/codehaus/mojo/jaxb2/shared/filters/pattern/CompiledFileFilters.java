@@ -0,0 +1,133 @@
+package org.codehaus.mojo.jaxb2.shared.filters.pattern;
+
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.filters.Filter;
+import org.codehaus.mojo.jaxb2.shared.filters.Filters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A List of Filters compiled for repeated evaluation of many File candidates, such as when resolving all files
+ * within a directory tree. The compiled form yields the same results as the corresponding methods in
+ * {@link Filters}, but:</p>
+ * <ol>
+ * <li>Stops evaluating Filters as soon as the result is known.</li>
+ * <li>Converts each candidate File to a String only once, if all Filters are PatternFileFilters sharing the
+ * same StringConverter (which is the case for all standard exclude filters). Otherwise, each Filter is
+ * evaluated using its {@code accept} method.</li>
+ * </ol>
+ *
+ * @since 2.3
+ */
+public final class CompiledFileFilters {
+
+    // Internal state
+    private List<Filter<File>> filters;
+    private List<PatternFileFilter> patternFileFilters;
+    private StringConverter<File> sharedConverter;
+
+    private CompiledFileFilters(final List<Filter<File>> filters) {
+
+        // Assign internal state
+        this.filters = filters;
+
+        for (Filter<File> current : filters) {
+
+            // Subclasses of PatternFileFilter may override the conversion.
+            if (current == null || current.getClass() != PatternFileFilter.class) {
+                return;
+            }
+
+            final PatternFileFilter currentPatternFileFilter = (PatternFileFilter) current;
+            if (!currentPatternFileFilter.isInitialized()
+                    || (sharedConverter != null && sharedConverter != currentPatternFileFilter.getConverter())) {
+                return;
+            }
+            sharedConverter = currentPatternFileFilter.getConverter();
+        }
+
+        // All Filters share the same conversion.
+        patternFileFilters = new ArrayList<PatternFileFilter>();
+        for (Filter<File> current : filters) {
+            patternFileFilters.add((PatternFileFilter) current);
+        }
+    }
+
+    /**
+     * Compiles the supplied List of Filters.
+     *
+     * @param filters A List of initialized Filters. A {@code null} value is treated as an empty List.
+     * @return The compiled form of the supplied Filters.
+     */
+    public static CompiledFileFilters compile(final List<Filter<File>> filters) {
+
+        final List<Filter<File>> effectiveFilters = filters == null
+                ? Collections.<Filter<File>>emptyList()
+                : Collections.unmodifiableList(new ArrayList<Filter<File>>(filters));
+        return new CompiledFileFilters(effectiveFilters);
+    }
+
+    /**
+     * @return {@code true} if this CompiledFileFilters holds no Filters at all.
+     */
+    public boolean isEmpty() {
+        return filters.isEmpty();
+    }
+
+    /**
+     * Compiled form of {@link Filters#noFilterMatches(Object, List)}.
+     *
+     * @param candidate The non-null candidate File.
+     * @return {@code true} if no Filter accepts the supplied candidate.
+     */
+    public boolean noFilterMatches(final File candidate) {
+        return !isAcceptedByAny(candidate, true);
+    }
+
+    /**
+     * Compiled form of {@link Filters#rejectAtLeastOnce(Object, List)}.
+     *
+     * @param candidate The non-null candidate File.
+     * @return {@code true} if at least one Filter does not accept the supplied candidate.
+     */
+    public boolean rejectAtLeastOnce(final File candidate) {
+        return isAcceptedByAny(candidate, false);
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Finds if any Filter returns the given acceptValue for the supplied candidate.
+     */
+    private boolean isAcceptedByAny(final File candidate, final boolean acceptValue) {
+
+        // Check sanity
+        Validate.notNull(candidate, "candidate");
+
+        if (patternFileFilters == null) {
+            return acceptValue
+                    ? !Filters.noFilterMatches(candidate, filters)
+                    : Filters.rejectAtLeastOnce(candidate, filters);
+        }
+
+        if (patternFileFilters.isEmpty()) {
+            return false;
+        }
+
+        // Convert the candidate only once.
+        final String candidateString = sharedConverter.convert(candidate);
+        for (PatternFileFilter current : patternFileFilters) {
+            if (current.acceptConverted(candidateString) == acceptValue) {
+                return true;
+            }
+        }
+
+        // No Filter yielded the acceptValue.
+        return false;
+    }
+}
@@ -0,0 +1,154 @@
+package org.codehaus.mojo.jaxb2.shared.filters.pattern;
+
+/**
+ * <p>Matches candidate strings against a suffix pattern without using Java regular expressions. Suffix patterns
+ * are created by prepending {@link PatternFileFilter#FILE_SUFFIX_PATTERN_PREFIX} to a pattern which is either a
+ * literal (such as {@code \\.xml}) or a literal followed by {@code .*} (such as {@code README.*}). The
+ * SuffixPatternMatcher yields exactly the same result as the corresponding case insensitive Pattern, but in
+ * a single linear scan of the candidate string - as opposed to the backtracking required by the Pattern.</p>
+ *
+ * @since 2.3
+ */
+final class SuffixPatternMatcher {
+
+    // Internal state
+    private static final String ANY_SUFFIX = ".*";
+    private static final String REGEXP_METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String POSIX_PUNCTUATION = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+    private String literal;
+    private boolean anySuffix;
+
+    private SuffixPatternMatcher(final String literal, final boolean anySuffix) {
+        this.literal = literal;
+        this.anySuffix = anySuffix;
+    }
+
+    /**
+     * Creates a SuffixPatternMatcher for the supplied prefix and pattern, if possible.
+     *
+     * @param prefix  The prefix prepended to the pattern.
+     * @param pattern The pattern.
+     * @return A SuffixPatternMatcher equivalent to the case insensitive Pattern {@code prefix + pattern}, or
+     * {@code null} if the prefix is not the FILE_SUFFIX_PATTERN_PREFIX or the pattern is not a (possibly
+     * open-ended) literal.
+     */
+    static SuffixPatternMatcher create(final String prefix, final String pattern) {
+
+        if (!PatternFileFilter.FILE_SUFFIX_PATTERN_PREFIX.equals(prefix) || pattern == null) {
+            return null;
+        }
+
+        final boolean anySuffix = pattern.endsWith(ANY_SUFFIX);
+        final String literalPattern = anySuffix
+                ? pattern.substring(0, pattern.length() - ANY_SUFFIX.length())
+                : pattern;
+
+        // Un-escape the literal, bailing out on any regexp construct.
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < literalPattern.length(); i++) {
+
+            final char current = literalPattern.charAt(i);
+            if (current == '\\') {
+
+                // Only escaped punctuation, such as '\.', is a literal.
+                if (i + 1 >= literalPattern.length()
+                        || POSIX_PUNCTUATION.indexOf(literalPattern.charAt(i + 1)) == -1) {
+                    return null;
+                }
+                literal.append(literalPattern.charAt(++i));
+
+            } else if (REGEXP_METACHARACTERS.indexOf(current) != -1 || Character.isHighSurrogate(current)
+                    || Character.isLowSurrogate(current)) {
+                return null;
+            } else {
+                literal.append(current);
+            }
+        }
+
+        // An empty literal would require the backtracking logic of the prefix Pattern.
+        if (literal.length() == 0) {
+            return null;
+        }
+
+        // All done.
+        return new SuffixPatternMatcher(literal.toString(), anySuffix);
+    }
+
+    /**
+     * Matches the supplied candidate string.
+     *
+     * @param candidate The non-null candidate string.
+     * @return {@code true} if the entire candidate string matches this SuffixPatternMatcher.
+     */
+    boolean matches(final String candidate) {
+
+        // The prefix requires at least one character, and only accepts letters, digits and punctuation.
+        final int prefixEnd = getPrefixEnd(candidate);
+        final int literalLength = literal.length();
+
+        if (!anySuffix) {
+
+            final int literalStart = candidate.length() - literalLength;
+            return literalStart >= 1
+                    && literalStart <= prefixEnd
+                    && candidate.regionMatches(true, literalStart, literal, 0, literalLength);
+        }
+
+        // The literal may start anywhere after the prefix, but '.*' does not match line terminators.
+        final int lastLiteralStart = Math.min(prefixEnd, candidate.length() - literalLength);
+        for (int i = 1; i <= lastLiteralStart; i++) {
+            if (candidate.regionMatches(true, i, literal, 0, literalLength)
+                    && !containsLineTerminator(candidate, i + literalLength)) {
+                return true;
+            }
+        }
+
+        // No match.
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SuffixPatternMatcher [" + literal + (anySuffix ? ANY_SUFFIX : "") + "]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static int getPrefixEnd(final String candidate) {
+
+        int index = 0;
+        while (index < candidate.length()) {
+
+            final int codePoint = candidate.codePointAt(index);
+            final boolean isPunctuation = codePoint < 128 && POSIX_PUNCTUATION.indexOf(codePoint) != -1;
+            if (!isPunctuation && !Character.isLetterOrDigit(codePoint)) {
+                break;
+            }
+            index += Character.charCount(codePoint);
+        }
+
+        // All done.
+        return index;
+    }
+
+    private static boolean containsLineTerminator(final String candidate, final int fromIndex) {
+
+        for (int i = fromIndex; i < candidate.length(); i++) {
+
+            final char current = candidate.charAt(i);
+            if (current == '\n' || current == '\r' || current == '\u0085'
+                    || current == '\u2028' || current == '\u2029') {
+                return true;
+            }
+        }
+
+        // None found.
+        return false;
+    }
+}
@@ -0,0 +1,453 @@
+package org.codehaus.mojo.jaxb2.shared.mirror;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Persistent, local mirror of remote (i.e. {@code http} and {@code https}) schema resources, such as W3C or
+ * partner schemas imported by the sources of an execution. Each remote resource is downloaded once into the mirror
+ * directory, and subsequently only revalidated using conditional requests ({@code If-None-Match} with the ETag
+ * and {@code If-Modified-Since} with the Last-Modified time of the mirrored copy). Each resource is revalidated
+ * at most once per SchemaMirror instance. In offline mode, no requests are made at all and only mirrored copies
+ * are used.</p>
+ * <p>The mirror directory retains the host and path structure of the remote resources, implying that relative
+ * references between mirrored schemas resolve to the mirrored copies:</p>
+ * <pre>
+ *     <code>
+ *         [mirrorDirectory]/[protocol]/[host]_[port]/[path]   (the mirrored copy)
+ *         [mirrorDirectory]/[protocol]/[host]_[port]/[dir]/.[name].mirror.properties  (URL, ETag, Last-Modified)
+ *     </code>
+ * </pre>
+ * <p>The mirrored copies are exposed to XJC through a generated XML catalog mapping the remote URL of each
+ * resource mirrored by this SchemaMirror to its mirrored copy. A user-supplied catalog is chained after the
+ * generated entries using {@code nextCatalog}.</p>
+ *
+ * @since 2.3
+ */
+public class SchemaMirror {
+
+    /**
+     * The timeout, in milliseconds, for connecting to and reading from remote hosts.
+     */
+    public static final int TIMEOUT_MILLIS = 30000;
+
+    // Internal state
+    private static final int MAX_PARALLEL_REQUESTS = 8;
+    private static final String METADATA_SUFFIX = ".mirror.properties";
+    private static final String URL_KEY = "url";
+    private static final String ETAG_KEY = "etag";
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+    private File mirrorDirectory;
+    private boolean offline;
+    private Proxy proxy;
+    private Log log;
+    private ConcurrentMap<String, URL> mirrored;
+
+    /**
+     * Creates a new SchemaMirror.
+     *
+     * @param mirrorDirectory The directory holding the mirrored resources, created if it does not exist.
+     * @param offline         If {@code true}, no requests are made to remote hosts; only resources mirrored
+     *                        previously are available.
+     * @param proxy           The Proxy used to connect to remote hosts, or {@code null} to use the default
+     *                        proxy settings of the JVM.
+     * @param log             The active Maven Log.
+     */
+    public SchemaMirror(final File mirrorDirectory, final boolean offline, final Proxy proxy, final Log log) {
+
+        // Check sanity
+        Validate.notNull(mirrorDirectory, "mirrorDirectory");
+        Validate.notNull(log, "log");
+
+        // Assign internal state
+        this.mirrorDirectory = mirrorDirectory;
+        this.offline = offline;
+        this.proxy = proxy;
+        this.log = log;
+        this.mirrored = new ConcurrentHashMap<String, URL>();
+    }
+
+    /**
+     * Checks if the supplied URL refers to a remote resource, which can be mirrored.
+     *
+     * @param url A non-null URL.
+     * @return {@code true} if the supplied URL uses the http or https protocol.
+     */
+    public static boolean isRemote(final URL url) {
+
+        final String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    /**
+     * @return {@code true} if this SchemaMirror makes no requests to remote hosts.
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Retrieves the mirrored copy of the supplied remote resource, downloading or revalidating it unless this
+     * SchemaMirror has already done so, or is offline.
+     *
+     * @param remote The URL of a remote resource.
+     * @return The file URL of the mirrored copy of the supplied remote resource.
+     * @throws IOException if the resource is not mirrored, and could not be downloaded.
+     */
+    public URL mirror(final URL remote) throws IOException {
+
+        // Check sanity
+        Validate.notNull(remote, "remote");
+        Validate.isTrue(isRemote(remote), "Only http and https URLs can be mirrored. Got [" + remote + "]");
+
+        final String key = remote.toString();
+        URL toReturn = mirrored.get(key);
+        if (toReturn == null) {
+
+            toReturn = FileSystemUtilities.getUrlFor(fetch(remote));
+            mirrored.put(key, toReturn);
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Mirrors all supplied remote resources, downloading or revalidating them in parallel.
+     *
+     * @param remotes The URLs of remote resources.
+     * @return A SortedMap relating the external form of each supplied URL to the file URL of its mirrored copy.
+     * Resources which could not be mirrored are omitted, and logged as warnings.
+     */
+    public SortedMap<String, URL> mirrorAll(final List<URL> remotes) {
+
+        // Check sanity
+        Validate.notNull(remotes, "remotes");
+
+        final SortedMap<String, URL> toReturn = new TreeMap<String, URL>();
+        final int numThreads = Math.min(MAX_PARALLEL_REQUESTS, remotes.size());
+
+        if (numThreads < 2) {
+            for (URL current : remotes) {
+                final URL local = mirrorOrNull(current);
+                if (local != null) {
+                    toReturn.put(current.toString(), local);
+                }
+            }
+            return toReturn;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+
+            final List<Future<?>> results = new ArrayList<Future<?>>(remotes.size());
+            for (final URL current : remotes) {
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+
+                        // Only the resulting map is shared; the requests are made concurrently.
+                        final URL local = mirrorOrNull(current);
+                        if (local != null) {
+                            synchronized (toReturn) {
+                                toReturn.put(current.toString(), local);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> current : results) {
+                current.get();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while mirroring remote schemas.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not mirror remote schemas.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * @return An unmodifiable SortedMap relating the external form of the URL of each remote resource mirrored
+     * by this SchemaMirror to the file URL of its mirrored copy.
+     */
+    public SortedMap<String, URL> getMirrored() {
+        return Collections.unmodifiableSortedMap(new TreeMap<String, URL>(mirrored));
+    }
+
+    /**
+     * Writes an XML catalog mapping each remote resource mirrored by this SchemaMirror to its mirrored copy.
+     * The catalog is only written if its content changes.
+     *
+     * @param target      The catalog file to write.
+     * @param nextCatalog A catalog consulted for all other entities, or {@code null} if none.
+     * @throws IOException if the catalog could not be written.
+     */
+    public void writeCatalog(final File target, final File nextCatalog) throws IOException {
+
+        // Check sanity
+        Validate.notNull(target, "target");
+
+        final StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!-- Generated by the jaxb2-maven-plugin. Maps mirrored remote schemas. -->\n")
+                .append("<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"system\">\n");
+        for (Map.Entry<String, URL> current : getMirrored().entrySet()) {
+
+            final String remote = escape(current.getKey());
+            final String local = escape(current.getValue().toString());
+            builder.append("  <system systemId=\"").append(remote).append("\" uri=\"").append(local).append("\"/>\n");
+            builder.append("  <uri name=\"").append(remote).append("\" uri=\"").append(local).append("\"/>\n");
+        }
+        if (nextCatalog != null) {
+            builder.append("  <nextCatalog catalog=\"")
+                    .append(escape(FileSystemUtilities.getUrlFor(nextCatalog).toString())).append("\"/>\n");
+        }
+        builder.append("</catalog>\n");
+
+        final String content = builder.toString();
+        if (!target.isFile() || !content.equals(FileUtils.fileRead(target, "UTF-8"))) {
+            FileUtils.forceMkdir(target.getParentFile());
+            FileUtils.fileWrite(target, "UTF-8", content);
+        }
+    }
+
+    /**
+     * Retrieves the file within the mirror directory which holds (or would hold) the mirrored copy of the
+     * supplied remote resource.
+     *
+     * @param remote The URL of a remote resource.
+     * @return The mirror file for the supplied remote resource.
+     */
+    public File getMirrorFile(final URL remote) {
+
+        // Check sanity
+        Validate.notNull(remote, "remote");
+
+        final StringBuilder path = new StringBuilder(remote.getProtocol().toLowerCase())
+                .append('/').append(sanitize(remote.getHost().toLowerCase()));
+        if (remote.getPort() != -1) {
+            path.append('_').append(remote.getPort());
+        }
+
+        final String remotePath = remote.getPath();
+        for (String current : remotePath.split("/")) {
+            if (current.length() > 0) {
+                path.append('/').append(sanitize(current));
+            }
+        }
+        if (remotePath.length() == 0 || remotePath.endsWith("/")) {
+            path.append("/index");
+        }
+        if (remote.getQuery() != null) {
+            path.append('_').append(ContentDigester.digest(remote.getQuery()));
+        }
+
+        // All done.
+        return new File(mirrorDirectory, path.toString());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private URL mirrorOrNull(final URL remote) {
+
+        try {
+            return mirror(remote);
+        } catch (IOException e) {
+
+            log.warn("Could not mirror remote schema [" + remote + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private File fetch(final URL remote) throws IOException {
+
+        final File mirrorFile = getMirrorFile(remote);
+        final File metadataFile = new File(mirrorFile.getParentFile(), "." + mirrorFile.getName() + METADATA_SUFFIX);
+        final boolean hasCopy = mirrorFile.isFile();
+
+        if (offline) {
+            if (!hasCopy) {
+                throw new IOException("Offline, and [" + remote + "] is not mirrored in ["
+                        + FileSystemUtilities.getCanonicalPath(mirrorDirectory) + "]");
+            }
+            return mirrorFile;
+        }
+
+        final Properties metadata = hasCopy ? readMetadata(metadataFile) : new Properties();
+        final HttpURLConnection connection = (HttpURLConnection) (proxy == null
+                ? remote.openConnection()
+                : remote.openConnection(proxy));
+        try {
+
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setInstanceFollowRedirects(true);
+            connection.setUseCaches(false);
+            if (hasCopy) {
+
+                final String etag = metadata.getProperty(ETAG_KEY);
+                if (etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                connection.setIfModifiedSince(Long.parseLong(metadata.getProperty(LAST_MODIFIED_KEY, "0")));
+            }
+
+            final int responseCode = connection.getResponseCode();
+            if (hasCopy && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Mirrored copy of [" + remote + "] is up to date.");
+                }
+                return mirrorFile;
+            }
+
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Got HTTP response code " + responseCode + " from [" + remote + "]");
+            }
+
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            final InputStream in = connection.getInputStream();
+            try {
+                IOUtil.copy(in, content);
+            } finally {
+                in.close();
+            }
+
+            // Download into a temporary file, to never leave a partial copy within the mirror.
+            FileUtils.forceMkdir(mirrorFile.getParentFile());
+            final File tempFile = File.createTempFile(".mirror", ".tmp", mirrorFile.getParentFile());
+            final OutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(content.toByteArray());
+            } finally {
+                out.close();
+            }
+            FileSystemUtilities.moveIfChanged(tempFile, mirrorFile);
+
+            final Properties newMetadata = new Properties();
+            newMetadata.setProperty(URL_KEY, remote.toString());
+            newMetadata.setProperty(LAST_MODIFIED_KEY, "" + connection.getLastModified());
+            if (connection.getHeaderField("ETag") != null) {
+                newMetadata.setProperty(ETAG_KEY, connection.getHeaderField("ETag"));
+            }
+            writeMetadata(metadataFile, newMetadata);
+
+            if (log.isInfoEnabled()) {
+                log.info("Mirrored [" + remote + "] to [" + FileSystemUtilities.getCanonicalPath(mirrorFile) + "]");
+            }
+            return mirrorFile;
+
+        } catch (IOException e) {
+
+            if (!hasCopy) {
+                throw e;
+            }
+
+            // Use the mirrored copy rather than failing the build.
+            log.warn("Could not revalidate [" + remote + "] (" + e.getMessage() + "). Using the mirrored copy.");
+            return mirrorFile;
+
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Properties readMetadata(final File metadataFile) {
+
+        final Properties toReturn = new Properties();
+        if (metadataFile.isFile()) {
+            try {
+                final InputStream in = new FileInputStream(metadataFile);
+                try {
+                    toReturn.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                // Revalidate without the metadata, implying that the resource is downloaded anew.
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private static void writeMetadata(final File metadataFile, final Properties metadata) throws IOException {
+
+        final OutputStream out = new FileOutputStream(metadataFile);
+        try {
+            metadata.store(out, "Mirrored remote schema. Do not edit.");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String sanitize(final String pathSegment) {
+
+        // Never permit path segments to leave the mirror directory.
+        final String toReturn = pathSegment.replaceAll("[^A-Za-z0-9._%~+=-]", "_");
+        return ".".equals(toReturn) || "..".equals(toReturn) ? "_" : toReturn;
+    }
+
+    private static String escape(final String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+    }
+}
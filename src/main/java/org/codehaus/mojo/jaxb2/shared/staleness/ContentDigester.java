@@ -0,0 +1,286 @@
+package org.codehaus.mojo.jaxb2.shared.staleness;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Calculates content digests for the sources (XSDs, XJBs, Java sources, catalogs, ...) used by the JAXB tools.
+ * Digests are calculated from the content of each resource rather than its modification timestamp, implying that
+ * a fresh VCS checkout or a restored build cache does not render the generated files stale.</p>
+ * <p>Local files are read through memory-mapped FileChannels, and larger sets of resources are digested in
+ * parallel using a bounded pool of worker threads.</p>
+ *
+ * @since 2.3
+ */
+public final class ContentDigester {
+
+    /**
+     * The digest value assigned to resources whose content could not be read.
+     * Such resources are always considered changed.
+     */
+    public static final String UNREADABLE = "<unreadable>";
+
+    /**
+     * The MessageDigest algorithm used to calculate content digests.
+     */
+    public static final String DIGEST_ALGORITHM = "SHA-1";
+
+    // Internal state
+    private static final int PARALLEL_THRESHOLD = 16;
+    private static final long MAX_MAPPED_CHUNK = 64L * 1024L * 1024L;
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /*
+     * Hide the constructor for utility classes.
+     */
+    private ContentDigester() {
+        // Do nothing
+    }
+
+    /**
+     * Calculates the content digests of all supplied URLs. If the number of URLs is large enough to benefit
+     * from it, the digests are calculated in parallel.
+     *
+     * @param resources The URLs for which content digests should be calculated.
+     * @param log       The active Maven Log.
+     * @return A SortedMap relating the external form of each supplied URL to the hex-encoded digest of its
+     * content, or to {@link #UNREADABLE} if the content of the URL could not be read.
+     */
+    public static SortedMap<String, String> digest(final List<URL> resources, final Log log) {
+
+        // Check sanity
+        Validate.notNull(resources, "resources");
+        Validate.notNull(log, "log");
+
+        final SortedMap<String, String> toReturn = new TreeMap<String, String>();
+        final int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), resources.size());
+
+        if (resources.size() < PARALLEL_THRESHOLD || numThreads < 2) {
+
+            // Not worth the overhead of a thread pool.
+            for (URL current : resources) {
+                toReturn.put(current.toString(), digestOrUnreadable(current, log));
+            }
+
+        } else {
+
+            final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            try {
+
+                final List<Future<String>> results = new ArrayList<Future<String>>(resources.size());
+                for (final URL current : resources) {
+                    results.add(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            return digestOrUnreadable(current, log);
+                        }
+                    }));
+                }
+
+                for (int i = 0; i < resources.size(); i++) {
+                    toReturn.put(resources.get(i).toString(), results.get(i).get());
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while calculating content digests.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not calculate content digests.", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Calculates the hex-encoded content digest of the supplied URL.
+     *
+     * @param resource A non-null URL.
+     * @return The hex-encoded digest of the content of the supplied URL.
+     * @throws IOException if the content of the supplied URL could not be read.
+     */
+    public static String digest(final URL resource) throws IOException {
+
+        // Check sanity
+        Validate.notNull(resource, "resource");
+
+        final MessageDigest digest = createMessageDigest();
+        final File localFile = getLocalFile(resource);
+
+        if (localFile != null) {
+            updateFromFile(digest, localFile);
+        } else {
+            updateFromConnection(digest, resource);
+        }
+
+        // All done.
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Calculates the hex-encoded digest of the supplied string, encoded as UTF-8.
+     *
+     * @param aString A non-null string.
+     * @return The hex-encoded digest of the supplied string.
+     */
+    public static String digest(final String aString) {
+
+        // Check sanity
+        Validate.notNull(aString, "aString");
+
+        try {
+            return toHex(createMessageDigest().digest(aString.getBytes("UTF-8")));
+        } catch (IOException e) {
+            throw new IllegalStateException("UTF-8 encoding is not supported by this JVM.", e);
+        }
+    }
+
+    /**
+     * Converts the supplied bytes to a lowercase hex string.
+     *
+     * @param bytes The bytes to convert.
+     * @return A hex string representation of the supplied bytes.
+     */
+    public static String toHex(final byte[] bytes) {
+
+        final char[] toReturn = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            toReturn[2 * i] = HEX[(bytes[i] >> 4) & 0x0F];
+            toReturn[2 * i + 1] = HEX[bytes[i] & 0x0F];
+        }
+
+        return new String(toReturn);
+    }
+
+    /**
+     * Creates a new MessageDigest using the {@link #DIGEST_ALGORITHM}.
+     *
+     * @return A new MessageDigest instance.
+     */
+    public static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MessageDigest algorithm [" + DIGEST_ALGORITHM
+                    + "] is not supported by this JVM.", e);
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String digestOrUnreadable(final URL resource, final Log log) {
+
+        try {
+            return digest(resource);
+        } catch (Exception e) {
+
+            if (log.isDebugEnabled()) {
+                log.debug("Could not read [" + resource + "] to calculate its content digest.", e);
+            }
+
+            // Can't determine if the content has changed. Re-generate to be on the safe side.
+            return UNREADABLE;
+        }
+    }
+
+    private static File getLocalFile(final URL resource) throws IOException {
+
+        if ("file".equalsIgnoreCase(resource.getProtocol())) {
+            final File toReturn = new File(URLDecoder.decode(resource.getPath(), "UTF-8"));
+            if (toReturn.isFile()) {
+                return toReturn;
+            }
+        }
+
+        // Not a local, existing file.
+        return null;
+    }
+
+    private static void updateFromFile(final MessageDigest digest, final File aFile) throws IOException {
+
+        final FileInputStream inputStream = new FileInputStream(aFile);
+        try {
+
+            final FileChannel channel = inputStream.getChannel();
+            final long size = channel.size();
+
+            // Map the file in chunks, to avoid exhausting the address space for very large files.
+            for (long position = 0; position < size; position += MAX_MAPPED_CHUNK) {
+
+                final long chunkSize = Math.min(MAX_MAPPED_CHUNK, size - position);
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkSize);
+                digest.update(buffer);
+            }
+
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void updateFromConnection(final MessageDigest digest, final URL resource) throws IOException {
+
+        final URLConnection connection = resource.openConnection();
+        final InputStream inputStream = connection.getInputStream();
+        try {
+
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read = inputStream.read(buffer); read != -1; read = inputStream.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+
+        } finally {
+            inputStream.close();
+
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.codehaus.mojo.jaxb2.shared.staleness;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StreamTokenizer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>Minimal, read-only model of the entity catalog supplied to XJC, used to resolve schema references in the
+ * same way as XJC does when calculating the transitive schema dependencies of an execution.
+ * Both OASIS XML catalogs and TR9401 (SGML Open) text catalogs are supported, but only the entries relevant
+ * to resolving XML Schema references are read:</p>
+ * <ul>
+ * <li><strong>XML catalogs</strong>: {@code system}, {@code uri}, {@code public}, {@code rewriteSystem},
+ * {@code rewriteURI} and {@code nextCatalog}.</li>
+ * <li><strong>TR9401 catalogs</strong>: {@code PUBLIC} and {@code SYSTEM}.</li>
+ * </ul>
+ * <p>Catalogs which cannot be read yield an empty SchemaCatalog; the catalog file itself is digested separately
+ * so that any change to it renders the generated files stale anyway.</p>
+ *
+ * @since 2.3
+ */
+public class SchemaCatalog {
+
+    // Internal state
+    private static final int MAX_NESTED_CATALOGS = 16;
+    private Map<String, URL> systemIdMappings;
+    private Map<String, URL> publicIdMappings;
+    private Map<String, String> rewrites;
+
+    /**
+     * Creates a new, empty SchemaCatalog.
+     */
+    public SchemaCatalog() {
+        systemIdMappings = new HashMap<String, URL>();
+        publicIdMappings = new HashMap<String, URL>();
+        rewrites = new LinkedHashMap<String, String>();
+    }
+
+    /**
+     * Parses the supplied catalog file.
+     *
+     * @param catalogFile A non-null catalog file, in XML or TR9401 format.
+     * @param log         The active Maven Log.
+     * @return A SchemaCatalog holding the mappings read from the supplied catalog file.
+     */
+    public static SchemaCatalog parse(final File catalogFile, final Log log) {
+
+        // Check sanity
+        Validate.notNull(catalogFile, "catalogFile");
+        Validate.notNull(log, "log");
+
+        final SchemaCatalog toReturn = new SchemaCatalog();
+        toReturn.read(FileSystemUtilities.getUrlFor(catalogFile), log, new HashSet<String>());
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Resolves a reference to an XML Schema.
+     *
+     * @param namespace      The target namespace of the referenced schema, or {@code null} for xs:include and
+     *                       xs:redefine references.
+     * @param schemaLocation The schemaLocation of the reference, as written within the referring schema.
+     *                       May be {@code null} for xs:import references which only define a namespace.
+     * @param base           The URL of the referring schema, used to resolve relative schemaLocations.
+     * @return The resolved URL, or {@code null} if the reference could not be resolved.
+     */
+    public URL resolve(final String namespace, final String schemaLocation, final URL base) {
+
+        // Check sanity
+        Validate.notNull(base, "base");
+
+        if (schemaLocation != null) {
+
+            // Mapped as written within the referring schema?
+            URL toReturn = systemIdMappings.get(schemaLocation);
+            if (toReturn != null) {
+                return toReturn;
+            }
+
+            try {
+                final String absolute = new URL(base, schemaLocation).toString();
+
+                toReturn = systemIdMappings.get(absolute);
+                if (toReturn != null) {
+                    return toReturn;
+                }
+
+                // Use the longest matching rewrite prefix, as mandated by the catalog specification.
+                String longestPrefix = null;
+                for (String current : rewrites.keySet()) {
+                    if (absolute.startsWith(current)
+                            && (longestPrefix == null || current.length() > longestPrefix.length())) {
+                        longestPrefix = current;
+                    }
+                }
+
+                return longestPrefix == null
+                        ? new URL(absolute)
+                        : new URL(rewrites.get(longestPrefix) + absolute.substring(longestPrefix.length()));
+
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+
+        // No schemaLocation; the namespace might be mapped.
+        return namespace == null ? null : publicIdMappings.get(namespace);
+    }
+
+    /**
+     * @return A digest of all mappings within this SchemaCatalog, which changes whenever the resolution of
+     * any schema reference might change.
+     */
+    public String getFingerprint() {
+        return ContentDigester.digest(new TreeMap<String, URL>(systemIdMappings).toString()
+                + new TreeMap<String, URL>(publicIdMappings).toString()
+                + rewrites.toString());
+    }
+
+    /**
+     * @return {@code true} if this SchemaCatalog contains no mappings.
+     */
+    public boolean isEmpty() {
+        return systemIdMappings.isEmpty() && publicIdMappings.isEmpty() && rewrites.isEmpty();
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void read(final URL catalogURL, final Log log, final Set<String> alreadyRead) {
+
+        if (!alreadyRead.add(catalogURL.toString()) || alreadyRead.size() > MAX_NESTED_CATALOGS) {
+            return;
+        }
+
+        try {
+            readXmlCatalog(catalogURL, log, alreadyRead);
+        } catch (SAXException e) {
+
+            // Not an XML catalog. Attempt to read it as a TR9401 catalog.
+            try {
+                readTextCatalog(catalogURL);
+            } catch (IOException ioe) {
+                logUnreadable(catalogURL, log, ioe);
+            }
+
+        } catch (Exception e) {
+            logUnreadable(catalogURL, log, e);
+        }
+    }
+
+    private void readXmlCatalog(final URL catalogURL, final Log log, final Set<String> alreadyRead)
+            throws Exception {
+
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+
+        factory.newSAXParser().parse(catalogURL.toString(), new DefaultHandler() {
+
+            @Override
+            public InputSource resolveEntity(final String publicId, final String systemId) {
+
+                // Never fetch the catalog DTD.
+                return new InputSource(new StringReader(""));
+            }
+
+            @Override
+            public void startElement(final String uri,
+                    final String localName,
+                    final String qName,
+                    final Attributes attributes) throws SAXException {
+
+                if ("system".equals(localName)) {
+                    addMapping(systemIdMappings, attributes.getValue("systemId"),
+                            catalogURL, attributes.getValue("uri"));
+                } else if ("uri".equals(localName)) {
+                    addMapping(systemIdMappings, attributes.getValue("name"),
+                            catalogURL, attributes.getValue("uri"));
+                    addMapping(publicIdMappings, attributes.getValue("name"),
+                            catalogURL, attributes.getValue("uri"));
+                } else if ("public".equals(localName)) {
+                    addMapping(publicIdMappings, attributes.getValue("publicId"),
+                            catalogURL, attributes.getValue("uri"));
+                } else if ("rewriteSystem".equals(localName)) {
+                    addRewrite(attributes.getValue("systemIdStartString"),
+                            catalogURL, attributes.getValue("rewritePrefix"));
+                } else if ("rewriteURI".equals(localName)) {
+                    addRewrite(attributes.getValue("uriStartString"),
+                            catalogURL, attributes.getValue("rewritePrefix"));
+                } else if ("nextCatalog".equals(localName)) {
+
+                    final URL nextCatalog = toURL(catalogURL, attributes.getValue("catalog"));
+                    if (nextCatalog != null) {
+                        read(nextCatalog, log, alreadyRead);
+                    }
+                }
+            }
+        });
+    }
+
+    private void readTextCatalog(final URL catalogURL) throws IOException {
+
+        final Reader reader = new BufferedReader(new InputStreamReader(catalogURL.openStream(), "UTF-8"));
+        try {
+
+            final StreamTokenizer tokenizer = new StreamTokenizer(reader);
+            tokenizer.resetSyntax();
+            tokenizer.wordChars(33, 255);
+            tokenizer.whitespaceChars(0, ' ');
+            tokenizer.quoteChar('"');
+            tokenizer.quoteChar('\'');
+
+            for (int token = tokenizer.nextToken(); token != StreamTokenizer.TT_EOF; token = tokenizer.nextToken()) {
+
+                final String keyword = tokenizer.sval;
+                if ("PUBLIC".equalsIgnoreCase(keyword) || "SYSTEM".equalsIgnoreCase(keyword)) {
+
+                    tokenizer.nextToken();
+                    final String id = tokenizer.sval;
+                    tokenizer.nextToken();
+                    final String location = tokenizer.sval;
+
+                    addMapping("PUBLIC".equalsIgnoreCase(keyword) ? publicIdMappings : systemIdMappings,
+                            id, catalogURL, location);
+                }
+            }
+
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void addMapping(final Map<String, URL> mappings,
+            final String key,
+            final URL catalogURL,
+            final String location) {
+
+        final URL target = toURL(catalogURL, location);
+        if (key != null && target != null && !mappings.containsKey(key)) {
+
+            // The first matching entry wins.
+            mappings.put(key, target);
+        }
+    }
+
+    private void addRewrite(final String startString, final URL catalogURL, final String rewritePrefix) {
+
+        final URL target = toURL(catalogURL, rewritePrefix);
+        if (startString != null && target != null && !rewrites.containsKey(startString)) {
+            rewrites.put(startString, target.toString());
+        }
+    }
+
+    private static URL toURL(final URL catalogURL, final String location) {
+
+        if (location == null) {
+            return null;
+        }
+
+        try {
+            return new URL(catalogURL, location);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static void logUnreadable(final URL catalogURL, final Log log, final Exception e) {
+        if (log.isDebugEnabled()) {
+            log.debug("Could not read catalog [" + catalogURL + "]. Ignoring its mappings when "
+                    + "calculating schema dependencies.", e);
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package org.codehaus.mojo.jaxb2.shared.staleness;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.mirror.SchemaMirror;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Graph of the XML Schema files used by an XJC execution, including all schemas reachable from the
+ * configured sources through {@code xs:import}, {@code xs:include}, {@code xs:redefine} and {@code xs:override}
+ * references. References are resolved relative to the referring schema, or through the supplied
+ * {@link SchemaCatalog}, in the same way as XJC resolves them.</p>
+ * <p>The graph is built level by level: all schemas of a level are digested (in parallel, if there are many of
+ * them) before their references are read. A schema whose digest equals the one recorded within the previously
+ * persisted graph is not parsed; its references are reused from the previous graph. Only local schemas (file or
+ * jar URLs) are followed; schemas referenced on remote hosts are recorded as leaves with the digest
+ * {@link #REMOTE}, implying that staleness checks never require network access - unless a {@link SchemaMirror}
+ * is supplied, in which case remote schemas are digested and followed from their mirrored copies.</p>
+ * <p>The graph is persisted in JSON form, which also serves as a human-readable dump for diagnosing which
+ * schemas an execution depends upon.</p>
+ *
+ * @since 2.3
+ */
+public class SchemaDependencyGraph {
+
+    /**
+     * The digest value assigned to remote schemas, which are neither read nor followed.
+     */
+    public static final String REMOTE = "<remote>";
+
+    /**
+     * The XML Schema namespace URI.
+     */
+    public static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+
+    // Internal state
+    private static final String ENCODING = "UTF-8";
+    private String catalogFingerprint;
+    private SortedMap<String, String> digests;
+    private SortedMap<String, SortedSet<String>> dependencies;
+    private SortedMap<String, String> targetNamespaces;
+
+    /**
+     * Creates a new, empty SchemaDependencyGraph.
+     */
+    public SchemaDependencyGraph() {
+        catalogFingerprint = "";
+        digests = new TreeMap<String, String>();
+        dependencies = new TreeMap<String, SortedSet<String>>();
+        targetNamespaces = new TreeMap<String, String>();
+    }
+
+    /**
+     * Builds the SchemaDependencyGraph for the supplied root schemas.
+     *
+     * @param roots    The non-null List of root schema URLs, typically the configured sources.
+     * @param catalog  The SchemaCatalog used to resolve references, or {@code null} if no catalog is used.
+     * @param previous The previously persisted SchemaDependencyGraph, or {@code null} if none was found.
+     * @param log      The active Maven Log.
+     * @return The SchemaDependencyGraph of all schemas reachable from the supplied roots.
+     */
+    public static SchemaDependencyGraph build(final List<URL> roots,
+            final SchemaCatalog catalog,
+            final SchemaDependencyGraph previous,
+            final Log log) {
+        return build(roots, catalog, previous, null, log);
+    }
+
+    /**
+     * Builds the SchemaDependencyGraph for the supplied root schemas, following remote schemas through the
+     * supplied SchemaMirror. All remote schemas of each level are mirrored (i.e. downloaded or revalidated) in
+     * parallel, after which they are digested and followed from their mirrored copies. Remote schemas which could
+     * not be mirrored are recorded as leaves with the digest {@link #REMOTE}.
+     *
+     * @param roots    The non-null List of root schema URLs, typically the configured sources.
+     * @param catalog  The SchemaCatalog used to resolve references, or {@code null} if no catalog is used.
+     * @param previous The previously persisted SchemaDependencyGraph, or {@code null} if none was found.
+     * @param mirror   The SchemaMirror used to read remote schemas, or {@code null} to not follow remote schemas.
+     * @param log      The active Maven Log.
+     * @return The SchemaDependencyGraph of all schemas reachable from the supplied roots.
+     */
+    public static SchemaDependencyGraph build(final List<URL> roots,
+            final SchemaCatalog catalog,
+            final SchemaDependencyGraph previous,
+            final SchemaMirror mirror,
+            final Log log) {
+
+        // Check sanity
+        Validate.notNull(roots, "roots");
+        Validate.notNull(log, "log");
+
+        final SchemaDependencyGraph toReturn = new SchemaDependencyGraph();
+        final SchemaCatalog effectiveCatalog = catalog == null ? new SchemaCatalog() : catalog;
+        toReturn.catalogFingerprint = effectiveCatalog.getFingerprint();
+
+        // References can only be reused if they were resolved using the same catalog mappings.
+        final SchemaDependencyGraph reusable = previous != null
+                && toReturn.catalogFingerprint.equals(previous.catalogFingerprint) ? previous : null;
+
+        int numParsed = 0;
+        int numReused = 0;
+        List<URL> currentLevel = new ArrayList<URL>(roots);
+        for (int level = 0; !currentLevel.isEmpty(); level++) {
+
+            // Mirror all remote schemas within the current level, in parallel.
+            final List<URL> remotes = new ArrayList<URL>();
+            final Set<String> remoteKeys = new HashSet<String>();
+            for (URL current : currentLevel) {
+                if (mirror != null && SchemaMirror.isRemote(current)) {
+                    remotes.add(current);
+                    remoteKeys.add(current.toString());
+                }
+            }
+            final SortedMap<String, URL> mirrored = remotes.isEmpty()
+                    ? new TreeMap<String, URL>()
+                    : mirror.mirrorAll(remotes);
+
+            // Digest all schemas within the current level, in parallel if beneficial.
+            final List<URL> toDigest = new ArrayList<URL>();
+            final List<URL> contentLocations = new ArrayList<URL>();
+            for (URL current : currentLevel) {
+
+                final String key = current.toString();
+                final URL mirroredCopy = mirrored.get(key);
+                if (mirroredCopy != null || isLocal(current) || (level == 0 && !remoteKeys.contains(key))) {
+                    toDigest.add(current);
+                    contentLocations.add(mirroredCopy == null ? current : mirroredCopy);
+                } else {
+                    toReturn.digests.put(current.toString(), REMOTE);
+                    toReturn.dependencies.put(current.toString(), new TreeSet<String>());
+                }
+            }
+            final SortedMap<String, String> contentDigests = ContentDigester.digest(contentLocations, log);
+            for (int i = 0; i < toDigest.size(); i++) {
+                toReturn.digests.put(toDigest.get(i).toString(),
+                        contentDigests.get(contentLocations.get(i).toString()));
+            }
+
+            // Find the references of each schema within the current level.
+            final List<URL> nextLevel = new ArrayList<URL>();
+            final Set<String> nextLevelKeys = new HashSet<String>();
+            for (int i = 0; i < toDigest.size(); i++) {
+
+                final URL current = toDigest.get(i);
+                final URL contentLocation = contentLocations.get(i);
+                final String key = current.toString();
+                final String digest = toReturn.digests.get(key);
+
+                if (reusable != null
+                        && !ContentDigester.UNREADABLE.equals(digest)
+                        && digest.equals(reusable.digests.get(key))
+                        && reusable.dependencies.containsKey(key)) {
+
+                    toReturn.dependencies.put(key, reusable.dependencies.get(key));
+                    if (reusable.targetNamespaces.containsKey(key)) {
+                        toReturn.targetNamespaces.put(key, reusable.targetNamespaces.get(key));
+                    }
+                    numReused++;
+
+                } else if (ContentDigester.UNREADABLE.equals(digest) || !isLocal(contentLocation)) {
+                    toReturn.dependencies.put(key, new TreeSet<String>());
+                } else {
+                    readReferences(current, contentLocation, effectiveCatalog, toReturn, log);
+                    numParsed++;
+                }
+
+                final SortedSet<String> references = toReturn.dependencies.get(key);
+
+                for (String currentReference : references) {
+                    if (!toReturn.digests.containsKey(currentReference) && nextLevelKeys.add(currentReference)) {
+                        try {
+                            nextLevel.add(new URL(currentReference));
+                        } catch (IOException e) {
+                            log.debug("Ignoring malformed schema reference [" + currentReference + "]");
+                        }
+                    }
+                }
+            }
+
+            currentLevel = nextLevel;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Schema dependency graph holds " + toReturn.digests.size() + " schemas from "
+                    + roots.size() + " sources. Parsed " + numParsed + " schemas, reused references of "
+                    + numReused + " unchanged schemas.");
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * @return An unmodifiable SortedMap relating the external form of the URL of each schema within this
+     * SchemaDependencyGraph to its content digest.
+     */
+    public SortedMap<String, String> getDigests() {
+        return Collections.unmodifiableSortedMap(digests);
+    }
+
+    /**
+     * Retrieves the schemas directly referenced by the supplied schema.
+     *
+     * @param schema The external form of a schema URL.
+     * @return An unmodifiable SortedSet holding the external forms of the URLs of all schemas directly
+     * referenced by the supplied schema. Empty if the supplied schema is not part of this SchemaDependencyGraph.
+     */
+    public SortedSet<String> getDependencies(final String schema) {
+
+        final SortedSet<String> toReturn = dependencies.get(schema);
+        return toReturn == null
+                ? Collections.unmodifiableSortedSet(new TreeSet<String>())
+                : Collections.unmodifiableSortedSet(toReturn);
+    }
+
+    /**
+     * Retrieves the targetNamespace of the supplied schema.
+     *
+     * @param schema The external form of a schema URL.
+     * @return The targetNamespace of the supplied schema, the empty string for schemas without a
+     * targetNamespace, or {@code null} if the supplied schema could not be read (or is not an XML Schema).
+     */
+    public String getTargetNamespace(final String schema) {
+        return targetNamespaces.get(schema);
+    }
+
+    /**
+     * @return A JSON representation of this SchemaDependencyGraph.
+     */
+    public String toJson() {
+
+        final StringBuilder builder = new StringBuilder("{\n");
+        builder.append("  \"catalog\" : ").append(quote(catalogFingerprint)).append(",\n");
+        builder.append("  \"schemas\" : [");
+        boolean firstSchema = true;
+        for (Map.Entry<String, String> current : digests.entrySet()) {
+
+            builder.append(firstSchema ? "\n" : ",\n");
+            builder.append("    {\n");
+            builder.append("      \"url\" : ").append(quote(current.getKey())).append(",\n");
+            builder.append("      \"digest\" : ").append(quote(current.getValue())).append(",\n");
+            builder.append("      \"targetNamespace\" : ")
+                    .append(quote(targetNamespaces.get(current.getKey()))).append(",\n");
+            builder.append("      \"dependencies\" : [");
+
+            boolean firstDependency = true;
+            for (String currentDependency : getDependencies(current.getKey())) {
+                builder.append(firstDependency ? " " : ", ").append(quote(currentDependency));
+                firstDependency = false;
+            }
+
+            builder.append(firstDependency ? "]\n" : " ]\n").append("    }");
+            firstSchema = false;
+        }
+
+        // All done.
+        return builder.append(firstSchema ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+
+    /**
+     * Writes the JSON form of this SchemaDependencyGraph to the supplied file, creating its parent directory if
+     * required.
+     *
+     * @param aFile The non-null file to which this SchemaDependencyGraph should be written.
+     * @throws IOException if the SchemaDependencyGraph could not be written.
+     */
+    public void write(final File aFile) throws IOException {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+
+        final File parentDir = aFile.getParentFile();
+        if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Could not create directory [" + parentDir.getAbsolutePath() + "]");
+        }
+
+        final Writer out = new OutputStreamWriter(new FileOutputStream(aFile), ENCODING);
+        try {
+            out.write(toJson());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a SchemaDependencyGraph from the supplied file, as written by {@link #write(File)}.
+     *
+     * @param aFile The file from which to read a SchemaDependencyGraph.
+     * @return The SchemaDependencyGraph read from the supplied file, or {@code null} if the file does not
+     * exist or could not be read.
+     */
+    public static SchemaDependencyGraph read(final File aFile) {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+        if (!aFile.isFile()) {
+            return null;
+        }
+
+        try {
+
+            final StringBuilder content = new StringBuilder();
+            final Reader in = new InputStreamReader(new FileInputStream(aFile), ENCODING);
+            try {
+                final char[] buffer = new char[4096];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    content.append(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+
+            return fromJson(content.toString());
+
+        } catch (Exception e) {
+
+            // Unreadable or corrupt; the graph is simply re-built from scratch.
+            return null;
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static SchemaDependencyGraph fromJson(final String json) {
+
+        final SchemaDependencyGraph toReturn = new SchemaDependencyGraph();
+        final JsonTokenizer tokenizer = new JsonTokenizer(json);
+
+        tokenizer.expect('{');
+        tokenizer.expectString("catalog");
+        tokenizer.expect(':');
+        toReturn.catalogFingerprint = tokenizer.readString();
+        tokenizer.expect(',');
+        tokenizer.expectString("schemas");
+        tokenizer.expect(':');
+        tokenizer.expect('[');
+
+        for (boolean more = !tokenizer.consumeIf(']'); more; more = tokenizer.consumeIf(',')) {
+
+            tokenizer.expect('{');
+            tokenizer.expectString("url");
+            tokenizer.expect(':');
+            final String url = tokenizer.readString();
+            tokenizer.expect(',');
+            tokenizer.expectString("digest");
+            tokenizer.expect(':');
+            final String digest = tokenizer.readString();
+            tokenizer.expect(',');
+            tokenizer.expectString("targetNamespace");
+            tokenizer.expect(':');
+            final String targetNamespace = tokenizer.readString();
+            tokenizer.expect(',');
+            tokenizer.expectString("dependencies");
+            tokenizer.expect(':');
+            tokenizer.expect('[');
+
+            final SortedSet<String> schemaDependencies = new TreeSet<String>();
+            for (boolean moreDeps = !tokenizer.consumeIf(']'); moreDeps; moreDeps = tokenizer.consumeIf(',')) {
+                schemaDependencies.add(tokenizer.readString());
+            }
+            if (!schemaDependencies.isEmpty()) {
+                tokenizer.expect(']');
+            }
+            tokenizer.expect('}');
+
+            toReturn.digests.put(url, digest);
+            toReturn.dependencies.put(url, schemaDependencies);
+            if (targetNamespace != null) {
+                toReturn.targetNamespaces.put(url, targetNamespace);
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private static void readReferences(final URL schema,
+            final URL contentLocation,
+            final SchemaCatalog catalog,
+            final SchemaDependencyGraph graph,
+            final Log log) {
+
+        final ReferenceHandler handler = new ReferenceHandler(schema, catalog);
+        try {
+
+            // Relative references are resolved against the schema URL, even if read from a mirrored copy.
+            final URLConnection connection = contentLocation.openConnection();
+
+            // Don't lock jar files on Windows.
+            connection.setUseCaches(false);
+
+            final InputStream in = connection.getInputStream();
+            try {
+
+                final InputSource source = new InputSource(in);
+                source.setSystemId(schema.toString());
+
+                final SAXParserFactory factory = SAXParserFactory.newInstance();
+                factory.setNamespaceAware(true);
+                factory.setValidating(false);
+                factory.newSAXParser().parse(source, handler);
+
+            } finally {
+                in.close();
+            }
+
+        } catch (EndOfReferencesException e) {
+            // All references found.
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not read schema references from [" + schema + "]", e);
+            }
+        }
+
+        // All done.
+        graph.dependencies.put(schema.toString(), handler.references);
+        if (handler.targetNamespace != null) {
+            graph.targetNamespaces.put(schema.toString(), handler.targetNamespace);
+        }
+    }
+
+    private static boolean isLocal(final URL url) {
+        final String protocol = url.getProtocol();
+        return "file".equalsIgnoreCase(protocol) || "jar".equalsIgnoreCase(protocol);
+    }
+
+    private static String quote(final String value) {
+
+        if (value == null) {
+            return "null";
+        }
+
+        final StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+
+            final char current = value.charAt(i);
+            if (current == '"' || current == '\\') {
+                builder.append('\\').append(current);
+            } else if (current < ' ') {
+                builder.append(String.format("\\u%04x", (int) current));
+            } else {
+                builder.append(current);
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Thrown to stop parsing a schema once all of its references have been found.
+     */
+    private static class EndOfReferencesException extends SAXException {
+
+        private static final long serialVersionUID = 1L;
+
+        EndOfReferencesException() {
+            super("All references found.");
+        }
+    }
+
+    /**
+     * SAX handler collecting the resolved schemaLocations of all top-level xs:import, xs:include, xs:redefine
+     * and xs:override elements. As these elements must precede all other top-level schema components,
+     * parsing is aborted at the first other top-level component.
+     */
+    private static class ReferenceHandler extends DefaultHandler {
+
+        // Internal state
+        private URL schema;
+        private SchemaCatalog catalog;
+        private SortedSet<String> references;
+        private String targetNamespace;
+        private int depth;
+
+        ReferenceHandler(final URL schema, final SchemaCatalog catalog) {
+            this.schema = schema;
+            this.catalog = catalog;
+            this.references = new TreeSet<String>();
+        }
+
+        @Override
+        public InputSource resolveEntity(final String publicId, final String systemId) {
+
+            // Never fetch external DTDs or entities.
+            return new InputSource(new StringReader(""));
+        }
+
+        @Override
+        public void startElement(final String uri,
+                final String localName,
+                final String qName,
+                final Attributes attributes) throws SAXException {
+
+            depth++;
+            if (depth == 1) {
+
+                if (XSD_NAMESPACE.equals(uri) && "schema".equals(localName)) {
+                    final String tns = attributes.getValue("targetNamespace");
+                    targetNamespace = tns == null ? "" : tns;
+                }
+                return;
+            } else if (depth != 2) {
+                return;
+            }
+
+            if (!XSD_NAMESPACE.equals(uri)) {
+                throw new EndOfReferencesException();
+            }
+
+            if ("import".equals(localName)) {
+                addReference(attributes.getValue("namespace"), attributes.getValue("schemaLocation"));
+            } else if ("include".equals(localName)
+                    || "redefine".equals(localName)
+                    || "override".equals(localName)) {
+                addReference(null, attributes.getValue("schemaLocation"));
+            } else if (!"annotation".equals(localName)) {
+                throw new EndOfReferencesException();
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            depth--;
+        }
+
+        private void addReference(final String namespace, final String schemaLocation) {
+
+            final URL resolved = catalog.resolve(namespace, schemaLocation, schema);
+            if (resolved != null) {
+                references.add(resolved.toString());
+            }
+        }
+    }
+
+    /**
+     * Minimal tokenizer for the JSON form written by {@link SchemaDependencyGraph#toJson()}.
+     */
+    private static class JsonTokenizer {
+
+        // Internal state
+        private String json;
+        private int position;
+
+        JsonTokenizer(final String json) {
+            this.json = json;
+        }
+
+        void expect(final char expected) {
+            if (!consumeIf(expected)) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at position " + position);
+            }
+        }
+
+        boolean consumeIf(final char expected) {
+
+            skipWhitespace();
+            if (position < json.length() && json.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectString(final String expected) {
+            final String actual = readString();
+            if (!expected.equals(actual)) {
+                throw new IllegalArgumentException("Expected [" + expected + "], but found [" + actual + "]");
+            }
+        }
+
+        String readString() {
+
+            skipWhitespace();
+            if (json.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+
+            expect('"');
+            final StringBuilder builder = new StringBuilder();
+            for (char current = json.charAt(position++); current != '"'; current = json.charAt(position++)) {
+
+                if (current == '\\') {
+                    final char escaped = json.charAt(position++);
+                    if (escaped == 'u') {
+                        builder.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        position += 4;
+                    } else {
+                        builder.append(escaped);
+                    }
+                } else {
+                    builder.append(current);
+                }
+            }
+
+            return builder.toString();
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.codehaus.mojo.jaxb2.shared.staleness;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Manifest of everything which defines the state of the files generated by a single plugin execution.
+ * Each entry relates a key - such as the URL of a source XSD - to a digest of its value (such as the digest of
+ * the XSD content). A StaleManifest is written to the staleFile after each successful generation, and the
+ * generated files are considered stale if a freshly calculated StaleManifest differs from the stored one.</p>
+ * <p>Keys are on the form {@code category:key}, where the category is a short description of the kind of entry
+ * (such as "xsd", "xjb" or "java"), which is used to render human-readable change descriptions.</p>
+ * <p>A StaleManifest may also hold <em>hints</em>; entries which are persisted alongside the regular entries,
+ * but are not considered when comparing StaleManifests. Hints are used to cache information which is costly to
+ * calculate (such as the structural fingerprint of a Java source file) keyed by information which is cheap to
+ * calculate (such as the content digest of the same file).</p>
+ *
+ * @since 2.3
+ */
+public class StaleManifest {
+
+    // Internal state
+    private static final String CATEGORY_SEPARATOR = ":";
+    private static final String HEADER = "jaxb2-maven-plugin stale manifest. Do not edit.";
+    private static final String HINT_PREFIX = "hint" + CATEGORY_SEPARATOR;
+    private SortedMap<String, String> entries;
+    private SortedMap<String, String> hints;
+
+    /**
+     * Creates a new, empty StaleManifest.
+     */
+    public StaleManifest() {
+        entries = new TreeMap<String, String>();
+        hints = new TreeMap<String, String>();
+    }
+
+    /**
+     * Adds a single entry to this StaleManifest.
+     *
+     * @param category The non-empty category of the entry to add, such as "xsd". The category "hint" is
+     *                 reserved.
+     * @param key      The non-empty key within the given category.
+     * @param value    The non-null value (typically a digest) of the entry.
+     * @return This StaleManifest, for chaining.
+     */
+    public StaleManifest add(final String category, final String key, final String value) {
+
+        // Check sanity
+        Validate.notEmpty(category, "category");
+        Validate.notEmpty(key, "key");
+        Validate.notNull(value, "value");
+        Validate.isTrue(!category.contains(CATEGORY_SEPARATOR), "Category [" + category
+                + "] cannot contain '" + CATEGORY_SEPARATOR + "'.");
+        Validate.isTrue(!HINT_PREFIX.startsWith(category + CATEGORY_SEPARATOR), "Category [" + category
+                + "] is reserved.");
+
+        // All done.
+        entries.put(category + CATEGORY_SEPARATOR + key, value);
+        return this;
+    }
+
+    /**
+     * Adds all supplied key/digest pairs to this StaleManifest, using the given category.
+     *
+     * @param category The non-empty category of the entries to add, such as "xsd".
+     * @param digests  A non-null Map relating keys (such as URLs) to their digests.
+     * @return This StaleManifest, for chaining.
+     * @see ContentDigester#digest(java.util.List, org.apache.maven.plugin.logging.Log)
+     */
+    public StaleManifest addAll(final String category, final Map<String, String> digests) {
+
+        // Check sanity
+        Validate.notNull(digests, "digests");
+
+        for (Map.Entry<String, String> current : digests.entrySet()) {
+            add(category, current.getKey(), current.getValue());
+        }
+
+        // All done.
+        return this;
+    }
+
+    /**
+     * <p>Adds the identity of each supplied classpath element to this StaleManifest, using the category
+     * "classpath". The classpath order is significant. Files (typically JARs) are identified by their size and
+     * modification time, and directories (such as the target/classes directory of another module within the
+     * reactor) by the {@link FileSystemUtilities#getDirectoryStamp(File) stamp} of their content.</p>
+     * <p>The supplied project directories (i.e. the source roots and output directories of the project itself) are
+     * only identified as such. Their content is either fingerprinted separately (sources), or compiled from the
+     * generated files (classes) - and would otherwise render the generated files stale after each compilation.</p>
+     *
+     * @param classpath          The classpath elements, in classpath order.
+     * @param projectDirectories The absolute paths of the source roots and output directories of the project.
+     * @return This StaleManifest, for chaining.
+     */
+    public StaleManifest addClassPath(final List<String> classpath, final Collection<String> projectDirectories) {
+
+        // Check sanity
+        Validate.notNull(classpath, "classpath");
+        Validate.notNull(projectDirectories, "projectDirectories");
+
+        final Set<String> absoluteProjectDirectories = new HashSet<String>();
+        for (String current : projectDirectories) {
+            absoluteProjectDirectories.add(new File(current).getAbsolutePath());
+        }
+
+        for (int i = 0; i < classpath.size(); i++) {
+
+            final File current = new File(classpath.get(i));
+            final String identity;
+            if (current.isFile()) {
+                identity = "file," + current.length() + "," + current.lastModified();
+            } else if (absoluteProjectDirectories.contains(current.getAbsolutePath())) {
+                identity = "project directory";
+            } else if (current.isDirectory()) {
+                identity = "directory," + FileSystemUtilities.getDirectoryStamp(current);
+            } else {
+                identity = "nonexistent";
+            }
+
+            add("classpath", i + ":" + classpath.get(i), identity);
+        }
+
+        // All done.
+        return this;
+    }
+
+    /**
+     * Adds a hint to this StaleManifest. Hints are persisted, but not compared.
+     *
+     * @param category The non-empty category of the hint to add.
+     * @param key      The non-empty key within the given category.
+     * @param value    The non-null value of the hint.
+     * @return This StaleManifest, for chaining.
+     */
+    public StaleManifest addHint(final String category, final String key, final String value) {
+
+        // Check sanity
+        Validate.notEmpty(category, "category");
+        Validate.notEmpty(key, "key");
+        Validate.notNull(value, "value");
+        Validate.isTrue(!category.contains(CATEGORY_SEPARATOR), "Category [" + category
+                + "] cannot contain '" + CATEGORY_SEPARATOR + "'.");
+
+        // All done.
+        hints.put(category + CATEGORY_SEPARATOR + key, value);
+        return this;
+    }
+
+    /**
+     * Retrieves the value of a hint within this StaleManifest.
+     *
+     * @param category The category of the hint.
+     * @param key      The key of the hint within the given category.
+     * @return The value of the hint, or {@code null} if no such hint exists.
+     */
+    public String getHint(final String category, final String key) {
+        return hints.get(category + CATEGORY_SEPARATOR + key);
+    }
+
+    /**
+     * Retrieves the value of an entry within this StaleManifest.
+     *
+     * @param category The category of the entry.
+     * @param key      The key of the entry within the given category.
+     * @return The value of the entry, or {@code null} if no such entry exists.
+     */
+    public String getEntry(final String category, final String key) {
+        return entries.get(category + CATEGORY_SEPARATOR + key);
+    }
+
+    /**
+     * @return An unmodifiable view of the hints within this StaleManifest.
+     */
+    public SortedMap<String, String> getHints() {
+        return Collections.unmodifiableSortedMap(hints);
+    }
+
+    /**
+     * @return An unmodifiable view of the entries within this StaleManifest.
+     */
+    public SortedMap<String, String> getEntries() {
+        return Collections.unmodifiableSortedMap(entries);
+    }
+
+    /**
+     * Retrieves human-readable descriptions of all differences between this StaleManifest and the supplied
+     * previous one. Any entry which could not be read (i.e. whose value is {@link ContentDigester#UNREADABLE})
+     * is always reported as changed.
+     *
+     * @param previous The previously stored StaleManifest, or {@code null} if no such manifest was found.
+     * @return A List holding descriptions of all differences. An empty List indicates that the generated
+     * files are up to date.
+     */
+    public List<String> getChangesSince(final StaleManifest previous) {
+
+        final List<String> toReturn = new ArrayList<String>();
+        if (previous == null) {
+            toReturn.add("No previous stale manifest found.");
+            return toReturn;
+        }
+
+        for (Map.Entry<String, String> current : entries.entrySet()) {
+
+            final String key = current.getKey();
+            final String value = current.getValue();
+            final String previousValue = previous.entries.get(key);
+
+            if (ContentDigester.UNREADABLE.equals(value)) {
+                toReturn.add("Could not read " + key);
+            } else if (previousValue == null) {
+                toReturn.add("Added " + key);
+            } else if (!previousValue.equals(value)) {
+                toReturn.add("Changed " + key);
+            }
+        }
+
+        for (String current : previous.entries.keySet()) {
+            if (!entries.containsKey(current)) {
+                toReturn.add("Removed " + current);
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Writes this StaleManifest to the supplied file, creating its parent directory if required.
+     *
+     * @param aFile The non-null file to which this StaleManifest should be written.
+     * @throws IOException if the StaleManifest could not be written.
+     */
+    public void write(final File aFile) throws IOException {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+
+        final File parentDir = aFile.getParentFile();
+        if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Could not create directory [" + parentDir.getAbsolutePath() + "]");
+        }
+
+        final Properties toWrite = new Properties();
+        toWrite.putAll(entries);
+        for (Map.Entry<String, String> current : hints.entrySet()) {
+            toWrite.setProperty(HINT_PREFIX + current.getKey(), current.getValue());
+        }
+
+        final OutputStream out = new FileOutputStream(aFile);
+        try {
+            toWrite.store(out, HEADER);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a StaleManifest from the supplied file.
+     *
+     * @param aFile The file from which to read a StaleManifest.
+     * @return The StaleManifest read from the supplied file, or {@code null} if the file does not exist or
+     * could not be read.
+     */
+    public static StaleManifest read(final File aFile) {
+
+        // Check sanity
+        Validate.notNull(aFile, "aFile");
+        if (!aFile.isFile()) {
+            return null;
+        }
+
+        final Properties props = new Properties();
+        try {
+            final InputStream in = new FileInputStream(aFile);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        final StaleManifest toReturn = new StaleManifest();
+        for (String current : props.stringPropertyNames()) {
+            if (current.startsWith(HINT_PREFIX)) {
+                toReturn.hints.put(current.substring(HINT_PREFIX.length()), props.getProperty(current));
+            } else {
+                toReturn.entries.put(current, props.getProperty(current));
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+}
@@ -0,0 +1,521 @@
+package org.codehaus.mojo.jaxb2.shared.worker;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.jxc.SchemaGenerator;
+import com.sun.tools.xjc.Driver;
+import com.sun.tools.xjc.XJCListener;
+import org.codehaus.mojo.jaxb2.shared.environment.classloading.ClassLoaderCache;
+import org.xml.sax.SAXParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Long-lived worker process, running XJC and SchemaGen on behalf of {@link ToolWorkerClient}s. Since the
+ * worker JVM survives individual tool invocations, the tools' classes stay loaded and JIT-compiled across all
+ * modules (and builds) which use the same worker; each invocation therefore avoids the cold start paid when
+ * running the tools within a fresh plugin ClassLoader.</p>
+ * <p>The worker is started by a ToolWorkerClient (as {@code java -cp [toolClassPath] ToolWorker [portFile]
+ * [logFile] [idleTimeoutSeconds] [maxConcurrentRequests]}) and:</p>
+ * <ol>
+ * <li>Listens on an ephemeral port of the loopback interface only, and publishes that port - with a random
+ * token which must accompany every request - within the port file.</li>
+ * <li>Runs at most {@code maxConcurrentRequests} tool invocations concurrently; further requests wait.</li>
+ * <li>Streams all XJC events and all console output of each invocation back to the requesting client.</li>
+ * <li>Exits (and removes its port file) when it has been idle for {@code idleTimeoutSeconds}.</li>
+ * </ol>
+ *
+ * @see ToolWorkerClient
+ * @since 2.3
+ */
+public final class ToolWorker {
+
+    /**
+     * Property key for the port within the port file.
+     */
+    static final String PORT_KEY = "port";
+
+    /**
+     * Property key for the request token within the port file.
+     */
+    static final String TOKEN_KEY = "token";
+
+    // Internal state
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = 1000L;
+    private static final InheritableThreadLocal<Response> CURRENT_RESPONSE = new InheritableThreadLocal<Response>();
+
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final long idleTimeoutMillis;
+    private final Semaphore permits;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Creates a ToolWorker listening on an ephemeral port of the loopback interface.
+     *
+     * @param idleTimeoutSeconds    The number of seconds without requests after which this ToolWorker exits.
+     * @param maxConcurrentRequests The maximum number of tool invocations running concurrently.
+     * @throws IOException if the server socket could not be created.
+     */
+    ToolWorker(final int idleTimeoutSeconds, final int maxConcurrentRequests) throws IOException {
+
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        this.idleTimeoutMillis = 1000L * Math.max(1, idleTimeoutSeconds);
+        this.permits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
+
+        final byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        final StringBuilder tokenBuilder = new StringBuilder();
+        for (byte current : tokenBytes) {
+            tokenBuilder.append(Integer.toHexString((current & 0xff) | 0x100).substring(1));
+        }
+        this.token = tokenBuilder.toString();
+    }
+
+    /**
+     * Starts a ToolWorker.
+     *
+     * @param args [portFile] [logFile] [idleTimeoutSeconds] [maxConcurrentRequests]
+     * @throws Exception if the ToolWorker could not be started.
+     */
+    public static void main(final String[] args) throws Exception {
+
+        if (args.length != 4) {
+            System.err.println("Usage: ToolWorker [portFile] [logFile] [idleTimeoutSeconds] "
+                    + "[maxConcurrentRequests]");
+            System.exit(1);
+        }
+
+        final File portFile = new File(args[0]);
+        final File logFile = new File(args[1]);
+
+        // Route all console output of the tools to the client running the current request,
+        // or to the logFile for output emitted outside of any request.
+        final PrintStream logStream = new PrintStream(new FileOutputStream(logFile, true), true);
+        System.setOut(new PrintStream(new ConsoleRouter(logStream), true));
+        System.setErr(new PrintStream(new ConsoleRouter(logStream), true));
+
+        final ToolWorker worker = new ToolWorker(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        worker.publish(portFile);
+        logStream.println("ToolWorker listening on port " + worker.serverSocket.getLocalPort());
+
+        worker.serve(portFile);
+
+        logStream.println("ToolWorker idle for " + worker.idleTimeoutMillis + " ms; exiting.");
+        System.exit(0);
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Atomically writes the port and token of this ToolWorker to the supplied port file.
+     */
+    private void publish(final File portFile) throws IOException {
+
+        final Properties properties = new Properties();
+        properties.setProperty(PORT_KEY, "" + serverSocket.getLocalPort());
+        properties.setProperty(TOKEN_KEY, token);
+
+        final File tmpFile = new File(portFile.getParentFile(), portFile.getName() + ".tmp");
+
+        // Only the current user should be able to read the token.
+        tmpFile.delete();
+        if (!tmpFile.createNewFile()) {
+            throw new IOException("Could not create [" + tmpFile.getAbsolutePath() + "]");
+        }
+        tmpFile.setReadable(false, false);
+        tmpFile.setReadable(true, true);
+
+        final FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            properties.store(out, "ToolWorker");
+        } finally {
+            out.close();
+        }
+
+        if (portFile.exists() && !portFile.delete()) {
+            throw new IOException("Could not delete stale port file [" + portFile.getAbsolutePath() + "]");
+        }
+        if (!tmpFile.renameTo(portFile)) {
+            throw new IOException("Could not create port file [" + portFile.getAbsolutePath() + "]");
+        }
+    }
+
+    /**
+     * Accepts and serves requests until this ToolWorker has been idle for longer than its idle timeout.
+     */
+    private void serve(final File portFile) throws IOException {
+
+        final ExecutorService requestExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger threadIndex = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread toReturn = new Thread(runnable, "ToolWorker-" + threadIndex.incrementAndGet());
+                toReturn.setDaemon(true);
+                return toReturn;
+            }
+        });
+
+        serverSocket.setSoTimeout((int) IDLE_CHECK_INTERVAL_MILLIS);
+        try {
+            while (true) {
+
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+
+                    final boolean idle = activeRequests.get() == 0
+                            && System.currentTimeMillis() - lastActivity > idleTimeoutMillis;
+                    if (idle) {
+
+                        // Stop advertising this ToolWorker before closing its socket, to minimize the
+                        // window during which clients may find a port file referring to a closed socket.
+                        portFile.delete();
+                        break;
+                    }
+                    continue;
+                }
+
+                activeRequests.incrementAndGet();
+                requestExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handle(socket);
+                        } finally {
+                            lastActivity = System.currentTimeMillis();
+                            activeRequests.decrementAndGet();
+                        }
+                    }
+                });
+            }
+        } finally {
+            serverSocket.close();
+            requestExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads one request from the supplied socket, runs the requested tool and writes its response.
+     */
+    private void handle(final Socket socket) {
+
+        try {
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final Response response = new Response(new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream())));
+
+            // Validate the request header.
+            if (in.readInt() != WorkerProtocol.MAGIC || in.readInt() != WorkerProtocol.VERSION) {
+                response.failure("Unsupported ToolWorker protocol.");
+                return;
+            }
+            if (!token.equals(WorkerProtocol.readString(in))) {
+                response.failure("Invalid ToolWorker token.");
+                return;
+            }
+
+            final String tool = WorkerProtocol.readString(in);
+            final List<String> toolClassPath = WorkerProtocol.readStrings(in);
+            final List<String> arguments = WorkerProtocol.readStrings(in);
+
+            permits.acquire();
+            try {
+                response.result(run(tool, toolClassPath, arguments.toArray(new String[arguments.size()]),
+                        response));
+            } catch (Throwable e) {
+
+                final StringWriter stackTrace = new StringWriter();
+                e.printStackTrace(new PrintWriter(stackTrace));
+                response.failure(stackTrace.toString());
+            } finally {
+                permits.release();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away; nothing to report to.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore this
+            }
+        }
+    }
+
+    /**
+     * Runs the supplied tool within the current thread, with a ThreadContext ClassLoader holding the
+     * supplied tool ClassPath.
+     */
+    private int run(final String tool,
+                    final List<String> toolClassPath,
+                    final String[] arguments,
+                    final Response response) throws Exception {
+
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+        final ClassLoaderCache.Entry cacheEntry = ClassLoaderCache.acquire(ToolWorker.class.getClassLoader(),
+                getToolClassPathURLs(toolClassPath));
+        final ClassLoader toolClassLoader = cacheEntry.getClassLoader();
+
+        currentThread.setContextClassLoader(toolClassLoader);
+        CURRENT_RESPONSE.set(response);
+        try {
+
+            if (WorkerProtocol.XJC.equals(tool)) {
+                return Driver.run(arguments, new ForwardingXjcListener(response));
+            } else if (WorkerProtocol.SCHEMAGEN.equals(tool)) {
+                return SchemaGenerator.run(arguments, toolClassLoader);
+            }
+
+            throw new IllegalArgumentException("Unknown tool [" + tool + "]");
+
+        } finally {
+
+            System.out.flush();
+            System.err.flush();
+            CURRENT_RESPONSE.remove();
+            currentThread.setContextClassLoader(originalClassLoader);
+            ClassLoaderCache.release(cacheEntry);
+        }
+    }
+
+    /**
+     * Converts the supplied tool ClassPath to URLs. The ClassLoaders of these URLs are cached (and closed when
+     * evicted or outdated) by the {@link ClassLoaderCache}, to keep the classes of the tool ClassPath (such as XJC
+     * plugins) loaded across requests.
+     */
+    private static List<URL> getToolClassPathURLs(final List<String> toolClassPath) throws MalformedURLException {
+
+        final List<URL> toReturn = new ArrayList<URL>(toolClassPath.size());
+        for (String current : toolClassPath) {
+            toReturn.add(new File(current).toURI().toURL());
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    /**
+     * Writes response frames to a client. Frames may be written from several threads, if a tool spawns threads.
+     */
+    private static final class Response {
+
+        // Internal state
+        private final DataOutputStream out;
+        private boolean broken;
+
+        Response(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void generatedFile(final String fileName, final int current, final int total) {
+            try {
+                out.writeByte(WorkerProtocol.GENERATED_FILE);
+                WorkerProtocol.writeString(out, fileName);
+                out.writeInt(current);
+                out.writeInt(total);
+            } catch (IOException e) {
+                broken = true;
+            }
+        }
+
+        synchronized void message(final byte type, final String message) {
+            try {
+                out.writeByte(type);
+                WorkerProtocol.writeString(out, message);
+            } catch (IOException e) {
+                broken = true;
+            }
+        }
+
+        synchronized void exception(final byte type, final SAXParseException exception) {
+            try {
+                out.writeByte(type);
+                WorkerProtocol.writeString(out, exception.getMessage());
+                WorkerProtocol.writeString(out, exception.getPublicId());
+                WorkerProtocol.writeString(out, exception.getSystemId());
+                out.writeInt(exception.getLineNumber());
+                out.writeInt(exception.getColumnNumber());
+            } catch (IOException e) {
+                broken = true;
+            }
+        }
+
+        synchronized void result(final int exitCode) throws IOException {
+            out.writeByte(WorkerProtocol.RESULT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+
+        synchronized void failure(final String message) throws IOException {
+            out.writeByte(WorkerProtocol.FAILURE);
+            WorkerProtocol.writeString(out, message);
+            out.flush();
+        }
+
+        synchronized boolean isBroken() {
+            return broken;
+        }
+    }
+
+    /**
+     * XJCListener forwarding all XJC events to the client.
+     */
+    private static final class ForwardingXjcListener extends XJCListener {
+
+        // Internal state
+        private final Response response;
+
+        ForwardingXjcListener(final Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public void generatedFile(final String fileName, final int current, final int total) {
+            response.generatedFile(fileName, current, total);
+        }
+
+        @Override
+        public void message(final String msg) {
+            response.message(WorkerProtocol.MESSAGE, msg);
+        }
+
+        @Override
+        public void error(final SAXParseException exception) {
+            response.exception(WorkerProtocol.ERROR, exception);
+        }
+
+        @Override
+        public void fatalError(final SAXParseException exception) {
+            response.exception(WorkerProtocol.FATAL_ERROR, exception);
+        }
+
+        @Override
+        public void warning(final SAXParseException exception) {
+            response.exception(WorkerProtocol.WARNING, exception);
+        }
+
+        @Override
+        public void info(final SAXParseException exception) {
+            response.exception(WorkerProtocol.INFO, exception);
+        }
+
+        @Override
+        public boolean isCanceled() {
+
+            // Stop generating code which nobody will receive.
+            return response.isBroken();
+        }
+    }
+
+    /**
+     * OutputStream replacing System.out and System.err, which forwards complete lines to the client whose
+     * request is running within the current thread (or any thread it started), and writes all other output
+     * to the worker's log file.
+     */
+    private static final class ConsoleRouter extends OutputStream {
+
+        // Internal state
+        private final OutputStream fallback;
+        private final ThreadLocal<ByteArrayOutputStream> lineBuffer = new ThreadLocal<ByteArrayOutputStream>() {
+            @Override
+            protected ByteArrayOutputStream initialValue() {
+                return new ByteArrayOutputStream();
+            }
+        };
+
+        ConsoleRouter(final OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+
+            final Response response = CURRENT_RESPONSE.get();
+            if (response == null) {
+                synchronized (fallback) {
+                    fallback.write(b);
+                }
+                return;
+            }
+
+            final ByteArrayOutputStream buffer = lineBuffer.get();
+            if (b == '\n') {
+                emitLine(response, buffer);
+            } else if (b != '\r') {
+                buffer.write(b);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            final Response response = CURRENT_RESPONSE.get();
+            if (response == null) {
+                synchronized (fallback) {
+                    fallback.flush();
+                }
+            } else if (lineBuffer.get().size() > 0) {
+                emitLine(response, lineBuffer.get());
+            }
+        }
+
+        private void emitLine(final Response response, final ByteArrayOutputStream buffer) {
+            response.message(WorkerProtocol.CONSOLE, buffer.toString());
+            buffer.reset();
+        }
+    }
+}
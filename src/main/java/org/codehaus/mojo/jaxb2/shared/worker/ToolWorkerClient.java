@@ -0,0 +1,505 @@
+package org.codehaus.mojo.jaxb2.shared.worker;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.xjc.XJCListener;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.Validate;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.xml.sax.SAXParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Client sending XJC and SchemaGen invocations to a {@link ToolWorker}, which is started on first use and
+ * then shared by all clients (in this and other JVMs) using the same worker ClassPath, JVM and working
+ * directory. ToolWorkers are identified by a key derived from these properties; for each key, the worker
+ * directory holds:</p>
+ * <pre>
+ *     <code>
+ *         [user.home]/.m2/jaxb2-workers/[key].port   (port and token of the worker)
+ *         [user.home]/.m2/jaxb2-workers/[key].log    (console output of the worker)
+ *         [user.home]/.m2/jaxb2-workers/[key].lock   (guards starting the worker)
+ *     </code>
+ * </pre>
+ * <p>The worker directory resides within the home directory of the user - rather than within the shared
+ * temporary directory - and is created accessible by its owner only, since other local users must not be able
+ * to publish a port file of their own (or read the request token of the worker).</p>
+ * <p>The idle timeout and maximum number of concurrent requests are those of the client which started the
+ * worker. A ToolWorkerClient is safe for concurrent use; each invocation uses its own connection.</p>
+ *
+ * @see ToolWorker
+ * @since 2.3
+ */
+public class ToolWorkerClient {
+
+    // Internal state
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+    private static final long STARTUP_TIMEOUT_MILLIS = 30000L;
+    private static final long STARTUP_POLL_MILLIS = 50L;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final String workerClassPath;
+    private final File workingDirectory;
+    private final int idleTimeoutSeconds;
+    private final int maxConcurrentRequests;
+    private final File portFile;
+    private final File logFile;
+    private final File lockFile;
+    private final Log log;
+
+    /**
+     * Creates a ToolWorkerClient for the ToolWorker identified by the supplied worker ClassPath and working
+     * directory (and the running JVM).
+     *
+     * @param workerClassPath       The URLs of the ClassPath of the ToolWorker, which must hold the ToolWorker
+     *                              class and the tools themselves. Typically the URLs of the plugin ClassLoader.
+     * @param workingDirectory      The working directory of the ToolWorker, against which all relative paths
+     *                              within tool arguments are resolved.
+     * @param idleTimeoutSeconds    The number of seconds without requests after which a ToolWorker started by
+     *                              this client exits.
+     * @param maxConcurrentRequests The maximum number of concurrent tool invocations within a ToolWorker started
+     *                              by this client.
+     * @param log                   The active Maven Log.
+     */
+    public ToolWorkerClient(final List<URL> workerClassPath,
+                            final File workingDirectory,
+                            final int idleTimeoutSeconds,
+                            final int maxConcurrentRequests,
+                            final Log log) {
+
+        // Check sanity
+        Validate.notNull(workerClassPath, "workerClassPath");
+        Validate.notNull(workingDirectory, "workingDirectory");
+        Validate.isTrue(idleTimeoutSeconds > 0, "idleTimeoutSeconds > 0");
+        Validate.isTrue(maxConcurrentRequests > 0, "maxConcurrentRequests > 0");
+        Validate.notNull(log, "log");
+
+        // Assign internal state
+        this.workingDirectory = workingDirectory;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.log = log;
+
+        final StringBuilder classPathBuilder = new StringBuilder();
+        for (URL current : workerClassPath) {
+
+            final File currentFile = FileSystemUtilities.getFileFor(current, "UTF-8");
+            if (currentFile != null) {
+                if (classPathBuilder.length() > 0) {
+                    classPathBuilder.append(File.pathSeparatorChar);
+                }
+                classPathBuilder.append(currentFile.getAbsolutePath());
+            }
+        }
+
+        // SchemaGen requires javac, which is not found on the boot ClassPath of pre-Java 9 JVMs.
+        final File toolsJar = new File(System.getProperty("java.home"), ".." + File.separator + "lib"
+                + File.separator + "tools.jar");
+        if (toolsJar.isFile()) {
+            classPathBuilder.append(File.pathSeparatorChar).append(FileSystemUtilities.getCanonicalPath(toolsJar));
+        }
+        this.workerClassPath = classPathBuilder.toString();
+
+        final String key = ContentDigester.digest(this.workerClassPath
+                + "\n" + System.getProperty("java.home")
+                + "\n" + FileSystemUtilities.getCanonicalPath(workingDirectory)).substring(0, 16);
+        final File workerDirectory = new File(System.getProperty("user.home"),
+                ".m2" + File.separator + "jaxb2-workers");
+        this.portFile = new File(workerDirectory, key + ".port");
+        this.logFile = new File(workerDirectory, key + ".log");
+        this.lockFile = new File(workerDirectory, key + ".lock");
+    }
+
+    /**
+     * Runs XJC within the ToolWorker, starting the ToolWorker if required.
+     *
+     * @param arguments     The XJC arguments.
+     * @param toolClassPath The paths of the ThreadContext ClassPath for XJC (typically holding XJC plugins).
+     * @param listener      The XJCListener receiving all events emitted by XJC.
+     * @return The exit code of XJC.
+     * @throws WorkerUnavailableException if no ToolWorker could be started or reached.
+     * @throws IOException                if the connection to the ToolWorker failed while XJC was running.
+     */
+    public int runXjc(final String[] arguments,
+                      final List<String> toolClassPath,
+                      final XJCListener listener) throws IOException {
+
+        // Check sanity
+        Validate.notNull(listener, "listener");
+
+        // Delegate
+        return run(WorkerProtocol.XJC, arguments, toolClassPath, listener);
+    }
+
+    /**
+     * Runs SchemaGen within the ToolWorker, starting the ToolWorker if required.
+     *
+     * @param arguments     The SchemaGen arguments.
+     * @param toolClassPath The paths of the ClassPath holding the classes and sources processed by SchemaGen.
+     * @return The exit code of SchemaGen.
+     * @throws WorkerUnavailableException if no ToolWorker could be started or reached.
+     * @throws IOException                if the connection to the ToolWorker failed while SchemaGen was running.
+     */
+    public int runSchemaGen(final String[] arguments, final List<String> toolClassPath) throws IOException {
+        return run(WorkerProtocol.SCHEMAGEN, arguments, toolClassPath, null);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private int run(final String tool,
+                    final String[] arguments,
+                    final List<String> toolClassPath,
+                    final XJCListener listenerOrNull) throws IOException {
+
+        // Check sanity
+        Validate.notNull(arguments, "arguments");
+        Validate.notNull(toolClassPath, "toolClassPath");
+
+        for (int attempt = 1; true; attempt++) {
+
+            final Endpoint endpoint = connect();
+            try {
+
+                // Send the request.
+                final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(endpoint.socket.getOutputStream()));
+                out.writeInt(WorkerProtocol.MAGIC);
+                out.writeInt(WorkerProtocol.VERSION);
+                WorkerProtocol.writeString(out, endpoint.token);
+                WorkerProtocol.writeString(out, tool);
+                WorkerProtocol.writeStrings(out, toolClassPath);
+                WorkerProtocol.writeStrings(out, Arrays.asList(arguments));
+                out.flush();
+
+                // Read the response.
+                final DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(endpoint.socket.getInputStream()));
+                final byte firstFrameType;
+                try {
+                    firstFrameType = in.readByte();
+                } catch (IOException e) {
+
+                    // A ToolWorker which reached its idle timeout while we connected closes the
+                    // connection without reading the request. Retry, using a new ToolWorker.
+                    if (attempt < MAX_ATTEMPTS) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("ToolWorker closed the connection before responding. Retrying.");
+                        }
+                        continue;
+                    }
+                    throw new WorkerUnavailableException("ToolWorker closed the connection before responding.", e);
+                }
+
+                return readResponse(firstFrameType, in, tool, listenerOrNull);
+
+            } finally {
+                endpoint.socket.close();
+            }
+        }
+    }
+
+    private int readResponse(final byte firstFrameType,
+                             final DataInputStream in,
+                             final String tool,
+                             final XJCListener listenerOrNull) throws IOException {
+
+        byte frameType = firstFrameType;
+        while (true) {
+
+            switch (frameType) {
+
+                case WorkerProtocol.GENERATED_FILE:
+                    final String fileName = WorkerProtocol.readString(in);
+                    final int current = in.readInt();
+                    final int total = in.readInt();
+                    if (listenerOrNull != null) {
+                        listenerOrNull.generatedFile(fileName, current, total);
+                    }
+                    break;
+
+                case WorkerProtocol.MESSAGE:
+                    final String message = WorkerProtocol.readString(in);
+                    if (listenerOrNull != null) {
+                        listenerOrNull.message(message);
+                    }
+                    break;
+
+                case WorkerProtocol.ERROR:
+                case WorkerProtocol.FATAL_ERROR:
+                case WorkerProtocol.WARNING:
+                case WorkerProtocol.INFO:
+                    final SAXParseException exception = new SAXParseException(
+                            WorkerProtocol.readString(in),
+                            WorkerProtocol.readString(in),
+                            WorkerProtocol.readString(in),
+                            in.readInt(),
+                            in.readInt());
+                    if (listenerOrNull != null) {
+                        fire(frameType, exception, listenerOrNull);
+                    }
+                    break;
+
+                case WorkerProtocol.CONSOLE:
+                    final String line = WorkerProtocol.readString(in);
+                    if (log.isInfoEnabled()) {
+                        log.info(line);
+                    }
+                    break;
+
+                case WorkerProtocol.RESULT:
+                    return in.readInt();
+
+                case WorkerProtocol.FAILURE:
+                    throw new IOException(tool + " failed within the ToolWorker: " + WorkerProtocol.readString(in));
+
+                default:
+                    throw new IOException("Unknown response frame type [" + frameType + "] from ToolWorker.");
+            }
+
+            frameType = in.readByte();
+        }
+    }
+
+    private static void fire(final byte frameType, final SAXParseException exception, final XJCListener listener) {
+
+        if (frameType == WorkerProtocol.ERROR) {
+            listener.error(exception);
+        } else if (frameType == WorkerProtocol.FATAL_ERROR) {
+            listener.fatalError(exception);
+        } else if (frameType == WorkerProtocol.WARNING) {
+            listener.warning(exception);
+        } else {
+            listener.info(exception);
+        }
+    }
+
+    /**
+     * Connects to the published ToolWorker, or starts a new ToolWorker if none is reachable.
+     */
+    private Endpoint connect() throws WorkerUnavailableException {
+
+        try {
+
+            final Endpoint published = connectToPublishedWorker();
+            if (published != null) {
+                return published;
+            }
+
+            // Only one client - in any JVM - should start a ToolWorker.
+            JVM_LOCK.lock();
+            try {
+
+                final File workerDirectory = lockFile.getParentFile();
+                if (!workerDirectory.isDirectory()) {
+
+                    if (!workerDirectory.mkdirs()) {
+                        throw new IOException("Could not create [" + workerDirectory.getAbsolutePath() + "]");
+                    }
+
+                    // Revoke all access, and grant it to the owner only.
+                    workerDirectory.setReadable(false, false);
+                    workerDirectory.setWritable(false, false);
+                    workerDirectory.setExecutable(false, false);
+                    workerDirectory.setReadable(true, true);
+                    workerDirectory.setWritable(true, true);
+                    workerDirectory.setExecutable(true, true);
+                }
+
+                final RandomAccessFile lockAccess = new RandomAccessFile(lockFile, "rw");
+                try {
+
+                    final FileLock lock = lockAccess.getChannel().lock();
+                    try {
+
+                        // Did another client start a ToolWorker while we waited for the lock?
+                        final Endpoint startedByOther = connectToPublishedWorker();
+                        if (startedByOther != null) {
+                            return startedByOther;
+                        }
+
+                        startWorker();
+
+                        final Endpoint started = connectToPublishedWorker();
+                        if (started == null) {
+                            throw new IOException("Could not connect to the started ToolWorker.");
+                        }
+                        return started;
+
+                    } finally {
+                        lock.release();
+                    }
+                } finally {
+                    lockAccess.close();
+                }
+            } finally {
+                JVM_LOCK.unlock();
+            }
+
+        } catch (IOException e) {
+            throw new WorkerUnavailableException("Could not start or reach a ToolWorker. See ["
+                    + logFile.getAbsolutePath() + "] for details.", e);
+        }
+    }
+
+    /**
+     * @return An Endpoint connected to the ToolWorker published within the portFile, or {@code null} if no
+     * ToolWorker is published or the published ToolWorker could not be reached.
+     */
+    private Endpoint connectToPublishedWorker() throws IOException {
+
+        if (!portFile.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        final FileInputStream in = new FileInputStream(portFile);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        final String port = properties.getProperty(ToolWorker.PORT_KEY);
+        final String token = properties.getProperty(ToolWorker.TOKEN_KEY);
+        if (port == null || token == null) {
+            return null;
+        }
+
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), Integer.parseInt(port)),
+                    CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+
+            // The ToolWorker is gone.
+            socket.close();
+            if (log.isDebugEnabled()) {
+                log.debug("Could not connect to ToolWorker on port " + port + ": " + e.getMessage());
+            }
+            return null;
+        }
+
+        // All done.
+        return new Endpoint(socket, token);
+    }
+
+    /**
+     * Launches a new ToolWorker JVM, and waits until it has published its port.
+     */
+    private void startWorker() throws IOException {
+
+        if (portFile.exists() && !portFile.delete()) {
+            throw new IOException("Could not delete stale port file [" + portFile.getAbsolutePath() + "]");
+        }
+
+        final List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getAbsolutePath());
+        command.add("-cp");
+        command.add(workerClassPath);
+        command.add(ToolWorker.class.getName());
+        command.add(portFile.getAbsolutePath());
+        command.add(logFile.getAbsolutePath());
+        command.add("" + idleTimeoutSeconds);
+        command.add("" + maxConcurrentRequests);
+
+        if (log.isInfoEnabled()) {
+            log.info("Starting ToolWorker (idle timeout: " + idleTimeoutSeconds + " seconds, log: "
+                    + logFile.getAbsolutePath() + ")");
+        }
+
+        final Process process = new ProcessBuilder(command)
+                .directory(workingDirectory)
+                .redirectErrorStream(true)
+                .start();
+        process.getOutputStream().close();
+
+        try {
+
+            final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+            while (!portFile.isFile()) {
+
+                if (hasExited(process)) {
+                    throw new IOException("ToolWorker exited during startup with exit code " + process.exitValue());
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    process.destroy();
+                    throw new IOException("ToolWorker did not start within " + STARTUP_TIMEOUT_MILLIS + " ms.");
+                }
+
+                Thread.sleep(STARTUP_POLL_MILLIS);
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting the ToolWorker.");
+        } finally {
+
+            // The ToolWorker writes all further output to its log file.
+            process.getInputStream().close();
+            process.getErrorStream().close();
+        }
+    }
+
+    private static boolean hasExited(final Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A connection to a ToolWorker, and the token required by that ToolWorker.
+     */
+    private static final class Endpoint {
+
+        // Internal state
+        private final Socket socket;
+        private final String token;
+
+        Endpoint(final Socket socket, final String token) {
+            this.socket = socket;
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.codehaus.mojo.jaxb2.shared.worker;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Constants and encoding helpers for the binary protocol spoken between a {@link ToolWorkerClient} and a
+ * {@link ToolWorker} over a loopback socket. Each connection carries exactly one request:</p>
+ * <pre>
+ *     <code>
+ *         Request:  [magic] [version] [token] [tool] [toolClassPath] [arguments]
+ *         Response: [frame]* [RESULT exitCode | FAILURE message]
+ *     </code>
+ * </pre>
+ * <p>Strings are written as their UTF-8 byte length followed by the bytes (or length -1 for {@code null}),
+ * since {@link DataOutputStream#writeUTF(String)} cannot handle the long ClassPath arguments of the tools.</p>
+ *
+ * @since 2.3
+ */
+final class WorkerProtocol {
+
+    /**
+     * Magic number starting each request.
+     */
+    static final int MAGIC = 0x4a415842;
+
+    /**
+     * The version of this protocol.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Tool identifier for XJC.
+     */
+    static final String XJC = "xjc";
+
+    /**
+     * Tool identifier for SchemaGen.
+     */
+    static final String SCHEMAGEN = "schemagen";
+
+    //
+    // Response frame types.
+    //
+
+    static final byte GENERATED_FILE = 1;
+    static final byte MESSAGE = 2;
+    static final byte ERROR = 3;
+    static final byte FATAL_ERROR = 4;
+    static final byte WARNING = 5;
+    static final byte INFO = 6;
+    static final byte CONSOLE = 7;
+    static final byte RESULT = 8;
+    static final byte FAILURE = 9;
+
+    // Internal state
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Hide constructor for utility classes.
+     */
+    private WorkerProtocol() {
+    }
+
+    /**
+     * Writes the supplied (nullable) String to the given DataOutputStream.
+     *
+     * @param out   The DataOutputStream to write to.
+     * @param value The String to write. May be {@code null}.
+     * @throws IOException if the String could not be written.
+     */
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(ENCODING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a (nullable) String written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in The DataInputStream to read from.
+     * @return The String read, or {@code null} if a null String was written.
+     * @throws IOException if the String could not be read.
+     */
+    static String readString(final DataInputStream in) throws IOException {
+
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    /**
+     * Writes the supplied List of Strings to the given DataOutputStream.
+     *
+     * @param out    The DataOutputStream to write to.
+     * @param values The non-null List of Strings to write.
+     * @throws IOException if the Strings could not be written.
+     */
+    static void writeStrings(final DataOutputStream out, final List<String> values) throws IOException {
+
+        out.writeInt(values.size());
+        for (String current : values) {
+            writeString(out, current);
+        }
+    }
+
+    /**
+     * Reads a List of Strings written by {@link #writeStrings(DataOutputStream, List)}.
+     *
+     * @param in The DataInputStream to read from.
+     * @return The List of Strings read.
+     * @throws IOException if the Strings could not be read.
+     */
+    static List<String> readStrings(final DataInputStream in) throws IOException {
+
+        final int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt request: negative list size " + size);
+        }
+
+        final List<String> toReturn = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            toReturn.add(readString(in));
+        }
+
+        // All done.
+        return toReturn;
+    }
+}
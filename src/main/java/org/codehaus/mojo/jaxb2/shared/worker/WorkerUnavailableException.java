@@ -0,0 +1,42 @@
+package org.codehaus.mojo.jaxb2.shared.worker;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Exception indicating that no {@link ToolWorker} could be started or reached. Since no request was
+ * processed by any ToolWorker, the caller may safely run the tool within its own JVM instead.
+ *
+ * @since 2.3
+ */
+public class WorkerUnavailableException extends IOException {
+
+    /**
+     * Creates a WorkerUnavailableException with the supplied message and cause.
+     *
+     * @param message The exception message.
+     * @param cause   The cause of this WorkerUnavailableException.
+     */
+    public WorkerUnavailableException(final String message, final Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,50 @@
+package org.codehaus.mojo.jaxb2.javageneration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SchemaSetTest {
+
+    // Shared state
+    private final SchemaSet unitUnderTest = new SchemaSet("orders",
+            Arrays.asList("src/main/xsd/orders"), null, "se.jguru.orders");
+
+    @Test
+    public void validateDefaultValues() {
+
+        // Assemble
+        final SchemaSet defaultSchemaSet = new SchemaSet();
+
+        // Act & Assert
+        Assert.assertEquals("orders", unitUnderTest.getId());
+        Assert.assertEquals(Arrays.asList("src/main/xsd/orders"), unitUnderTest.getSources());
+        Assert.assertEquals(0, unitUnderTest.getXjbSources().size());
+        Assert.assertEquals("se.jguru.orders", unitUnderTest.getPackageName());
+        Assert.assertNull(defaultSchemaSet.getPackageName());
+        Assert.assertEquals(0, defaultSchemaSet.getXjbSources().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnIdUnusableAsDirectoryName() {
+
+        // Act & Assert
+        unitUnderTest.setId("../orders");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnEmptySources() {
+
+        // Act & Assert
+        unitUnderTest.setSources(new ArrayList<String>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnEmptyPackageName() {
+
+        // Act & Assert
+        unitUnderTest.setPackageName("");
+    }
+}
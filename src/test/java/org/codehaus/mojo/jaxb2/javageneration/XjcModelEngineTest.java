@@ -0,0 +1,177 @@
+package org.codehaus.mojo.jaxb2.javageneration;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class XjcModelEngineTest {
+
+    // Shared state
+    private static final String SCHEMA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"\n"
+            + "           targetNamespace=\"http://jaxb2.mojo.codehaus.org/engine\"\n"
+            + "           elementFormDefault=\"qualified\">\n"
+            + "    <xs:element name=\"order\">\n"
+            + "        <xs:complexType>\n"
+            + "            <xs:sequence>\n"
+            + "                <xs:element name=\"id\" type=\"xs:long\"/>\n"
+            + "                <xs:element name=\"customer\" type=\"%s\"/>\n"
+            + "            </xs:sequence>\n"
+            + "        </xs:complexType>\n"
+            + "    </xs:element>\n"
+            + "</xs:schema>\n";
+
+    private File baseDir;
+    private File outputDir;
+    private BufferingLog log;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        baseDir = File.createTempFile("xjcModelEngine", "");
+        Assert.assertTrue(baseDir.delete());
+        outputDir = new File(baseDir, "generated");
+        Assert.assertTrue(outputDir.mkdirs());
+    }
+
+    @After
+    public void teardownSharedState() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void validateGeneratingFilesConcurrently() throws Exception {
+
+        // Assemble
+        final File schema = writeSchema("order.xsd", "xs:string");
+        final XjcModelEngine unitUnderTest = new XjcModelEngine(2);
+
+        // Act
+        final List<SAXParseException> errors = unitUnderTest.run(
+                getArguments(schema), new XjcLogAdapter(log));
+
+        // Assert
+        Assert.assertEquals(0, errors.size());
+        for (String current : new String[]{"Order.java", "ObjectFactory.java", "package-info.java"}) {
+            final File generated = new File(outputDir, "org/codehaus/mojo/jaxb2/engine/" + current);
+            Assert.assertTrue(current, generated.isFile());
+            Assert.assertTrue(FileUtils.fileRead(generated, "UTF-8")
+                    .contains("package org.codehaus.mojo.jaxb2.engine;"));
+        }
+    }
+
+    @Test
+    public void validateEmittingFilesThroughSuppliedCodeWriter() throws Exception {
+
+        // Assemble
+        final File schema = writeSchema("order.xsd", "xs:string");
+        final InMemoryCodeWriter codeWriter = new InMemoryCodeWriter();
+        final XjcModelEngine unitUnderTest = new XjcModelEngine(1);
+
+        // Act
+        final List<SAXParseException> errors = unitUnderTest.run(
+                getArguments(schema), new XjcLogAdapter(log), codeWriter);
+
+        // Assert
+        Assert.assertEquals(0, errors.size());
+        Assert.assertTrue(codeWriter.files.containsKey("org.codehaus.mojo.jaxb2.engine/Order.java"));
+        Assert.assertTrue(codeWriter.closed);
+
+        final String[] written = outputDir.list();
+        Assert.assertNotNull(written);
+        Assert.assertEquals(0, written.length);
+    }
+
+    @Test
+    public void validateCollectingErrorsWithLocations() throws Exception {
+
+        // Assemble
+        final File schema = writeSchema("broken.xsd", "xs:nonExistentType");
+        final XjcModelEngine unitUnderTest = new XjcModelEngine(1);
+
+        // Act
+        final List<SAXParseException> errors = unitUnderTest.run(
+                getArguments(schema), new XjcLogAdapter(log));
+
+        // Assert
+        Assert.assertTrue(errors.size() > 0);
+        Assert.assertTrue(errors.get(0).getSystemId().endsWith("broken.xsd"));
+        Assert.assertTrue(errors.get(0).getLineNumber() > 0);
+
+        final String[] written = outputDir.list();
+        Assert.assertNotNull(written);
+        Assert.assertEquals(0, written.length);
+    }
+
+    @Test
+    public void validateWritingBufferedFilesAndRepeatedClose() throws Exception {
+
+        // Assemble
+        final JPackage aPackage = new com.sun.codemodel.JCodeModel()._package("se.jguru.foo");
+        final ConcurrentFileCodeWriter unitUnderTest = new ConcurrentFileCodeWriter(outputDir, false, "UTF-8", 2);
+
+        // Act
+        final OutputStream out = unitUnderTest.openBinary(aPackage, "Foo.java");
+        out.write("class Foo {}".getBytes("UTF-8"));
+        out.close();
+        out.close();
+        unitUnderTest.close();
+        unitUnderTest.close();
+
+        // Assert
+        final File written = new File(outputDir, "se/jguru/foo/Foo.java");
+        Assert.assertEquals("class Foo {}", FileUtils.fileRead(written, "UTF-8"));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private File writeSchema(final String fileName, final String customerType) throws IOException {
+
+        final File toReturn = new File(baseDir, fileName);
+        FileUtils.fileWrite(toReturn, "UTF-8", String.format(SCHEMA, customerType));
+        return toReturn;
+    }
+
+    private String[] getArguments(final File schema) {
+        return new String[]{"-xmlschema", "-encoding", "UTF-8", "-d", outputDir.getAbsolutePath(),
+                schema.getAbsolutePath()};
+    }
+
+    private static final class InMemoryCodeWriter extends CodeWriter {
+
+        // Internal state
+        private final SortedMap<String, ByteArrayOutputStream> files = new TreeMap<String, ByteArrayOutputStream>();
+        private boolean closed;
+
+        @Override
+        public OutputStream openBinary(final JPackage pkg, final String fileName) {
+
+            final ByteArrayOutputStream toReturn = new ByteArrayOutputStream();
+            files.put(pkg.name() + "/" + fileName, toReturn);
+            return toReturn;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
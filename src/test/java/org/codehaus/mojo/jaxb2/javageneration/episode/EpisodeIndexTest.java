@@ -0,0 +1,215 @@
+package org.codehaus.mojo.jaxb2.javageneration.episode;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class EpisodeIndexTest {
+
+    // Shared state
+    private static final String ORDER_NAMESPACE = "http://jaxb2.mojo.codehaus.org/order";
+    private static final String CUSTOMER_NAMESPACE = "http://jaxb2.mojo.codehaus.org/customer";
+    private static final String ADDRESS_NAMESPACE = "http://jaxb2.mojo.codehaus.org/address";
+    private static final String OTHER_NAMESPACE = "http://jaxb2.mojo.codehaus.org/other";
+
+    private static final String BINDINGS_TEMPLATE = "    <bindings scd=\"x-schema::tns\" "
+            + "xmlns:tns=\"%s\">\n"
+            + "        <schemaBindings map=\"false\">\n"
+            + "            <package name=\"%s\"/>\n"
+            + "        </schemaBindings>\n"
+            + "        <bindings scd=\"~tns:%sType\">\n"
+            + "            <class ref=\"%s.%sType\"/>\n"
+            + "        </bindings>\n"
+            + "        <bindings scd=\"tns:%s\">\n"
+            + "            <class ref=\"%s.%s\"/>\n"
+            + "        </bindings>\n"
+            + "    </bindings>\n";
+
+    private File baseDir;
+    private BufferingLog log;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        baseDir = File.createTempFile("episodeIndex", "");
+        Assert.assertTrue(baseDir.delete());
+        Assert.assertTrue(baseDir.mkdirs());
+    }
+
+    @After
+    public void teardownSharedState() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void validateIndexingEpisodesWithinJarsAndDirectories() throws Exception {
+
+        // Assemble
+        final File jar = writeJar("upstream.jar", episode(
+                bindings(ORDER_NAMESPACE, "org.example.order", "order"),
+                bindings(CUSTOMER_NAMESPACE, "org.example.customer", "customer")));
+        final File directory = writeDirectory("classes", episode(
+                bindings(ADDRESS_NAMESPACE, "org.example.address", "address")));
+        final File withoutEpisode = new File(baseDir, "plain");
+        Assert.assertTrue(withoutEpisode.mkdirs());
+
+        // Act
+        final EpisodeIndex unitUnderTest = EpisodeIndex.build(Arrays.asList(jar.getAbsolutePath(),
+                directory.getAbsolutePath(), withoutEpisode.getAbsolutePath()), null, log);
+
+        // Assert
+        Assert.assertEquals(new TreeSet<String>(Arrays.asList(ADDRESS_NAMESPACE, CUSTOMER_NAMESPACE, ORDER_NAMESPACE)),
+                unitUnderTest.getNamespaces());
+        Assert.assertEquals(new TreeSet<String>(Arrays.asList("~orderType", "order")),
+                unitUnderTest.getComponents(ORDER_NAMESPACE));
+        Assert.assertTrue(unitUnderTest.getEpisode(ORDER_NAMESPACE).toString().startsWith("jar:"));
+        Assert.assertTrue(unitUnderTest.getEpisode(ADDRESS_NAMESPACE).toString().startsWith("file:"));
+        Assert.assertNull(unitUnderTest.getEpisode("http://some/unbound/namespace"));
+        Assert.assertEquals(0, unitUnderTest.getComponents("http://some/unbound/namespace").size());
+    }
+
+    @Test
+    public void validateWritingEpisodeHoldingOnlyRequestedNamespaces() throws Exception {
+
+        // Assemble
+        final File jar = writeJar("upstream.jar", episode(
+                bindings(ORDER_NAMESPACE, "org.example.order", "order"),
+                bindings(CUSTOMER_NAMESPACE, "org.example.customer", "customer")));
+        final EpisodeIndex unitUnderTest = EpisodeIndex.build(
+                Collections.singletonList(jar.getAbsolutePath()), null, log);
+        final File target = new File(baseDir, "filtered/upstream.episode");
+
+        // Act
+        final SortedSet<String> written = unitUnderTest.writeEpisode(
+                Arrays.asList(CUSTOMER_NAMESPACE, ADDRESS_NAMESPACE), target);
+        final long firstModified = target.lastModified();
+        Assert.assertTrue(target.setLastModified(firstModified - 10000L));
+        unitUnderTest.writeEpisode(Arrays.asList(CUSTOMER_NAMESPACE, ADDRESS_NAMESPACE), target);
+        final long secondModified = target.lastModified();
+
+        final SortedSet<String> noneWritten = unitUnderTest.writeEpisode(
+                Collections.singletonList(ADDRESS_NAMESPACE), target);
+
+        // Assert
+        Assert.assertEquals(new TreeSet<String>(Collections.singletonList(CUSTOMER_NAMESPACE)), written);
+        Assert.assertEquals(firstModified - 10000L, secondModified);
+        Assert.assertEquals(0, noneWritten.size());
+        Assert.assertFalse(target.exists());
+
+        final File rewritten = new File(baseDir, "rewritten.episode");
+        unitUnderTest.writeEpisode(Collections.singletonList(CUSTOMER_NAMESPACE), rewritten);
+        final String content = FileUtils.fileRead(rewritten, "UTF-8");
+        Assert.assertTrue(content.contains("org.example.customer.customerType"));
+        Assert.assertTrue(content.contains(CUSTOMER_NAMESPACE));
+        Assert.assertFalse(content.contains(ORDER_NAMESPACE));
+
+        final EpisodeIndex reindexed = EpisodeIndex.build(
+                Collections.singletonList(writeDirectory("reindexed", content).getAbsolutePath()), null, log);
+        Assert.assertEquals(unitUnderTest.getComponents(CUSTOMER_NAMESPACE),
+                reindexed.getComponents(CUSTOMER_NAMESPACE));
+    }
+
+    @Test
+    public void validateReusingPersistedIndexForUnchangedElements() throws Exception {
+
+        // Assemble
+        final File jar = writeJar("upstream.jar", episode(
+                bindings(ORDER_NAMESPACE, "org.example.order", "order")));
+        final File indexFile = new File(baseDir, "index/episodes.properties");
+        EpisodeIndex.build(Collections.singletonList(jar.getAbsolutePath()), null, log).write(indexFile);
+
+        // Replace the jar content, but retain its stamp; the persisted index should be used.
+        final long lastModified = jar.lastModified();
+        final File replacement = writeJar("replacement.jar", episode(
+                bindings(OTHER_NAMESPACE, "org.example.order", "order")));
+        Assert.assertEquals(jar.length(), replacement.length());
+        FileUtils.copyFile(replacement, jar);
+        Assert.assertTrue(jar.setLastModified(lastModified));
+
+        // Act
+        final EpisodeIndex persisted = EpisodeIndex.read(indexFile);
+        final EpisodeIndex reused = EpisodeIndex.build(
+                Collections.singletonList(jar.getAbsolutePath()), persisted, log);
+
+        Assert.assertTrue(jar.setLastModified(lastModified + 10000L));
+        final EpisodeIndex rebuilt = EpisodeIndex.build(
+                Collections.singletonList(jar.getAbsolutePath()), persisted, log);
+
+        // Assert
+        Assert.assertNotNull(persisted);
+        Assert.assertEquals(Collections.singleton(ORDER_NAMESPACE), persisted.getNamespaces());
+        Assert.assertEquals(persisted.getComponents(ORDER_NAMESPACE), reused.getComponents(ORDER_NAMESPACE));
+        Assert.assertEquals(Collections.singleton(ORDER_NAMESPACE), reused.getNamespaces());
+        Assert.assertEquals(Collections.singleton(OTHER_NAMESPACE), rebuilt.getNamespaces());
+        Assert.assertNull(EpisodeIndex.read(new File(baseDir, "nonExistent.properties")));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String episode(final String... bindings) {
+
+        final StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<bindings version=\"2.1\" xmlns=\"http://java.sun.com/xml/ns/jaxb\">\n");
+        for (String current : bindings) {
+            builder.append(current);
+        }
+        return builder.append("</bindings>\n").toString();
+    }
+
+    private static String bindings(final String namespace, final String packageName, final String name) {
+        return String.format(BINDINGS_TEMPLATE, namespace, packageName, name, packageName, name, name,
+                packageName, name);
+    }
+
+    private File writeJar(final String fileName, final String episode) throws IOException {
+
+        final File toReturn = new File(baseDir, fileName);
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(toReturn));
+        try {
+            final byte[] content = episode.getBytes("UTF-8");
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+
+            // Store the episode uncompressed, so that the jar size only depends on the episode size.
+            final ZipEntry entry = new ZipEntry(EpisodeIndex.EPISODE_PATH);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCrc(crc.getValue());
+            entry.setTime(0L);
+            out.putNextEntry(entry);
+            out.write(content);
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+
+        return toReturn;
+    }
+
+    private File writeDirectory(final String dirName, final String episode) throws IOException {
+
+        final File toReturn = new File(baseDir, dirName);
+        final File episodeFile = new File(toReturn, EpisodeIndex.EPISODE_PATH);
+        Assert.assertTrue(episodeFile.getParentFile().mkdirs());
+        FileUtils.fileWrite(episodeFile, "UTF-8", episode);
+        return toReturn;
+    }
+}
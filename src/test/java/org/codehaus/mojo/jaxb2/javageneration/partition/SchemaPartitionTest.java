@@ -0,0 +1,199 @@
+package org.codehaus.mojo.jaxb2.javageneration.partition;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.staleness.SchemaDependencyGraph;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public class SchemaPartitionTest {
+
+    // Shared state
+    private BufferingLog log;
+    private File baseDir;
+    private List<URL> sources;
+    private List<URL> xjbs;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        baseDir = File.createTempFile("schemaPartition", "");
+        Assert.assertTrue(baseDir.delete());
+        Assert.assertTrue(baseDir.mkdirs());
+
+        sources = new ArrayList<URL>();
+        sources.add(write("a.xsd", schema("urn:a", "<xs:import namespace=\"urn:b\" schemaLocation=\"b.xsd\"/>")));
+        sources.add(write("c.xsd", schema("urn:c", "")));
+        sources.add(write("d.xsd", schema("urn:a", "")));
+        sources.add(write("e.xsd", schema("urn:e", "")));
+        sources.add(write("f.xsd", schema("urn:f", "")));
+        write("b.xsd", schema("urn:b", ""));
+
+        xjbs = new ArrayList<URL>();
+        xjbs.add(write("global.xjb", bindings("<jaxb:globalBindings generateIsSetMethod=\"true\"/>")));
+        xjbs.add(write("ef.xjb", bindings(
+                "<jaxb:bindings schemaLocation=\"e.xsd\"/><jaxb:bindings schemaLocation=\"f.xsd\"/>")));
+    }
+
+    @Test
+    public void validatePartitioning() {
+
+        // Assemble
+        final SchemaDependencyGraph graph = SchemaDependencyGraph.build(sources, null, null, log);
+
+        // Act
+        final List<SchemaPartition> result = SchemaPartition.partition(sources, xjbs, graph, log);
+
+        // Assert
+        Assert.assertEquals(3, result.size());
+
+        final SchemaPartition abd = getPartitionContaining(result, "a.xsd");
+        Assert.assertEquals(Arrays.asList(sources.get(0), sources.get(2)), abd.getSources());
+        Assert.assertEquals(3, abd.getSchemas().size());
+        Assert.assertEquals(Arrays.asList(xjbs.get(0)), abd.getXjbs());
+
+        final SchemaPartition c = getPartitionContaining(result, "c.xsd");
+        Assert.assertEquals(Arrays.asList(sources.get(1)), c.getSources());
+        Assert.assertEquals(Arrays.asList(xjbs.get(0)), c.getXjbs());
+
+        final SchemaPartition ef = getPartitionContaining(result, "e.xsd");
+        Assert.assertEquals(Arrays.asList(sources.get(3), sources.get(4)), ef.getSources());
+        Assert.assertEquals(xjbs, ef.getXjbs());
+    }
+
+    @Test
+    public void validateOnlyChangedPartitionsChangeFingerprint() throws Exception {
+
+        // Assemble
+        final List<SchemaPartition> before = SchemaPartition.partition(
+                sources, xjbs, SchemaDependencyGraph.build(sources, null, null, log), log);
+
+        // Act
+        write("b.xsd", schema("urn:b", "<xs:element name=\"changed\" type=\"xs:string\"/>"));
+        final List<SchemaPartition> after = SchemaPartition.partition(
+                sources, xjbs, SchemaDependencyGraph.build(sources, null, null, log), log);
+
+        // Assert
+        Assert.assertEquals(before, after);
+        for (int i = 0; i < before.size(); i++) {
+
+            final boolean containsB = before.get(i).getSources().contains(sources.get(0));
+            Assert.assertEquals(containsB,
+                    !before.get(i).getFingerprint().equals(after.get(i).getFingerprint()));
+        }
+    }
+
+    @Test
+    public void validatePartitionStateRoundTrip() throws Exception {
+
+        // Assemble
+        final File stateFile = new File(baseDir, "state/partitions.properties");
+        final List<SchemaPartition> partitions = SchemaPartition.partition(
+                sources, xjbs, SchemaDependencyGraph.build(sources, null, null, log), log);
+        final PartitionState unitUnderTest = new PartitionState("someConfiguration");
+
+        final SortedSet<String> generatedFiles = new TreeSet<String>();
+        generatedFiles.add("a/ObjectFactory.java");
+        generatedFiles.add("a/package-info.java");
+        unitUnderTest.add(partitions.get(0), generatedFiles);
+
+        // Act
+        unitUnderTest.write(stateFile);
+        final PartitionState result = PartitionState.read(stateFile);
+
+        // Assert
+        Assert.assertNotNull(result);
+        Assert.assertFalse(result.isUnpartitionable());
+        Assert.assertEquals(generatedFiles, result.getFiles(partitions.get(0).getId()));
+        Assert.assertEquals(partitions.get(0).getId(), result.getOwner("a/ObjectFactory.java"));
+        Assert.assertNull(result.getOwner("c/ObjectFactory.java"));
+        Assert.assertTrue(result.isUpToDate(partitions.get(0), "someConfiguration"));
+        Assert.assertFalse(result.isUpToDate(partitions.get(0), "anotherConfiguration"));
+        Assert.assertFalse(result.isUpToDate(partitions.get(1), "someConfiguration"));
+    }
+
+    @Test
+    public void validateEpisodeMerging() throws Exception {
+
+        // Assemble
+        final File episode1 = new File(write("1.episode", episode("urn:a")).getPath());
+        final File episode2 = new File(write("2.episode", episode("urn:c")).getPath());
+        final File target = new File(baseDir, "sun-jaxb.episode");
+
+        // Act
+        EpisodeMerger.merge(Arrays.asList(episode1, new File(baseDir, "nonexistent.episode"), episode2), target);
+
+        // Assert
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document merged = factory.newDocumentBuilder().parse(target);
+        Assert.assertEquals(3, merged.getElementsByTagNameNS("http://java.sun.com/xml/ns/jaxb", "bindings")
+                .getLength());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static SchemaPartition getPartitionContaining(final List<SchemaPartition> partitions,
+            final String fileName) {
+
+        for (SchemaPartition current : partitions) {
+            for (URL currentSource : current.getSources()) {
+                if (currentSource.getPath().endsWith("/" + fileName)) {
+                    return current;
+                }
+            }
+        }
+
+        Assert.fail("No partition contains [" + fileName + "]");
+        return null;
+    }
+
+    private static String schema(final String targetNamespace, final String content) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\""
+                + targetNamespace + "\">" + content + "</xs:schema>\n";
+    }
+
+    private static String bindings(final String content) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jaxb:bindings xmlns:jaxb=\"http://java.sun.com/xml/ns/jaxb\" version=\"2.1\">"
+                + content + "</jaxb:bindings>\n";
+    }
+
+    private static String episode(final String namespace) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<bindings xmlns=\"http://java.sun.com/xml/ns/jaxb\" version=\"2.1\">"
+                + "<bindings xmlns:tns=\"" + namespace + "\" scd=\"x-schema::tns\"/>"
+                + "</bindings>\n";
+    }
+
+    private URL write(final String fileName, final String content) throws IOException {
+
+        final File toWrite = new File(baseDir, fileName);
+        final FileOutputStream out = new FileOutputStream(toWrite);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return FileSystemUtilities.getUrlFor(toWrite);
+    }
+}
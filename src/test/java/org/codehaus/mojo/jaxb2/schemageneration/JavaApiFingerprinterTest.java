@@ -0,0 +1,149 @@
+package org.codehaus.mojo.jaxb2.schemageneration;
+
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+
+public class JavaApiFingerprinterTest {
+
+    // Shared state
+    private static final String ENCODING = "UTF-8";
+    private File baseDir;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        baseDir = File.createTempFile("javaApiFingerprinter", "");
+        Assert.assertTrue(baseDir.delete());
+        Assert.assertTrue(baseDir.mkdirs());
+    }
+
+    @Test
+    public void validateMethodBodyChangesDoNotChangeFingerprint() throws Exception {
+
+        // Assemble
+        final URL original = write("original/Person.java", person(
+                "    public String getName() { return name; }\n"
+                        + "    private void helper() { }\n"));
+        final URL bodyChanged = write("bodyChanged/Person.java", person(
+                "    public String getName() {\n        return name == null ? \"\" : name;\n    }\n"
+                        + "    private int helper(int aValue) { return aValue; }\n"
+                        + "    @Override\n    public String toString() { return name; }\n"));
+
+        // Act
+        final String originalFingerprint = JavaApiFingerprinter.fingerprint(original, ENCODING, false);
+        final String bodyChangedFingerprint = JavaApiFingerprinter.fingerprint(bodyChanged, ENCODING, false);
+
+        // Assert
+        Assert.assertEquals(originalFingerprint, bodyChangedFingerprint);
+    }
+
+    @Test
+    public void validateApiChangesChangeFingerprint() throws Exception {
+
+        // Assemble
+        final URL original = write("original/Person.java", person(""));
+        final URL fieldAdded = write("fieldAdded/Person.java", person("    private int age;\n"));
+        final URL accessorAdded = write("accessorAdded/Person.java",
+                person("    public int getAge() { return 42; }\n"));
+        final URL annotationChanged = write("annotationChanged/Person.java", person("").replace(
+                "@XmlElement(name = \"theName\")", "@XmlElement(name = \"anotherName\")"));
+
+        // Act
+        final String originalFingerprint = JavaApiFingerprinter.fingerprint(original, ENCODING, false);
+
+        // Assert
+        Assert.assertNotEquals(originalFingerprint, JavaApiFingerprinter.fingerprint(fieldAdded, ENCODING, false));
+        Assert.assertNotEquals(originalFingerprint, JavaApiFingerprinter.fingerprint(accessorAdded, ENCODING, false));
+        Assert.assertNotEquals(originalFingerprint,
+                JavaApiFingerprinter.fingerprint(annotationChanged, ENCODING, false));
+    }
+
+    @Test
+    public void validateConstantValueChangesChangeFingerprint() throws Exception {
+
+        // Assemble
+        final URL original = write("original/Names.java", names("\"http://jguru.se/fingerprint\"", "0"));
+        final URL constantChanged = write("constantChanged/Names.java",
+                names("\"http://jguru.se/another\"", "0"));
+        final URL initializerChanged = write("initializerChanged/Names.java",
+                names("\"http://jguru.se/fingerprint\"", "42"));
+
+        // Act
+        final String originalFingerprint = JavaApiFingerprinter.fingerprint(original, ENCODING, false);
+
+        // Assert
+        Assert.assertNotEquals(originalFingerprint,
+                JavaApiFingerprinter.fingerprint(constantChanged, ENCODING, false));
+        Assert.assertEquals(originalFingerprint,
+                JavaApiFingerprinter.fingerprint(initializerChanged, ENCODING, false));
+        Assert.assertTrue(JavaApiFingerprinter.describe(constantChanged, ENCODING, false)
+                .contains("http://jguru.se/another"));
+    }
+
+    @Test
+    public void validateJavaDocIsOnlyIncludedWhenRequested() throws Exception {
+
+        // Assemble
+        final URL original = write("original/Person.java", person(""));
+        final URL javaDocChanged = write("javaDocChanged/Person.java",
+                person("").replace("The name of the person.", "The full name of the person."));
+
+        // Act
+        final String withoutJavaDoc = JavaApiFingerprinter.fingerprint(javaDocChanged, ENCODING, false);
+        final String withJavaDoc = JavaApiFingerprinter.fingerprint(javaDocChanged, ENCODING, true);
+
+        // Assert
+        Assert.assertEquals(JavaApiFingerprinter.fingerprint(original, ENCODING, false), withoutJavaDoc);
+        Assert.assertNotEquals(JavaApiFingerprinter.fingerprint(original, ENCODING, true), withJavaDoc);
+        Assert.assertTrue(JavaApiFingerprinter.describe(javaDocChanged, ENCODING, true)
+                .contains("The full name of the person."));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String person(final String extraMembers) {
+        return "package se.jguru.fingerprint;\n\n"
+                + "import javax.xml.bind.annotation.XmlElement;\n"
+                + "import javax.xml.bind.annotation.XmlType;\n\n"
+                + "/**\n * A person.\n */\n"
+                + "@XmlType(namespace = \"http://jguru.se/fingerprint\")\n"
+                + "public class Person {\n\n"
+                + "    /**\n     * The name of the person.\n     */\n"
+                + "    @XmlElement(name = \"theName\")\n"
+                + "    private String name;\n\n"
+                + extraMembers
+                + "}\n";
+    }
+
+    private static String names(final String namespace, final String counterValue) {
+        return "package se.jguru.fingerprint;\n\n"
+                + "public final class Names {\n\n"
+                + "    public static final String NAMESPACE = " + namespace + ";\n"
+                + "    private int counter = " + counterValue + ";\n"
+                + "}\n";
+    }
+
+    private URL write(final String relativePath, final String content) throws IOException {
+
+        final File toWrite = new File(baseDir, relativePath);
+        Assert.assertTrue(toWrite.getParentFile().mkdirs());
+
+        final FileOutputStream out = new FileOutputStream(toWrite);
+        try {
+            out.write(content.getBytes(ENCODING));
+        } finally {
+            out.close();
+        }
+
+        return FileSystemUtilities.getUrlFor(toWrite);
+    }
+}
@@ -0,0 +1,169 @@
+package org.codehaus.mojo.jaxb2.schemageneration;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.NodeProcessor;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.DomHelper;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.SimpleNamespaceResolver;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.TransformSchema;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StreamingXsdProcessorTest {
+
+    // Shared state
+    private File baseDir;
+    private File domDir;
+    private File streamingDir;
+    private List<TransformSchema> transformSchemas;
+
+    @Before
+    public void setupSharedState() throws IOException, URISyntaxException {
+
+        baseDir = File.createTempFile("streamingXsdProcessor", "");
+        Assert.assertTrue(baseDir.delete());
+        domDir = new File(baseDir, "dom");
+        streamingDir = new File(baseDir, "streaming");
+        Assert.assertTrue(domDir.mkdirs());
+        Assert.assertTrue(streamingDir.mkdirs());
+
+        final URL schema1 = getClass().getClassLoader().getResource("generated/schema/schema1.xsd");
+        final File sourceDirectory = new File(schema1.toURI()).getParentFile();
+        FileUtils.copyDirectory(sourceDirectory, domDir);
+        FileUtils.copyDirectory(sourceDirectory, streamingDir);
+
+        transformSchemas = new ArrayList<TransformSchema>();
+        transformSchemas.add(new TransformSchema("http://some/namespace", "some", "some.xsd"));
+        transformSchemas.add(new TransformSchema("http://yet/another/namespace", "yet", "yetAnother.xsd"));
+    }
+
+    @After
+    public void teardownSharedState() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void validateStreamingYieldsSameSchemasAsDomProcessing() throws Exception {
+
+        // Assemble
+        final List<NodeProcessor> javaDocProcessors = Arrays.<NodeProcessor>asList(new AnnotatingNodeProcessor());
+
+        // Act
+        final int numDomChanges = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                domDir, javaDocProcessors, transformSchemas, Long.MAX_VALUE);
+        final int numStreamingChanges = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                streamingDir, javaDocProcessors, transformSchemas, 0);
+
+        // Assert
+        Assert.assertEquals(numDomChanges, numStreamingChanges);
+        Assert.assertEquals(Arrays.asList("schema3.xsd", "some.xsd", "yetAnother.xsd"), sortedNames(streamingDir));
+        for (String current : sortedNames(domDir)) {
+            Assert.assertEquals(current,
+                    getNormalizedXml(new File(domDir, current)),
+                    getNormalizedXml(new File(streamingDir, current)));
+        }
+
+        final String streamedSchema3 = FileUtils.fileRead(new File(streamingDir, "schema3.xsd"), "UTF-8");
+        Assert.assertTrue(streamedSchema3.startsWith(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"));
+        Assert.assertTrue(streamedSchema3.contains("<![CDATA[The fooBaz type & its <documentation>.]]>"));
+        Assert.assertTrue(streamedSchema3.contains("ref=\"yet:aRequiredElementInYetAnotherNamespace\""));
+        Assert.assertTrue(streamedSchema3.contains("schemaLocation=\"some.xsd\""));
+    }
+
+    @Test
+    public void validateUnchangedStreamedSchemasAreNotWritten() throws Exception {
+
+        // Assemble
+        final File schema1 = new File(streamingDir, "schema1.xsd");
+        final String originalContent = FileUtils.fileRead(schema1, "UTF-8");
+
+        // Act
+        final int numChanges = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                streamingDir, Arrays.<NodeProcessor>asList(new AnnotatingNodeProcessor()), null, 0);
+
+        // Assert
+        Assert.assertEquals(1, numChanges);
+        Assert.assertEquals(originalContent, FileUtils.fileRead(schema1, "UTF-8"));
+        Assert.assertEquals(Arrays.asList("schema1.xsd", "schema2.xsd", "schema3.xsd"), sortedNames(streamingDir));
+    }
+
+    @Test
+    public void validateAcquiringNamespaceResolverWhileStreaming() throws Exception {
+
+        // Assemble
+        final File schema3 = new File(streamingDir, "schema3.xsd");
+        final SimpleNamespaceResolver expected = new SimpleNamespaceResolver(schema3);
+
+        // Act
+        final SimpleNamespaceResolver result = StreamingXsdProcessor.getNamespaceResolver(schema3);
+
+        // Assert
+        Assert.assertEquals("schema3.xsd", result.getSourceFilename());
+        Assert.assertEquals(expected.getLocalNamespaceURI(), result.getLocalNamespaceURI());
+        Assert.assertEquals(expected.getNamespaceURI2PrefixMap(), result.getNamespaceURI2PrefixMap());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static List<String> sortedNames(final File directory) {
+
+        final List<String> toReturn = new ArrayList<String>(Arrays.asList(directory.list()));
+        Collections.sort(toReturn);
+        return toReturn;
+    }
+
+    private static String getNormalizedXml(final File xmlFile) throws IOException {
+
+        final Document document = XsdGeneratorHelper.parseXmlStream(
+                new StringReader(FileUtils.fileRead(xmlFile, "UTF-8")));
+        removeWhitespace(document.getDocumentElement());
+        return XsdGeneratorHelper.getHumanReadableXml(document.getDocumentElement());
+    }
+
+    private static void removeWhitespace(final Node node) {
+
+        for (Node child = node.getFirstChild(); child != null; ) {
+
+            final Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty()) {
+                node.removeChild(child);
+            } else {
+                removeWhitespace(child);
+            }
+            child = next;
+        }
+    }
+
+    /**
+     * Injects a documentation annotation into the complexType "fooBaz", as the XsdAnnotationProcessor would.
+     */
+    private static final class AnnotatingNodeProcessor implements NodeProcessor {
+
+        @Override
+        public boolean accept(final Node aNode) {
+            return "complexType".equals(aNode.getLocalName()) && "fooBaz".equals(DomHelper.getNameAttribute(aNode));
+        }
+
+        @Override
+        public void process(final Node aNode) {
+            DomHelper.addXmlDocumentAnnotationTo(aNode, "The fooBaz type & its <documentation>.");
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package org.codehaus.mojo.jaxb2.schemageneration.postprocessing;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.mojo.jaxb2.BufferingLog;
 import org.codehaus.mojo.jaxb2.schemageneration.XsdGeneratorHelper;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.DomHelper;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.ChangeNamespacePrefixProcessor;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.SimpleNamespaceResolver;
 import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.schemaenhancement.TransformSchema;
+import org.codehaus.plexus.util.FileUtils;
 import org.custommonkey.xmlunit.Diff;
 import org.custommonkey.xmlunit.ElementNameAndAttributeQualifier;
 import org.custommonkey.xmlunit.XMLAssert;
@@ -12,14 +15,18 @@ import org.custommonkey.xmlunit.XMLUnit;
 import org.junit.Assert;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import javax.xml.transform.TransformerFactory;
 import java.io.File;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>
@@ -218,6 +225,122 @@ public class XsdGeneratorHelperTest {
         Assert.assertEquals("xs", schema3NamespaceURI2PrefixMap.get("http://www.w3.org/2001/XMLSchema"));
     }
 
+    @Test
+    public void validateSinglePassPostProcessing() throws Exception {
+
+        // Assemble
+        final File schemaDirectory = copyGeneratedSchemas();
+        final RecordingNodeProcessor javaDocProcessor = new RecordingNodeProcessor();
+        final List<TransformSchema> transformSchemas = new ArrayList<TransformSchema>();
+        transformSchemas.add(new TransformSchema("http://some/namespace", "some", "some.xsd"));
+        transformSchemas.add(new TransformSchema("http://yet/another/namespace", "yet", "yetAnother.xsd"));
+
+        // Act
+        final int numChangedFiles = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                schemaDirectory,
+                Arrays.<NodeProcessor>asList(javaDocProcessor),
+                transformSchemas);
+
+        // Assert
+        try {
+            Assert.assertEquals(1, numChangedFiles);
+            Assert.assertEquals(new TreeSet<String>(Arrays.asList("schema3.xsd", "some.xsd", "yetAnother.xsd")),
+                    new TreeSet<String>(Arrays.asList(schemaDirectory.list())));
+
+            // Each node should be offered once to the JavaDoc processor.
+            Assert.assertEquals(new HashSet<Node>(javaDocProcessor.offered).size(), javaDocProcessor.offered.size());
+            Assert.assertTrue(javaDocProcessor.offered.size() > 0);
+
+            final String schema3 = FileUtils.fileRead(new File(schemaDirectory, "schema3.xsd"));
+            Assert.assertTrue(schema3.contains("xmlns:some=\"http://some/namespace\""));
+            Assert.assertTrue(schema3.contains("xmlns:yet=\"http://yet/another/namespace\""));
+            Assert.assertTrue(schema3.contains("ref=\"some:anOptionalElementInSomeNamespace\""));
+            Assert.assertTrue(schema3.contains("schemaLocation=\"some.xsd\""));
+            Assert.assertTrue(schema3.contains("schemaLocation=\"yetAnother.xsd\""));
+            Assert.assertFalse(schema3.contains("ns1:"));
+        } finally {
+            FileUtils.deleteDirectory(schemaDirectory);
+        }
+    }
+
+    @Test
+    public void validateUnchangedSchemasAreNotWritten() throws Exception {
+
+        // Assemble
+        final File schemaDirectory = copyGeneratedSchemas();
+        final File schema1 = new File(schemaDirectory, "schema1.xsd");
+        final String originalContent = FileUtils.fileRead(schema1);
+        final List<TransformSchema> transformSchemas = new ArrayList<TransformSchema>();
+        transformSchemas.add(new TransformSchema("http://unknown/namespace", "unknown", "unknown.xsd"));
+
+        // Act
+        final int numChangedFiles = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                schemaDirectory,
+                Arrays.<NodeProcessor>asList(new RecordingNodeProcessor()),
+                transformSchemas);
+
+        // Assert
+        try {
+            Assert.assertEquals(0, numChangedFiles);
+            Assert.assertEquals(originalContent, FileUtils.fileRead(schema1));
+        } finally {
+            FileUtils.deleteDirectory(schemaDirectory);
+        }
+    }
+
+    @Test
+    public void validateConcurrentPostProcessingYieldsSameSchemas() throws Exception {
+
+        // Assemble
+        final File sequentialDirectory = copyGeneratedSchemas();
+        final File concurrentDirectory = copyGeneratedSchemas();
+        final List<NodeProcessor> javaDocProcessors = Arrays.<NodeProcessor>asList(new AnnotatingNodeProcessor());
+        final List<TransformSchema> transformSchemas = new ArrayList<TransformSchema>();
+        transformSchemas.add(new TransformSchema("http://some/namespace", "some", "some.xsd"));
+        transformSchemas.add(new TransformSchema("http://yet/another/namespace", "yet", "yetAnother.xsd"));
+
+        // Act
+        final int numSequentialChanges = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                sequentialDirectory, javaDocProcessors, transformSchemas, Long.MAX_VALUE, 1);
+        final int numConcurrentChanges = XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                concurrentDirectory, javaDocProcessors, transformSchemas, Long.MAX_VALUE, 4);
+
+        // Assert
+        try {
+            Assert.assertEquals(numSequentialChanges, numConcurrentChanges);
+            Assert.assertEquals(new TreeSet<String>(Arrays.asList(sequentialDirectory.list())),
+                    new TreeSet<String>(Arrays.asList(concurrentDirectory.list())));
+
+            for (String current : sequentialDirectory.list()) {
+                Assert.assertEquals(current,
+                        FileUtils.fileRead(new File(sequentialDirectory, current)),
+                        FileUtils.fileRead(new File(concurrentDirectory, current)));
+            }
+            Assert.assertTrue(FileUtils.fileRead(new File(concurrentDirectory, "schema3.xsd"))
+                    .contains("The fooBaz type."));
+        } finally {
+            FileUtils.deleteDirectory(sequentialDirectory);
+            FileUtils.deleteDirectory(concurrentDirectory);
+        }
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void validateExceptionThrownFromConcurrentPostProcessing() throws Exception {
+
+        // Assemble
+        final File schemaDirectory = copyGeneratedSchemas();
+        final List<TransformSchema> transformSchemas = new ArrayList<TransformSchema>();
+        transformSchemas.add(new TransformSchema("http://some/namespace", "xs", null));
+
+        // Act & Assert
+        try {
+            XsdGeneratorHelper.postProcessGeneratedSchemas(new BufferingLog(),
+                    schemaDirectory, new ArrayList<NodeProcessor>(), transformSchemas, Long.MAX_VALUE, 4);
+        } finally {
+            FileUtils.deleteDirectory(schemaDirectory);
+        }
+    }
+
     //
     // Private helpers
     //
@@ -232,4 +355,50 @@ public class XsdGeneratorHelperTest {
                 + "    <" + namespace + ":aBar name=\"aFooElement\" />\n"
                 + "</xs:schema>\n";
     }
-}
\ No newline at end of file
+
+    private File copyGeneratedSchemas() throws Exception {
+
+        final URL schema1 = getClass().getClassLoader().getResource("generated/schema/schema1.xsd");
+        final File sourceDirectory = new File(schema1.toURI()).getParentFile();
+
+        final File toReturn = File.createTempFile("xsdPostProcessing", "");
+        Assert.assertTrue(toReturn.delete());
+        Assert.assertTrue(toReturn.mkdirs());
+        FileUtils.copyDirectory(sourceDirectory, toReturn);
+
+        return toReturn;
+    }
+
+    private static final class RecordingNodeProcessor implements NodeProcessor {
+
+        // Internal state
+        private final List<Node> offered = new ArrayList<Node>();
+
+        @Override
+        public boolean accept(final Node aNode) {
+            offered.add(aNode);
+            return false;
+        }
+
+        @Override
+        public void process(final Node aNode) {
+            throw new IllegalStateException("Should not be invoked.");
+        }
+    }
+
+    /**
+     * Stateless, and hence thread-safe, NodeProcessor annotating the complexType "fooBaz".
+     */
+    private static final class AnnotatingNodeProcessor implements NodeProcessor {
+
+        @Override
+        public boolean accept(final Node aNode) {
+            return "complexType".equals(aNode.getLocalName()) && "fooBaz".equals(DomHelper.getNameAttribute(aNode));
+        }
+
+        @Override
+        public void process(final Node aNode) {
+            DomHelper.addXmlDocumentAnnotationTo(aNode, "The fooBaz type.");
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc;
+
+import com.thoughtworks.qdox.model.DocletTag;
+import com.thoughtworks.qdox.model.JavaParameter;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.ClassLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.FieldLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.MethodLocation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+/**
+ * <p>Manual benchmark comparing the linear DomHelper searches for the Class-, Field- and MethodLocations of XSD
+ * nodes with the lookups of a {@link JavaDocLocationIndex}, for a growing number of documented classes.
+ * The time of the linear searches grows quadratically with the number of classes, whereas the index
+ * grows linearly. Not run by surefire; launch the main method from the test classpath:</p>
+ * <pre>
+ *     <code>java -cp target/test-classes:target/classes:[dependencies] \
+ *         org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.JavaDocLocationIndexBenchmark \
+ *         [numClasses...]</code>
+ * </pre>
+ */
+public final class JavaDocLocationIndexBenchmark {
+
+    // Shared state
+    private static final String PACKAGE = "se.jguru.benchmark";
+    private static final int MEMBERS_PER_CLASS = 10;
+    private static final int ITERATIONS = 3;
+
+    private JavaDocLocationIndexBenchmark() {
+        // Do not instantiate
+    }
+
+    public static void main(final String[] args) throws ParserConfigurationException {
+
+        final List<Integer> sizes = new ArrayList<Integer>();
+        for (String current : args) {
+            sizes.add(Integer.parseInt(current));
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(250);
+            sizes.add(500);
+            sizes.add(1000);
+            sizes.add(2000);
+        }
+
+        for (int numClasses : sizes) {
+
+            final SortedMap<ClassLocation, JavaDocData> classJavaDocs = new TreeMap<ClassLocation, JavaDocData>();
+            final SortedMap<FieldLocation, JavaDocData> fieldJavaDocs = new TreeMap<FieldLocation, JavaDocData>();
+            final SortedMap<MethodLocation, JavaDocData> methodJavaDocs = new TreeMap<MethodLocation, JavaDocData>();
+            final JavaDocData javaDocData = new JavaDocData("Some JavaDoc.", new ArrayList<DocletTag>());
+
+            for (int i = 0; i < numClasses; i++) {
+
+                final String className = "Type" + i;
+                classJavaDocs.put(new ClassLocation(PACKAGE, className, null), javaDocData);
+                for (int j = 0; j < MEMBERS_PER_CLASS; j++) {
+
+                    // Document every other member in a field, and the remaining members in a getter.
+                    if (j % 2 == 0) {
+                        fieldJavaDocs.put(new FieldLocation(PACKAGE, className, null, "member" + j, null),
+                                javaDocData);
+                    } else {
+                        methodJavaDocs.put(new MethodLocation(PACKAGE, className, null, "member" + j, null,
+                                Collections.<JavaParameter>emptyList()), javaDocData);
+                    }
+                }
+            }
+
+            final List<Node> nodes = createNamedNodes(numClasses);
+            final String label = numClasses + " classes, " + nodes.size() + " nodes";
+
+            // Linear searches, as performed by the XsdAnnotationProcessor before indexing.
+            int linearMatches = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (Node current : nodes) {
+                    if (DomHelper.getMethodLocation(current, methodJavaDocs.keySet()) != null
+                            || DomHelper.getFieldLocation(current, fieldJavaDocs.keySet()) != null
+                            || DomHelper.getClassLocation(current, classJavaDocs.keySet()) != null) {
+                        linearMatches++;
+                    }
+                }
+            }
+            report("linear search, " + label, start, linearMatches);
+
+            // Indexed lookups, including the creation of the index.
+            int indexedMatches = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+
+                final JavaDocLocationIndex index = new JavaDocLocationIndex(
+                        new SortedMapDocumentation(classJavaDocs, fieldJavaDocs, methodJavaDocs));
+                for (Node current : nodes) {
+                    if (index.getLocation(current) != null) {
+                        indexedMatches++;
+                    }
+                }
+            }
+            report("indexed lookup, " + label, start, indexedMatches);
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static List<Node> createNamedNodes(final int numClasses) throws ParserConfigurationException {
+
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document document = factory.newDocumentBuilder().newDocument();
+
+        final Element schema = document.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "xs:schema");
+        document.appendChild(schema);
+
+        for (int i = 0; i < numClasses; i++) {
+
+            final Element complexType = document.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI,
+                    "xs:complexType");
+            complexType.setAttribute("name", "type" + i);
+            schema.appendChild(complexType);
+
+            final Element sequence = document.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "xs:sequence");
+            complexType.appendChild(sequence);
+            for (int j = 0; j < MEMBERS_PER_CLASS; j++) {
+
+                final Element element = document.createElementNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "xs:element");
+                element.setAttribute("name", "member" + j);
+                sequence.appendChild(element);
+            }
+        }
+
+        final List<Node> toReturn = new ArrayList<Node>();
+        final NodeList elements = document.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            if (DomHelper.isNamedElement(elements.item(i))) {
+                toReturn.add(elements.item(i));
+            }
+        }
+
+        // All done.
+        return toReturn;
+    }
+
+    private static void report(final String label, final long startNanos, final int result) {
+        final long millis = (System.nanoTime() - startNanos) / 1000000L;
+        System.out.println("+=================== [" + label + "]: " + millis + " ms for " + ITERATIONS
+                + " iterations (result: " + result + ")");
+    }
+
+    /**
+     * SearchableDocumentation exposing pre-sorted Class-, Field- and MethodLocation maps.
+     */
+    private static final class SortedMapDocumentation implements SearchableDocumentation {
+
+        // Internal state
+        private SortedMap<SortableLocation, JavaDocData> all;
+
+        SortedMapDocumentation(final SortedMap<ClassLocation, JavaDocData> classJavaDocs,
+                final SortedMap<FieldLocation, JavaDocData> fieldJavaDocs,
+                final SortedMap<MethodLocation, JavaDocData> methodJavaDocs) {
+
+            this.all = new TreeMap<SortableLocation, JavaDocData>();
+            all.putAll(classJavaDocs);
+            all.putAll(fieldJavaDocs);
+            all.putAll(methodJavaDocs);
+        }
+
+        @Override
+        public SortedSet<String> getPaths() {
+            throw new UnsupportedOperationException("Not used by the benchmark.");
+        }
+
+        @Override
+        public JavaDocData getJavaDoc(final String path) {
+            throw new UnsupportedOperationException("Not used by the benchmark.");
+        }
+
+        @Override
+        public <T extends SortableLocation> T getLocation(final String path) {
+            throw new UnsupportedOperationException("Not used by the benchmark.");
+        }
+
+        @Override
+        public SortedMap<SortableLocation, JavaDocData> getAll() {
+            return all;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends SortableLocation> SortedMap<T, JavaDocData> getAll(final Class<T> type) {
+
+            final SortedMap<T, JavaDocData> toReturn = new TreeMap<T, JavaDocData>();
+            for (Map.Entry<SortableLocation, JavaDocData> current : all.entrySet()) {
+                if (type == current.getKey().getClass()) {
+                    toReturn.put((T) current.getKey(), current.getValue());
+                }
+            }
+            return toReturn;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc;
+
+import com.thoughtworks.qdox.model.DocletTag;
+import com.thoughtworks.qdox.model.JavaParameter;
+import org.codehaus.mojo.jaxb2.schemageneration.XsdGeneratorHelper;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.ClassLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.FieldLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.MethodLocation;
+import org.codehaus.mojo.jaxb2.schemageneration.postprocessing.javadoc.location.PackageLocation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class JavaDocLocationIndexTest {
+
+    // Shared state
+    private static final String PACKAGE = "se.jguru.foo";
+    private static final String XSD = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:complexType name=\"somewhatNamedPerson\">"
+            + "<xs:sequence>"
+            + "<xs:element name=\"firstName\" type=\"xs:string\"/>"
+            + "<xs:element name=\"FAMILYNAME\" type=\"xs:string\"/>"
+            + "<xs:element name=\"lastName\" type=\"xs:string\"/>"
+            + "<xs:element name=\"undocumented\" type=\"xs:string\"/>"
+            + "</xs:sequence>"
+            + "<xs:attribute name=\"age\" type=\"xs:int\"/>"
+            + "</xs:complexType>"
+            + "<xs:complexType name=\"renamedType\">"
+            + "<xs:attribute name=\"age\" type=\"xs:int\"/>"
+            + "</xs:complexType>"
+            + "<xs:complexType name=\"OriginalType\"/>"
+            + "<xs:simpleType name=\"foodPreference\">"
+            + "<xs:restriction base=\"xs:string\">"
+            + "<xs:enumeration name=\"vegan\" value=\"VEGAN\"/>"
+            + "</xs:restriction>"
+            + "</xs:simpleType>"
+            + "<xs:element name=\"topLevel\" type=\"xs:string\"/>"
+            + "</xs:schema>";
+
+    private Document document;
+    private SortedMap<SortableLocation, JavaDocData> javaDocs;
+
+    @Before
+    public void setupSharedState() {
+
+        document = XsdGeneratorHelper.parseXmlStream(new StringReader(XSD));
+
+        javaDocs = new TreeMap<SortableLocation, JavaDocData>();
+        addJavaDoc(new PackageLocation(PACKAGE));
+        addJavaDoc(new ClassLocation(PACKAGE, "SomewhatNamedPerson", null));
+        addJavaDoc(new ClassLocation(PACKAGE, "OriginalType", "renamedType"));
+        addJavaDoc(new ClassLocation(PACKAGE, "FoodPreference", null));
+        addJavaDoc(new FieldLocation(PACKAGE, "SomewhatNamedPerson", null, "firstName", null));
+        addJavaDoc(new FieldLocation(PACKAGE, "SomewhatNamedPerson", null, "lastName", "familyName"));
+        addJavaDoc(new FieldLocation(PACKAGE, "FoodPreference", null, "vegan", null));
+        addJavaDoc(new MethodLocation(PACKAGE, "SomewhatNamedPerson", null, "age", null,
+                Collections.<JavaParameter>emptyList()));
+        addJavaDoc(new MethodLocation(PACKAGE, "SomewhatNamedPerson", null, "lastName", null,
+                Collections.<JavaParameter>emptyList()));
+    }
+
+    @Test
+    public void validateLookupsMatchLinearDomHelperSearch() {
+
+        // Assemble
+        final SearchableDocumentation docs = new MapSearchableDocumentation(javaDocs);
+        final SortedMap<ClassLocation, JavaDocData> classJavaDocs = docs.getAll(ClassLocation.class);
+        final SortedMap<FieldLocation, JavaDocData> fieldJavaDocs = docs.getAll(FieldLocation.class);
+        final SortedMap<MethodLocation, JavaDocData> methodJavaDocs = docs.getAll(MethodLocation.class);
+
+        // Act
+        final JavaDocLocationIndex unitUnderTest = new JavaDocLocationIndex(docs);
+
+        // Assert
+        final List<Node> namedElements = getNamedElements();
+        Assert.assertEquals(12, namedElements.size());
+        for (Node current : namedElements) {
+
+            final String xPath = DomHelper.getXPathFor(current);
+            Assert.assertSame(xPath, DomHelper.getClassLocation(current, classJavaDocs.keySet()),
+                    unitUnderTest.getClassLocation(current));
+            Assert.assertSame(xPath, DomHelper.getFieldLocation(current, fieldJavaDocs.keySet()),
+                    unitUnderTest.getFieldLocation(current));
+            Assert.assertSame(xPath, DomHelper.getMethodLocation(current, methodJavaDocs.keySet()),
+                    unitUnderTest.getMethodLocation(current));
+        }
+    }
+
+    @Test
+    public void validateLocationPrecedenceAndRenaming() {
+
+        // Assemble
+        final JavaDocLocationIndex unitUnderTest = new JavaDocLocationIndex(new MapSearchableDocumentation(javaDocs));
+
+        // Act
+        final List<SortableLocation> locations = new ArrayList<SortableLocation>();
+        for (Node current : getNamedElements()) {
+            final SortableLocation location = unitUnderTest.getLocation(current);
+            if (location != null) {
+                locations.add(location);
+            }
+        }
+
+        // Assert
+        Assert.assertEquals(8, locations.size());
+        Assert.assertEquals("se.jguru.foo.SomewhatNamedPerson",
+                unitUnderTest.getLocation(getNamedElement("complexType", "somewhatNamedPerson")).toString());
+        Assert.assertEquals("se.jguru.foo.renamedType (from: OriginalType)",
+                unitUnderTest.getLocation(getNamedElement("complexType", "renamedType")).toString());
+        Assert.assertNull(unitUnderTest.getLocation(getNamedElement("complexType", "OriginalType")));
+        Assert.assertNull(unitUnderTest.getLocation(getNamedElement("element", "topLevel")));
+
+        // The renamed field is found by its XML name, case insensitively.
+        final SortableLocation familyName = unitUnderTest.getLocation(getNamedElement("element", "FAMILYNAME"));
+        Assert.assertEquals(FieldLocation.class, familyName.getClass());
+        Assert.assertEquals("familyName", familyName.getAnnotationRenamedTo());
+
+        // Getters are used for elements and attributes lacking field JavaDoc, but not for enumerations.
+        Assert.assertEquals(MethodLocation.class,
+                unitUnderTest.getLocation(getNamedElement("element", "lastName")).getClass());
+        Assert.assertEquals(MethodLocation.class,
+                unitUnderTest.getLocation(getNamedElement("attribute", "age")).getClass());
+        Assert.assertEquals(FieldLocation.class,
+                unitUnderTest.getLocation(getNamedElement("enumeration", "vegan")).getClass());
+
+        for (SortableLocation current : locations) {
+            Assert.assertSame(javaDocs.get(current), unitUnderTest.getJavaDocData(current));
+        }
+        Assert.assertNull(unitUnderTest.getJavaDocData(new PackageLocation(PACKAGE)));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void addJavaDoc(final SortableLocation location) {
+        javaDocs.put(location, new JavaDocData("JavaDoc for " + location, new ArrayList<DocletTag>()));
+    }
+
+    private Node getNamedElement(final String localName, final String name) {
+
+        for (Node current : getNamedElements()) {
+            if (localName.equals(current.getLocalName()) && name.equals(DomHelper.getNameAttribute(current))) {
+                return current;
+            }
+        }
+        throw new IllegalArgumentException("No [" + localName + "] named [" + name + "] found.");
+    }
+
+    private List<Node> getNamedElements() {
+
+        final List<Node> toReturn = new ArrayList<Node>();
+        final NodeList elements = document.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            if (DomHelper.isNamedElement(elements.item(i))) {
+                toReturn.add(elements.item(i));
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Minimal SearchableDocumentation backed by a SortedMap.
+     */
+    private static final class MapSearchableDocumentation implements SearchableDocumentation {
+
+        // Internal state
+        private SortedMap<SortableLocation, JavaDocData> valueMap;
+
+        MapSearchableDocumentation(final SortedMap<SortableLocation, JavaDocData> valueMap) {
+            this.valueMap = valueMap;
+        }
+
+        @Override
+        public SortedSet<String> getPaths() {
+
+            final SortedSet<String> toReturn = new TreeSet<String>();
+            for (SortableLocation current : valueMap.keySet()) {
+                toReturn.add(current.getPath());
+            }
+            return toReturn;
+        }
+
+        @Override
+        public JavaDocData getJavaDoc(final String path) {
+            return valueMap.get(getLocation(path));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends SortableLocation> T getLocation(final String path) {
+
+            for (SortableLocation current : valueMap.keySet()) {
+                if (current.getPath().equals(path)) {
+                    return (T) current;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public SortedMap<SortableLocation, JavaDocData> getAll() {
+            return valueMap;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends SortableLocation> SortedMap<T, JavaDocData> getAll(final Class<T> type) {
+
+            final SortedMap<T, JavaDocData> toReturn = new TreeMap<T, JavaDocData>();
+            for (Map.Entry<SortableLocation, JavaDocData> current : valueMap.entrySet()) {
+                if (type == current.getKey().getClass()) {
+                    toReturn.put((T) current.getKey(), current.getValue());
+                }
+            }
+            return toReturn;
+        }
+    }
+}
@@ -3,12 +3,15 @@ package org.codehaus.mojo.jaxb2.shared;
 import org.codehaus.mojo.jaxb2.BufferingLog;
 import org.codehaus.mojo.jaxb2.shared.filters.Filter;
 import org.codehaus.mojo.jaxb2.shared.filters.pattern.PatternFileFilter;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.jvnet.staxex.StreamingDataHandler;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.ArrayList;
@@ -16,6 +19,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.SortedMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 /**
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
@@ -254,6 +260,75 @@ public class FileSystemUtilitiesTest {
         Assert.assertTrue(canonicalPathsForAllFiles.contains("/filefilter/exclusion/AnXmlFile.xml"));
     }
 
+    @Test
+    public void validateParallelResolutionRetainsOrderOfSuppliedFiles() {
+
+        // Assemble
+        final URL fileFilterDirUrl = getClass().getClassLoader().getResource("testdata/shared/filefilter");
+        final File fileFilterDir = new File(fileFilterDirUrl.getPath());
+        final File depsPropertiesFile = new File(fileFilterDir.getParentFile(), "deps1.properties");
+
+        final List<File> fileList = new ArrayList<File>();
+        fileList.add(fsUtilitiesDirectory);
+        fileList.add(depsPropertiesFile);
+        fileList.add(fileFilterDir);
+        fileList.add(new File(fileFilterDir, "nonexistent"));
+
+        final BufferingLog infoLog = new BufferingLog(BufferingLog.LogLevel.INFO);
+
+        // Act
+        final List<File> sequential = FileSystemUtilities.resolveRecursively(fileList, null, log);
+        final List<File> parallel = FileSystemUtilities.resolveRecursively(fileList, null, infoLog);
+
+        // Assert
+        Assert.assertEquals(5, sequential.size());
+        Assert.assertEquals(sequential, parallel);
+        Assert.assertEquals(depsPropertiesFile, parallel.get(2));
+    }
+
+    @Test
+    public void validateResolvedFilesHoldAttributesAndStampDirectoryContent() throws Exception {
+
+        // Assemble
+        final File baseDir = File.createTempFile("resolvedFiles", "");
+        Assert.assertTrue(baseDir.delete());
+        final File classes = new File(baseDir, "classes");
+
+        final long lastModified = (System.currentTimeMillis() / 1000L - 3600L) * 1000L;
+        final File fooClass = new File(classes, "se/jguru/Foo.class");
+        write(fooClass, "0123456789", lastModified);
+        write(new File(classes, "Bar.class"), "01234", lastModified);
+
+        try {
+
+            // Act
+            final List<ResolvedFile> resolvedFiles = FileSystemUtilities.resolveRecursivelyWithAttributes(
+                    Arrays.asList(classes), null, log);
+            final List<File> files = FileSystemUtilities.resolveRecursively(Arrays.asList(classes), null, log);
+
+            final long originalStamp = FileSystemUtilities.getDirectoryStamp(classes);
+            final long unchangedStamp = FileSystemUtilities.getDirectoryStamp(classes);
+            Assert.assertTrue(fooClass.setLastModified(lastModified + 1000L));
+            final long touchedStamp = FileSystemUtilities.getDirectoryStamp(classes);
+
+            // Assert
+            Assert.assertEquals(2, resolvedFiles.size());
+            for (int i = 0; i < resolvedFiles.size(); i++) {
+
+                final ResolvedFile current = resolvedFiles.get(i);
+                Assert.assertEquals(files.get(i), current.getFile());
+                Assert.assertEquals(lastModified, current.getLastModified());
+                Assert.assertEquals(current.getFile().length(), current.getLength());
+            }
+
+            Assert.assertEquals(originalStamp, unchangedStamp);
+            Assert.assertNotEquals(originalStamp, touchedStamp);
+
+        } finally {
+            FileUtils.deleteDirectory(baseDir);
+        }
+    }
+
     @Test
     public void validateBufferingLog() {
 
@@ -351,6 +426,47 @@ public class FileSystemUtilitiesTest {
         Assert.assertEquals(jarPath.replace("/", File.separator), relativized);
     }
 
+    @Test
+    public void validateRelativizingToCanonicalParentPath() {
+
+        // Assemble
+        final String parentPath = File.separator + "Home" + File.separator + "Project";
+        final String below = File.separator + "home" + File.separator + "project" + File.separator + "pom.xml";
+        final String outside = File.separator + "home" + File.separator + "other" + File.separator + "pom.xml";
+
+        // Act
+        final String relativizedBelow = FileSystemUtilities.relativize(below, parentPath);
+        final String relativizedOutside = FileSystemUtilities.relativize(outside, parentPath);
+        final String relativizedParent = FileSystemUtilities.relativize(parentPath, parentPath);
+
+        // Assert
+        Assert.assertEquals("pom.xml", relativizedBelow);
+        Assert.assertSame(outside, relativizedOutside);
+        Assert.assertSame(parentPath, relativizedParent);
+    }
+
+    @Test
+    public void validateCanonicalPathIsCachedWithinCanonicalPathCache() throws Exception {
+
+        // Assemble
+        final File aFile = new File(srcTestResources, "testdata/shared/nazgul-tools-validation-aspect-4.0.1.jar");
+        final String expected = aFile.getCanonicalPath();
+        final CanonicalPathCache unitUnderTest = new CanonicalPathCache();
+
+        // Act
+        final String firstPath = unitUnderTest.getCanonicalPath(aFile);
+        final String secondPath = unitUnderTest.getCanonicalPath(aFile);
+        final File canonicalFile = unitUnderTest.getCanonicalFile(aFile);
+        final String thirdPath = new CanonicalPathCache().getCanonicalPath(aFile);
+
+        // Assert
+        Assert.assertEquals(expected, firstPath);
+        Assert.assertSame(firstPath, secondPath);
+        Assert.assertEquals(expected, canonicalFile.getPath());
+        Assert.assertEquals(expected, thirdPath);
+        Assert.assertNotSame(firstPath, thirdPath);
+    }
+
     @Test
     public void validateGettingFileForClassURL() {
 
@@ -399,10 +515,121 @@ public class FileSystemUtilitiesTest {
         Assert.assertTrue(decoded.endsWith("file with spaces.txt"));
     }
 
+    @Test
+    public void validateSynchronizingDirectoryLeavesUnchangedFilesUntouched() throws Exception {
+
+        // Assemble
+        final File baseDir = File.createTempFile("synchronizeDirectory", "");
+        Assert.assertTrue(baseDir.delete());
+        final File staging = new File(baseDir, "staging");
+        final File target = new File(baseDir, "target");
+
+        final long lastModified = (System.currentTimeMillis() / 1000L - 3600L) * 1000L;
+        write(new File(target, "se/jguru/Unchanged.java"), "class Unchanged {}", lastModified);
+        write(new File(target, "se/jguru/Changed.java"), "class Changed {}", lastModified);
+        write(new File(target, "se/jguru/old/Vanished.java"), "class Vanished {}", lastModified);
+
+        write(new File(staging, "se/jguru/Unchanged.java"), "class Unchanged {}", lastModified + 1000L);
+        write(new File(staging, "se/jguru/Changed.java"), "class Changed { int value; }", lastModified + 1000L);
+        write(new File(staging, "se/jguru/Added.java"), "class Added {}", lastModified + 1000L);
+
+        try {
+
+            // Act
+            FileSystemUtilities.synchronizeDirectory(staging, target, log);
+
+            // Assert
+            final File unchanged = new File(target, "se/jguru/Unchanged.java");
+            Assert.assertEquals(lastModified, unchanged.lastModified());
+            Assert.assertEquals("class Unchanged {}", FileUtils.fileRead(unchanged, "UTF-8"));
+            Assert.assertEquals("class Changed { int value; }",
+                    FileUtils.fileRead(new File(target, "se/jguru/Changed.java"), "UTF-8"));
+            Assert.assertEquals("class Added {}", FileUtils.fileRead(new File(target, "se/jguru/Added.java"), "UTF-8"));
+            Assert.assertFalse(new File(target, "se/jguru/old").exists());
+            Assert.assertFalse(staging.exists());
+
+            final String[] content = new File(target, "se/jguru").list();
+            Assert.assertNotNull(content);
+            Assert.assertEquals(3, content.length);
+
+        } finally {
+            FileUtils.deleteDirectory(baseDir);
+        }
+    }
+
+    @Test
+    public void validateCopyingFilesAndZipEntriesOnlyWhenChanged() throws Exception {
+
+        // Assemble
+        final File baseDir = File.createTempFile("copyIfChanged", "");
+        Assert.assertTrue(baseDir.delete());
+
+        final byte[] latin1Content = "<xs:schema name=\"\u00e5\u00e4\u00f6\"/>".getBytes("ISO-8859-1");
+        final File source = new File(baseDir, "source/latin1.xsd");
+        Assert.assertTrue(source.getParentFile().mkdirs());
+
+        final FileOutputStream fileOut = new FileOutputStream(source);
+        fileOut.write(latin1Content);
+        fileOut.close();
+
+        final File jar = new File(baseDir, "source/schemas.jar");
+        final ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(jar));
+        zipOut.putNextEntry(new ZipEntry("xsd/latin1.xsd"));
+        zipOut.write(latin1Content);
+        zipOut.closeEntry();
+        zipOut.close();
+
+        final File targetFile = new File(baseDir, "target/fromFile/latin1.xsd");
+        final File targetEntry = new File(baseDir, "target/fromJar/latin1.xsd");
+        final long lastModified = (System.currentTimeMillis() / 1000L - 3600L) * 1000L;
+
+        try {
+
+            // Act
+            final boolean fileCopied = FileSystemUtilities.copyIfChanged(source, targetFile);
+            Assert.assertTrue(targetFile.setLastModified(lastModified));
+            final boolean fileRecopied = FileSystemUtilities.copyIfChanged(source, targetFile);
+
+            final boolean entryCopied;
+            final boolean entryRecopied;
+            final ZipFile zipFile = new ZipFile(jar);
+            try {
+                final ZipEntry entry = zipFile.getEntry("xsd/latin1.xsd");
+                entryCopied = FileSystemUtilities.copyIfChanged(zipFile, entry, targetEntry);
+                Assert.assertTrue(targetEntry.setLastModified(lastModified));
+                entryRecopied = FileSystemUtilities.copyIfChanged(zipFile, entry, targetEntry);
+            } finally {
+                zipFile.close();
+            }
+
+            // Assert
+            Assert.assertTrue(fileCopied);
+            Assert.assertFalse(fileRecopied);
+            Assert.assertEquals(lastModified, targetFile.lastModified());
+            Assert.assertTrue(Arrays.equals(latin1Content, FileUtils.fileRead(targetFile, "ISO-8859-1")
+                    .getBytes("ISO-8859-1")));
+
+            Assert.assertTrue(entryCopied);
+            Assert.assertFalse(entryRecopied);
+            Assert.assertEquals(lastModified, targetEntry.lastModified());
+            Assert.assertTrue(FileUtils.contentEquals(targetFile, targetEntry));
+
+        } finally {
+            FileUtils.deleteDirectory(baseDir);
+        }
+    }
+
     //
     // Private helpers
     //
 
+    private static void write(final File file, final String content, final long lastModified) throws IOException {
+
+        Assert.assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        FileUtils.fileWrite(file, "UTF-8", content);
+        Assert.assertTrue(file.setLastModified(lastModified));
+    }
+
     private List<String> getRelativeCanonicalPaths(final List<File> fileList, final File cutoff) {
 
         final String cutoffPath = FileSystemUtilities.getCanonicalPath(cutoff).replace(File.separator, "/");
@@ -0,0 +1,175 @@
+package org.codehaus.mojo.jaxb2.shared.cache;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.staleness.StaleManifest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class GenerationCacheTest {
+
+    // Shared state
+    private static final String KEY_1 = "0123456789abcdef0123456789abcdef01234567";
+    private static final String KEY_2 = "1123456789abcdef0123456789abcdef01234567";
+    private static final String KEY_3 = "2123456789abcdef0123456789abcdef01234567";
+
+    private BufferingLog log;
+    private File baseDir;
+    private File cacheDir;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        baseDir = File.createTempFile("generationCache", "");
+        Assert.assertTrue(baseDir.delete());
+        Assert.assertTrue(baseDir.mkdirs());
+
+        cacheDir = new File(baseDir, "cache");
+    }
+
+    @Test
+    public void validateStoreAndRestoreRoundTrip() throws Exception {
+
+        // Assemble
+        final File generated = new File(baseDir, "generated");
+        write(new File(generated, "se/jguru/Foo.java"), "class Foo {}");
+        write(new File(generated, "META-INF/sun-jaxb.episode"), "<bindings/>");
+
+        final File restored = new File(baseDir, "restored");
+        final GenerationCache unitUnderTest = new GenerationCache(cacheDir, 1024 * 1024, log);
+
+        // Act
+        final boolean stored = unitUnderTest.store(KEY_1, generated);
+        final boolean storedAgain = unitUnderTest.store(KEY_1, generated);
+        final boolean restoredKey1 = unitUnderTest.restore(KEY_1, restored);
+        final boolean restoredKey2 = unitUnderTest.restore(KEY_2, restored);
+
+        // Assert
+        Assert.assertTrue(stored);
+        Assert.assertFalse(storedAgain);
+        Assert.assertTrue(restoredKey1);
+        Assert.assertFalse(restoredKey2);
+        Assert.assertTrue(new File(restored, "se/jguru/Foo.java").isFile());
+        Assert.assertTrue(new File(restored, "META-INF/sun-jaxb.episode").isFile());
+
+        final File[] tmpContent = new File(cacheDir, "tmp").listFiles();
+        Assert.assertNotNull(tmpContent);
+        Assert.assertEquals(0, tmpContent.length);
+    }
+
+    @Test
+    public void validateLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+
+        // Assemble
+        final File generated = new File(baseDir, "generated");
+        write(new File(generated, "Foo.java"), "0123456789");
+
+        final GenerationCache unitUnderTest = new GenerationCache(cacheDir, 25, log);
+        Assert.assertTrue(unitUnderTest.store(KEY_1, generated));
+        Assert.assertTrue(unitUnderTest.store(KEY_2, generated));
+
+        // Make KEY_1 the most recently used entry.
+        Assert.assertTrue(new File(cacheDir, "entries/" + KEY_2 + "/entry.properties")
+                .setLastModified(System.currentTimeMillis() - 60000L));
+        Assert.assertTrue(unitUnderTest.restore(KEY_1, new File(baseDir, "restored")));
+
+        // Act
+        final boolean stored = unitUnderTest.store(KEY_3, generated);
+
+        // Assert
+        Assert.assertTrue(stored);
+        Assert.assertTrue(unitUnderTest.contains(KEY_1));
+        Assert.assertFalse(unitUnderTest.contains(KEY_2));
+        Assert.assertTrue(unitUnderTest.contains(KEY_3));
+    }
+
+    @Test
+    public void validateOversizedContentIsNotStored() throws Exception {
+
+        // Assemble
+        final File generated = new File(baseDir, "generated");
+        write(new File(generated, "Foo.java"), "0123456789");
+        final GenerationCache unitUnderTest = new GenerationCache(cacheDir, 5, log);
+
+        // Act
+        final boolean stored = unitUnderTest.store(KEY_1, generated);
+
+        // Assert
+        Assert.assertFalse(stored);
+        Assert.assertFalse(unitUnderTest.contains(KEY_1));
+    }
+
+    @Test
+    public void validateChangedClassInClassPathDirectoryMissesCache() throws Exception {
+
+        // Assemble
+        final File generated = new File(baseDir, "generated");
+        write(new File(generated, "Foo.java"), "class Foo {}");
+
+        final File siblingClasses = new File(baseDir, "sibling/target/classes");
+        final File classFile = new File(siblingClasses, "se/jguru/Bar.class");
+        write(classFile, "0123456789");
+        Assert.assertTrue(classFile.setLastModified(System.currentTimeMillis() - 60000L));
+
+        final File projectClasses = new File(baseDir, "project/target/classes");
+        write(new File(projectClasses, "Foo.class"), "0123456789");
+
+        final List<String> classpath = Arrays.asList(projectClasses.getPath(), siblingClasses.getPath());
+        final List<String> projectDirectories = Arrays.asList(projectClasses.getPath());
+
+        final GenerationCache unitUnderTest = new GenerationCache(cacheDir, 1024 * 1024, log);
+        final String originalKey = unitUnderTest.getKey("scope",
+                new StaleManifest().addClassPath(classpath, projectDirectories).getEntries());
+        Assert.assertTrue(unitUnderTest.store(originalKey, generated));
+
+        // Act
+        final String unchangedKey = unitUnderTest.getKey("scope",
+                new StaleManifest().addClassPath(classpath, projectDirectories).getEntries());
+        write(new File(projectClasses, "Foo.class"), "01234567890");
+        final String projectChangedKey = unitUnderTest.getKey("scope",
+                new StaleManifest().addClassPath(classpath, projectDirectories).getEntries());
+        write(classFile, "01234567890");
+        final String siblingChangedKey = unitUnderTest.getKey("scope",
+                new StaleManifest().addClassPath(classpath, projectDirectories).getEntries());
+
+        // Assert
+        Assert.assertEquals(originalKey, unchangedKey);
+        Assert.assertEquals(originalKey, projectChangedKey);
+        Assert.assertNotEquals(originalKey, siblingChangedKey);
+        Assert.assertTrue(unitUnderTest.contains(originalKey));
+        Assert.assertFalse(unitUnderTest.contains(siblingChangedKey));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnNonDigestKey() {
+
+        // Assemble
+        final GenerationCache unitUnderTest = new GenerationCache(cacheDir, 5, log);
+
+        // Act & Assert
+        unitUnderTest.contains("../escape");
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void write(final File aFile, final String content) throws IOException {
+
+        Assert.assertTrue(aFile.getParentFile().isDirectory() || aFile.getParentFile().mkdirs());
+        final FileOutputStream out = new FileOutputStream(aFile);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.codehaus.mojo.jaxb2.shared.classloader;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.environment.classloading.ThreadContextClassLoaderBuilder;
+import org.codehaus.mojo.jaxb2.shared.environment.classloading.ThreadContextClassLoaderHolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Manual benchmark timing the ThreadContext ClassLoader setup (adding all classpath elements and synthesizing
+ * the classpath argument) against the classpath size. For comparison, the pairwise duplicate check formerly
+ * performed when adding each URL is timed separately. Not run by surefire; launch the main method from the
+ * test classpath:</p>
+ * <pre>
+ *     <code>java -cp target/test-classes:target/classes:[dependencies] \
+ *         org.codehaus.mojo.jaxb2.shared.classloader.ClassPathBenchmark</code>
+ * </pre>
+ */
+public final class ClassPathBenchmark {
+
+    // Shared state
+    private static final int[] CLASSPATH_SIZES = {100, 250, 500, 1000, 2000, 4000};
+    private static final int ITERATIONS = 5;
+
+    private ClassPathBenchmark() {
+        // Do not instantiate
+    }
+
+    public static void main(final String[] args) throws Exception {
+
+        final BufferingLog log = new BufferingLog(BufferingLog.LogLevel.INFO);
+        final File repository = new File(System.getProperty("java.io.tmpdir"), "class path benchmark");
+
+        System.out.println(String.format("%10s  %16s  %22s", "Elements", "Setup (ms)", "Pairwise check (ms)"));
+        for (int size : CLASSPATH_SIZES) {
+
+            long setupNanos = Long.MAX_VALUE;
+            long pairwiseNanos = Long.MAX_VALUE;
+
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+
+                // Use distinct paths in each iteration, to prevent reusing cached ClassLoaders.
+                final List<String> paths = new ArrayList<String>();
+                for (int i = 0; i < size; i++) {
+                    paths.add(new File(repository, "run-" + iteration + "/group-" + (i % 50) + "/artifact-" + i
+                            + "/1.0/artifact-" + i + "-1.0.jar").getAbsolutePath());
+                }
+
+                long start = System.nanoTime();
+                final ThreadContextClassLoaderHolder holder = ThreadContextClassLoaderBuilder
+                        .createFor(ClassPathBenchmark.class, log)
+                        .addPaths(paths)
+                        .buildAndSet();
+                final int argumentLength = holder.getClassPathAsArgument().length();
+                holder.restoreClassLoaderAndReleaseThread();
+                setupNanos = Math.min(setupNanos, System.nanoTime() - start);
+
+                if (argumentLength == 0) {
+                    throw new IllegalStateException("Empty classpath argument.");
+                }
+
+                // The duplicate check formerly performed by ThreadContextClassLoaderBuilder.addURL
+                start = System.nanoTime();
+                final List<URL> added = new ArrayList<URL>();
+                for (String current : paths) {
+
+                    final URL anURL = new File(current).toURI().toURL();
+                    boolean duplicate = false;
+                    for (URL existing : added) {
+                        if (existing.toString().equalsIgnoreCase(anURL.toString())) {
+                            duplicate = true;
+                            break;
+                        }
+                    }
+                    if (!duplicate) {
+                        added.add(anURL);
+                    }
+                }
+                pairwiseNanos = Math.min(pairwiseNanos, System.nanoTime() - start);
+            }
+
+            System.out.println(String.format("%10d  %16.2f  %22.2f", size, setupNanos / 1e6, pairwiseNanos / 1e6));
+        }
+    }
+}
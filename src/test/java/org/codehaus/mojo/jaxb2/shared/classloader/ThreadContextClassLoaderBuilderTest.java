@@ -4,6 +4,7 @@ import org.codehaus.mojo.jaxb2.BufferingLog;
 import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
 import org.codehaus.mojo.jaxb2.shared.environment.classloading.ThreadContextClassLoaderBuilder;
 import org.codehaus.mojo.jaxb2.shared.environment.classloading.ThreadContextClassLoaderHolder;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -125,6 +126,89 @@ public class ThreadContextClassLoaderBuilderTest {
         Assert.assertNotNull(containedSubLevelResource);
     }
 
+    @Test
+    public void validateIdenticalClassPathsShareClassLoader() {
+
+        // Assemble
+        final ThreadContextClassLoaderHolder firstHolder = ThreadContextClassLoaderBuilder
+                .createFor(originalClassLoader, log)
+                .addURL(extraClassLoaderDirURL)
+                .buildAndSet();
+        final ClassLoader firstClassLoader = Thread.currentThread().getContextClassLoader();
+        final String firstClassPath = firstHolder.getClassPathAsArgument();
+        firstHolder.restoreClassLoaderAndReleaseThread();
+
+        // Act
+        holder = ThreadContextClassLoaderBuilder
+                .createFor(originalClassLoader, log)
+                .addURL(extraClassLoaderDirURL)
+                .buildAndSet();
+
+        // Assert
+        Assert.assertSame(firstClassLoader, Thread.currentThread().getContextClassLoader());
+        Assert.assertEquals(firstClassPath, holder.getClassPathAsArgument());
+    }
+
+    @Test
+    public void validateModifiedJarYieldsNewClassLoaderAndClosesOutdatedOne() throws Exception {
+
+        // Assemble
+        final File originalJar = new File(extraClassLoaderDirFile, "jarSubDirectory/aJarWithResources.jar");
+        final File theJar = File.createTempFile("validateModifiedJar", ".jar");
+        theJar.deleteOnExit();
+        FileUtils.copyFile(originalJar, theJar);
+
+        final ThreadContextClassLoaderHolder firstHolder = ThreadContextClassLoaderBuilder
+                .createFor(originalClassLoader, log)
+                .addPath(FileSystemUtilities.getCanonicalPath(theJar))
+                .buildAndSet();
+        final ClassLoader firstClassLoader = Thread.currentThread().getContextClassLoader();
+        Assert.assertNotNull(firstClassLoader.getResource("ContainedFileResource.txt"));
+        firstHolder.restoreClassLoaderAndReleaseThread();
+
+        // Act
+        Assert.assertTrue(theJar.setLastModified(theJar.lastModified() - 10000L));
+        holder = ThreadContextClassLoaderBuilder
+                .createFor(originalClassLoader, log)
+                .addPath(FileSystemUtilities.getCanonicalPath(theJar))
+                .buildAndSet();
+
+        // Assert
+        final ClassLoader secondClassLoader = Thread.currentThread().getContextClassLoader();
+        Assert.assertNotSame(firstClassLoader, secondClassLoader);
+        Assert.assertNotNull(secondClassLoader.getResource("ContainedFileResource.txt"));
+        Assert.assertNull(firstClassLoader.getResource("ContainedFileResource.txt"));
+    }
+
+    @Test
+    public void validateClassPathArgumentFollowsUrlOrderAndDecodesPaths() throws Exception {
+
+        // Assemble
+        final File directoryWithSpaces = new File(System.getProperty("java.io.tmpdir"),
+                "validate classpath " + System.nanoTime());
+        Assert.assertTrue(directoryWithSpaces.mkdirs());
+        final File theJar = new File(extraClassLoaderDirFile, "jarSubDirectory/aJarWithResources.jar");
+
+        try {
+
+            // Act
+            holder = ThreadContextClassLoaderBuilder
+                    .createFor(originalClassLoader, log)
+                    .addPath(FileSystemUtilities.getCanonicalPath(theJar))
+                    .addURL(directoryWithSpaces.toURI().toURL())
+                    .addPath(directoryWithSpaces.getAbsolutePath())
+                    .buildAndSet();
+
+            // Assert
+            Assert.assertEquals(FileSystemUtilities.getCanonicalPath(theJar) + File.pathSeparator
+                    + directoryWithSpaces.getAbsolutePath(), holder.getClassPathAsArgument());
+            Assert.assertTrue(log.getPrettyPrintedLog().contains("twice"));
+
+        } finally {
+            FileUtils.deleteDirectory(directoryWithSpaces);
+        }
+    }
+
     //
     // Private helpers
     //
@@ -0,0 +1,127 @@
+package org.codehaus.mojo.jaxb2.shared.environment.logging;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchingLogTest {
+
+    @Test
+    public void validateDeduplicatingAndRateLimitingDiagnostics() {
+
+        // Assemble
+        final BufferingLog log = new BufferingLog(BufferingLog.LogLevel.INFO);
+        final BatchingLog unitUnderTest = new BatchingLog(log, 3, 100);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            unitUnderTest.warn("order.xsd [12,4] ", new SAXParseException("Duplicate type 'Order'.", null));
+        }
+        for (int i = 0; i < 10; i++) {
+            unitUnderTest.warn("lines.xsd [" + i + ",1] Simple type \"sku" + i + "\" is never used.");
+        }
+        for (int i = 0; i < 5; i++) {
+            unitUnderTest.error("Compilation failed.");
+        }
+        final int numErrorsBeforeClose = count(getMessages(log), "Compilation failed.");
+        unitUnderTest.debug("Not logged at INFO level.");
+        unitUnderTest.close();
+
+        // Assert
+        final List<String> messages = getMessages(log);
+        final String summary = messages.remove(messages.size() - 1);
+        Assert.assertFalse(unitUnderTest.isLossless());
+        Assert.assertEquals(1, count(messages, "Duplicate type 'Order'."));
+        Assert.assertEquals(3, count(messages, "is never used."));
+        Assert.assertEquals(5, numErrorsBeforeClose);
+        Assert.assertEquals(5, count(messages, "Compilation failed."));
+        Assert.assertEquals(0, count(messages, "Not logged"));
+
+        // The summary table holds the counts of both suppressed categories.
+        Assert.assertTrue(summary, summary.contains(
+                "|      10 |       3 | WARN lines.xsd ? Simple type ? is never used."));
+        Assert.assertTrue(summary, summary.contains("|       5 |       1 | WARN Duplicate type ?."));
+        Assert.assertFalse(summary, summary.contains("Compilation failed."));
+    }
+
+    @Test
+    public void validateLosslessModeWhenDebugEnabled() {
+
+        // Assemble
+        final BufferingLog log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+        final BatchingLog unitUnderTest = new BatchingLog(log, 1, 1);
+        final SAXParseException exception = new SAXParseException("Duplicate type 'Order'.", null);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            unitUnderTest.warn("order.xsd [12,4] ", exception);
+        }
+        unitUnderTest.close();
+
+        // Assert
+        Assert.assertTrue(unitUnderTest.isLossless());
+        Assert.assertEquals(3, log.getLogBuffer().size());
+        for (Throwable current : log.getLogBuffer().values()) {
+            Assert.assertSame(exception, current);
+        }
+    }
+
+    @Test
+    public void validateEmittingAllDiagnosticsFromConcurrentThreads() throws Exception {
+
+        // Assemble
+        final BufferingLog log = new BufferingLog(BufferingLog.LogLevel.INFO);
+        final BatchingLog unitUnderTest = new BatchingLog(log, 10000, 16);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+
+            final int threadIndex = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 250; j++) {
+                        unitUnderTest.error("Thread " + threadIndex + ", error " + j);
+                    }
+                }
+            }));
+        }
+
+        // Act
+        for (Thread current : threads) {
+            current.start();
+        }
+        for (Thread current : threads) {
+            current.join(10000L);
+        }
+        unitUnderTest.close();
+        unitUnderTest.error("After close");
+
+        // Assert
+        final List<String> messages = getMessages(log);
+        Assert.assertEquals(1001, messages.size());
+        Assert.assertEquals(1, count(messages, "After close"));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static List<String> getMessages(final BufferingLog log) {
+        return new ArrayList<String>(log.getLogBuffer().keySet());
+    }
+
+    private static int count(final List<String> messages, final String fragment) {
+
+        int toReturn = 0;
+        for (String current : messages) {
+            if (current.contains(fragment)) {
+                toReturn++;
+            }
+        }
+        return toReturn;
+    }
+}
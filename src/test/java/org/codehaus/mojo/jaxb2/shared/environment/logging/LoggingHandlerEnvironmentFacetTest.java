@@ -0,0 +1,136 @@
+package org.codehaus.mojo.jaxb2.shared.environment.logging;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class LoggingHandlerEnvironmentFacetTest {
+
+    // Shared state
+    private static final String LOGGER_NAME = "com.sun.tools.xjc.loggingHandlerEnvironmentFacetTest";
+
+    private Logger rootLogger;
+    private List<Handler> originalHandlers;
+    private Level originalLevel;
+
+    @Before
+    public void setupSharedState() {
+
+        rootLogger = Logger.getLogger("");
+        originalHandlers = Arrays.asList(rootLogger.getHandlers());
+        originalLevel = rootLogger.getLevel();
+    }
+
+    @Test
+    public void validateConcurrentFacetsRouteToTheirOwnLog() throws Exception {
+
+        // Assemble
+        final BufferingLog firstLog = new BufferingLog(BufferingLog.LogLevel.INFO);
+        final BufferingLog secondLog = new BufferingLog(BufferingLog.LogLevel.INFO);
+        final CountDownLatch allSetUp = new CountDownLatch(2);
+        final CountDownLatch allLogged = new CountDownLatch(2);
+
+        final Thread first = new Thread(new FacetUser("first", firstLog, allSetUp, allLogged));
+        final Thread second = new Thread(new FacetUser("second", secondLog, allSetUp, allLogged));
+
+        // Act
+        first.start();
+        second.start();
+        first.join(10000L);
+        second.join(10000L);
+
+        // Assert
+        final String firstContent = firstLog.getLogBuffer().keySet().toString();
+        final String secondContent = secondLog.getLogBuffer().keySet().toString();
+
+        Assert.assertTrue(firstContent, firstContent.contains("Message from first"));
+        Assert.assertTrue(firstContent, firstContent.contains("Message from child of first"));
+        Assert.assertFalse(firstContent, firstContent.contains("second"));
+
+        Assert.assertTrue(secondContent, secondContent.contains("Message from second"));
+        Assert.assertTrue(secondContent, secondContent.contains("Message from child of second"));
+        Assert.assertFalse(secondContent, secondContent.contains("first"));
+
+        Assert.assertEquals(originalHandlers, Arrays.asList(rootLogger.getHandlers()));
+        Assert.assertEquals(originalLevel, rootLogger.getLevel());
+    }
+
+    @Test
+    public void validateRestoreWithoutSetupLeavesRootLoggerUntouched() {
+
+        // Assemble
+        final LoggingHandlerEnvironmentFacet unitUnderTest = new LoggingHandlerEnvironmentFacet("XJC",
+                new BufferingLog(), "UTF-8", LoggingHandlerEnvironmentFacet.DEFAULT_LOGGER_NAMES);
+
+        // Act
+        unitUnderTest.restore();
+
+        // Assert
+        Assert.assertEquals(originalHandlers, Arrays.asList(rootLogger.getHandlers()));
+        Assert.assertEquals(originalLevel, rootLogger.getLevel());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static class FacetUser implements Runnable {
+
+        // Internal state
+        private final String name;
+        private final BufferingLog log;
+        private final CountDownLatch allSetUp;
+        private final CountDownLatch allLogged;
+
+        FacetUser(final String name,
+                  final BufferingLog log,
+                  final CountDownLatch allSetUp,
+                  final CountDownLatch allLogged) {
+            this.name = name;
+            this.log = log;
+            this.allSetUp = allSetUp;
+            this.allLogged = allLogged;
+        }
+
+        @Override
+        public void run() {
+
+            final LoggingHandlerEnvironmentFacet facet = new LoggingHandlerEnvironmentFacet("XJC", log, "UTF-8",
+                    LoggingHandlerEnvironmentFacet.DEFAULT_LOGGER_NAMES);
+            facet.setup();
+
+            try {
+
+                allSetUp.countDown();
+                allSetUp.await();
+
+                // Log from this thread, and from a thread started by this thread.
+                Logger.getLogger(LOGGER_NAME).info("Message from " + name);
+                final Thread child = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Logger.getLogger(LOGGER_NAME).info("Message from child of " + name);
+                    }
+                });
+                child.start();
+                child.join();
+
+                allLogged.countDown();
+                allLogged.await();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                facet.restore();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.codehaus.mojo.jaxb2.shared.filters.pattern;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.filters.Filter;
+import org.codehaus.mojo.jaxb2.shared.filters.Filters;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Manual benchmark comparing regular expression matching of the standard exclude suffix patterns with the
+ * compiled filter engine, as well as timing a full recursive resolution of a generated directory tree.
+ * Not run by surefire; launch the main method from the test classpath:</p>
+ * <pre>
+ *     <code>java -cp target/test-classes:target/classes:[dependencies] \
+ *         org.codehaus.mojo.jaxb2.shared.filters.pattern.PatternFileFilterBenchmark [numFiles]</code>
+ * </pre>
+ */
+public final class PatternFileFilterBenchmark {
+
+    // Shared state
+    private static final List<String> SUFFIXES = Arrays.asList("README.*", "\\.xml", "\\.txt");
+    private static final String[] EXTENSIONS = {".xsd", ".xjb", ".xml", ".txt", ".wsdl"};
+    private static final int ITERATIONS = 10;
+
+    private PatternFileFilterBenchmark() {
+        // Do not instantiate
+    }
+
+    public static void main(final String[] args) throws IOException {
+
+        final int numFiles = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final File root = createTree(numFiles);
+
+        try {
+
+            final List<File> files = FileSystemUtilities.resolveRecursively(
+                    Arrays.asList(root), null, new BufferingLog(BufferingLog.LogLevel.INFO));
+            final List<String> paths = new ArrayList<String>();
+            for (File current : files) {
+                paths.add(PatternFileFilter.FILE_PATH_CONVERTER.convert(current));
+            }
+
+            // Regular expression matching, as performed by the PatternFileFilter before compilation.
+            final List<Pattern> patterns = AbstractPatternFilter.convert(
+                    SUFFIXES, PatternFileFilter.FILE_SUFFIX_PATTERN_PREFIX);
+            int regexMatches = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (String current : paths) {
+                    for (Pattern currentPattern : patterns) {
+                        if (currentPattern.matcher(current).matches()) {
+                            regexMatches++;
+                            break;
+                        }
+                    }
+                }
+            }
+            report("regular expressions", start, regexMatches);
+
+            // Compiled filters, configured as the standard exclude filters.
+            final List<Filter<File>> filters = new ArrayList<Filter<File>>();
+            filters.add(new PatternFileFilter(SUFFIXES, true));
+            Filters.initialize(new BufferingLog(BufferingLog.LogLevel.INFO), filters);
+
+            final CompiledFileFilters compiled = CompiledFileFilters.compile(filters);
+            int compiledMatches = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (File current : files) {
+                    if (!compiled.noFilterMatches(current)) {
+                        compiledMatches++;
+                    }
+                }
+            }
+            report("compiled filters", start, compiledMatches);
+
+            // Full recursive resolution, using the standard exclude filters.
+            int resolved = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                resolved += FileSystemUtilities.resolveRecursively(Arrays.asList(root), filters,
+                        new BufferingLog(BufferingLog.LogLevel.INFO)).size();
+            }
+            report("resolveRecursively", start, resolved);
+
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static File createTree(final int numFiles) throws IOException {
+
+        final File root = File.createTempFile("patternFileFilterBenchmark", "");
+        if (!root.delete() || !root.mkdirs()) {
+            throw new IOException("Could not create directory [" + root.getAbsolutePath() + "]");
+        }
+
+        for (int i = 0; i < numFiles; i++) {
+
+            final File dir = new File(root, "module" + (i % 20) + "/src/main/xsd/package" + (i % 50));
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory [" + dir.getAbsolutePath() + "]");
+            }
+
+            final String name = i % 97 == 0 ? "README" + i + ".md" : "file" + i + EXTENSIONS[i % EXTENSIONS.length];
+            if (!new File(dir, name).createNewFile()) {
+                throw new IOException("Could not create file [" + name + "]");
+            }
+        }
+
+        // All done.
+        return root;
+    }
+
+    private static void report(final String label, final long startNanos, final int result) {
+        final long millis = (System.nanoTime() - startNanos) / 1000000L;
+        System.out.println("+=================== [" + label + "]: " + millis + " ms for " + ITERATIONS
+                + " iterations (result: " + result + ")");
+    }
+}
@@ -0,0 +1,65 @@
+package org.codehaus.mojo.jaxb2.shared.filters.pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class SuffixPatternMatcherTest {
+
+    // Shared state
+    private static final String PREFIX = PatternFileFilter.FILE_SUFFIX_PATTERN_PREFIX;
+    private static final List<String> PATTERNS = Arrays.asList("\\.xml", "\\.txt", "README.*", "\\.XSD", "-dep\\.xjb");
+    private static final List<String> CANDIDATES = Arrays.asList(
+            "/home/user/project/src/main/xsd/schema.xsd",
+            "/home/user/project/src/main/xsd/schema.XSD.bak",
+            "/home/user/project/pom.xml",
+            "/home/user/project/POM.XML",
+            "/home/user/My Documents/project/pom.xml",
+            "/home/user/project/README.md",
+            "/home/user/project/readme",
+            "/home/user/project/readme\nsecond line",
+            "README.md",
+            ".xml",
+            "x.xml",
+            "C:\\projects\\schemas\\notes.txt",
+            "/home/\u00e5\u00e4\u00f6/project/some-dep.xjb",
+            "/home/user/project/some-depXxjb",
+            "");
+
+    @Test
+    public void validateEquivalenceWithRegularExpressions() {
+
+        for (String currentPattern : PATTERNS) {
+
+            // Assemble
+            final SuffixPatternMatcher unitUnderTest = SuffixPatternMatcher.create(PREFIX, currentPattern);
+            final Pattern expected = AbstractPatternFilter.convert(Arrays.asList(currentPattern), PREFIX).get(0);
+            Assert.assertNotNull(currentPattern, unitUnderTest);
+
+            for (String currentCandidate : CANDIDATES) {
+
+                // Act & Assert
+                Assert.assertEquals(currentPattern + " on " + currentCandidate,
+                        expected.matcher(currentCandidate).matches(),
+                        unitUnderTest.matches(currentCandidate));
+            }
+        }
+    }
+
+    @Test
+    public void validateNoMatcherForNonLiteralPatternsOrOtherPrefixes() {
+
+        // Assemble
+        final List<String> nonLiterals = Arrays.asList("\\.(xml|xsd)", "[a-z]+\\.xml", "\\d\\.xml", "-dep.xjb", ".*", "");
+
+        // Act & Assert
+        for (String current : nonLiterals) {
+            Assert.assertNull(current, SuffixPatternMatcher.create(PREFIX, current));
+        }
+        Assert.assertNull(SuffixPatternMatcher.create(null, "\\.xml"));
+        Assert.assertNull(SuffixPatternMatcher.create(".*", "\\.xml"));
+    }
+}
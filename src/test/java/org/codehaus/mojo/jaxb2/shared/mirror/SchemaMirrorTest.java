@@ -0,0 +1,196 @@
+package org.codehaus.mojo.jaxb2.shared.mirror;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.codehaus.mojo.jaxb2.shared.staleness.ContentDigester;
+import org.codehaus.mojo.jaxb2.shared.staleness.SchemaDependencyGraph;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SchemaMirrorTest {
+
+    // Shared state
+    private HttpServer server;
+    private Map<String, String> served;
+    private List<String> requests;
+    private File baseDir;
+    private File mirrorDir;
+    private BufferingLog log;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        baseDir = File.createTempFile("schemaMirror", "");
+        Assert.assertTrue(baseDir.delete());
+        mirrorDir = new File(baseDir, "mirror");
+        Assert.assertTrue(mirrorDir.mkdirs());
+
+        served = new ConcurrentHashMap<String, String>();
+        served.put("/schemas/order.xsd", schema("urn:order",
+                "<xs:include schemaLocation=\"types/lines.xsd\"/>"
+                        + "<xs:import namespace=\"urn:party\" schemaLocation=\"../partner/party.xsd\"/>"));
+        served.put("/schemas/types/lines.xsd", schema("urn:order", ""));
+        served.put("/partner/party.xsd", schema("urn:party", ""));
+        requests = new CopyOnWriteArrayList<String>();
+
+        // A stand-in for a remote host, supporting ETag revalidation.
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+
+                final String path = exchange.getRequestURI().getPath();
+                final String content = served.get(path);
+                final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                requests.add(path + (ifNoneMatch == null ? "" : " " + ifNoneMatch));
+
+                if (content == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+
+                    final String etag = "\"" + ContentDigester.digest(content) + "\"";
+                    exchange.getResponseHeaders().add("ETag", etag);
+                    if (etag.equals(ifNoneMatch)) {
+                        exchange.sendResponseHeaders(304, -1);
+                    } else {
+                        final byte[] body = content.getBytes("UTF-8");
+                        exchange.sendResponseHeaders(200, body.length);
+                        final OutputStream out = exchange.getResponseBody();
+                        out.write(body);
+                        out.close();
+                    }
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void teardownSharedState() throws IOException {
+        server.stop(0);
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Test
+    public void validateMirroringAndRevalidatingWithETag() throws Exception {
+
+        // Assemble
+        final URL remote = remote("/partner/party.xsd");
+
+        // Act
+        final URL firstCopy = new SchemaMirror(mirrorDir, false, null, log).mirror(remote);
+        final long firstModified = new File(firstCopy.getPath()).lastModified();
+        final URL secondCopy = new SchemaMirror(mirrorDir, false, null, log).mirror(remote);
+
+        served.put("/partner/party.xsd", schema("urn:party", "<xs:element name=\"party\" type=\"xs:string\"/>"));
+        final SchemaMirror changedMirror = new SchemaMirror(mirrorDir, false, null, log);
+        final URL thirdCopy = changedMirror.mirror(remote);
+        changedMirror.mirror(remote);
+
+        // Assert
+        Assert.assertEquals(firstCopy, secondCopy);
+        Assert.assertEquals(firstCopy, thirdCopy);
+        Assert.assertEquals(new File(mirrorDir, "http/127.0.0.1_" + server.getAddress().getPort()
+                + "/partner/party.xsd"), new File(firstCopy.getPath()));
+        Assert.assertTrue(firstModified > 0);
+        Assert.assertTrue(FileUtils.fileRead(new File(thirdCopy.getPath()), "UTF-8").contains("name=\"party\""));
+
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals("/partner/party.xsd", requests.get(0));
+        Assert.assertTrue(requests.get(1).startsWith("/partner/party.xsd \""));
+        Assert.assertTrue(requests.get(2).startsWith("/partner/party.xsd \""));
+    }
+
+    @Test
+    public void validateOfflineModeOnlyUsesMirroredCopies() throws Exception {
+
+        // Assemble
+        final URL mirroredRemote = remote("/partner/party.xsd");
+        new SchemaMirror(mirrorDir, false, null, log).mirror(mirroredRemote);
+        requests.clear();
+
+        final SchemaMirror unitUnderTest = new SchemaMirror(mirrorDir, true, null, log);
+
+        // Act
+        final URL copy = unitUnderTest.mirror(mirroredRemote);
+        final SortedMap<String, URL> result = unitUnderTest.mirrorAll(
+                Arrays.asList(mirroredRemote, remote("/schemas/order.xsd")));
+
+        // Assert
+        Assert.assertEquals(0, requests.size());
+        Assert.assertTrue(new File(copy.getPath()).isFile());
+        Assert.assertEquals(Collections.singleton(mirroredRemote.toString()), result.keySet());
+        Assert.assertTrue(log.getPrettyPrintedLog().contains("/schemas/order.xsd] is not mirrored"));
+    }
+
+    @Test
+    public void validateFollowingRemoteImportsAndGeneratingCatalog() throws Exception {
+
+        // Assemble
+        final File rootXsd = new File(baseDir, "root.xsd");
+        FileUtils.fileWrite(rootXsd, "UTF-8", schema("urn:root",
+                "<xs:import namespace=\"urn:order\" schemaLocation=\"" + remote("/schemas/order.xsd") + "\"/>"));
+        final File userCatalog = new File(baseDir, "catalog.xml");
+        final File mirrorCatalog = new File(baseDir, "generated/catalog.xml");
+        final SchemaMirror unitUnderTest = new SchemaMirror(mirrorDir, false, null, log);
+
+        // Act
+        final SchemaDependencyGraph graph = SchemaDependencyGraph.build(
+                Collections.singletonList(FileSystemUtilities.getUrlFor(rootXsd)), null, null, unitUnderTest, log);
+        unitUnderTest.writeCatalog(mirrorCatalog, userCatalog);
+
+        // Assert
+        final SortedMap<String, String> digests = graph.getDigests();
+        Assert.assertEquals(4, digests.size());
+        for (String current : Arrays.asList("/schemas/order.xsd", "/schemas/types/lines.xsd",
+                "/partner/party.xsd")) {
+
+            final String remote = remote(current).toString();
+            Assert.assertEquals(ContentDigester.digest(served.get(current)), digests.get(remote));
+            Assert.assertTrue(unitUnderTest.getMirrored().containsKey(remote));
+        }
+        Assert.assertEquals("urn:party", graph.getTargetNamespace(remote("/partner/party.xsd").toString()));
+
+        final String catalog = FileUtils.fileRead(mirrorCatalog, "UTF-8");
+        Assert.assertTrue(catalog.contains("<system systemId=\"" + remote("/partner/party.xsd") + "\" uri=\""
+                + unitUnderTest.getMirrored().get(remote("/partner/party.xsd").toString()) + "\"/>"));
+        Assert.assertTrue(catalog.contains("<nextCatalog catalog=\""
+                + FileSystemUtilities.getUrlFor(userCatalog) + "\"/>"));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private URL remote(final String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static String schema(final String targetNamespace, final String content) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\""
+                + targetNamespace + "\">" + content + "</xs:schema>\n";
+    }
+}
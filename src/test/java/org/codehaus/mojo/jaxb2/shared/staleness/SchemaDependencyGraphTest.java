@@ -0,0 +1,173 @@
+package org.codehaus.mojo.jaxb2.shared.staleness;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+
+public class SchemaDependencyGraphTest {
+
+    // Shared state
+    private BufferingLog log;
+    private File baseDir;
+    private File rootXsd;
+    private File typesXsd;
+    private File commonXsd;
+    private File mappedXsd;
+    private File catalogFile;
+
+    @Before
+    public void setupSharedState() throws IOException {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        baseDir = File.createTempFile("schemaDependencyGraph", "");
+        Assert.assertTrue(baseDir.delete());
+        Assert.assertTrue(new File(baseDir, "main").mkdirs());
+        Assert.assertTrue(new File(baseDir, "common").mkdirs());
+
+        rootXsd = write("main/root.xsd", schema(
+                "<xs:include schemaLocation=\"types.xsd\"/>"
+                        + "<xs:import namespace=\"urn:common\" schemaLocation=\"../common/common.xsd\"/>"
+                        + "<xs:import namespace=\"urn:catalogued\"/>"
+                        + "<xs:element name=\"root\" type=\"xs:string\"/>"
+                        + "<xs:include schemaLocation=\"notFollowed.xsd\"/>"));
+        typesXsd = write("main/types.xsd", schema("<xs:element name=\"types\" type=\"xs:string\"/>"));
+        commonXsd = write("common/common.xsd", schema(
+                "<xs:import namespace=\"urn:remote\" schemaLocation=\"http://example.invalid/remote.xsd\"/>"));
+        mappedXsd = write("common/mapped.xsd", schema(""));
+        catalogFile = write("catalog.xml", "<?xml version=\"1.0\"?>\n"
+                + "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">\n"
+                + "  <uri name=\"urn:catalogued\" uri=\"common/mapped.xsd\"/>\n"
+                + "</catalog>\n");
+    }
+
+    @Test
+    public void validateTransitiveClosureIncludesCatalogMappings() throws Exception {
+
+        // Assemble
+        final List<URL> roots = Arrays.asList(FileSystemUtilities.getUrlFor(rootXsd));
+
+        // Act
+        final SchemaDependencyGraph result = SchemaDependencyGraph.build(
+                roots, SchemaCatalog.parse(catalogFile, log), null, log);
+
+        // Assert
+        final SortedMap<String, String> digests = result.getDigests();
+        Assert.assertEquals(5, digests.size());
+        Assert.assertTrue(digests.containsKey(urlOf(typesXsd)));
+        Assert.assertTrue(digests.containsKey(urlOf(commonXsd)));
+        Assert.assertTrue(digests.containsKey(urlOf(mappedXsd)));
+        Assert.assertEquals(SchemaDependencyGraph.REMOTE, digests.get("http://example.invalid/remote.xsd"));
+        Assert.assertEquals(3, result.getDependencies(urlOf(rootXsd)).size());
+        Assert.assertEquals(ContentDigester.digest(FileSystemUtilities.getUrlFor(commonXsd)),
+                digests.get(urlOf(commonXsd)));
+    }
+
+    @Test
+    public void validateUnmappedNamespaceImportsAreIgnored() throws Exception {
+
+        // Assemble
+        final List<URL> roots = Arrays.asList(FileSystemUtilities.getUrlFor(rootXsd));
+
+        // Act
+        final SchemaDependencyGraph result = SchemaDependencyGraph.build(roots, null, null, log);
+
+        // Assert
+        Assert.assertEquals(4, result.getDigests().size());
+        Assert.assertFalse(result.getDigests().containsKey(urlOf(mappedXsd)));
+    }
+
+    @Test
+    public void validateChangedTransitiveSchemaChangesDigests() throws Exception {
+
+        // Assemble
+        final List<URL> roots = Arrays.asList(FileSystemUtilities.getUrlFor(rootXsd));
+        final SchemaDependencyGraph previous = SchemaDependencyGraph.build(roots, null, null, log);
+
+        // Act
+        write("common/common.xsd", schema("<xs:element name=\"changed\" type=\"xs:string\"/>"));
+        final SchemaDependencyGraph result = SchemaDependencyGraph.build(roots, null, previous, log);
+
+        // Assert
+        final List<String> changes = new StaleManifest().addAll("xsd", result.getDigests())
+                .getChangesSince(new StaleManifest().addAll("xsd", previous.getDigests()));
+        Assert.assertEquals(Arrays.asList(
+                "Changed xsd:" + urlOf(commonXsd),
+                "Removed xsd:http://example.invalid/remote.xsd"), changes);
+    }
+
+    @Test
+    public void validatePersistedGraphIsReusedForUnchangedSchemas() throws Exception {
+
+        // Assemble
+        final File graphFile = new File(baseDir, "graph/dependencies.json");
+        final List<URL> roots = Arrays.asList(FileSystemUtilities.getUrlFor(rootXsd));
+        final SchemaCatalog catalog = SchemaCatalog.parse(catalogFile, log);
+        final SchemaDependencyGraph original = SchemaDependencyGraph.build(roots, catalog, null, log);
+
+        // Act
+        original.write(graphFile);
+        final SchemaDependencyGraph readGraph = SchemaDependencyGraph.read(graphFile);
+        log.getAndResetLogBuffer();
+        final SchemaDependencyGraph rebuilt = SchemaDependencyGraph.build(roots, catalog, readGraph, log);
+
+        // Assert
+        Assert.assertNotNull(readGraph);
+        Assert.assertEquals(original.toJson(), readGraph.toJson());
+        Assert.assertEquals(original.toJson(), rebuilt.toJson());
+        Assert.assertTrue(log.getPrettyPrintedLog().contains("Parsed 0 schemas"));
+        Assert.assertNull(SchemaDependencyGraph.read(new File(baseDir, "nonexistent.json")));
+    }
+
+    @Test
+    public void validateTextCatalogMappings() throws Exception {
+
+        // Assemble
+        final File textCatalog = write("catalog.cat", "-- TR9401 catalog --\n"
+                + "PUBLIC \"urn:catalogued\" \"common/mapped.xsd\"\n");
+
+        // Act
+        final SchemaCatalog result = SchemaCatalog.parse(textCatalog, log);
+
+        // Assert
+        Assert.assertFalse(result.isEmpty());
+        Assert.assertEquals(urlOf(mappedXsd),
+                result.resolve("urn:catalogued", null, FileSystemUtilities.getUrlFor(rootXsd)).toString());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String schema(final String content) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">" + content + "</xs:schema>\n";
+    }
+
+    private static String urlOf(final File aFile) {
+        return FileSystemUtilities.getUrlFor(aFile).toString();
+    }
+
+    private File write(final String relativePath, final String content) throws IOException {
+
+        final File toReturn = new File(baseDir, relativePath);
+        final FileOutputStream out = new FileOutputStream(toReturn);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return toReturn;
+    }
+}
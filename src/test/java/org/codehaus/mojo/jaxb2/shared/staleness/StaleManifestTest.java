@@ -0,0 +1,177 @@
+package org.codehaus.mojo.jaxb2.shared.staleness;
+
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.shared.FileSystemUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+
+public class StaleManifestTest {
+
+    // Shared state
+    private BufferingLog log;
+    private File testFile1;
+
+    @Before
+    public void setupSharedState() {
+
+        log = new BufferingLog(BufferingLog.LogLevel.DEBUG);
+
+        final URL testFile1Url = getClass().getClassLoader().getResource(
+                "testdata/shared/filesystemutilities/canonicals/TestFile1.txt");
+        testFile1 = new File(testFile1Url.getPath());
+        Assert.assertTrue(FileSystemUtilities.EXISTING_FILE.accept(testFile1));
+    }
+
+    @Test
+    public void validateDigestsAreIndependentOfModificationTime() throws Exception {
+
+        // Assemble
+        final File tmpFile = writeTempFile("some content");
+        final List<URL> resources = Arrays.asList(FileSystemUtilities.getUrlFor(tmpFile));
+
+        // Act
+        final SortedMap<String, String> before = ContentDigester.digest(resources, log);
+        Assert.assertTrue(tmpFile.setLastModified(System.currentTimeMillis() - 100000L));
+        final SortedMap<String, String> after = ContentDigester.digest(resources, log);
+
+        // Assert
+        Assert.assertEquals(1, before.size());
+        Assert.assertEquals(before, after);
+        Assert.assertEquals(ContentDigester.digest("some content"), before.values().iterator().next());
+    }
+
+    @Test
+    public void validateParallelAndSequentialDigestsAreIdentical() throws Exception {
+
+        // Assemble
+        final List<URL> resources = new ArrayList<URL>();
+        for (int i = 0; i < 40; i++) {
+            resources.add(FileSystemUtilities.getUrlFor(writeTempFile("content " + i)));
+        }
+
+        // Act
+        final SortedMap<String, String> result = ContentDigester.digest(resources, log);
+
+        // Assert
+        Assert.assertEquals(resources.size(), result.size());
+        for (int i = 0; i < resources.size(); i++) {
+            Assert.assertEquals(ContentDigester.digest("content " + i), result.get(resources.get(i).toString()));
+        }
+    }
+
+    @Test
+    public void validateUnreadableResourcesAreAlwaysChanged() throws Exception {
+
+        // Assemble
+        final File nonexistent = new File(testFile1.getParentFile(), "doesNotExist.txt");
+        final List<URL> resources = Arrays.asList(FileSystemUtilities.getUrlFor(nonexistent));
+        final StaleManifest unitUnderTest = new StaleManifest()
+                .addAll("xsd", ContentDigester.digest(resources, log));
+
+        // Act
+        final List<String> changes = unitUnderTest.getChangesSince(unitUnderTest);
+
+        // Assert
+        Assert.assertEquals(1, changes.size());
+        Assert.assertTrue(changes.get(0).startsWith("Could not read xsd:"));
+    }
+
+    @Test
+    public void validateWriteAndReadRoundTrip() throws Exception {
+
+        // Assemble
+        final File manifestFile = File.createTempFile("staleManifest", ".properties");
+        manifestFile.deleteOnExit();
+
+        final StaleManifest unitUnderTest = new StaleManifest()
+                .addAll("xsd", ContentDigester.digest(Arrays.asList(testFile1.toURI().toURL()), log))
+                .add("configuration", "arguments", "someDigest");
+
+        // Act
+        unitUnderTest.write(manifestFile);
+        final StaleManifest readManifest = StaleManifest.read(manifestFile);
+
+        // Assert
+        Assert.assertNotNull(readManifest);
+        Assert.assertEquals(unitUnderTest.getEntries(), readManifest.getEntries());
+        Assert.assertTrue(unitUnderTest.getChangesSince(readManifest).isEmpty());
+        Assert.assertNull(StaleManifest.read(new File(manifestFile.getParentFile(), "nonexistent.manifest")));
+    }
+
+    @Test
+    public void validateChangeDetection() {
+
+        // Assemble
+        final StaleManifest previous = new StaleManifest()
+                .add("xsd", "file:/a.xsd", "1")
+                .add("xsd", "file:/b.xsd", "2");
+        final StaleManifest current = new StaleManifest()
+                .add("xsd", "file:/a.xsd", "1")
+                .add("xsd", "file:/b.xsd", "3")
+                .add("xjb", "file:/c.xjb", "4");
+
+        // Act
+        final List<String> changes = current.getChangesSince(previous);
+        final List<String> reverseChanges = previous.getChangesSince(current);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("Added xjb:file:/c.xjb", "Changed xsd:file:/b.xsd"), changes);
+        Assert.assertEquals(Arrays.asList("Changed xsd:file:/b.xsd", "Removed xjb:file:/c.xjb"), reverseChanges);
+        Assert.assertEquals(1, current.getChangesSince(null).size());
+    }
+
+    @Test
+    public void validateHintsAreRoundTrippedButNotCompared() throws Exception {
+
+        // Assemble
+        final File manifestFile = File.createTempFile("staleManifest", ".properties");
+        manifestFile.deleteOnExit();
+
+        final StaleManifest unitUnderTest = new StaleManifest()
+                .add("java", "file:/Foo.java", "structuralDigest")
+                .addHint("javaContent", "file:/Foo.java", "contentDigest");
+        final StaleManifest withoutHints = new StaleManifest()
+                .add("java", "file:/Foo.java", "structuralDigest");
+
+        // Act
+        unitUnderTest.write(manifestFile);
+        final StaleManifest readManifest = StaleManifest.read(manifestFile);
+
+        // Assert
+        Assert.assertNotNull(readManifest);
+        Assert.assertEquals(unitUnderTest.getEntries(), readManifest.getEntries());
+        Assert.assertEquals(unitUnderTest.getHints(), readManifest.getHints());
+        Assert.assertEquals("contentDigest", readManifest.getHint("javaContent", "file:/Foo.java"));
+        Assert.assertEquals("structuralDigest", readManifest.getEntry("java", "file:/Foo.java"));
+        Assert.assertTrue(withoutHints.getChangesSince(readManifest).isEmpty());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private File writeTempFile(final String content) throws IOException {
+
+        final File toReturn = File.createTempFile("contentDigester", ".xsd");
+        toReturn.deleteOnExit();
+
+        final FileOutputStream out = new FileOutputStream(toReturn);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return toReturn;
+    }
+}
@@ -0,0 +1,168 @@
+package org.codehaus.mojo.jaxb2.shared.worker;
+
+import com.sun.tools.xjc.Driver;
+import org.codehaus.mojo.jaxb2.BufferingLog;
+import org.codehaus.mojo.jaxb2.javageneration.XjcLogAdapter;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Manual benchmark comparing the wall-clock time of XJC invocations when each invocation starts a fresh JVM
+ * (i.e. pays the full cold start of XJC), when invocations are sent to a {@link ToolWorker}, and when invocations
+ * run repeatedly within a single warm JVM (the lower bound). Not run by surefire; launch the main method from the
+ * test classpath:</p>
+ * <pre>
+ *     <code>java -cp target/test-classes:target/classes:[dependencies] \
+ *         org.codehaus.mojo.jaxb2.shared.worker.ToolWorkerBenchmark [numInvocations]</code>
+ * </pre>
+ */
+public final class ToolWorkerBenchmark {
+
+    // Shared state
+    private static final String SCHEMA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"\n"
+            + "           targetNamespace=\"http://jaxb2.mojo.codehaus.org/benchmark\"\n"
+            + "           elementFormDefault=\"qualified\">\n"
+            + "    <xs:element name=\"order\">\n"
+            + "        <xs:complexType>\n"
+            + "            <xs:sequence>\n"
+            + "                <xs:element name=\"id\" type=\"xs:long\"/>\n"
+            + "                <xs:element name=\"customer\" type=\"xs:string\"/>\n"
+            + "                <xs:element name=\"line\" maxOccurs=\"unbounded\">\n"
+            + "                    <xs:complexType>\n"
+            + "                        <xs:attribute name=\"sku\" type=\"xs:string\"/>\n"
+            + "                        <xs:attribute name=\"quantity\" type=\"xs:int\"/>\n"
+            + "                    </xs:complexType>\n"
+            + "                </xs:element>\n"
+            + "            </xs:sequence>\n"
+            + "        </xs:complexType>\n"
+            + "    </xs:element>\n"
+            + "</xs:schema>\n";
+
+    private ToolWorkerBenchmark() {
+        // Do not instantiate
+    }
+
+    public static void main(final String[] args) throws Exception {
+
+        final int numInvocations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final File root = new File(System.getProperty("java.io.tmpdir"), "toolWorkerBenchmark-" + System.nanoTime());
+        final File schema = new File(root, "order.xsd");
+        FileUtils.fileWrite(schema, "UTF-8", SCHEMA);
+
+        try {
+
+            final String classPath = System.getProperty("java.class.path");
+            final BufferingLog log = new BufferingLog(BufferingLog.LogLevel.INFO);
+
+            // 1) A fresh JVM for each invocation.
+            final List<Long> coldTimes = new ArrayList<Long>();
+            for (int i = 0; i < numInvocations; i++) {
+
+                final long start = System.nanoTime();
+                final Process process = new ProcessBuilder(
+                        new File(System.getProperty("java.home"), "bin" + File.separator + "java").getAbsolutePath(),
+                        "-cp", classPath,
+                        Driver.class.getName(),
+                        "-quiet",
+                        "-d", outputDirectory(root, "cold", i),
+                        schema.getAbsolutePath())
+                        .redirectErrorStream(true)
+                        .start();
+                drain(process);
+                check("cold", process.waitFor());
+                coldTimes.add(System.nanoTime() - start);
+            }
+
+            // 2) All invocations sent to a ToolWorker. The first invocation includes starting the ToolWorker.
+            final List<URL> workerClassPath = new ArrayList<URL>();
+            for (String current : classPath.split(File.pathSeparator)) {
+                workerClassPath.add(new File(current).toURI().toURL());
+            }
+            final ToolWorkerClient client = new ToolWorkerClient(workerClassPath, root, 30, 1, log);
+
+            final List<Long> workerTimes = new ArrayList<Long>();
+            for (int i = 0; i < numInvocations; i++) {
+
+                final long start = System.nanoTime();
+                check("worker", client.runXjc(
+                        new String[]{"-quiet", "-d", outputDirectory(root, "worker", i), schema.getAbsolutePath()},
+                        Collections.<String>emptyList(),
+                        new XjcLogAdapter(log)));
+                workerTimes.add(System.nanoTime() - start);
+            }
+
+            // 3) All invocations within this JVM.
+            final List<Long> inProcessTimes = new ArrayList<Long>();
+            for (int i = 0; i < numInvocations; i++) {
+
+                final long start = System.nanoTime();
+                check("inProcess", Driver.run(
+                        new String[]{"-quiet", "-d", outputDirectory(root, "inProcess", i), schema.getAbsolutePath()},
+                        new XjcLogAdapter(log)));
+                inProcessTimes.add(System.nanoTime() - start);
+            }
+
+            System.out.println("XJC invocations:      " + numInvocations);
+            print("Fresh JVM each", coldTimes);
+            print("ToolWorker", workerTimes);
+            print("Warm, in-process", inProcessTimes);
+
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String outputDirectory(final File root, final String mode, final int index) {
+
+        final File toReturn = new File(root, mode + "-" + index);
+        if (!toReturn.mkdirs()) {
+            throw new IllegalStateException("Could not create [" + toReturn.getAbsolutePath() + "]");
+        }
+        return toReturn.getAbsolutePath();
+    }
+
+    private static void drain(final Process process) throws IOException {
+
+        final byte[] buffer = new byte[1024];
+        while (process.getInputStream().read(buffer) != -1) {
+            // Discard the output.
+        }
+    }
+
+    private static void check(final String mode, final int exitCode) {
+        if (exitCode != 0) {
+            throw new IllegalStateException("XJC (" + mode + ") failed with exit code " + exitCode);
+        }
+    }
+
+    private static void print(final String mode, final List<Long> nanos) {
+
+        final List<Long> sorted = new ArrayList<Long>(nanos);
+        Collections.sort(sorted);
+        System.out.println(String.format("%-20s  first: %6d ms, median: %6d ms, total: %6d ms",
+                mode + ":",
+                nanos.get(0) / 1000000L,
+                sorted.get(sorted.size() / 2) / 1000000L,
+                sum(nanos) / 1000000L));
+    }
+
+    private static long sum(final List<Long> nanos) {
+
+        long toReturn = 0;
+        for (Long current : nanos) {
+            toReturn += current;
+        }
+        return toReturn;
+    }
+}
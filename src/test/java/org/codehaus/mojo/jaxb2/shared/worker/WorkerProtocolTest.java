@@ -0,0 +1,72 @@
+package org.codehaus.mojo.jaxb2.shared.worker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class WorkerProtocolTest {
+
+    @Test
+    public void validateStringRoundTrip() throws IOException {
+
+        // Assemble
+        final StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longValue.append("/some/path/to/a/dependency-").append(i).append(".jar:");
+        }
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+
+        // Act
+        WorkerProtocol.writeString(out, "Jörelid");
+        WorkerProtocol.writeString(out, null);
+        WorkerProtocol.writeString(out, "");
+        WorkerProtocol.writeString(out, longValue.toString());
+        out.flush();
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+
+        // Assert
+        Assert.assertEquals("Jörelid", WorkerProtocol.readString(in));
+        Assert.assertNull(WorkerProtocol.readString(in));
+        Assert.assertEquals("", WorkerProtocol.readString(in));
+        Assert.assertEquals(longValue.toString(), WorkerProtocol.readString(in));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void validateStringListRoundTrip() throws IOException {
+
+        // Assemble
+        final List<String> arguments = Arrays.asList("-d", "target/generated-sources/jaxb", null, "some.xsd");
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+
+        // Act
+        WorkerProtocol.writeStrings(out, arguments);
+        out.flush();
+        final List<String> result = WorkerProtocol.readStrings(
+                new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        // Assert
+        Assert.assertEquals(arguments, result);
+    }
+
+    @Test(expected = IOException.class)
+    public void validateExceptionOnNegativeListSize() throws IOException {
+
+        // Assemble
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new DataOutputStream(buffer).writeInt(-2);
+
+        // Act & Assert
+        WorkerProtocol.readStrings(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+}